@@ -0,0 +1,385 @@
+package cz.stavbau.backend.features.files.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Neblokující upload: {@code PUT /api/v1/files/stream?companyId=&uploaderId=&name=}, tělo = obsah souboru,
+ * {@code Content-Type} = MIME typ. Běží jako samostatný async servlet (security filtry se uplatní, MVC ne).
+ * - request vlákno se uvolní hned po {@code startAsync}; data se čtou přes {@link ReadListener} jen když jsou
+ *   k dispozici, takže pomalý klient ze stavby nedrží worker connectoru
+ * - zápis na disk přes {@link AsynchronousFileChannel} (poziční, max. {@code max-in-flight} bufferů na upload),
+ *   SHA-256 se počítá za běhu → dokončení je jen {@code uploadStaged} (rename do úložiště, bez dalšího čtení)
+ * - když disk nestíhá síť, čtení se pozastaví (žádné vlákno nečeká na volný buffer) a obnoví ho
+ *   AIO callback dokončeného zápisu
+ * - limity {@code files.upload.max-size-mb} / {@code allowed-mime} se hlídají průběžně: Content-Length a
+ *   Content-Type před čtením, počet bajtů a magic bytes během přenosu → 413/415 bez čekání na zbytek těla
+ * - kvóta firmy se ověří proti Content-Length ještě před {@code startAsync} → 409 dřív, než klient pošle data
+ */
+public class AsyncUploadServlet extends HttpServlet {
+
+    public static final String PATH = "/api/v1/files/stream";
+    private static final String AUTHORITY = "files:write";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncUploadServlet.class);
+
+    private final StoredFileService storedFileService;
+    private final FileUsageService fileUsageService;
+    private final FileUploadProperties props;
+    private final Path stagingDir;
+    private final ObjectMapper objectMapper;
+
+    public AsyncUploadServlet(StoredFileService storedFileService, FileUsageService fileUsageService,
+                              FileUploadProperties props, Path stagingDir, ObjectMapper objectMapper) {
+        this.storedFileService = storedFileService;
+        this.fileUsageService = fileUsageService;
+        this.props = props;
+        this.stagingDir = stagingDir;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        if (!hasAuthority(SecurityContextHolder.getContext().getAuthentication())) {
+            problem(req, res, HttpStatus.FORBIDDEN, "rbac.forbidden", "Nemáte oprávnění provést tuto akci.");
+            return;
+        }
+        UUID companyId;
+        UUID uploaderId;
+        try {
+            companyId = UUID.fromString(req.getParameter("companyId"));
+            uploaderId = UUID.fromString(req.getParameter("uploaderId"));
+        } catch (RuntimeException e) {
+            problem(req, res, HttpStatus.BAD_REQUEST, "validation.error", "companyId and uploaderId are required");
+            return;
+        }
+        String mimeType = req.getContentType() != null ? req.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        if (!props.allowsMime(mimeType)) {
+            problem(req, res, HttpStatus.UNSUPPORTED_MEDIA_TYPE, "files.upload.mimeNotAllowed", mimeType);
+            return;
+        }
+        long declared = req.getContentLengthLong();
+        if (declared > props.maxSizeBytes()) {
+            abort(req, res, HttpStatus.PAYLOAD_TOO_LARGE, "files.upload.tooLarge", null);
+            return;
+        }
+        try {
+            fileUsageService.checkQuota(companyId, declared);
+        } catch (ConflictException e) {
+            abort(req, res, HttpStatus.CONFLICT, e.getMessage(), null);
+            return;
+        }
+
+        Files.createDirectories(stagingDir);
+        Path tmp = Files.createTempFile(stagingDir, "stream-", ".part");
+        AsynchronousFileChannel ch = AsynchronousFileChannel.open(tmp, StandardOpenOption.WRITE);
+        AsyncContext ac = req.startAsync();
+        ac.setTimeout(props.getAsync().getTimeout().toMillis());
+        Upload upload = new Upload(ac, req.getInputStream(), ch, tmp, companyId, uploaderId,
+                req.getParameter("name"), mimeType);
+        ac.addListener(upload);
+        req.getInputStream().setReadListener(upload);
+    }
+
+    /**
+     * Jeden rozpracovaný upload – callbacky kontejneru (čtení) a AIO (zápisy) se potkávají jen přes atomiky.
+     * Čte vždy jen jedno vlákno: kontejner v {@link #onDataAvailable}, nebo AIO vlákno, které vyhrálo {@code paused}.
+     */
+    private final class Upload implements ReadListener, AsyncListener {
+
+        private final AsyncContext ac;
+        private final ServletInputStream in;
+        private final AsynchronousFileChannel ch;
+        private final Path tmp;
+        private final UUID companyId;
+        private final UUID uploaderId;
+        private final String name;
+        private final String mimeType;
+
+        private final MessageDigest md;
+        private final Semaphore slots;
+        private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final AtomicBoolean paused = new AtomicBoolean();
+        private final byte[] head = new byte[UploadContentSniffer.HEAD_SIZE];
+        private int headLen;
+        private boolean headChecked;
+        private long received;
+        private volatile boolean allRead;
+
+        Upload(AsyncContext ac, ServletInputStream in, AsynchronousFileChannel ch, Path tmp,
+               UUID companyId, UUID uploaderId, String name, String mimeType) {
+            this.ac = ac;
+            this.in = in;
+            this.ch = ch;
+            this.tmp = tmp;
+            this.companyId = companyId;
+            this.uploaderId = uploaderId;
+            this.name = name;
+            this.mimeType = mimeType;
+            this.slots = new Semaphore(Math.max(1, props.getAsync().getMaxInFlight()));
+            try {
+                this.md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            pump();
+        }
+
+        /**
+         * Čte, dokud jsou data a volný buffer. Bez bufferu se čtení pozastaví ({@code paused}) a vlákno se vrátí;
+         * po {@code paused} se ještě jednou zkusí buffer – uvolněný mezitím by jinak nikdo nevyzvedl.
+         */
+        private void pump() throws IOException {
+            while (!done.get()) {
+                if (!slots.tryAcquire()) {
+                    paused.set(true);
+                    if (!slots.tryAcquire()) return;
+                    if (!paused.compareAndSet(true, false)) {
+                        // čtení už převzal AIO callback
+                        slots.release();
+                        return;
+                    }
+                }
+                if (!in.isReady()) {
+                    // kontejner zavolá onDataAvailable, až přijdou další data
+                    slots.release();
+                    return;
+                }
+                ByteBuffer buf = buffer();
+                int n = in.read(buf.array(), 0, buf.capacity());
+                if (n <= 0) {
+                    release(buf);
+                    if (n < 0) return;
+                    continue;
+                }
+                long position = received;
+                received += n;
+                if (received > props.maxSizeBytes()) {
+                    release(buf);
+                    fail(HttpStatus.PAYLOAD_TOO_LARGE, "files.upload.tooLarge", null);
+                    return;
+                }
+                if (!sniff(buf.array(), n)) {
+                    release(buf);
+                    return;
+                }
+                md.update(buf.array(), 0, n);
+                buf.limit(n);
+                pendingWrites.incrementAndGet();
+                write(buf, position);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (!headChecked && !UploadContentSniffer.plausible(FileUploadProperties.baseMime(mimeType), head, headLen)) {
+                fail(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "files.upload.contentMismatch", mimeType);
+                return;
+            }
+            allRead = true;
+            if (pendingWrites.get() == 0) complete();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // klient spojení zavřel / timeout čtení
+            cleanup();
+            log.debug("files.upload.stream: read failed reason={}", t.toString());
+            try {
+                ac.complete();
+            } catch (IllegalStateException ignored) {
+                // už dokončeno (timeout / chyba zápisu)
+            }
+        }
+
+        private void write(ByteBuffer buf, long position) {
+            ch.write(buf, position + buf.position(), buf, new CompletionHandler<>() {
+                @Override
+                public void completed(Integer written, ByteBuffer b) {
+                    if (b.hasRemaining()) {
+                        write(b, position);
+                        return;
+                    }
+                    release(b);
+                    if (pendingWrites.decrementAndGet() == 0 && allRead) complete();
+                    else if (paused.compareAndSet(true, false)) resume();
+                }
+
+                @Override
+                public void failed(Throwable t, ByteBuffer b) {
+                    release(b);
+                    pendingWrites.decrementAndGet();
+                    log.warn("files.upload.stream: write failed file={} reason={}", tmp, t.toString());
+                    fail(HttpStatus.INTERNAL_SERVER_ERROR, "files.upload.failed", null);
+                }
+            });
+        }
+
+        private void resume() {
+            try {
+                pump();
+            } catch (IOException e) {
+                log.debug("files.upload.stream: read failed reason={}", e.toString());
+                fail(HttpStatus.BAD_REQUEST, "files.upload.failed", null);
+            }
+        }
+
+        /** Magic bytes z prvního KiB proti deklarovanému typu; false = upload už je ukončený. */
+        private boolean sniff(byte[] data, int n) {
+            if (headChecked) return true;
+            int copy = Math.min(n, head.length - headLen);
+            System.arraycopy(data, 0, head, headLen, copy);
+            headLen += copy;
+            if (headLen < head.length) return true;
+            headChecked = true;
+            if (UploadContentSniffer.plausible(FileUploadProperties.baseMime(mimeType), head, headLen)) return true;
+            fail(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "files.upload.contentMismatch", mimeType);
+            return false;
+        }
+
+        /** Všechno přijato i zapsáno → registrace mimo AIO vlákno (DB, rename do úložiště). */
+        private void complete() {
+            if (!done.compareAndSet(false, true)) return;
+            ac.start(() -> {
+                HttpServletRequest req = (HttpServletRequest) ac.getRequest();
+                HttpServletResponse res = (HttpServletResponse) ac.getResponse();
+                try {
+                    ch.close();
+                    String sha256 = HexFormat.of().formatHex(md.digest());
+                    StoredFile sf = storedFileService.uploadStaged(companyId, uploaderId, name, mimeType, tmp, received, sha256);
+                    res.setStatus(HttpServletResponse.SC_OK);
+                    res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    objectMapper.writeValue(res.getOutputStream(), FilesController.map(sf));
+                } catch (ConflictException e) {
+                    safeProblem(req, res, HttpStatus.CONFLICT, e.getMessage(), null);
+                } catch (Exception e) {
+                    log.error("files.upload.stream: register failed", e);
+                    safeProblem(req, res, HttpStatus.INTERNAL_SERVER_ERROR, "files.upload.failed", null);
+                } finally {
+                    deleteTmp();
+                    ac.complete();
+                }
+            });
+        }
+
+        private void fail(HttpStatus status, String code, String detail) {
+            if (!done.compareAndSet(false, true)) return;
+            HttpServletRequest req = (HttpServletRequest) ac.getRequest();
+            HttpServletResponse res = (HttpServletResponse) ac.getResponse();
+            // zbytek těla nečteme – kontejner po odpovědi spojení zavře
+            res.setHeader("Connection", "close");
+            safeProblem(req, res, status, code, detail);
+            cleanup();
+            ac.complete();
+        }
+
+        private void cleanup() {
+            done.set(true);
+            // zápisy, které ještě běží, skončí chybou na zavřeném kanálu – soubor mažeme až pak (nebo ho uklidí rekonciliace)
+            try { ch.close(); } catch (IOException ignored) { }
+            deleteTmp();
+        }
+
+        private void deleteTmp() {
+            try { Files.deleteIfExists(tmp); } catch (IOException ignored) { }
+        }
+
+        private ByteBuffer buffer() {
+            ByteBuffer b = pool.poll();
+            return b != null ? b.clear() : ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        private void release(ByteBuffer b) {
+            pool.offer(b);
+            slots.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            fail(HttpStatus.REQUEST_TIMEOUT, "files.upload.timeout", null);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            cleanup();
+        }
+
+        @Override public void onComplete(AsyncEvent event) { }
+        @Override public void onStartAsync(AsyncEvent event) { }
+
+        private void safeProblem(HttpServletRequest req, HttpServletResponse res, HttpStatus status, String code, String detail) {
+            try {
+                if (!res.isCommitted()) problem(req, res, status, code, detail);
+            } catch (IOException ignored) {
+                // klient už je pryč
+            }
+        }
+    }
+
+    private void abort(HttpServletRequest req, HttpServletResponse res, HttpStatus status, String code, String detail)
+            throws IOException {
+        res.setHeader("Connection", "close");
+        problem(req, res, status, code, detail);
+    }
+
+    /** RFC 7807 ve stejném tvaru jako {@code ApiExceptionHandler} (MVC advice se na servlet nevztahuje). */
+    private void problem(HttpServletRequest req, HttpServletResponse res, HttpStatus status, String code, String detail)
+            throws IOException {
+        ProblemDetail pd = ProblemDetail.forStatus(status);
+        pd.setTitle(status.getReasonPhrase());
+        if (detail != null) pd.setDetail(detail);
+        pd.setInstance(URI.create(req.getRequestURI()));
+        pd.setProperty("code", code);
+        res.setStatus(status.value());
+        res.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        objectMapper.writeValue(res.getOutputStream(), pd);
+    }
+
+    private static boolean hasAuthority(Authentication auth) {
+        return auth != null && auth.isAuthenticated()
+                && auth.getAuthorities().stream().anyMatch(a -> AUTHORITY.equals(a.getAuthority()));
+    }
+}
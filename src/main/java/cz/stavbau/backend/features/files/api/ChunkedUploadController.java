@@ -0,0 +1,86 @@
+package cz.stavbau.backend.features.files.api;
+
+import cz.stavbau.backend.features.files.api.dto.StoredFileResponse;
+import cz.stavbau.backend.features.files.api.dto.UploadSessionCreateRequest;
+import cz.stavbau.backend.features.files.api.dto.UploadSessionResponse;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.model.UploadSession;
+import cz.stavbau.backend.features.files.service.ChunkedUploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/files/uploads")
+@Tag(name = "Files", description = "Resumable (chunkovaný) upload velkých souborů")
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    private static UploadSessionResponse map(UploadSession s, List<Integer> receivedChunks) {
+        return new UploadSessionResponse(s.getId(), s.getStatus().name(), s.getTotalSize(), s.getChunkSize(),
+                s.totalChunks(), receivedChunks, s.getHashedBytes(), s.getFileId(), s.getExpiresAt());
+    }
+
+    private static UploadSessionResponse map(ChunkedUploadService.SessionState st) {
+        return map(st.session(), st.receivedChunks());
+    }
+
+    @Operation(summary = "Založení upload session")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> create(@Valid @RequestBody UploadSessionCreateRequest req) {
+        var s = chunkedUploadService.create(req.companyId(), req.uploaderId(), req.originalName(),
+                req.mimeType(), req.totalSize(), req.chunkSize());
+        return ResponseEntity.ok(map(s, List.of()));
+    }
+
+    @Operation(summary = "Nahrání chunku", description = "Tělo = surová data chunku; offset musí být násobek chunkSize")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PutMapping(value = "/{id}/chunks", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> putChunk(@PathVariable UUID id,
+                                                          @RequestParam long offset,
+                                                          HttpServletRequest request) throws IOException {
+        try (InputStream in = request.getInputStream()) {
+            return ResponseEntity.ok(map(chunkedUploadService.writeChunk(id, offset, request.getContentLengthLong(), in)));
+        }
+    }
+
+    @Operation(summary = "Stav session", description = "Seznam přijatých chunků – klient po přerušení dopošle jen chybějící")
+    @PreAuthorize("hasAuthority('files:write')")
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionResponse> status(@PathVariable UUID id) {
+        return ResponseEntity.ok(map(chunkedUploadService.status(id)));
+    }
+
+    @Operation(summary = "Dokončení uploadu")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<StoredFileResponse> complete(@PathVariable UUID id) {
+        StoredFile f = chunkedUploadService.complete(id);
+        return ResponseEntity.ok(new StoredFileResponse(f.getId(), f.getCompanyId(), f.getUploaderId(),
+                f.getOriginalName(), f.getMimeType(), f.getSizeBytes(), f.getSha256(), f.getStorageKey(), f.getCreatedAt()));
+    }
+
+    @Operation(summary = "Zrušení uploadu")
+    @PreAuthorize("hasAuthority('files:write')")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abort(@PathVariable UUID id) {
+        chunkedUploadService.abort(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,208 @@
+package cz.stavbau.backend.features.files.api;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Streamovaný HTTP download souboru s podporou Range / If-Range (resumable download).
+ * - ETag = sha256 obsahu (silný), Last-Modified = createdAt
+ * - If-None-Match → 304
+ * - jeden rozsah → 206 + Content-Range; více rozsahů nebo neplatný Range → celý soubor (200)
+ * - nesplnitelný rozsah → 416 + {@code Content-Range: bytes *}{@code /size}
+ * Obsah se nikdy nenačítá celý do paměti – zapisuje ho {@link ContentWriter} přímo do response.
+ */
+public final class FileDownloads {
+
+    private FileDownloads() {}
+
+    /** Zapíše rozsah [offset, offset + length) obsahu do výstupu. */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(long offset, long length, OutputStream out) throws IOException;
+    }
+
+    /**
+     * @param sha256          základ ETagu (musí se lišit pro každou reprezentaci)
+     * @param contentEncoding kódování posílaných bajtů ({@code gzip}), null = identity
+     * @param varyEncoding    reprezentace se vybírá podle {@code Accept-Encoding} → {@code Vary}
+     */
+    public record Meta(String fileName, String mimeType, long size, String sha256, Instant lastModified,
+                       String contentEncoding, boolean varyEncoding) {
+        public Meta(String fileName, String mimeType, long size, String sha256, Instant lastModified) {
+            this(fileName, mimeType, size, sha256, lastModified, null, false);
+        }
+
+        /** Dekódovaný obsah souboru. */
+        public static Meta of(StoredFile f) {
+            return new Meta(f.getOriginalName(), f.getMimeType(), f.getSizeBytes(), f.getSha256(), f.getCreatedAt(),
+                    null, f.getContentEncoding() != null);
+        }
+
+        /** Uložená (komprimovaná) data posílaná s {@code Content-Encoding} tak, jak jsou. */
+        public static Meta stored(StoredFile f) {
+            long size = f.getStoredSizeBytes() != null ? f.getStoredSizeBytes() : f.getSizeBytes();
+            return new Meta(f.getOriginalName(), f.getMimeType(), size, f.getSha256() + "-" + f.getContentEncoding(),
+                    f.getCreatedAt(), f.getContentEncoding(), true);
+        }
+    }
+
+    /** Přijímá klient dané kódování? (q=0 = odmítnuto) */
+    public static boolean accepts(HttpHeaders request, String encoding) {
+        for (String value : request.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String part : value.split(",")) {
+                String[] tokens = part.trim().split(";");
+                String name = tokens[0].trim();
+                if (!name.equalsIgnoreCase(encoding) && !name.equals("*")) continue;
+                boolean rejected = false;
+                for (int i = 1; i < tokens.length; i++) {
+                    String t = tokens[i].trim().replace(" ", "");
+                    if (t.startsWith("q=")) {
+                        try {
+                            rejected = Double.parseDouble(t.substring(2)) <= 0;
+                        } catch (NumberFormatException ignored) {
+                            rejected = true;
+                        }
+                    }
+                }
+                if (!rejected) return true;
+            }
+        }
+        return false;
+    }
+
+    public static ResponseEntity<StreamingResponseBody> respond(Meta meta, String disposition,
+                                                                HttpHeaders request, ContentWriter writer) {
+        return respond(meta, disposition, request, null, writer);
+    }
+
+    /** Varianta s {@code Cache-Control} (např. neměnné odvozené obrázky); posílá se i u 304. */
+    public static ResponseEntity<StreamingResponseBody> respond(Meta meta, String disposition, HttpHeaders request,
+                                                                CacheControl cacheControl, ContentWriter writer) {
+        String etag = "\"" + meta.sha256() + "\"";
+        var headers = new HttpHeaders();
+        headers.setETag(etag);
+        if (cacheControl != null) {
+            headers.setCacheControl(cacheControl);
+        }
+        if (meta.varyEncoding()) {
+            headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (meta.lastModified() != null) {
+            headers.setLastModified(meta.lastModified());
+        }
+
+        if (matchesAny(request.getIfNoneMatch(), meta.sha256())) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        headers.setContentType(parseMediaType(meta.mimeType()));
+        if (meta.contentEncoding() != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, meta.contentEncoding());
+        }
+        headers.setContentDisposition(ContentDisposition.builder(
+                        "inline".equalsIgnoreCase(disposition) ? "inline" : "attachment")
+                .filename(meta.fileName() != null ? meta.fileName() : "file", StandardCharsets.UTF_8)
+                .build());
+
+        long size = meta.size();
+        HttpRange range = singleRange(request, meta, etag);
+        if (range == null) {
+            headers.setContentLength(size);
+            return new ResponseEntity<>(out -> writer.write(0, size, out), headers, HttpStatus.OK);
+        }
+
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(size);
+            end = range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            start = size;
+            end = size - 1;
+        }
+        if (size == 0 || start >= size || start > end) {
+            var unsatisfiable = new HttpHeaders();
+            unsatisfiable.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            return new ResponseEntity<>(unsatisfiable, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        long offset = start;
+        long length = end - start + 1;
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        headers.setContentLength(length);
+        return new ResponseEntity<>(out -> writer.write(offset, length, out), headers, HttpStatus.PARTIAL_CONTENT);
+    }
+
+    /** Vrátí jediný požadovaný rozsah, nebo null pokud se má poslat celý soubor. */
+    private static HttpRange singleRange(HttpHeaders request, Meta meta, String etag) {
+        String rangeHeader = request.getFirst(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return null;
+        }
+        if (!ifRangeMatches(request.getFirst(HttpHeaders.IF_RANGE), meta, etag)) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    /** If-Range: silné porovnání ETagu, případně přesná shoda s Last-Modified (sekundová přesnost). */
+    private static boolean ifRangeMatches(String ifRange, Meta meta, String etag) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String v = ifRange.trim();
+        if (v.startsWith("\"") || v.startsWith("W/")) {
+            return v.equals(etag);
+        }
+        if (meta.lastModified() == null) {
+            return false;
+        }
+        var h = new HttpHeaders();
+        h.set(HttpHeaders.IF_RANGE, v);
+        try {
+            long date = h.getFirstDate(HttpHeaders.IF_RANGE);
+            return date >= 0 && date == meta.lastModified().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean matchesAny(List<String> ifNoneMatch, String sha256) {
+        for (String tag : ifNoneMatch) {
+            String t = tag.trim();
+            if (t.equals("*")) return true;
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("\"" + sha256 + "\"")) return true;
+        }
+        return false;
+    }
+
+    private static MediaType parseMediaType(String mimeType) {
+        try {
+            return mimeType != null ? MediaType.parseMediaType(mimeType) : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (Exception e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cz.stavbau.backend.features.files.api;
+
+import cz.stavbau.backend.features.files.api.dto.*;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.FileRevisionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/files")
+@Tag(name = "Files", description = "Revize dokumentů ukládané po content-defined chuncích")
+public class FileRevisionsController {
+
+    private final FileRevisionService revisionService;
+
+    public FileRevisionsController(FileRevisionService revisionService) {
+        this.revisionService = revisionService;
+    }
+
+    private static FileRevisionResponse map(StoredFile f) {
+        return new FileRevisionResponse(f.getId(), f.getDocumentId(), f.getRevision() != null ? f.getRevision() : 1,
+                f.getUploaderId(), f.getOriginalName(), f.getMimeType(), f.getSizeBytes(), f.getSha256(), f.getCreatedAt());
+    }
+
+    @Operation(summary = "Parametry chunkování", description = "Klient musí dělit soubory stejně jako server")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/revisions/chunking")
+    public ResponseEntity<ChunkingParamsResponse> chunking() {
+        var p = revisionService.params();
+        return ResponseEntity.ok(new ChunkingParamsResponse(p.algorithm(), p.minSize(), p.avgSize(), p.maxSize()));
+    }
+
+    @Operation(summary = "Vyjednání revize", description = "Vrátí chunky nové revize, které server ještě nemá")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PostMapping("/{id}/revisions/negotiate")
+    public ResponseEntity<RevisionNegotiateResponse> negotiate(@PathVariable UUID id,
+                                                               @Valid @RequestBody RevisionNegotiateRequest req) {
+        var n = revisionService.negotiate(id, req.chunks());
+        return ResponseEntity.ok(new RevisionNegotiateResponse(n.documentId(), n.latestRevision(), n.missing()));
+    }
+
+    @Operation(summary = "Nahrání chunku", description = "Tělo = surová data chunku; sha256 se ověřuje")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PutMapping(value = "/chunks/{sha256}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> putChunk(@PathVariable String sha256,
+                                         @RequestParam UUID companyId,
+                                         HttpServletRequest request) throws IOException {
+        try (InputStream in = request.getInputStream()) {
+            revisionService.putChunk(companyId, sha256, request.getContentLengthLong(), in);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "Nová revize z chunků")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PostMapping(value = "/{id}/revisions", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FileRevisionResponse> commit(@PathVariable UUID id,
+                                                       @Valid @RequestBody RevisionCommitRequest req) {
+        return ResponseEntity.ok(map(revisionService.commit(id, req.uploaderId(), req.originalName(), req.mimeType(), req.chunks())));
+    }
+
+    @Operation(summary = "Nová revize z celého souboru", description = "Chunkuje server – šetří úložiště, ne přenos")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PostMapping(value = "/{id}/revisions", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<FileRevisionResponse> upload(@PathVariable UUID id,
+                                                       @RequestParam UUID uploaderId,
+                                                       @RequestPart("file") MultipartFile file) {
+        return ResponseEntity.ok(map(revisionService.upload(id, uploaderId, file)));
+    }
+
+    @Operation(summary = "Revize dokumentu", description = "Nejnovější první")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/{id}/revisions")
+    public ResponseEntity<List<FileRevisionResponse>> revisions(@PathVariable UUID id) {
+        return ResponseEntity.ok(revisionService.revisions(id).stream().map(FileRevisionsController::map).toList());
+    }
+}
@@ -1,24 +1,42 @@
 package cz.stavbau.backend.features.files.api;
 
+import cz.stavbau.backend.common.exception.NotFoundException;
+import cz.stavbau.backend.features.files.api.dto.BulkUploadResponse;
+import cz.stavbau.backend.features.files.api.dto.FileSearchResponse;
+import cz.stavbau.backend.features.files.api.dto.FileUsageResponse;
 import cz.stavbau.backend.features.files.api.dto.LinkRequest;
+import cz.stavbau.backend.features.files.api.dto.SignedUrlResponse;
+import cz.stavbau.backend.features.files.api.dto.StoredFileListResponse;
+import cz.stavbau.backend.features.files.api.dto.StoredFilePageResponse;
 import cz.stavbau.backend.features.files.api.dto.StoredFileResponse;
 import cz.stavbau.backend.features.files.api.dto.TagsRequest;
+import cz.stavbau.backend.features.files.model.ImageVariant;
+import cz.stavbau.backend.features.files.model.LinkTarget;
 import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileQueryRepository;
+import cz.stavbau.backend.features.files.service.FileArchiveService;
+import cz.stavbau.backend.features.files.service.FileBulkUploadService;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
 import cz.stavbau.backend.features.files.service.StoredFileService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -27,12 +45,33 @@ import java.util.UUID;
 public class FilesController {
 
     private final StoredFileService storedFileService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final FileArchiveService fileArchiveService;
+    private final SignedDownloadTokens signedDownloadTokens;
+    private final FileTextService fileTextService;
+    private final FileUsageService fileUsageService;
+    private final FileBulkUploadService fileBulkUploadService;
 
-    public FilesController(StoredFileService storedFileService) {
+    public FilesController(StoredFileService storedFileService,
+                           ImageDerivativeService imageDerivativeService,
+                           FileArchiveService fileArchiveService,
+                           SignedDownloadTokens signedDownloadTokens,
+                           FileTextService fileTextService,
+                           FileUsageService fileUsageService,
+                           FileBulkUploadService fileBulkUploadService) {
         this.storedFileService = storedFileService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.fileArchiveService = fileArchiveService;
+        this.signedDownloadTokens = signedDownloadTokens;
+        this.fileTextService = fileTextService;
+        this.fileUsageService = fileUsageService;
+        this.fileBulkUploadService = fileBulkUploadService;
     }
 
-    private static StoredFileResponse map(StoredFile f) {
+    private static final CacheControl VARIANT_CACHE =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
+    static StoredFileResponse map(StoredFile f) {
         return new StoredFileResponse(f.getId(), f.getCompanyId(), f.getUploaderId(),
                 f.getOriginalName(), f.getMimeType(), f.getSizeBytes(), f.getSha256(), f.getStorageKey(), f.getCreatedAt());
     }
@@ -49,20 +88,112 @@ public class FilesController {
         return ResponseEntity.ok(map(saved));
     }
 
-    @Operation(summary = "Stažení souboru")
+    @Operation(summary = "Hromadný upload", description = "Více částí 'files' v jednom requestu (max. files.upload.bulk.max-files); ukládají se souběžně, metadata jednou dávkou; volitelně link všech souborů na entitu. Výsledek per soubor (CREATED | REJECTED | FAILED)")
+    @PreAuthorize("hasAuthority('files:write')")
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkUploadResponse> uploadBulk(
+            @RequestParam UUID companyId,
+            @RequestParam UUID uploaderId,
+            @RequestParam(required = false) LinkTarget targetType,
+            @RequestParam(required = false) UUID targetId,
+            @RequestPart("files") List<MultipartFile> files
+    ) {
+        var items = fileBulkUploadService.upload(companyId, uploaderId, files, targetType, targetId);
+        int created = (int) items.stream().filter(i -> i.status() == FileBulkUploadService.Status.CREATED).count();
+        return ResponseEntity.ok(new BulkUploadResponse(created, items.size() - created, items.stream()
+                .map(i -> new BulkUploadResponse.Item(i.index(), i.originalName(), i.status(),
+                        i.file() != null ? map(i.file()) : null, i.error()))
+                .toList()));
+    }
+
+    @Operation(summary = "Seznam souborů", description = "Nejnovější první, keyset stránkování přes nextCursor; filtry: cíl linku, MIME prefix, uploader, tag")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping
+    public ResponseEntity<StoredFileListResponse> list(@RequestParam UUID companyId,
+                                                       @RequestParam(required = false) LinkTarget targetType,
+                                                       @RequestParam(required = false) UUID targetId,
+                                                       @RequestParam(required = false) String mimePrefix,
+                                                       @RequestParam(required = false) UUID uploaderId,
+                                                       @RequestParam(required = false) String tag,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "50") int limit) {
+        var filter = new FileQueryRepository.Filter(companyId, targetType, targetId, mimePrefix, uploaderId, tag);
+        var page = storedFileService.list(filter, cursor, Math.min(Math.max(limit, 1), 200));
+        return ResponseEntity.ok(new StoredFileListResponse(
+                page.items().stream()
+                        .map(i -> new StoredFileListResponse.Item(i.id(), i.originalName(), i.mimeType(),
+                                i.sizeBytes(), i.uploaderId(), i.createdAt()))
+                        .toList(),
+                page.nextCursor()));
+    }
+
+    @Operation(summary = "Stažení souboru", description = "Streamovaně; podporuje Range/If-Range (206), If-None-Match (304) a u komprimovaných souborů Content-Encoding: gzip")
     @PreAuthorize("hasAuthority('files:read')")
     @GetMapping("/{id}")
-    public ResponseEntity<byte[]> download(@PathVariable UUID id,
-                                           @RequestParam(defaultValue = "attachment") String disposition) {
-        byte[] bytes = storedFileService.download(id);
-        // filename placeholder; in a real impl fetch metadata
-        String fileName = id.toString();
-        var headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentLength(bytes.length);
-        headers.setContentDisposition(ContentDisposition.parse(disposition + "; filename*=UTF-8''" +
-                URLEncoder.encode(fileName, StandardCharsets.UTF_8)));
-        return new ResponseEntity<>(bytes, headers, HttpStatus.OK);
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable UUID id,
+                                                          @RequestParam(defaultValue = "attachment") String disposition,
+                                                          @RequestHeader HttpHeaders requestHeaders) {
+        StoredFile sf = storedFileService.get(id);
+        if (sf.getContentEncoding() != null && FileDownloads.accepts(requestHeaders, sf.getContentEncoding())) {
+            // komprimovaný blob posíláme tak, jak leží (Content-Encoding), bez dekomprese na serveru
+            return FileDownloads.respond(FileDownloads.Meta.stored(sf), disposition, requestHeaders,
+                    (offset, length, out) -> storedFileService.writeStored(sf, offset, length, out));
+        }
+        return FileDownloads.respond(FileDownloads.Meta.of(sf), disposition, requestHeaders,
+                (offset, length, out) -> storedFileService.writeContent(sf, offset, length, out));
+    }
+
+    @Operation(summary = "Náhled obrázku", description = "Varianta thumb | web (JPEG); 404 dokud není vygenerovaná")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/{id}/variants/{variant}")
+    public ResponseEntity<StreamingResponseBody> variant(@PathVariable UUID id,
+                                                         @PathVariable String variant,
+                                                         @RequestHeader HttpHeaders requestHeaders) {
+        ImageVariant v = ImageVariant.parse(variant);
+        if (v == null) {
+            throw new NotFoundException("files.variant.unknown");
+        }
+        StoredFile sf = storedFileService.get(id);
+        var d = imageDerivativeService.find(sf, v)
+                .orElseThrow(() -> new NotFoundException("files.variant.notReady"));
+        var meta = new FileDownloads.Meta(variantName(sf, v), "image/jpeg", d.size(),
+                sf.getSha256() + "-" + v.name().toLowerCase(), sf.getCreatedAt());
+        // obsah varianty je dán sha256 originálu → pro dané id se nikdy nemění
+        return FileDownloads.respond(meta, "inline", requestHeaders, VARIANT_CACHE,
+                (offset, length, out) -> imageDerivativeService.writeContent(d, offset, length, out));
+    }
+
+    @Operation(summary = "Podepsaný odkaz na stažení", description = "Krátkodobá URL bez JWT (originál nebo varianta thumb | web); obsluhuje ji rychlá cesta mimo security chain")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/{id}/signed-url")
+    public ResponseEntity<SignedUrlResponse> signedUrl(@PathVariable UUID id,
+                                                       @RequestParam(required = false) String variant,
+                                                       @RequestParam(defaultValue = "inline") String disposition) {
+        StoredFile sf = storedFileService.get(id);
+        Instant expiresAt = signedDownloadTokens.nextExpiry(Instant.now());
+        SignedDownloadTokens.Token token;
+        if (variant != null) {
+            ImageVariant v = ImageVariant.parse(variant);
+            if (v == null) {
+                throw new NotFoundException("files.variant.unknown");
+            }
+            var d = imageDerivativeService.find(sf, v)
+                    .orElseThrow(() -> new NotFoundException("files.variant.notReady"));
+            token = new SignedDownloadTokens.Token(d.storageKey(), variantName(sf, v), "image/jpeg", d.size(),
+                    sf.getSha256(), null, -1, sf.getCreatedAt(), v.name().toLowerCase(), disposition, expiresAt);
+        } else {
+            token = new SignedDownloadTokens.Token(sf.getStorageKey(), sf.getOriginalName(), sf.getMimeType(),
+                    sf.getSizeBytes(), sf.getSha256(), sf.getContentEncoding(),
+                    sf.getStoredSizeBytes() != null ? sf.getStoredSizeBytes() : -1,
+                    sf.getCreatedAt(), null, disposition, expiresAt);
+        }
+        return ResponseEntity.ok(new SignedUrlResponse(SignedDownloadFilter.PATH + signedDownloadTokens.sign(token), expiresAt));
+    }
+
+    private static String variantName(StoredFile sf, ImageVariant v) {
+        String base = sf.getOriginalName() != null && sf.getOriginalName().contains(".")
+                ? sf.getOriginalName().substring(0, sf.getOriginalName().lastIndexOf('.')) : sf.getOriginalName();
+        return base + "-" + v.name().toLowerCase() + ".jpg";
     }
 
     @Operation(summary = "Smazání souboru")
@@ -81,6 +212,69 @@ public class FilesController {
         return ResponseEntity.noContent().build();
     }
 
+    @Operation(summary = "ZIP export souborů napojených na entitu", description = "Streamovaně, archiv nevzniká na serveru")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping(value = "/export", produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam LinkTarget targetType,
+                                                        @RequestParam UUID targetId) {
+        List<StoredFile> files = storedFileService.findLinked(targetType, targetId);
+        if (files.isEmpty()) {
+            throw new NotFoundException("files.export.empty");
+        }
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(targetType.name().toLowerCase() + "-" + targetId + ".zip", StandardCharsets.UTF_8)
+                .build());
+        return ResponseEntity.ok().headers(headers)
+                .body(out -> fileArchiveService.writeZip(files, out));
+    }
+
+    @Operation(summary = "Soubory podle tagů", description = "match=all → soubory se všemi tagy, match=any → s některým z nich")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/by-tags")
+    public ResponseEntity<StoredFilePageResponse> findByTags(@RequestParam UUID companyId,
+                                                             @RequestParam List<String> tags,
+                                                             @RequestParam(defaultValue = "all") String match,
+                                                             @RequestParam(defaultValue = "0") int page,
+                                                             @RequestParam(defaultValue = "50") int size) {
+        int p = Math.max(page, 0);
+        int s = Math.min(Math.max(size, 1), 500);
+        var res = storedFileService.findByTags(companyId, tags, !"any".equalsIgnoreCase(match), p, s);
+        return ResponseEntity.ok(new StoredFilePageResponse(
+                res.items().stream().map(FilesController::map).toList(), res.total(), p, s));
+    }
+
+    @Operation(summary = "Fulltext v souborech", description = "Hledá v názvu i obsahu (PDF, Office, text); websearch syntaxe – \"fráze\", -slovo, or; volitelně jen soubory napojené na entitu")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/search")
+    public ResponseEntity<FileSearchResponse> search(@RequestParam UUID companyId,
+                                                     @RequestParam String q,
+                                                     @RequestParam(required = false) LinkTarget targetType,
+                                                     @RequestParam(required = false) UUID targetId,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        var hits = fileTextService.search(companyId, q, targetType, targetId, Math.min(Math.max(limit, 1), 100));
+        return ResponseEntity.ok(new FileSearchResponse(hits.stream()
+                .map(h -> new FileSearchResponse.Item(h.fileId(), h.originalName(), h.mimeType(), h.sizeBytes(),
+                        h.createdAt(), h.rank(), h.snippet()))
+                .toList()));
+    }
+
+    @Operation(summary = "Využití úložiště", description = "Počet a objem souborů firmy, kvóta a největší napojené entity (nebo jen zadaná entita); čte průběžné čítače, ne soubory")
+    @PreAuthorize("hasAuthority('files:read')")
+    @GetMapping("/usage")
+    public ResponseEntity<FileUsageResponse> usage(@RequestParam UUID companyId,
+                                                   @RequestParam(required = false) LinkTarget targetType,
+                                                   @RequestParam(required = false) UUID targetId,
+                                                   @RequestParam(defaultValue = "20") int limit) {
+        var u = fileUsageService.usage(companyId, targetType, targetId, Math.min(Math.max(limit, 1), 100));
+        Long remaining = u.quotaBytes() != null ? Math.max(u.quotaBytes() - u.sizeBytes(), 0) : null;
+        return ResponseEntity.ok(new FileUsageResponse(u.companyId(), u.fileCount(), u.sizeBytes(), u.quotaBytes(), remaining,
+                u.targets().stream()
+                        .map(t -> new FileUsageResponse.Target(t.targetType(), t.targetId(), t.fileCount(), t.sizeBytes()))
+                        .toList()));
+    }
+
     @Operation(summary = "Propojí soubor s entitou (Company/Project/Invoice)")
     @PreAuthorize("hasAuthority('files:write')")
     @PostMapping("/{id}/link")
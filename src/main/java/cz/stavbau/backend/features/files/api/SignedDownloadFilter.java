@@ -0,0 +1,99 @@
+package cz.stavbau.backend.features.files.api;
+
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Rychlá cesta pro podepsané odkazy ({@link SignedDownloadTokens}): běží před Spring Security i DispatcherServletem
+ * (registrace v {@code FilesConfiguration}), ověří HMAC + expiraci a streamuje blob rovnou z úložiště.
+ * Žádný JWT, SpEL ani JPA – jen podpis, {@link FileDownloads} (Range/ETag/304) a zero-copy zápis.
+ * Odpověď je {@code Cache-Control: public} do expirace odkazu, takže ji může držet reverse proxy.
+ */
+public class SignedDownloadFilter extends HttpFilter {
+
+    public static final String PATH = "/api/v1/public/files/";
+
+    private static final Logger log = LoggerFactory.getLogger(SignedDownloadFilter.class);
+
+    private final SignedDownloadTokens tokens;
+    private final StoredFileService storedFileService;
+
+    public SignedDownloadFilter(SignedDownloadTokens tokens, StoredFileService storedFileService) {
+        this.tokens = tokens;
+        this.storedFileService = storedFileService;
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException {
+        boolean head = "HEAD".equals(req.getMethod());
+        if (!head && !"GET".equals(req.getMethod())) {
+            res.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            res.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        String uri = req.getRequestURI();
+        int start = req.getContextPath().length() + PATH.length();
+        String token = uri.length() > start ? uri.substring(start) : "";
+        int slash = token.indexOf('/');
+        if (slash >= 0) token = token.substring(0, slash); // volitelný "/název.pdf" za tokenem
+
+        Instant now = Instant.now();
+        var t = tokens.verify(token, now).orElse(null);
+        if (t == null) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        HttpHeaders requestHeaders = new ServletServerHttpRequest(req).getHeaders();
+        CacheControl cache = CacheControl.maxAge(Duration.between(now, t.expiresAt())).cachePublic();
+        var sf = t.toStoredFile();
+        ResponseEntity<StreamingResponseBody> response;
+        if (t.variant() != null) {
+            var meta = new FileDownloads.Meta(t.fileName(), t.mimeType(), t.size(),
+                    t.sha256() + "-" + t.variant().toLowerCase(Locale.ROOT), t.lastModified());
+            response = FileDownloads.respond(meta, t.disposition(), requestHeaders, cache,
+                    (offset, length, out) -> storedFileService.writeStored(sf, offset, length, out));
+        } else if (sf.getContentEncoding() != null && FileDownloads.accepts(requestHeaders, sf.getContentEncoding())) {
+            response = FileDownloads.respond(FileDownloads.Meta.stored(sf), t.disposition(), requestHeaders, cache,
+                    (offset, length, out) -> storedFileService.writeStored(sf, offset, length, out));
+        } else {
+            response = FileDownloads.respond(FileDownloads.Meta.of(sf), t.disposition(), requestHeaders, cache,
+                    (offset, length, out) -> storedFileService.writeContent(sf, offset, length, out));
+        }
+        write(response, head, res);
+    }
+
+    private static void write(ResponseEntity<StreamingResponseBody> response, boolean head, HttpServletResponse res)
+            throws IOException {
+        res.setStatus(response.getStatusCode().value());
+        response.getHeaders().forEach((name, values) -> values.forEach(v -> res.addHeader(name, v)));
+        StreamingResponseBody body = response.getBody();
+        if (head || body == null) return;
+        try {
+            body.writeTo(res.getOutputStream());
+        } catch (IOException e) {
+            // klient odpojil – u stovek paralelních náhledů běžné, není co logovat
+        } catch (RuntimeException e) {
+            log.warn("files.download.signed: failed reason={}", e.toString());
+            if (!res.isCommitted()) {
+                res.reset();
+                res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        }
+    }
+}
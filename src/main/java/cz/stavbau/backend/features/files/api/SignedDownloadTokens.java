@@ -0,0 +1,170 @@
+package cz.stavbau.backend.features.files.api;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Krátkodobé HMAC-SHA256 podepsané odkazy na stažení ({@code /api/v1/public/files/{token}}).
+ * Token nese vše, co potřebuje {@link SignedDownloadFilter} (storage key, velikost, ETag, kódování, název…),
+ * takže se při stažení nesahá do DB ani na security kontext – platnost ověří podpis + expirace.
+ * - expirace se zaokrouhluje nahoru na {@code files.download.signed.bucket} → stejný soubor má v rámci okna
+ *   stejnou URL a reverse proxy / prohlížeč ji může cachovat
+ * - klíč {@code files.download.signed.key} (base64, ≥ 32 B) musí být stejný na všech uzlech;
+ *   bez něj se vygeneruje náhodný a odkazy platí jen na tomto uzlu do restartu
+ */
+@Component
+public class SignedDownloadTokens {
+
+    private static final Logger log = LoggerFactory.getLogger(SignedDownloadTokens.class);
+    private static final String ALG = "HmacSHA256";
+    private static final byte VERSION = 1;
+
+    /**
+     * @param variant null = originál souboru, jinak přípona ETagu (např. {@code thumb})
+     */
+    public record Token(String storageKey, String fileName, String mimeType, long size, String sha256,
+                        String contentEncoding, long storedSize, Instant lastModified, String variant,
+                        String disposition, Instant expiresAt) {
+
+        /** Přechodná (neperzistovaná) entita – jen pro zápis obsahu přes {@code StoredFileService}. */
+        public StoredFile toStoredFile() {
+            StoredFile f = new StoredFile();
+            f.setStorageKey(storageKey);
+            f.setOriginalName(fileName);
+            f.setMimeType(mimeType);
+            f.setSizeBytes(size);
+            f.setSha256(sha256);
+            f.setContentEncoding(contentEncoding);
+            f.setStoredSizeBytes(storedSize >= 0 ? storedSize : null);
+            f.setCreatedAt(lastModified);
+            return f;
+        }
+    }
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Duration bucket;
+    private final ThreadLocal<Mac> macs;
+
+    public SignedDownloadTokens(@Value("${files.download.signed.key:}") String base64Key,
+                                @Value("${files.download.signed.ttl:PT15M}") Duration ttl,
+                                @Value("${files.download.signed.bucket:PT5M}") Duration bucket) {
+        byte[] raw;
+        if (base64Key == null || base64Key.isBlank()) {
+            raw = new byte[32];
+            new SecureRandom().nextBytes(raw);
+            log.warn("files.download.signed.key is not set – signed download links are valid on this node only");
+        } else {
+            raw = Base64.getDecoder().decode(base64Key.trim());
+            if (raw.length < 32) {
+                throw new IllegalStateException("files.download.signed.key must have at least 32 bytes");
+            }
+        }
+        this.key = new SecretKeySpec(raw, ALG);
+        this.ttl = ttl;
+        this.bucket = bucket.isZero() || bucket.isNegative() ? Duration.ofSeconds(1) : bucket;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /** Expirace nového odkazu: now + ttl zaokrouhlené nahoru na celé okno. */
+    public Instant nextExpiry(Instant now) {
+        long b = bucket.toSeconds();
+        long exp = now.plus(ttl).getEpochSecond();
+        return Instant.ofEpochSecond((exp + b - 1) / b * b);
+    }
+
+    public String sign(Token t) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeByte(VERSION);
+            out.writeLong(t.expiresAt().getEpochSecond());
+            out.writeUTF(t.storageKey());
+            writeNullable(out, t.fileName());
+            writeNullable(out, t.mimeType());
+            out.writeLong(t.size());
+            out.writeUTF(t.sha256());
+            writeNullable(out, t.contentEncoding());
+            out.writeLong(t.storedSize());
+            out.writeLong(t.lastModified() != null ? t.lastModified().toEpochMilli() : Long.MIN_VALUE);
+            writeNullable(out, t.variant());
+            writeNullable(out, t.disposition());
+            byte[] payload = buf.toByteArray();
+            Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+            return b64.encodeToString(payload) + "." + b64.encodeToString(macs.get().doFinal(payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Ověří podpis a expiraci; cokoliv neplatného → empty (handler vrátí 404/410 bez detailů). */
+    public Optional<Token> verify(String token, Instant now) {
+        int dot = token != null ? token.indexOf('.') : -1;
+        if (dot <= 0) return Optional.empty();
+        byte[] payload;
+        byte[] sig;
+        try {
+            Base64.Decoder b64 = Base64.getUrlDecoder();
+            payload = b64.decode(token.substring(0, dot));
+            sig = b64.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!MessageDigest.isEqual(macs.get().doFinal(payload), sig)) {
+            return Optional.empty();
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            if (in.readByte() != VERSION) return Optional.empty();
+            Instant exp = Instant.ofEpochSecond(in.readLong());
+            if (!exp.isAfter(now)) return Optional.empty();
+            String storageKey = in.readUTF();
+            String fileName = readNullable(in);
+            String mimeType = readNullable(in);
+            long size = in.readLong();
+            String sha256 = in.readUTF();
+            String contentEncoding = readNullable(in);
+            long storedSize = in.readLong();
+            long lm = in.readLong();
+            String variant = readNullable(in);
+            String disposition = readNullable(in);
+            return Optional.of(new Token(storageKey, fileName, mimeType, size, sha256, contentEncoding, storedSize,
+                    lm == Long.MIN_VALUE ? null : Instant.ofEpochMilli(lm), variant, disposition, exp));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALG);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
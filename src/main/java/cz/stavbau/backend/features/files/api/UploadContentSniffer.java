@@ -0,0 +1,51 @@
+package cz.stavbau.backend.features.files.api;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hrubá kontrola, že začátek obsahu odpovídá deklarovanému MIME typu (magic bytes).
+ * Nenahrazuje antivir ani plnou detekci – jen zastaví upload "faktura.pdf", který je ve skutečnosti něco jiného,
+ * hned po prvním kilobajtu místo až po přijetí celého souboru. Neznámé typy projdou.
+ */
+final class UploadContentSniffer {
+
+    /** Kolik bajtů ze začátku stačí k rozhodnutí (PDF hlavička smí být kdekoliv v prvním KiB). */
+    static final int HEAD_SIZE = 1024;
+
+    private static final byte[] PDF = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a};
+    private static final byte[] JPEG = {(byte) 0xff, (byte) 0xd8, (byte) 0xff};
+    private static final byte[] GIF = "GIF8".getBytes(StandardCharsets.US_ASCII);
+
+    private UploadContentSniffer() {}
+
+    static boolean plausible(String baseMime, byte[] head, int len) {
+        if (baseMime == null || len == 0) return true;
+        return switch (baseMime) {
+            case "application/pdf" -> indexOf(head, len, PDF) >= 0;
+            case "image/png" -> startsWith(head, len, PNG);
+            case "image/jpeg" -> startsWith(head, len, JPEG);
+            case "image/gif" -> startsWith(head, len, GIF);
+            default -> !baseMime.startsWith("text/") || indexOf(head, len, new byte[]{0}) < 0;
+        };
+    }
+
+    private static boolean startsWith(byte[] head, int len, byte[] magic) {
+        if (len < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] head, int len, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= len; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (head[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,11 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import cz.stavbau.backend.features.files.service.FileBulkUploadService.Status;
+
+import java.util.List;
+
+/** Výsledek per soubor v pořadí částí requestu; {@code file} jen u CREATED, {@code error} = kód chyby. */
+public record BulkUploadResponse(int created, int failed, List<Item> items) {
+
+    public record Item(int index, String originalName, Status status, StoredFileResponse file, String error) {}
+}
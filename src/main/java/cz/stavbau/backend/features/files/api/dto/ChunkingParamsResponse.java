@@ -0,0 +1,3 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+public record ChunkingParamsResponse(String algorithm, int minSize, int avgSize, int maxSize) {}
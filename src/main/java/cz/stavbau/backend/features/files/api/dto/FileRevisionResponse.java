@@ -0,0 +1,9 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record FileRevisionResponse(
+        UUID id, UUID documentId, int revision, UUID uploaderId,
+        String originalName, String mimeType, long sizeBytes, String sha256, Instant createdAt
+) {}
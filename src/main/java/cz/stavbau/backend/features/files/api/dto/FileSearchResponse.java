@@ -0,0 +1,12 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/** Výsledky fulltextu seřazené podle relevance; {@code snippet} je HTML-escapovaný text se zvýrazněním {@code <mark>}. */
+public record FileSearchResponse(List<Item> items) {
+
+    public record Item(UUID id, String originalName, String mimeType, long sizeBytes,
+                       Instant createdAt, double rank, String snippet) {}
+}
@@ -0,0 +1,13 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import cz.stavbau.backend.features.files.model.LinkTarget;
+
+import java.util.List;
+import java.util.UUID;
+
+/** Využití úložiště firmy; {@code quotaBytes}/{@code remainingBytes} = null → bez limitu. */
+public record FileUsageResponse(UUID companyId, long fileCount, long sizeBytes, Long quotaBytes, Long remainingBytes,
+                                List<Target> targets) {
+
+    public record Target(LinkTarget targetType, UUID targetId, long fileCount, long sizeBytes) {}
+}
@@ -0,0 +1,13 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+import java.util.UUID;
+
+public record RevisionCommitRequest(
+        @NotNull UUID uploaderId,
+        String originalName,
+        String mimeType,
+        @NotEmpty List<String> chunks
+) {}
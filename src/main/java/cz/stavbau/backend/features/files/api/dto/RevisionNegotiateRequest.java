@@ -0,0 +1,7 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+/** Pořadí sha256 chunků nové revize (rozdělené podle {@code GET /revisions/chunking}). */
+public record RevisionNegotiateRequest(@NotNull List<String> chunks) {}
@@ -0,0 +1,6 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record RevisionNegotiateResponse(UUID documentId, int latestRevision, List<String> missing) {}
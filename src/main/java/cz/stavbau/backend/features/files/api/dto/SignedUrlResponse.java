@@ -0,0 +1,6 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.time.Instant;
+
+/** Podepsaný odkaz na stažení (relativní URL, bez autorizační hlavičky) a jeho platnost. */
+public record SignedUrlResponse(String url, Instant expiresAt) {}
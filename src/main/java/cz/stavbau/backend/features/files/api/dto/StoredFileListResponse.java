@@ -0,0 +1,12 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/** Stránka listingu; {@code nextCursor} = null na poslední stránce. */
+public record StoredFileListResponse(List<Item> items, String nextCursor) {
+
+    public record Item(UUID id, String originalName, String mimeType, long sizeBytes,
+                       UUID uploaderId, Instant createdAt) {}
+}
@@ -0,0 +1,5 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.util.List;
+
+public record StoredFilePageResponse(List<StoredFileResponse> items, long total, int page, int size) {}
@@ -0,0 +1,15 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.util.UUID;
+
+public record UploadSessionCreateRequest(
+        @NotNull UUID companyId,
+        @NotNull UUID uploaderId,
+        @NotBlank String originalName,
+        String mimeType,
+        @Positive long totalSize,
+        Integer chunkSize
+) {}
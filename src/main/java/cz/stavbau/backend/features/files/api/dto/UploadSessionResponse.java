@@ -0,0 +1,10 @@
+package cz.stavbau.backend.features.files.api.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public record UploadSessionResponse(
+        UUID id, String status, long totalSize, int chunkSize, int totalChunks,
+        List<Integer> receivedChunks, long hashedBytes, UUID fileId, Instant expiresAt
+) {}
@@ -0,0 +1,59 @@
+package cz.stavbau.backend.features.files.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "files.upload")
+public class FileUploadProperties {
+
+    private int maxSizeMb = 25;
+    /** Prázdný seznam = bez omezení. */
+    private List<String> allowedMime = new ArrayList<>();
+    private Async async = new Async();
+    private Bulk bulk = new Bulk();
+
+    public long maxSizeBytes() {
+        return (long) maxSizeMb * 1024 * 1024;
+    }
+
+    /** Porovnává jen typ/podtyp (parametry jako {@code charset} se ignorují). */
+    public boolean allowsMime(String mimeType) {
+        if (allowedMime.isEmpty()) return true;
+        String base = baseMime(mimeType);
+        return base != null && allowedMime.stream().anyMatch(m -> m.equalsIgnoreCase(base));
+    }
+
+    public static String baseMime(String mimeType) {
+        if (mimeType == null) return null;
+        int semi = mimeType.indexOf(';');
+        return (semi >= 0 ? mimeType.substring(0, semi) : mimeType).trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Getter
+    @Setter
+    public static class Async {
+        /** Max. doba celého uploadu (pomalý klient ze stavby); pak 408. */
+        private Duration timeout = Duration.ofMinutes(30);
+        /** Rozpracované zápisy na disk na jeden upload (× 64 KiB = strop paměti). */
+        private int maxInFlight = 8;
+        /** Default {@code <base-path>/tmp} – stejný FS jako bloby (rename), zbytky po pádu uklidí rekonciliace. */
+        private String stagingPath;
+    }
+
+    @Getter
+    @Setter
+    public static class Bulk {
+        /** Max. počet souborů v jednom {@code POST /api/v1/files/bulk}. */
+        private int maxFiles = 500;
+        /** Souběžné zápisy do úložiště přes všechny bulk uploady uzlu. */
+        private int parallelism = 8;
+    }
+}
@@ -1,20 +1,131 @@
 package cz.stavbau.backend.features.files.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import cz.stavbau.backend.features.files.api.AsyncUploadServlet;
+import cz.stavbau.backend.features.files.api.SignedDownloadFilter;
+import cz.stavbau.backend.features.files.api.SignedDownloadTokens;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage;
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
+import cz.stavbau.backend.features.files.storage.ContentAddressedFileStorage;
 import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.storage.HotBlobCache;
 import cz.stavbau.backend.features.files.storage.LocalFileStorage;
+import cz.stavbau.backend.features.files.storage.S3FileStorage;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
 
 import java.nio.file.Path;
 
 @Configuration
+@EnableConfigurationProperties(FileUploadProperties.class)
 public class FilesConfiguration {
 
+    /**
+     * files.storage.type:
+     * - local (default): každý upload = nový soubor {@code companyId/uuid.ext}
+     * - cas: content-addressed (deduplikace podle SHA-256)
+     * - s3: S3-kompatibilní object storage (AWS S3, MinIO…) sdílené všemi uzly
+     * Nad zvoleným backendem je vrstva revizí z chunků ({@code cdc/…} manifesty) a (pokud je zapnutá,
+     * {@code files.storage.compression.enabled}) kompresní vrstva pro dokumenty.
+     */
     @Bean
     public FileStorage fileStorage(
-            @Value("${files.storage.local.sessions-path:/mnt/data/stavbau-data/files}") String basePath
+            @Value("${files.storage.type:local}") String type,
+            @Value("${files.storage.local.base-path:/mnt/data/stavbau-data/files}") String basePath,
+            @Value("${files.storage.compression.enabled:false}") boolean compression,
+            @Value("${files.storage.compression.level:6}") int compressionLevel,
+            Environment env
     ) {
+        FileStorage chunked = new ChunkedFileStorage(backend(type, basePath, env));
+        return compression ? new CompressingFileStorage(chunked, compressionLevel) : chunked;
+    }
+
+    /**
+     * Off-heap cache malých horkých blobů (files.cache): paměť se alokuje celá při startu mimo heap
+     * (počítat s ní v {@code -XX:MaxDirectMemorySize}); {@code enabled=false} = nulový rozpočet, vše jde z úložiště.
+     */
+    @Bean
+    public HotBlobCache hotBlobCache(
+            @Value("${files.cache.enabled:true}") boolean enabled,
+            @Value("${files.cache.budget-mb:128}") long budgetMb,
+            @Value("${files.cache.page-kb:64}") int pageKb,
+            @Value("${files.cache.max-entry-kb:1024}") long maxEntryKb,
+            MeterRegistry meters
+    ) {
+        HotBlobCache cache = new HotBlobCache(enabled ? budgetMb * 1024 * 1024 : 0, pageKb * 1024, maxEntryKb * 1024);
+        FunctionCounter.builder("files_hot_cache_requests_total", cache, HotBlobCache::hits)
+                .tag("result", "hit").register(meters);
+        FunctionCounter.builder("files_hot_cache_requests_total", cache, HotBlobCache::misses)
+                .tag("result", "miss").register(meters);
+        FunctionCounter.builder("files_hot_cache_requests_total", cache, HotBlobCache::bypassed)
+                .tag("result", "bypass").register(meters);
+        Gauge.builder("files_hot_cache_bytes", cache, HotBlobCache::usedBytes).register(meters);
+        Gauge.builder("files_hot_cache_entries", cache, HotBlobCache::entries).register(meters);
+        return cache;
+    }
+
+    /**
+     * Podepsané odkazy na stažení obsluhuje samostatný filtr před Spring Security
+     * (nejvyšší priorita, jen pro {@link SignedDownloadFilter#PATH}) – request nikdy nedojde do security chainu.
+     */
+    @Bean
+    public FilterRegistrationBean<SignedDownloadFilter> signedDownloadFilter(SignedDownloadTokens tokens,
+                                                                             StoredFileService storedFileService) {
+        var reg = new FilterRegistrationBean<>(new SignedDownloadFilter(tokens, storedFileService));
+        reg.addUrlPatterns(SignedDownloadFilter.PATH + "*");
+        reg.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        reg.setName("signedDownloadFilter");
+        return reg;
+    }
+
+    /**
+     * Neblokující upload ({@link AsyncUploadServlet#PATH}) jako samostatný async servlet vedle DispatcherServletu –
+     * security filtry projdou normálně, ale tělo requestu čte {@code ReadListener} místo worker vlákna.
+     */
+    @Bean
+    public ServletRegistrationBean<AsyncUploadServlet> asyncUploadServlet(
+            StoredFileService storedFileService,
+            FileUsageService fileUsageService,
+            FileUploadProperties props,
+            ObjectMapper objectMapper,
+            @Value("${files.storage.local.base-path:/mnt/data/stavbau-data/files}") String basePath) {
+        String staging = props.getAsync().getStagingPath();
+        Path stagingDir = staging != null && !staging.isBlank() ? Path.of(staging) : Path.of(basePath).resolve("tmp");
+        var reg = new ServletRegistrationBean<>(
+                new AsyncUploadServlet(storedFileService, fileUsageService, props, stagingDir, objectMapper), AsyncUploadServlet.PATH);
+        reg.setAsyncSupported(true);
+        reg.setLoadOnStartup(1);
+        reg.setName("asyncUploadServlet");
+        return reg;
+    }
+
+    private static FileStorage backend(String type, String basePath, Environment env) {
+        if ("cas".equalsIgnoreCase(type)) {
+            return new ContentAddressedFileStorage(Path.of(basePath));
+        }
+        if ("s3".equalsIgnoreCase(type)) {
+            return new S3FileStorage(new S3FileStorage.Settings(
+                    env.getRequiredProperty("files.storage.s3.endpoint"),
+                    env.getProperty("files.storage.s3.region", "us-east-1"),
+                    env.getRequiredProperty("files.storage.s3.bucket"),
+                    env.getRequiredProperty("files.storage.s3.access-key"),
+                    env.getRequiredProperty("files.storage.s3.secret-key"),
+                    env.getProperty("files.storage.s3.path-style", Boolean.class, true),
+                    env.getProperty("files.storage.s3.part-size-mb", Integer.class, 8),
+                    env.getProperty("files.storage.s3.parallelism", Integer.class, 16),
+                    env.getProperty("files.storage.s3.upload-threads", Integer.class, 16)));
+        }
         return new LocalFileStorage(Path.of(basePath));
     }
 }
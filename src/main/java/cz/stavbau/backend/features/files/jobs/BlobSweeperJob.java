@@ -0,0 +1,171 @@
+package cz.stavbau.backend.features.files.jobs;
+
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Reason;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Kind;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Tombstone;
+import cz.stavbau.backend.features.files.repo.FileChunkRepository;
+import cz.stavbau.backend.features.files.repo.StoredFileRepository;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fyzicky maže bloby z {@code file_blob_tombstones} (zapsané mazáním souborů a rekonciliací).
+ * Dávka = jedna transakce: SKIP LOCKED claim → pro každý klíč advisory lock (stejný jako upload)
+ * → ověření, že blob mezitím nikdo znovu nepoužil (CAS deduplikace) → smazání z úložiště.
+ * Chyba úložiště tombstone nezahodí, jen odloží další pokus.
+ * Smazaný manifest revize ({@code cdc/…}) uvolní své chunky – ty, na které už nic neukazuje,
+ * dostanou vlastní tombstone (kind CHUNK) a projdou stejným kolečkem.
+ */
+@Component
+@ConditionalOnProperty(prefix = "files.gc.sweep", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BlobSweeperJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobSweeperJob.class);
+    private static final int MAX_LOOPS = 100; // tvrdá brzda na jeden běh
+
+    private final BlobTombstoneRepository tombstoneRepo;
+    private final StoredFileRepository fileRepo;
+    private final FileChunkRepository chunkRepo;
+    private final FileStorage storage;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meterRegistry;
+
+    private final Counter deletedCounter;
+    private final Counter keptCounter;
+    private final Counter failedCounter;
+    private final Timer runTimer;
+
+    @Value("${files.gc.sweep.batch-size:200}")
+    private int batchSize;
+
+    @Value("${files.gc.sweep.retry-backoff:PT5M}")
+    private Duration retryBackoff;
+
+    public BlobSweeperJob(BlobTombstoneRepository tombstoneRepo,
+                          StoredFileRepository fileRepo,
+                          FileChunkRepository chunkRepo,
+                          FileStorage storage,
+                          TransactionTemplate tx,
+                          MeterRegistry meterRegistry) {
+        this.tombstoneRepo = tombstoneRepo;
+        this.fileRepo = fileRepo;
+        this.chunkRepo = chunkRepo;
+        this.storage = storage;
+        this.tx = tx;
+        this.meterRegistry = meterRegistry;
+
+        this.deletedCounter = Counter.builder("files_gc_blobs_deleted_total")
+                .description("Pocet fyzicky smazanych blobu")
+                .register(meterRegistry);
+        this.keptCounter = Counter.builder("files_gc_blobs_kept_total")
+                .description("Tombstony zahozene, protoze blob mezitim znovu nekdo pouzil")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("files_gc_blobs_failed_total")
+                .description("Neuspesne pokusy o smazani blobu")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("files_gc_sweep_duration_seconds")
+                .description("Doba behu sweeperu blobu")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${files.gc.sweep.interval:PT30S}", initialDelayString = "${files.gc.sweep.initial-delay:PT1M}")
+    public void schedule() {
+        runTimer.record(this::sweepSafely);
+    }
+
+    private void sweepSafely() {
+        try {
+            int total = 0;
+            int loops = 0;
+            while (loops++ < MAX_LOOPS) {
+                Integer processed = tx.execute(st -> sweepBatch());
+                if (processed == null || processed == 0) break;
+                total += processed;
+            }
+            if (total > 0) {
+                log.info("files.gc.sweep: processed={} loops={}", total, loops);
+            }
+        } catch (Exception e) {
+            log.error("files.gc.sweep: FAILED", e);
+        }
+    }
+
+    private int sweepBatch() {
+        List<Tombstone> batch = new ArrayList<>(tombstoneRepo.claimDue(batchSize));
+        if (batch.isEmpty()) return 0;
+        // advisory locky vždy ve stejném pořadí → dva uzly se nezablokují navzájem
+        batch.sort(Comparator.comparing(Tombstone::storageKey));
+
+        List<String> done = new ArrayList<>(batch.size());
+        for (Tombstone t : batch) {
+            fileRepo.lockStorageKey(t.storageKey());
+            if (referenced(t)) {
+                keptCounter.increment();
+                done.add(t.storageKey());
+                continue;
+            }
+            try {
+                storage.delete(t.storageKey());
+                released(t);
+                deletedCounter.increment();
+                if (t.sizeBytes() != null) {
+                    reclaimedBytes(t).increment(t.sizeBytes());
+                }
+                done.add(t.storageKey());
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.warn("files.gc.sweep: delete failed key={} attempts={} reason={}", t.storageKey(), t.attempts() + 1, e.toString());
+                tombstoneRepo.retryLater(t.storageKey(), e.toString(), retryBackoff);
+            }
+        }
+        tombstoneRepo.remove(done);
+        return batch.size();
+    }
+
+    private boolean referenced(Tombstone t) {
+        if (t.kind() == Kind.DERIVED) {
+            return t.sha256() != null && fileRepo.existsBySha256(t.sha256());
+        }
+        if (t.kind() == Kind.CHUNK) {
+            return chunkRepo.isReferenced(t.sha256());
+        }
+        return fileRepo.countByStorageKey(t.storageKey()) > 0;
+    }
+
+    /** Po smazání manifestu zařadí jeho už nepoužívané chunky; smazaný chunk zmizí i z evidence firem. */
+    private void released(Tombstone t) {
+        if (t.kind() == Kind.CHUNK) {
+            chunkRepo.forget(t.sha256());
+        } else if (t.kind() == Kind.BLOB && ChunkedFileStorage.isManifest(t.storageKey())) {
+            tombstoneRepo.enqueue(chunkRepo.releaseManifest(t.storageKey()).stream()
+                    .map(c -> new Tombstone(ChunkedFileStorage.chunkKey(c.sha256()), Kind.CHUNK, c.sha256(),
+                            (long) c.size(), Reason.DELETE, 0))
+                    .toList());
+        }
+    }
+
+    private Counter reclaimedBytes(Tombstone t) {
+        return Counter.builder("files_gc_reclaimed_bytes_total")
+                .description("Uvolnene misto v ulozisti (bajty)")
+                .baseUnit("bytes")
+                .tag("reason", t.reason().name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,94 @@
+package cz.stavbau.backend.features.files.jobs;
+
+import cz.stavbau.backend.features.files.storage.ContentAddressedFileStorage;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Jednorázová migrace legacy klíčů ({@code companyId/uuid.ext}) do CAS layoutu.
+ * Zapnutí: {@code files.storage.type=cas} + {@code files.storage.cas.migrate-on-startup=true}.
+ * Po dávkách: hard link do CAS → přepis {@code storage_key} (commit) → smazání původního souboru.
+ * Duplicity se tím slévají do jednoho blobu; při pádu uprostřed zůstane nanejvýš legacy soubor navíc.
+ * Komprimované bloby ({@code content_encoding}) a chunkované revize ({@code cdc/}) se nepřevádí –
+ * CAS klíč musí odpovídat uloženým bajtům.
+ */
+@Component
+@ConditionalOnProperty(prefix = "files.storage.cas", name = "migrate-on-startup", havingValue = "true")
+public class CasMigrationJob implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CasMigrationJob.class);
+
+    private final FileStorage storage;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    @Value("${files.storage.cas.migrate-batch-size:500}")
+    private int batchSize;
+
+    public CasMigrationJob(FileStorage storage, JdbcTemplate jdbc, TransactionTemplate tx) {
+        this.storage = storage;
+        this.jdbc = jdbc;
+        this.tx = tx;
+    }
+
+    private record Row(UUID id, String storageKey, String sha256) {}
+
+    @Override
+    public void run(ApplicationArguments args) {
+        FileStorage target = storage.backend();
+        if (!(target instanceof ContentAddressedFileStorage cas)) {
+            log.warn("files.cas.migrate: skipped, files.storage.type is not 'cas'");
+            return;
+        }
+        int migrated = 0;
+        int skipped = 0;
+        UUID lastId = new UUID(0L, 0L);
+        while (true) {
+            List<Row> batch = jdbc.query("""
+                    select id, storage_key, sha256 from stored_files
+                     where storage_key not like 'cas/%' and storage_key not like 'cdc/%' and content_encoding is null and id > ?
+                     order by id
+                     limit ?
+                    """,
+                    (rs, i) -> new Row(rs.getObject("id", UUID.class), rs.getString("storage_key"), rs.getString("sha256")),
+                    lastId, batchSize);
+            if (batch.isEmpty()) break;
+            lastId = batch.get(batch.size() - 1).id();
+
+            List<Object[]> updates = new ArrayList<>();
+            List<String> legacyKeys = new ArrayList<>();
+            for (Row r : batch) {
+                try {
+                    String key = cas.adopt(r.storageKey(), r.sha256());
+                    updates.add(new Object[]{key, r.id(), r.storageKey()});
+                    legacyKeys.add(r.storageKey());
+                } catch (Exception e) {
+                    skipped++;
+                    log.warn("files.cas.migrate: skip file={} key={} reason={}", r.id(), r.storageKey(), e.toString());
+                }
+            }
+            int[] counts = tx.execute(s ->
+                    jdbc.batchUpdate("update stored_files set storage_key = ? where id = ? and storage_key = ?", updates));
+            for (int i = 0; i < legacyKeys.size(); i++) {
+                // řádek mezitím někdo změnil/smazal → legacy soubor necháme být (nanejvýš orphan)
+                if (counts != null && counts[i] > 0) {
+                    storage.delete(legacyKeys.get(i));
+                    migrated++;
+                }
+            }
+        }
+        log.info("files.cas.migrate: migrated={} skipped={}", migrated, skipped);
+    }
+}
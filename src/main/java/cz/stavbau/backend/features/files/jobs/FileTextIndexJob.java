@@ -0,0 +1,37 @@
+package cz.stavbau.backend.features.files.jobs;
+
+import cz.stavbau.backend.features.files.service.FileTextService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dohání fulltext souborů, které se nezpracovaly hned po uploadu (backfill po migraci, plná fronta,
+ * restart uzlu, vypršený lease). Jen claimne dávku a předá ji poolu extrakce – scheduler neblokuje.
+ */
+@Component
+@ConditionalOnProperty(prefix = "files.text", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class FileTextIndexJob {
+
+    private static final Logger log = LoggerFactory.getLogger(FileTextIndexJob.class);
+
+    private final FileTextService fileTextService;
+
+    public FileTextIndexJob(FileTextService fileTextService) {
+        this.fileTextService = fileTextService;
+    }
+
+    @Scheduled(fixedDelayString = "${files.text.index.interval:PT1M}", initialDelayString = "${files.text.index.initial-delay:PT2M}")
+    public void schedule() {
+        try {
+            int scheduled = fileTextService.indexPending();
+            if (scheduled > 0) {
+                log.info("files.text.index: scheduled={}", scheduled);
+            }
+        } catch (Exception e) {
+            log.error("files.text.index: failed", e);
+        }
+    }
+}
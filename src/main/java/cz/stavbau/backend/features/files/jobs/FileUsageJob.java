@@ -0,0 +1,55 @@
+package cz.stavbau.backend.features.files.jobs;
+
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Čítače využití úložiště: častý flush přírůstků horkých firem (zároveň vyhodnocuje, které firmy jsou horké),
+ * obnova gauge metrik a noční přepočet ze souborů. Flush se nevypíná – bez něj by přírůstky horkých firem
+ * zůstaly jen v paměti.
+ */
+@Component
+public class FileUsageJob {
+
+    private static final Logger log = LoggerFactory.getLogger(FileUsageJob.class);
+
+    private final FileUsageService fileUsageService;
+
+    public FileUsageJob(FileUsageService fileUsageService) {
+        this.fileUsageService = fileUsageService;
+    }
+
+    @Scheduled(fixedDelayString = "${files.usage.flush-interval:PT5S}", initialDelayString = "${files.usage.flush-interval:PT5S}")
+    public void flush() {
+        try {
+            int flushed = fileUsageService.flush();
+            if (flushed > 0) {
+                log.debug("files.usage.flush: counters={}", flushed);
+            }
+        } catch (Exception e) {
+            log.warn("files.usage.flush: failed, retrying next interval reason={}", e.toString());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${files.usage.metrics-interval:PT1M}", initialDelayString = "PT30S")
+    public void metrics() {
+        try {
+            fileUsageService.publishMetrics();
+        } catch (Exception e) {
+            log.warn("files.usage.metrics: failed reason={}", e.toString());
+        }
+    }
+
+    @Scheduled(cron = "${files.usage.reconcile-cron:0 45 3 * * *}")
+    public void reconcile() {
+        try {
+            int fixed = fileUsageService.reconcile();
+            log.info("files.usage.reconcile: fixed={}", fixed);
+        } catch (Exception e) {
+            log.error("files.usage.reconcile: failed", e);
+        }
+    }
+}
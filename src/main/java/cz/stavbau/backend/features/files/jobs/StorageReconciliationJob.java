@@ -0,0 +1,278 @@
+package cz.stavbau.backend.features.files.jobs;
+
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Kind;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Reason;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Tombstone;
+import cz.stavbau.backend.features.files.repo.FileChunkRepository;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.storage.LocalFileStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodická rekonciliace lokálního úložiště ({@code local}/{@code cas}) proti {@code stored_files.storage_key}:
+ * - orphan = soubor na disku bez řádku v DB (pád mezi zápisem blobu a commitem, rozbitý úklid…) → tombstone
+ *   (smaže ho {@link BlobSweeperJob} pod stejným lockem jako upload); zbytky dočasných zápisů se mažou rovnou
+ * - missing = řádek v DB bez souboru → jen report (log + gauge), data se opravit nedají
+ * Strom se prochází streamovaně ({@link Files#walkFileTree}) a klíče se ověřují v dávkách přes {@code = any(?)},
+ * takže paměť drží jen jednu dávku bez ohledu na počet souborů. Soubory mladší než {@code min-age} se ignorují
+ * (rozjeté uploady, CAS deduplikace osvěžuje mtime). Chunky revizí ({@code chunks/}) jsou orphan, pokud na ně
+ * neukazuje žádný manifest ({@code file_manifest_chunks}) – tj. i nahrané, ale nikdy necommitnuté. {@code uploads/} patří {@link UploadSessionCleanupJob}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "files.gc.reconcile", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class StorageReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageReconciliationJob.class);
+    private static final String DERIVED_PREFIX = "derived/";
+    private static final int MAX_REPORTED = 50;
+
+    private final FileStorage storage;
+    private final JdbcTemplate jdbc;
+    private final BlobTombstoneRepository tombstoneRepo;
+    private final FileChunkRepository chunkRepo;
+
+    private final Counter orphansCounter;
+    private final Counter missingCounter;
+    private final Counter reclaimedBytes;
+    private final Timer runTimer;
+    private final AtomicLong lastOrphans = new AtomicLong();
+    private final AtomicLong lastMissing = new AtomicLong();
+
+    @Value("${files.gc.reconcile.batch-size:500}")
+    private int batchSize;
+
+    @Value("${files.gc.reconcile.min-age:PT24H}")
+    private Duration minAge;
+
+    @Value("${files.gc.reconcile.dry-run:false}")
+    private boolean dryRun;
+
+    public StorageReconciliationJob(FileStorage storage,
+                                    JdbcTemplate jdbc,
+                                    BlobTombstoneRepository tombstoneRepo,
+                                    FileChunkRepository chunkRepo,
+                                    MeterRegistry meterRegistry) {
+        this.storage = storage;
+        this.jdbc = jdbc;
+        this.tombstoneRepo = tombstoneRepo;
+        this.chunkRepo = chunkRepo;
+
+        this.orphansCounter = Counter.builder("files_gc_reconcile_orphans_total")
+                .description("Soubory v ulozisti bez reference v DB")
+                .register(meterRegistry);
+        this.missingCounter = Counter.builder("files_gc_reconcile_missing_total")
+                .description("Radky stored_files bez blobu v ulozisti")
+                .register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("files_gc_reclaimed_bytes_total")
+                .description("Uvolnene misto v ulozisti (bajty)")
+                .baseUnit("bytes")
+                .tag("reason", "reconcile")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("files_gc_reconcile_duration_seconds")
+                .description("Doba behu rekonciliace uloziste")
+                .register(meterRegistry);
+        Gauge.builder("files_gc_reconcile_last_orphans", lastOrphans, AtomicLong::get)
+                .description("Orphany nalezene poslednim behem")
+                .register(meterRegistry);
+        Gauge.builder("files_gc_reconcile_last_missing", lastMissing, AtomicLong::get)
+                .description("Chybejici bloby nalezene poslednim behem")
+                .register(meterRegistry);
+    }
+
+    private record Entry(String key, long size) {}
+
+    @Scheduled(cron = "${files.gc.reconcile.cron:0 30 3 * * *}")
+    public void schedule() {
+        runTimer.record(this::reconcileSafely);
+    }
+
+    private void reconcileSafely() {
+        FileStorage target = storage.backend();
+        if (!(target instanceof LocalFileStorage local)) {
+            log.debug("files.gc.reconcile: skipped, storage {} is not local", target.getClass().getSimpleName());
+            return;
+        }
+        try {
+            long orphans = scanOrphans(local.basePath());
+            long missing = scanMissing(local.basePath());
+            lastOrphans.set(orphans);
+            lastMissing.set(missing);
+            log.info("files.gc.reconcile: orphans={} missing={} dryRun={}", orphans, missing, dryRun);
+        } catch (Exception e) {
+            log.error("files.gc.reconcile: FAILED", e);
+        }
+    }
+
+    /** Disk → DB. */
+    long scanOrphans(Path root) throws IOException {
+        if (!Files.isDirectory(root)) return 0;
+        Instant cutoff = Instant.now().minus(minAge);
+        Path uploads = root.resolve("uploads");
+        List<Entry> blobs = new ArrayList<>(batchSize);
+        List<Entry> derived = new ArrayList<>(batchSize);
+        List<Entry> chunks = new ArrayList<>(batchSize);
+        long[] orphans = {0};
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.equals(uploads) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile() || attrs.lastModifiedTime().toInstant().isAfter(cutoff)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String key = root.relativize(file).toString().replace('\\', '/');
+                if (isTemp(key, file)) {
+                    // zbytek přerušeného zápisu (CAS tmp/, put) – na něj nikdy neukazuje žádný řádek
+                    orphans[0]++;
+                    orphansCounter.increment();
+                    deleteTemp(file, attrs.size());
+                } else if (key.startsWith(DERIVED_PREFIX)) {
+                    derived.add(new Entry(key, attrs.size()));
+                    if (derived.size() >= batchSize) orphans[0] += flushDerived(derived);
+                } else if (key.startsWith(ChunkedFileStorage.CHUNK_PREFIX)) {
+                    chunks.add(new Entry(key, attrs.size()));
+                    if (chunks.size() >= batchSize) orphans[0] += flushChunks(chunks);
+                } else {
+                    blobs.add(new Entry(key, attrs.size()));
+                    if (blobs.size() >= batchSize) orphans[0] += flushBlobs(blobs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // soubor/adresář mezitím zmizel (sweeper, upload) – nevadí
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        orphans[0] += flushBlobs(blobs);
+        orphans[0] += flushDerived(derived);
+        orphans[0] += flushChunks(chunks);
+        return orphans[0];
+    }
+
+    /** DB → disk: keyset přes {@code stored_files.id}, jen report. */
+    long scanMissing(Path root) {
+        long missing = 0;
+        UUID lastId = new UUID(0L, 0L);
+        while (true) {
+            List<Map.Entry<UUID, String>> rows = jdbc.query(
+                    "select id, storage_key from stored_files where id > ? order by id limit ?",
+                    (rs, i) -> Map.entry(rs.getObject("id", UUID.class), rs.getString("storage_key")),
+                    lastId, batchSize);
+            if (rows.isEmpty()) break;
+            lastId = rows.get(rows.size() - 1).getKey();
+            for (var row : rows) {
+                if (!Files.isRegularFile(root.resolve(row.getValue()))) {
+                    if (missing++ < MAX_REPORTED) {
+                        log.warn("files.gc.reconcile: missing blob file={} key={}", row.getKey(), row.getValue());
+                    }
+                }
+            }
+        }
+        missingCounter.increment(missing);
+        return missing;
+    }
+
+    private int flushBlobs(List<Entry> batch) {
+        if (batch.isEmpty()) return 0;
+        Set<String> referenced = new HashSet<>(jdbc.queryForList(
+                "select storage_key from stored_files where storage_key = any(?)", String.class,
+                (Object) batch.stream().map(Entry::key).toArray(String[]::new)));
+        List<Tombstone> orphans = new ArrayList<>();
+        for (Entry e : batch) {
+            if (!referenced.contains(e.key())) {
+                orphans.add(new Tombstone(e.key(), Kind.BLOB, null, e.size(), Reason.RECONCILE, 0));
+            }
+        }
+        batch.clear();
+        return report(orphans);
+    }
+
+    /** {@code derived/ab/<sha>/<variant>.jpg} – orphan, pokud už žádný soubor nemá daný sha256. */
+    private int flushDerived(List<Entry> batch) {
+        if (batch.isEmpty()) return 0;
+        Map<Entry, String> shaOf = new LinkedHashMap<>();
+        for (Entry e : batch) {
+            String[] parts = e.key().split("/");
+            shaOf.put(e, parts.length == 4 ? parts[2] : "");
+        }
+        Set<String> referenced = new HashSet<>(jdbc.queryForList(
+                "select distinct sha256 from stored_files where sha256 = any(?)", String.class,
+                (Object) shaOf.values().stream().distinct().toArray(String[]::new)));
+        List<Tombstone> orphans = new ArrayList<>();
+        shaOf.forEach((e, sha) -> {
+            if (!referenced.contains(sha)) {
+                orphans.add(new Tombstone(e.key(), Kind.DERIVED, sha, e.size(), Reason.RECONCILE, 0));
+            }
+        });
+        batch.clear();
+        return report(orphans);
+    }
+
+    /** {@code chunks/ab/cd/<sha>} – orphan, pokud ho nepoužívá žádný manifest revize. */
+    private int flushChunks(List<Entry> batch) {
+        if (batch.isEmpty()) return 0;
+        Map<Entry, String> shaOf = new LinkedHashMap<>();
+        for (Entry e : batch) {
+            shaOf.put(e, e.key().substring(e.key().lastIndexOf('/') + 1));
+        }
+        Set<String> referenced = chunkRepo.referencedAmong(new HashSet<>(shaOf.values()));
+        List<Tombstone> orphans = new ArrayList<>();
+        shaOf.forEach((e, sha) -> {
+            if (!referenced.contains(sha)) {
+                orphans.add(new Tombstone(e.key(), Kind.CHUNK, sha, e.size(), Reason.RECONCILE, 0));
+            }
+        });
+        batch.clear();
+        return report(orphans);
+    }
+
+    private int report(List<Tombstone> orphans) {
+        if (orphans.isEmpty()) return 0;
+        orphansCounter.increment(orphans.size());
+        if (!dryRun) {
+            tombstoneRepo.enqueue(orphans);
+        } else {
+            orphans.stream().limit(MAX_REPORTED).forEach(t -> log.info("files.gc.reconcile: orphan key={} size={}", t.storageKey(), t.sizeBytes()));
+        }
+        return orphans.size();
+    }
+
+    private static boolean isTemp(String key, Path file) {
+        return key.startsWith("tmp/") || file.getFileName().toString().startsWith(".put-");
+    }
+
+    private void deleteTemp(Path file, long size) {
+        if (dryRun) return;
+        try {
+            if (Files.deleteIfExists(file)) reclaimedBytes.increment(size);
+        } catch (IOException e) {
+            log.warn("files.gc.reconcile: cannot delete {} reason={}", file, e.toString());
+        }
+    }
+}
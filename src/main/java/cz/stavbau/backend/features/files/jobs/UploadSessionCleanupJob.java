@@ -0,0 +1,34 @@
+package cz.stavbau.backend.features.files.jobs;
+
+import cz.stavbau.backend.features.files.service.ChunkedUploadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Uklízí propadlé chunkované uploady (part soubory ve stagingu). */
+@Component
+@ConditionalOnProperty(prefix = "files.upload.chunked.cleanup", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class UploadSessionCleanupJob {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionCleanupJob.class);
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public UploadSessionCleanupJob(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @Scheduled(cron = "${files.upload.chunked.cleanup.cron:0 15 * * * *}")
+    public void schedule() {
+        try {
+            int purged = chunkedUploadService.purgeExpired();
+            if (purged > 0) {
+                log.info("files.upload.cleanup: purged={}", purged);
+            }
+        } catch (Exception e) {
+            log.error("files.upload.cleanup: failed", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cz.stavbau.backend.features.files.model;
 
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -9,6 +10,10 @@ public class FileLink {
     @EmbeddedId
     private FileLinkId id = new FileLinkId();
 
+    /** Kopie {@code stored_files.created_at} – keyset listing souborů entity jede po indexu nad file_links. */
+    @Column(name = "file_created_at")
+    private Instant fileCreatedAt;
+
     public FileLink() {}
     public FileLink(UUID fileId, LinkTarget targetType, UUID targetId) {
         this.id.fileId = fileId;
@@ -18,6 +23,8 @@ public class FileLink {
 
     public FileLinkId getId() { return id; }
     public void setId(FileLinkId id) { this.id = id; }
+    public Instant getFileCreatedAt() { return fileCreatedAt; }
+    public void setFileCreatedAt(Instant fileCreatedAt) { this.fileCreatedAt = fileCreatedAt; }
 
     @Embeddable
     public static class FileLinkId {
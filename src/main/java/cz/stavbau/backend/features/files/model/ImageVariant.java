@@ -0,0 +1,36 @@
+package cz.stavbau.backend.features.files.model;
+
+import java.util.Locale;
+
+/**
+ * Odvozené varianty obrázku (JPEG, delší strana max. {@code maxEdge} px).
+ * Klíč v úložišti je odvozen ze SHA-256 originálu – stejný obsah sdílí stejné náhledy.
+ */
+public enum ImageVariant {
+    THUMB(320),
+    WEB(1600);
+
+    private final int maxEdge;
+
+    ImageVariant(int maxEdge) {
+        this.maxEdge = maxEdge;
+    }
+
+    public int maxEdge() {
+        return maxEdge;
+    }
+
+    public String storageKey(String sha256) {
+        return "derived/" + sha256.substring(0, 2) + "/" + sha256 + "/" + name().toLowerCase(Locale.ROOT) + ".jpg";
+    }
+
+    /** {@code thumb} / {@code web} (case-insensitive); null pro neznámou variantu. */
+    public static ImageVariant parse(String value) {
+        if (value == null) return null;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
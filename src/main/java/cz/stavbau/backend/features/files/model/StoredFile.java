@@ -34,6 +34,21 @@ public class StoredFile {
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
+    /** Kódování uložených dat ({@code gzip}); null = uloženo beze změny. */
+    @Column(name = "content_encoding", length = 16)
+    private String contentEncoding;
+
+    /** Velikost uložených (kódovaných) dat; null = {@code sizeBytes}. */
+    @Column(name = "stored_size_bytes")
+    private Long storedSizeBytes;
+
+    /** Logický dokument (řetěz revizí); null = soubor bez revizí. První revize má {@code documentId = id}. */
+    @Column(name = "document_id")
+    private UUID documentId;
+
+    @Column(name = "revision")
+    private Integer revision;
+
     // getters/setters
     public UUID getId() { return id; }
     public void setId(UUID id) { this.id = id; }
@@ -53,4 +68,12 @@ public class StoredFile {
     public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public String getContentEncoding() { return contentEncoding; }
+    public void setContentEncoding(String contentEncoding) { this.contentEncoding = contentEncoding; }
+    public Long getStoredSizeBytes() { return storedSizeBytes; }
+    public void setStoredSizeBytes(Long storedSizeBytes) { this.storedSizeBytes = storedSizeBytes; }
+    public UUID getDocumentId() { return documentId; }
+    public void setDocumentId(UUID documentId) { this.documentId = documentId; }
+    public Integer getRevision() { return revision; }
+    public void setRevision(Integer revision) { this.revision = revision; }
 }
@@ -0,0 +1,86 @@
+package cz.stavbau.backend.features.files.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Rozpracovaný chunkovaný (resumable) upload.
+ * Chunky mají pevnou velikost {@code chunkSize} (poslední může být kratší) a lze je posílat v libovolném pořadí;
+ * {@code hashedBytes} + {@code hashState} drží průběžný SHA-256 přes souvislý prefix přijatých chunků.
+ */
+@Entity
+@Table(name = "file_upload_sessions")
+public class UploadSession {
+    @Id
+    private UUID id;
+
+    @Column(name = "company_id", nullable = false)
+    private UUID companyId;
+
+    @Column(name = "uploader_id", nullable = false)
+    private UUID uploaderId;
+
+    @Column(name = "original_name", nullable = false)
+    private String originalName;
+
+    @Column(name = "mime_type", nullable = false)
+    private String mimeType;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    @Column(name = "hashed_bytes", nullable = false)
+    private long hashedBytes;
+
+    @Column(name = "hash_state")
+    private byte[] hashState;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private UploadSessionStatus status;
+
+    @Column(name = "file_id")
+    private UUID fileId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public int totalChunks() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    // getters/setters
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+    public UUID getCompanyId() { return companyId; }
+    public void setCompanyId(UUID companyId) { this.companyId = companyId; }
+    public UUID getUploaderId() { return uploaderId; }
+    public void setUploaderId(UUID uploaderId) { this.uploaderId = uploaderId; }
+    public String getOriginalName() { return originalName; }
+    public void setOriginalName(String originalName) { this.originalName = originalName; }
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+    public long getHashedBytes() { return hashedBytes; }
+    public void setHashedBytes(long hashedBytes) { this.hashedBytes = hashedBytes; }
+    public byte[] getHashState() { return hashState; }
+    public void setHashState(byte[] hashState) { this.hashState = hashState; }
+    public UploadSessionStatus getStatus() { return status; }
+    public void setStatus(UploadSessionStatus status) { this.status = status; }
+    public UUID getFileId() { return fileId; }
+    public void setFileId(UUID fileId) { this.fileId = fileId; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,3 @@
+package cz.stavbau.backend.features.files.model;
+
+public enum UploadSessionStatus { OPEN, COMPLETED, ABORTED }
@@ -0,0 +1,91 @@
+package cz.stavbau.backend.features.files.repo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Fronta blobů k fyzickému smazání ({@code file_blob_tombstones}).
+ * Zápis probíhá v transakci mazání souboru – rollback tedy nikdy nenechá řádek bez blobu
+ * a commit nikdy "nezapomene" blob smazat. Zpracování: {@code BlobSweeperJob}.
+ */
+@Repository
+public class BlobTombstoneRepository {
+
+    public enum Kind { BLOB, DERIVED, CHUNK }
+
+    public enum Reason { DELETE, RECONCILE }
+
+    public record Tombstone(String storageKey, Kind kind, String sha256, Long sizeBytes, Reason reason, int attempts) {}
+
+    private final JdbcTemplate jdbc;
+    private final Duration delay;
+
+    public BlobTombstoneRepository(JdbcTemplate jdbc,
+                                   @Value("${files.gc.sweep.delay:PT10M}") Duration delay) {
+        this.jdbc = jdbc;
+        this.delay = delay;
+    }
+
+    /**
+     * Zařadí blob ke smazání nejdřív za {@code files.gc.sweep.delay} (doběhnou rozjeté downloady/exporty).
+     * Existující tombstone se nepřepisuje – sweeper stejně před smazáním ověřuje reference.
+     */
+    public void enqueue(Collection<Tombstone> tombstones) {
+        if (tombstones.isEmpty()) return;
+        Timestamp notBefore = Timestamp.from(Instant.now().plus(delay));
+        List<Object[]> args = new ArrayList<>(tombstones.size());
+        for (Tombstone t : tombstones) {
+            args.add(new Object[]{t.storageKey(), t.kind().name(), t.sha256(), t.sizeBytes(), t.reason().name(), notBefore});
+        }
+        jdbc.batchUpdate("""
+                insert into file_blob_tombstones(storage_key, kind, sha256, size_bytes, reason, not_before)
+                values (?, ?, ?, ?, ?, ?)
+                on conflict (storage_key) do nothing
+                """, args);
+    }
+
+    /** Zamkne dávku splatných tombstonů (více uzlů si je díky SKIP LOCKED nerozebere dvakrát). */
+    public List<Tombstone> claimDue(int limit) {
+        return jdbc.query("""
+                select storage_key, kind, sha256, size_bytes, reason, attempts
+                  from file_blob_tombstones
+                 where not_before <= now()
+                 order by not_before
+                 limit ?
+                   for update skip locked
+                """,
+                (rs, i) -> new Tombstone(
+                        rs.getString("storage_key"),
+                        Kind.valueOf(rs.getString("kind")),
+                        rs.getString("sha256"),
+                        rs.getObject("size_bytes", Long.class),
+                        Reason.valueOf(rs.getString("reason")),
+                        rs.getInt("attempts")),
+                limit);
+    }
+
+    public void remove(Collection<String> storageKeys) {
+        if (storageKeys.isEmpty()) return;
+        jdbc.batchUpdate("delete from file_blob_tombstones where storage_key = ?",
+                storageKeys.stream().map(k -> new Object[]{k}).toList());
+    }
+
+    /** Neúspěšný pokus – další za {@code backoff × attempts} (max. 10×). */
+    public void retryLater(String storageKey, String error, Duration backoff) {
+        jdbc.update("""
+                update file_blob_tombstones
+                   set attempts = attempts + 1,
+                       last_error = ?,
+                       not_before = now() + (least(attempts + 1, 10) * ? * interval '1 second')
+                 where storage_key = ?
+                """, error, backoff.toSeconds(), storageKey);
+    }
+}
@@ -0,0 +1,51 @@
+package cz.stavbau.backend.features.files.repo;
+
+import cz.stavbau.backend.features.files.model.FileLink;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Hromadné založení souborů (bulk upload): řádky {@code stored_files} a {@code file_links} jednou JDBC dávkou
+ * místo {@code save()} po jednom (bez dirty checkingu a flushe entity za entitou).
+ */
+@Repository
+public class FileBatchRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public FileBatchRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void insertFiles(List<StoredFile> files) {
+        if (files.isEmpty()) return;
+        jdbc.batchUpdate("""
+                insert into stored_files(id, company_id, uploader_id, original_name, mime_type, size_bytes, sha256,
+                                         storage_key, created_at, content_encoding, stored_size_bytes)
+                values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """,
+                files.stream().map(f -> new Object[]{
+                        f.getId(), f.getCompanyId(), f.getUploaderId(), f.getOriginalName(), f.getMimeType(),
+                        f.getSizeBytes(), f.getSha256(), f.getStorageKey(), Timestamp.from(f.getCreatedAt()),
+                        // typované NULL – jinak si JdbcTemplate zjišťuje typ parametru dotazem na DB
+                        new SqlParameterValue(Types.VARCHAR, f.getContentEncoding()),
+                        new SqlParameterValue(Types.BIGINT, f.getStoredSizeBytes())}).toList());
+    }
+
+    public void insertLinks(List<FileLink> links) {
+        if (links.isEmpty()) return;
+        jdbc.batchUpdate("""
+                insert into file_links(file_id, target_type, target_id, file_created_at) values (?, ?, ?, ?)
+                on conflict (file_id, target_id, target_type) do nothing
+                """,
+                links.stream().map(l -> new Object[]{
+                        l.getId().fileId, l.getId().targetType.name(), l.getId().targetId,
+                        Timestamp.from(l.getFileCreatedAt())}).toList());
+    }
+}
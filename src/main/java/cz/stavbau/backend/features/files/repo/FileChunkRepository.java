@@ -0,0 +1,96 @@
+package cz.stavbau.backend.features.files.repo;
+
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage.ChunkRef;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Evidence content-defined chunků ({@code file_chunks}) a jejich použití v manifestech revizí
+ * ({@code file_manifest_chunks}). "Které chunky už máte" se ptá jen v rámci firmy – chunk jiné firmy
+ * se nepřizná, dokud ho firma sama nenahraje (ověřený hash = důkaz, že data má).
+ */
+@Repository
+public class FileChunkRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public FileChunkRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Podmnožina {@code shas}, kterou firma už má. */
+    public Set<String> knownChunks(UUID companyId, Collection<String> shas) {
+        if (shas.isEmpty()) return Set.of();
+        return new HashSet<>(jdbc.queryForList(
+                "select sha256 from file_chunks where company_id = ? and sha256 = any(?)",
+                String.class, companyId, (Object) shas.toArray(String[]::new)));
+    }
+
+    public void register(UUID companyId, String sha256, int size) {
+        jdbc.update("""
+                insert into file_chunks(company_id, sha256, size_bytes) values (?, ?, ?)
+                on conflict (company_id, sha256) do nothing
+                """, companyId, sha256, size);
+    }
+
+    public boolean isRegistered(UUID companyId, String sha256) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "select exists(select 1 from file_chunks where company_id = ? and sha256 = ?)",
+                Boolean.class, companyId, sha256));
+    }
+
+    /** Zapíše pořadí chunků manifestu; stejný manifest (stejný obsah) se nezapisuje dvakrát. */
+    public void insertManifest(String manifestKey, List<ChunkRef> chunks) {
+        List<Object[]> args = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            args.add(new Object[]{manifestKey, i, chunks.get(i).sha256(), chunks.get(i).size()});
+        }
+        jdbc.batchUpdate("""
+                insert into file_manifest_chunks(manifest_key, seq, chunk_sha256, size_bytes) values (?, ?, ?, ?)
+                on conflict (manifest_key, seq) do nothing
+                """, args);
+    }
+
+    /**
+     * Smaže reference manifestu a vrátí chunky, na které už žádný jiný manifest neukazuje
+     * (kandidáti na tombstone – sweeper to před smazáním ověří znovu).
+     */
+    public List<ChunkRef> releaseManifest(String manifestKey) {
+        return jdbc.query("""
+                with released as (
+                    delete from file_manifest_chunks where manifest_key = ?
+                    returning chunk_sha256, size_bytes
+                )
+                select distinct r.chunk_sha256, r.size_bytes
+                  from released r
+                 where not exists (select 1 from file_manifest_chunks m
+                                    where m.chunk_sha256 = r.chunk_sha256 and m.manifest_key <> ?)
+                """,
+                (rs, i) -> new ChunkRef(rs.getString(1), rs.getInt(2)), manifestKey, manifestKey);
+    }
+
+    public boolean isReferenced(String sha256) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "select exists(select 1 from file_manifest_chunks where chunk_sha256 = ?)", Boolean.class, sha256));
+    }
+
+    /** Podmnožina {@code shas}, na kterou ukazuje nějaký manifest (rekonciliace úložiště). */
+    public Set<String> referencedAmong(Collection<String> shas) {
+        if (shas.isEmpty()) return Set.of();
+        return new HashSet<>(jdbc.queryForList(
+                "select distinct chunk_sha256 from file_manifest_chunks where chunk_sha256 = any(?)",
+                String.class, (Object) shas.toArray(String[]::new)));
+    }
+
+    /** Chunk fyzicky zmizel – žádná firma ho už nemá. */
+    public void forget(String sha256) {
+        jdbc.update("delete from file_chunks where sha256 = ?", sha256);
+    }
+}
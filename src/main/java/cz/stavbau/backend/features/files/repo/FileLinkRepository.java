@@ -3,5 +3,18 @@ package cz.stavbau.backend.features.files.repo;
 import cz.stavbau.backend.features.files.model.FileLink;
 import cz.stavbau.backend.features.files.model.FileLink.FileLinkId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface FileLinkRepository extends JpaRepository<FileLink, FileLinkId> {}
+import java.util.List;
+import java.util.UUID;
+
+public interface FileLinkRepository extends JpaRepository<FileLink, FileLinkId> {
+
+    List<FileLink> findByIdFileId(UUID fileId);
+
+    @Modifying
+    @Query("delete from FileLink l where l.id.fileId = :fileId")
+    int deleteByFileId(@Param("fileId") UUID fileId);
+}
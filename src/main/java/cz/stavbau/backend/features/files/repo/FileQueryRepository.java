@@ -0,0 +1,126 @@
+package cz.stavbau.backend.features.files.repo;
+
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Listing souborů s keyset (cursor) stránkováním přes {@code (created_at, id)} – nejnovější první.
+ * Každá stránka je jeden průchod indexem od pozice kurzoru, bez OFFSET a bez COUNT:
+ * - bez cíle: {@code ix_stored_files_company_created} / s uploaderem {@code ix_stored_files_company_uploader_created}
+ * - s cílem (projekt/faktura): {@code ix_file_links_target_created} nad denormalizovaným {@code file_links.file_created_at}
+ * Vrací jen lehkou projekci (žádné entity, žádný storage key).
+ */
+@Repository
+public class FileQueryRepository {
+
+    public record Filter(UUID companyId, LinkTarget targetType, UUID targetId,
+                         String mimePrefix, UUID uploaderId, String tag) {}
+
+    public record Item(UUID id, String originalName, String mimeType, long sizeBytes,
+                       UUID uploaderId, Instant createdAt) {}
+
+    public record Page(List<Item> items, String nextCursor) {}
+
+    private record Cursor(Instant createdAt, UUID id) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public FileQueryRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public Page list(Filter f, String cursor, int limit) {
+        boolean byTarget = f.targetType() != null && f.targetId() != null;
+        // řadicí sloupce: u cíle z file_links (index), jinak ze stored_files
+        String at = byTarget ? "l.file_created_at" : "f.created_at";
+        String id = byTarget ? "l.file_id" : "f.id";
+
+        var p = new MapSqlParameterSource()
+                .addValue("companyId", f.companyId())
+                .addValue("limit", limit + 1);
+        StringBuilder sql = new StringBuilder("""
+                select f.id, f.original_name, f.mime_type, f.size_bytes, f.uploader_id, f.created_at
+                """);
+        if (byTarget) {
+            sql.append("""
+                      from file_links l
+                      join stored_files f on f.id = l.file_id
+                     where l.target_type = :targetType and l.target_id = :targetId
+                       and f.company_id = :companyId
+                    """);
+            p.addValue("targetType", f.targetType().name()).addValue("targetId", f.targetId());
+        } else {
+            sql.append("""
+                      from stored_files f
+                     where f.company_id = :companyId
+                    """);
+        }
+        if (f.uploaderId() != null) {
+            sql.append(" and f.uploader_id = :uploaderId\n");
+            p.addValue("uploaderId", f.uploaderId());
+        }
+        if (f.mimePrefix() != null && !f.mimePrefix().isBlank()) {
+            sql.append(" and f.mime_type like :mimePrefix escape '\\'\n");
+            p.addValue("mimePrefix", escapeLike(f.mimePrefix().trim().toLowerCase()) + "%");
+        }
+        if (f.tag() != null && !f.tag().isBlank()) {
+            sql.append("""
+                     and exists (select 1 from file_tag_join j join file_tags t on t.id = j.tag_id
+                                  where j.file_id = f.id and t.company_id = :companyId and t.name = :tag)
+                    """);
+            p.addValue("tag", f.tag().strip());
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor c = decode(cursor);
+            sql.append(" and (").append(at).append(", ").append(id).append(") < (:cursorAt, :cursorId)\n");
+            p.addValue("cursorAt", Timestamp.from(c.createdAt())).addValue("cursorId", c.id());
+        }
+        sql.append(" order by ").append(at).append(" desc, ").append(id).append(" desc\n limit :limit");
+
+        List<Item> rows = jdbc.query(sql.toString(), p, (rs, i) -> new Item(
+                rs.getObject("id", UUID.class),
+                rs.getString("original_name"),
+                rs.getString("mime_type"),
+                rs.getLong("size_bytes"),
+                rs.getObject("uploader_id", UUID.class),
+                rs.getTimestamp("created_at").toInstant()));
+
+        if (rows.size() <= limit) {
+            return new Page(rows, null);
+        }
+        List<Item> page = rows.subList(0, limit);
+        Item last = page.get(limit - 1);
+        return new Page(List.copyOf(page), encode(new Cursor(last.createdAt(), last.id())));
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String encode(Cursor c) {
+        String raw = c.createdAt().getEpochSecond() + "." + c.createdAt().getNano() + ":" + c.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int colon = raw.indexOf(':');
+            int dot = raw.indexOf('.');
+            Instant at = Instant.ofEpochSecond(Long.parseLong(raw.substring(0, dot)), Long.parseLong(raw.substring(dot + 1, colon)));
+            return new Cursor(at, UUID.fromString(raw.substring(colon + 1)));
+        } catch (RuntimeException e) {
+            throw ValidationException.ofField("files.list.invalidCursor", "cursor", "invalid");
+        }
+    }
+}
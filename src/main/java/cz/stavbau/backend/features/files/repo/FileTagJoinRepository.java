@@ -3,5 +3,43 @@ package cz.stavbau.backend.features.files.repo;
 import cz.stavbau.backend.features.files.model.FileTagJoin;
 import cz.stavbau.backend.features.files.model.FileTagJoin.FileTagJoinId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface FileTagJoinRepository extends JpaRepository<FileTagJoin, FileTagJoinId> {}
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface FileTagJoinRepository extends JpaRepository<FileTagJoin, FileTagJoinId> {
+
+    /** Řádek pro stavbu in-memory indexu (soubor × název tagu). */
+    interface FileTagRow {
+        UUID getFileId();
+        String getName();
+    }
+
+    @Modifying
+    @Query("delete from FileTagJoin j where j.id.fileId = :fileId")
+    int deleteByFileId(@Param("fileId") UUID fileId);
+
+    /** Napojí soubor na tagy firmy podle názvů – jeden insert…select místo lookup+save na tag. */
+    @Modifying
+    @Query(value = """
+            insert into file_tag_join (file_id, tag_id)
+            select :fileId, t.id from file_tags t
+             where t.company_id = :companyId and t.name in (:names)
+            on conflict do nothing
+            """, nativeQuery = true)
+    int insertForNames(@Param("fileId") UUID fileId,
+                       @Param("companyId") UUID companyId,
+                       @Param("names") Collection<String> names);
+
+    @Query(value = """
+            select j.file_id as fileId, t.name as name
+              from file_tags t
+              join file_tag_join j on j.tag_id = t.id
+             where t.company_id = :companyId
+            """, nativeQuery = true)
+    List<FileTagRow> findRowsByCompanyId(@Param("companyId") UUID companyId);
+}
@@ -2,10 +2,24 @@ package cz.stavbau.backend.features.files.repo;
 
 import cz.stavbau.backend.features.files.model.FileTag;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface FileTagRepository extends JpaRepository<FileTag, UUID> {
     Optional<FileTag> findByCompanyIdAndName(UUID companyId, String name);
+
+    /** Hromadný upsert tagů firmy jedním statementem (existující názvy se přeskočí). */
+    @Modifying
+    @Query(value = """
+            insert into file_tags (id, company_id, name)
+            select gen_random_uuid(), :companyId, n
+              from unnest(cast(array[:names] as varchar[])) as n
+            on conflict (company_id, name) do nothing
+            """, nativeQuery = true)
+    int upsertNames(@Param("companyId") UUID companyId, @Param("names") Collection<String> names);
 }
@@ -0,0 +1,172 @@
+package cz.stavbau.backend.features.files.repo;
+
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fulltext obsahu souborů ({@code file_texts}). Řádek vzniká ve stejné transakci jako soubor (PENDING),
+ * extrakce ho claimne přes {@code claimed_at} (lease – spadlý uzel práci nezablokuje) a doplní text + tsvector.
+ * Dotaz nikdy nečte bloby: GIN index nad {@code tsv}, snippet jen pro vrácenou stránku.
+ */
+@Repository
+public class FileTextRepository {
+
+    public enum Status { PENDING, DONE, EMPTY, UNSUPPORTED, FAILED }
+
+    public record Source(UUID fileId, String storageKey, String contentEncoding, String mimeType, String originalName) {}
+
+    public record Hit(UUID fileId, String originalName, String mimeType, long sizeBytes, Instant createdAt,
+                      double rank, String snippet) {}
+
+    private static final String TS_CONFIG = "public.stavbau_simple";
+
+    private final JdbcTemplate jdbc;
+
+    public FileTextRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void enqueue(UUID fileId, UUID companyId) {
+        jdbc.update("""
+                insert into file_texts(file_id, company_id, status) values (?, ?, 'PENDING')
+                on conflict (file_id) do nothing
+                """, fileId, companyId);
+    }
+
+    public void enqueueAll(List<UUID> fileIds, UUID companyId) {
+        jdbc.batchUpdate("""
+                insert into file_texts(file_id, company_id, status) values (?, ?, 'PENDING')
+                on conflict (file_id) do nothing
+                """, fileIds.stream().map(id -> new Object[]{id, companyId}).toList());
+    }
+
+    /** Claim jednoho souboru (hned po uploadu); false = už hotový, zpracovává ho jiný uzel nebo došly pokusy. */
+    public boolean claim(UUID fileId, Duration lease, int maxAttempts) {
+        return jdbc.update("""
+                update file_texts
+                   set claimed_at = now(), attempts = attempts + 1
+                 where file_id = ?
+                   and status = 'PENDING'
+                   and attempts < ?
+                   and (claimed_at is null or claimed_at < now() - (? * interval '1 second'))
+                """, fileId, maxAttempts, lease.toSeconds()) == 1;
+    }
+
+    /**
+     * Claim dávky čekajících (backfill, přetečená fronta, restart uzlu).
+     * Řádky s vyčerpanými pokusy a propadlým lease (extrakce na posledním pokusu shodila uzel a {@link #fail}
+     * se nezavolal) se ve stejném příkazu uzavřou jako FAILED – jinak by zůstaly PENDING navždy.
+     */
+    public List<UUID> claimDue(int limit, Duration lease, int maxAttempts) {
+        return jdbc.queryForList("""
+                with exhausted as (
+                    update file_texts t
+                       set status = 'FAILED',
+                           claimed_at = null,
+                           tsv = setweight(to_tsvector('%s', coalesce(f.original_name, '')), 'A'),
+                           last_error = coalesce(t.last_error, 'extraction did not finish')
+                      from stored_files f
+                     where f.id = t.file_id
+                       and t.status = 'PENDING'
+                       and t.attempts >= ?
+                       and (t.claimed_at is null or t.claimed_at < now() - (? * interval '1 second'))
+                )
+                update file_texts
+                   set claimed_at = now(), attempts = attempts + 1
+                 where file_id in (select file_id from file_texts
+                                    where status = 'PENDING'
+                                      and attempts < ?
+                                      and (claimed_at is null or claimed_at < now() - (? * interval '1 second'))
+                                    order by created_at
+                                    limit ?
+                                      for update skip locked)
+                returning file_id
+                """.formatted(TS_CONFIG), UUID.class,
+                maxAttempts, lease.toSeconds(), maxAttempts, lease.toSeconds(), limit);
+    }
+
+    public Source source(UUID fileId) {
+        return jdbc.query("""
+                select id, storage_key, content_encoding, mime_type, original_name from stored_files where id = ?
+                """,
+                rs -> rs.next() ? new Source(rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3),
+                        rs.getString(4), rs.getString(5)) : null,
+                fileId);
+    }
+
+    /** Uloží výsledek; tsvector z názvu (váha A) i obsahu (váha B) – i nepodporovaný formát je dohledatelný podle názvu. */
+    public void complete(UUID fileId, Status status, String originalName, String content) {
+        jdbc.update("""
+                update file_texts
+                   set status = ?,
+                       content = ?,
+                       tsv = setweight(to_tsvector('%1$s', coalesce(?, '')), 'A')
+                          || setweight(to_tsvector('%1$s', coalesce(?, '')), 'B'),
+                       extracted_at = now(),
+                       claimed_at = null,
+                       last_error = null
+                 where file_id = ?
+                """.formatted(TS_CONFIG), status.name(), content, originalName, content, fileId);
+    }
+
+    /** Chyba extrakce – další pokus po vypršení lease, po {@code maxAttempts} už jen název (FAILED; 0 = hned). */
+    public void fail(UUID fileId, String originalName, String error, int maxAttempts) {
+        jdbc.update("""
+                update file_texts
+                   set status = case when attempts >= ? then 'FAILED' else 'PENDING' end,
+                       tsv = case when attempts >= ? then setweight(to_tsvector('%s', coalesce(?, '')), 'A') end,
+                       last_error = ?
+                 where file_id = ?
+                """.formatted(TS_CONFIG), maxAttempts, maxAttempts, originalName, error, fileId);
+    }
+
+    /**
+     * Nejrelevantnější soubory firmy (websearch syntaxe: {@code "přesná fráze"}, {@code -vyloučit}, {@code or}),
+     * volitelně jen napojené na entitu. Snippet (HTML-escapovaný text se zvýrazněním {@code <mark>}) se počítá
+     * až nad oříznutou stránkou.
+     */
+    public List<Hit> search(UUID companyId, String query, LinkTarget targetType, UUID targetId, int limit) {
+        List<Object> args = new ArrayList<>();
+        args.add(query);
+        args.add(companyId);
+        String linkFilter = "";
+        if (targetType != null && targetId != null) {
+            linkFilter = "and exists (select 1 from file_links l where l.file_id = t.file_id and l.target_type = ? and l.target_id = ?)";
+            args.add(targetType.name());
+            args.add(targetId);
+        }
+        args.add(limit);
+        return jdbc.query("""
+                select h.file_id, f.original_name, f.mime_type, f.size_bytes, f.created_at, h.rank,
+                       ts_headline('%1$s',
+                                   replace(replace(replace(coalesce(h.content, ''), '&', '&amp;'), '<', '&lt;'), '>', '&gt;'),
+                                   h.q,
+                                   'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MinWords=5, MaxWords=20, FragmentDelimiter=" … "')
+                  from (select t.file_id, t.content, q, ts_rank_cd(t.tsv, q) as rank
+                          from file_texts t, websearch_to_tsquery('%1$s', ?) q
+                         where t.company_id = ?
+                           and t.tsv @@ q
+                           %2$s
+                         order by rank desc
+                         limit ?) h
+                  join stored_files f on f.id = h.file_id
+                 order by h.rank desc, f.created_at desc
+                """.formatted(TS_CONFIG, linkFilter),
+                (rs, i) -> new Hit(
+                        rs.getObject(1, UUID.class),
+                        rs.getString(2),
+                        rs.getString(3),
+                        rs.getLong(4),
+                        rs.getTimestamp(5).toInstant(),
+                        rs.getDouble(6),
+                        rs.getString(7)),
+                args.toArray());
+    }
+}
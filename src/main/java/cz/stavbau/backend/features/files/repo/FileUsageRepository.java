@@ -0,0 +1,196 @@
+package cz.stavbau.backend.features.files.repo;
+
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Čítače využití úložiště ({@code file_storage_usage} per firma, {@code file_storage_usage_targets} per cíl linku).
+ * Mění se jen přírůstky (upsert {@code x = x + ?}), takže souběžné zápisy se nepřepisují; plný přepočet
+ * ze {@code stored_files} dělá jen noční rekonciliace.
+ * Přepočet a zápisy se vylučují transakčním advisory lockem: zápis (upload/mazání, flush) drží sdílený,
+ * přepočet výlučný a zvýší generaci čítačů ({@code file_storage_usage_generation}).
+ */
+@Repository
+public class FileUsageRepository {
+
+    /** Přírůstek; {@code targetType == null} = součet firmy. */
+    public record Delta(UUID companyId, LinkTarget targetType, UUID targetId, long files, long bytes) {
+
+        public static Delta company(UUID companyId, long files, long bytes) {
+            return new Delta(companyId, null, null, files, bytes);
+        }
+
+        public boolean isCompany() {
+            return targetType == null;
+        }
+    }
+
+    public record CompanyRow(UUID companyId, long fileCount, long sizeBytes, Long quotaBytes) {}
+
+    public record TargetRow(LinkTarget targetType, UUID targetId, long fileCount, long sizeBytes) {}
+
+    // stejné pořadí zámků řádků ve všech dávkách → souběžné flushe z více uzlů se nezablokují navzájem
+    private static final Comparator<Delta> LOCK_ORDER = Comparator
+            .comparing(Delta::companyId)
+            .thenComparing(d -> d.targetType() == null ? "" : d.targetType().name())
+            .thenComparing(d -> d.targetId() == null ? new UUID(0, 0) : d.targetId());
+
+    private static final String LOCK = "select 1 from %s(hashtextextended('file_storage_usage', 0))";
+
+    private final JdbcTemplate jdbc;
+
+    public FileUsageRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Sdílený zámek čítačů do konce transakce – běžící přepočet počká na zápis a zápis na dokončení přepočtu. */
+    public void lockShared() {
+        jdbc.queryForList(LOCK.formatted("pg_advisory_xact_lock_shared"));
+    }
+
+    /**
+     * Aktuální generace čítačů. Volat až po {@link #lockShared()} v samostatném příkazu – snapshot příkazu
+     * pak vidí i přepočet, na který zámek čekal.
+     */
+    public long generation() {
+        Long g = jdbc.queryForObject("select generation from file_storage_usage_generation where id = 1", Long.class);
+        return g != null ? g : 0;
+    }
+
+    /** Přičte přírůstky (jedna JDBC dávka pro firmy, jedna pro cíle). */
+    public void apply(List<Delta> deltas) {
+        List<Object[]> companies = new ArrayList<>();
+        List<Object[]> targets = new ArrayList<>();
+        for (Delta d : deltas.stream().sorted(LOCK_ORDER).toList()) {
+            if (d.files() == 0 && d.bytes() == 0) continue;
+            if (d.isCompany()) {
+                companies.add(new Object[]{d.companyId(), d.files(), d.bytes()});
+            } else {
+                targets.add(new Object[]{d.companyId(), d.targetType().name(), d.targetId(), d.files(), d.bytes()});
+            }
+        }
+        if (!companies.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into file_storage_usage(company_id, file_count, size_bytes) values (?, ?, ?)
+                    on conflict (company_id) do update
+                       set file_count = file_storage_usage.file_count + excluded.file_count,
+                           size_bytes = file_storage_usage.size_bytes + excluded.size_bytes,
+                           updated_at = now()
+                    """, companies);
+        }
+        if (!targets.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into file_storage_usage_targets(company_id, target_type, target_id, file_count, size_bytes)
+                    values (?, ?, ?, ?, ?)
+                    on conflict (company_id, target_type, target_id) do update
+                       set file_count = file_storage_usage_targets.file_count + excluded.file_count,
+                           size_bytes = file_storage_usage_targets.size_bytes + excluded.size_bytes,
+                           updated_at = now()
+                    """, targets);
+        }
+    }
+
+    public CompanyRow find(UUID companyId) {
+        return jdbc.query("""
+                select company_id, file_count, size_bytes, quota_bytes from file_storage_usage where company_id = ?
+                """,
+                rs -> rs.next() ? companyRow(rs) : null,
+                companyId);
+    }
+
+    /** Všechny firmy (metriky). */
+    public List<CompanyRow> findAll() {
+        return jdbc.query("select company_id, file_count, size_bytes, quota_bytes from file_storage_usage",
+                (rs, i) -> companyRow(rs));
+    }
+
+    /** Největší cíle firmy podle objemu. */
+    public List<TargetRow> targets(UUID companyId, int limit) {
+        return jdbc.query("""
+                select target_type, target_id, file_count, size_bytes
+                  from file_storage_usage_targets
+                 where company_id = ?
+                   and file_count > 0
+                 order by size_bytes desc
+                 limit ?
+                """,
+                (rs, i) -> targetRow(rs),
+                companyId, limit);
+    }
+
+    public TargetRow target(UUID companyId, LinkTarget targetType, UUID targetId) {
+        return jdbc.query("""
+                select target_type, target_id, file_count, size_bytes
+                  from file_storage_usage_targets
+                 where company_id = ? and target_type = ? and target_id = ?
+                """,
+                rs -> rs.next() ? targetRow(rs) : new TargetRow(targetType, targetId, 0, 0),
+                companyId, targetType.name(), targetId);
+    }
+
+    /**
+     * Přepočet ze {@code stored_files}/{@code file_links} – opraví drift (např. neflushnuté přírůstky spadlého uzlu).
+     * Pod výlučným zámkem (doběhnou rozjeté zápisy, nové počkají) zvýší generaci – přírůstky starší generace
+     * jsou v přepočtu započtené a flush je zahodí. Přepisuje jen řádky, které nesedí; vrací počet opravených.
+     */
+    public int reconcile() {
+        jdbc.queryForList(LOCK.formatted("pg_advisory_xact_lock"));
+        jdbc.update("update file_storage_usage_generation set generation = generation + 1 where id = 1");
+        int fixed = jdbc.update("""
+                insert into file_storage_usage(company_id, file_count, size_bytes)
+                select company_id, count(*), coalesce(sum(size_bytes), 0) from stored_files group by company_id
+                on conflict (company_id) do update
+                   set file_count = excluded.file_count,
+                       size_bytes = excluded.size_bytes,
+                       updated_at = now()
+                 where (file_storage_usage.file_count, file_storage_usage.size_bytes)
+                       is distinct from (excluded.file_count, excluded.size_bytes)
+                """);
+        fixed += jdbc.update("""
+                update file_storage_usage u
+                   set file_count = 0, size_bytes = 0, updated_at = now()
+                 where (u.file_count <> 0 or u.size_bytes <> 0)
+                   and not exists (select 1 from stored_files f where f.company_id = u.company_id)
+                """);
+        fixed += jdbc.update("""
+                insert into file_storage_usage_targets(company_id, target_type, target_id, file_count, size_bytes)
+                select f.company_id, l.target_type, l.target_id, count(*), coalesce(sum(f.size_bytes), 0)
+                  from file_links l
+                  join stored_files f on f.id = l.file_id
+                 group by f.company_id, l.target_type, l.target_id
+                on conflict (company_id, target_type, target_id) do update
+                   set file_count = excluded.file_count,
+                       size_bytes = excluded.size_bytes,
+                       updated_at = now()
+                 where (file_storage_usage_targets.file_count, file_storage_usage_targets.size_bytes)
+                       is distinct from (excluded.file_count, excluded.size_bytes)
+                """);
+        fixed += jdbc.update("""
+                delete from file_storage_usage_targets t
+                 where not exists (select 1
+                                     from file_links l
+                                     join stored_files f on f.id = l.file_id
+                                    where l.target_type = t.target_type
+                                      and l.target_id = t.target_id
+                                      and f.company_id = t.company_id)
+                """);
+        return fixed;
+    }
+
+    private static CompanyRow companyRow(ResultSet rs) throws SQLException {
+        long quota = rs.getLong(4);
+        return new CompanyRow(rs.getObject(1, UUID.class), rs.getLong(2), rs.getLong(3), rs.wasNull() ? null : quota);
+    }
+
+    private static TargetRow targetRow(ResultSet rs) throws SQLException {
+        return new TargetRow(LinkTarget.valueOf(rs.getString(1)), rs.getObject(2, UUID.class), rs.getLong(3), rs.getLong(4));
+    }
+}
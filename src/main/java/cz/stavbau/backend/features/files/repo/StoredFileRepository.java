@@ -1,8 +1,39 @@
 package cz.stavbau.backend.features.files.repo;
 
+import cz.stavbau.backend.features.files.model.LinkTarget;
 import cz.stavbau.backend.features.files.model.StoredFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.UUID;
 
-public interface StoredFileRepository extends JpaRepository<StoredFile, UUID> {}
+public interface StoredFileRepository extends JpaRepository<StoredFile, UUID> {
+
+    /** Počet referencí na blob (content-addressed klíč sdílí více řádků). */
+    long countByStorageKey(String storageKey);
+
+    boolean existsBySha256(String sha256);
+
+    @Query("""
+            select f from StoredFile f
+             where f.id in (select l.id.fileId from FileLink l
+                             where l.id.targetType = :targetType and l.id.targetId = :targetId)
+             order by f.createdAt, f.id
+            """)
+    List<StoredFile> findLinkedTo(@Param("targetType") LinkTarget targetType, @Param("targetId") UUID targetId);
+
+    /** Revize dokumentu od nejnovější. */
+    List<StoredFile> findByDocumentIdOrderByRevisionDesc(UUID documentId);
+
+    @Query("select coalesce(max(f.revision), 0) from StoredFile f where f.documentId = :documentId")
+    int maxRevision(@Param("documentId") UUID documentId);
+
+    /**
+     * Transakční advisory lock na storage key – serializuje upload a delete téhož blobu,
+     * aby poslední delete nesmazal blob, na který si mezitím vzal referenci nový upload.
+     */
+    @Query(value = "select 1 from pg_advisory_xact_lock(hashtextextended(:storageKey, 0))", nativeQuery = true)
+    Integer lockStorageKey(@Param("storageKey") String storageKey);
+}
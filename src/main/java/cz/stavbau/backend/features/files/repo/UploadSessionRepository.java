@@ -0,0 +1,50 @@
+package cz.stavbau.backend.features.files.repo;
+
+import cz.stavbau.backend.features.files.model.UploadSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UploadSession s where s.id = :id")
+    Optional<UploadSession> lockById(@Param("id") UUID id);
+
+    /** Lock bez čekání – pokud hash zrovna posouvá jiný request, nic nečekáme (dožene to on / complete). */
+    @Query(value = "select * from file_upload_sessions where id = :id for update skip locked", nativeQuery = true)
+    Optional<UploadSession> tryLockById(@Param("id") UUID id);
+
+    /** Idempotentní záznam přijatého chunku (retry téhož chunku nic nerozbije). */
+    @Modifying
+    @Query(value = """
+            insert into file_upload_chunks (session_id, chunk_index, size_bytes)
+            values (:sessionId, :chunkIndex, :sizeBytes)
+            on conflict (session_id, chunk_index) do nothing
+            """, nativeQuery = true)
+    int insertChunk(@Param("sessionId") UUID sessionId,
+                    @Param("chunkIndex") int chunkIndex,
+                    @Param("sizeBytes") int sizeBytes);
+
+    @Query(value = "select chunk_index from file_upload_chunks where session_id = :sessionId order by chunk_index",
+            nativeQuery = true)
+    List<Integer> findChunkIndexes(@Param("sessionId") UUID sessionId);
+
+    @Query(value = """
+            select chunk_index from file_upload_chunks
+             where session_id = :sessionId and chunk_index >= :fromIndex
+             order by chunk_index
+            """, nativeQuery = true)
+    List<Integer> findChunkIndexesFrom(@Param("sessionId") UUID sessionId, @Param("fromIndex") int fromIndex);
+
+    @Query("select s.id from UploadSession s where s.status = cz.stavbau.backend.features.files.model.UploadSessionStatus.OPEN and s.expiresAt < :now")
+    List<UUID> findExpiredOpen(@Param("now") Instant now);
+}
@@ -0,0 +1,36 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.model.UploadSession;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable (chunkovaný) upload velkých souborů: založení session → PUT chunků s offsety
+ * (libovolné pořadí, paralelně) → dokončení, které vytvoří stejný {@link StoredFile} jako běžný upload.
+ */
+public interface ChunkedUploadService {
+
+    record SessionState(UploadSession session, List<Integer> receivedChunks) {}
+
+    UploadSession create(UUID companyId, UUID uploaderId, String originalName, String mimeType,
+                         long totalSize, Integer chunkSize);
+
+    /**
+     * Zapíše chunk na daný offset (musí být násobek chunkSize). Opakované poslání téhož chunku je idempotentní.
+     *
+     * @param length délka těla požadavku (-1 = neznámá, ověří se po přečtení)
+     */
+    SessionState writeChunk(UUID sessionId, long offset, long length, InputStream data);
+
+    SessionState status(UUID sessionId);
+
+    StoredFile complete(UUID sessionId);
+
+    void abort(UUID sessionId);
+
+    /** Úklid propadlých OPEN sessions (part soubory + řádky). */
+    int purgeExpired();
+}
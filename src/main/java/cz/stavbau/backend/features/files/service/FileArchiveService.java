@@ -0,0 +1,13 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/** Streamovaný ZIP export více souborů (archiv nikdy nevzniká celý na disku ani na heapu). */
+public interface FileArchiveService {
+
+    void writeZip(List<StoredFile> files, OutputStream out) throws IOException;
+}
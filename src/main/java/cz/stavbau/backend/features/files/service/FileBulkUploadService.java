@@ -0,0 +1,24 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Hromadný upload (složka fotek ze stavby) v jednom requestu: soubory se ukládají do úložiště souběžně
+ * a metadata všech úspěšných (+ volitelné linky) vzniknou v jedné transakci jednou dávkou.
+ * Chyba jednoho souboru neshodí ostatní – výsledek je per soubor.
+ */
+public interface FileBulkUploadService {
+
+    enum Status { CREATED, REJECTED, FAILED }
+
+    /** @param index pořadí části v requestu; {@code error} = kód chyby (jen REJECTED/FAILED) */
+    record Item(int index, String originalName, Status status, StoredFile file, String error) {}
+
+    /** Kvóta se ověří pro součet velikostí předem (409 pro celý request); {@code targetType/targetId} = link všech souborů. */
+    List<Item> upload(UUID companyId, UUID uploaderId, List<MultipartFile> files, LinkTarget targetType, UUID targetId);
+}
@@ -0,0 +1,43 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Revize dokumentu (výkresy, rozpočty) ukládané po content-defined chuncích: nová revize přenese a uloží
+ * jen chunky, které firma ještě nemá. Postup klienta: {@link #params()} → rozdělit soubor stejným algoritmem
+ * → {@link #negotiate} (které chybí) → {@link #putChunk} chybějících → {@link #commit}.
+ * Každá revize je samostatný {@link StoredFile} ({@code documentId} + {@code revision}), takže download,
+ * linky i mazání fungují jako u běžného souboru.
+ */
+public interface FileRevisionService {
+
+    record ChunkingParams(String algorithm, int minSize, int avgSize, int maxSize) {}
+
+    /** @param latestRevision číslo poslední revize dokumentu (nová dostane +1) */
+    record Negotiation(UUID documentId, int latestRevision, List<String> missing) {}
+
+    ChunkingParams params();
+
+    /**
+     * Vrátí chunky (sha256), které je potřeba nahrát. Soubor, který ještě není uložený po chuncích,
+     * se při prvním vyjednávání rozdělí na serveru – úspora tak platí už pro první novou revizi.
+     */
+    Negotiation negotiate(UUID fileId, List<String> chunkSha256s);
+
+    /** Uloží chunk (ověří hash a maximální velikost); opakované nahrání je idempotentní. */
+    void putChunk(UUID companyId, String sha256, long length, InputStream data);
+
+    /** Založí novou revizi dokumentu z chunků v daném pořadí. */
+    StoredFile commit(UUID fileId, UUID uploaderId, String originalName, String mimeType, List<String> chunkSha256s);
+
+    /** Nová revize z celého souboru – chunkuje server (klient bez podpory CDC); šetří úložiště, ne přenos. */
+    StoredFile upload(UUID fileId, UUID uploaderId, MultipartFile file);
+
+    /** Všechny revize dokumentu, do kterého soubor patří (nejnovější první). */
+    List<StoredFile> revisions(UUID fileId);
+}
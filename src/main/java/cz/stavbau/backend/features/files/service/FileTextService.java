@@ -0,0 +1,26 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileTextRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fulltext obsahu nahraných dokumentů (PDF, Office, text). Extrakce běží asynchronně na omezeném poolu
+ * po commitu uploadu; vyhledávání čte jen index ({@code file_texts}), nikdy bloby.
+ */
+public interface FileTextService {
+
+    /** Zařadí soubor k indexaci (řádek ve stávající transakci) a po commitu spustí extrakci. */
+    void indexAfterCommit(StoredFile file);
+
+    /** Totéž pro dávku souborů (bulk upload) – jeden batch insert. */
+    void indexAfterCommit(List<StoredFile> files);
+
+    /** Zpracuje čekající soubory (backfill, přetečená fronta, restart); vrací počet naplánovaných. */
+    int indexPending();
+
+    List<FileTextRepository.Hit> search(UUID companyId, String query, LinkTarget targetType, UUID targetId, int limit);
+}
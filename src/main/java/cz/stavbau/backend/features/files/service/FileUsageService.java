@@ -0,0 +1,46 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.FileLink;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository.TargetRow;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Využití úložiště a kvóty firem. Čítače se mění ve stejné transakci jako soubory (upload/delete/link);
+ * u "horkých" firem (hodně zápisů za interval) se přírůstky po commitu sčítají v paměti a zapisují dávkově,
+ * aby se souběžné uploady nefrontovaly na jednom řádku.
+ */
+public interface FileUsageService {
+
+    /** {@code quotaBytes == null} = bez limitu. */
+    record Usage(UUID companyId, long fileCount, long sizeBytes, Long quotaBytes, List<TargetRow> targets) {}
+
+    /** Před přijetím dat: {@code files.quota.exceeded} (409), pokud by nahrání překročilo kvótu firmy. */
+    void checkQuota(UUID companyId, long incomingBytes);
+
+    void fileAdded(StoredFile file);
+
+    /** Dávka nových souborů jedné firmy, volitelně napojených na cíl – jeden přírůstek firmy (a cíle). */
+    void filesAdded(UUID companyId, List<StoredFile> files, LinkTarget targetType, UUID targetId);
+
+    /** {@code links} = linky mazaného souboru (odečtou se i z cílů). */
+    void fileRemoved(StoredFile file, Collection<FileLink> links);
+
+    void fileLinked(StoredFile file, LinkTarget targetType, UUID targetId);
+
+    /** Využití firmy + největší cíle (nebo jen zadaný cíl). */
+    Usage usage(UUID companyId, LinkTarget targetType, UUID targetId, int targetLimit);
+
+    /** Zapíše nasčítané přírůstky horkých firem; vrací počet zapsaných čítačů. */
+    int flush();
+
+    /** Obnoví metriky {@code files_storage_usage_*} (gauge per firma) z čítačů. */
+    void publishMetrics();
+
+    /** Přepočet čítačů ze souborů (drift); vrací počet opravených řádků. */
+    int reconcile();
+}
@@ -0,0 +1,26 @@
+package cz.stavbau.backend.features.files.service;
+
+import cz.stavbau.backend.features.files.model.ImageVariant;
+import cz.stavbau.backend.features.files.model.StoredFile;
+
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Asynchronní generování náhledů ({@link ImageVariant}) k nahraným obrázkům.
+ * Galerie pak stahuje kilobajty místo originálů z fotoaparátu.
+ */
+public interface ImageDerivativeService {
+
+    record Derivative(String storageKey, long size) {}
+
+    boolean supports(String mimeType);
+
+    /** Naplánuje vygenerování variant po commitu aktuální transakce (mimo request thread). */
+    void scheduleAfterCommit(StoredFile file);
+
+    /** Hotová varianta; pokud ještě není, naplánuje ji a vrátí empty. */
+    Optional<Derivative> find(StoredFile file, ImageVariant variant);
+
+    void writeContent(Derivative derivative, long offset, long length, OutputStream out);
+}
@@ -2,19 +2,61 @@ package cz.stavbau.backend.features.files.service;
 
 import cz.stavbau.backend.features.files.model.LinkTarget;
 import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileQueryRepository;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.UUID;
 
 public interface StoredFileService {
+
+    /** Stránka výsledku dotazu podle tagů; {@code total} = počet všech shod. */
+    record TagQueryResult(List<StoredFile> items, long total) {}
+
     StoredFile upload(UUID companyId, UUID uploaderId, MultipartFile file);
 
-    byte[] download(UUID fileId);
+    /**
+     * Založí soubor z lokálně připraveného (už zahashovaného) souboru – např. dokončený chunkovaný upload.
+     * Soubor se předá do {@code FileStorage.storeFile} a po úspěchu zaniká.
+     */
+    StoredFile uploadStaged(UUID companyId, UUID uploaderId, String originalName, String mimeType,
+                            Path staged, long size, String sha256);
+
+    /** Metadata souboru (název, MIME, velikost, sha256) – pro hlavičky downloadu. */
+    StoredFile get(UUID fileId);
+
+    /**
+     * Streamuje rozsah [offset, offset + length) obsahu souboru do výstupu bez bufferování na heapu.
+     */
+    void writeContent(StoredFile file, long offset, long length, OutputStream out);
+
+    /**
+     * Streamuje uložená data tak, jak leží v úložišti (u komprimovaných souborů gzip) –
+     * pro odeslání s {@code Content-Encoding} bez dekomprese a nové komprese.
+     */
+    void writeStored(StoredFile file, long offset, long length, OutputStream out);
 
     void delete(UUID fileId);
 
+    /** Nahradí tagy souboru (chybějící tagy firmy založí). */
     void setTags(UUID fileId, List<String> tags);
 
+    /**
+     * Soubory firmy, které mají všechny ({@code matchAll}) nebo aspoň jeden z tagů.
+     * Odpovídá z per-company bitmapového indexu; stránkuje se v pořadí indexu.
+     */
+    TagQueryResult findByTags(UUID companyId, List<String> tags, boolean matchAll, int page, int size);
+
     void link(UUID fileId, LinkTarget targetType, UUID targetId);
+
+    /**
+     * Keyset stránkování souborů firmy (nejnovější první) s filtry; {@code cursor} = {@code nextCursor}
+     * z předchozí stránky (null = první stránka).
+     */
+    FileQueryRepository.Page list(FileQueryRepository.Filter filter, String cursor, int limit);
+
+    /** Metadata všech souborů napojených na entitu (pro hromadný export). */
+    List<StoredFile> findLinked(LinkTarget targetType, UUID targetId);
 }
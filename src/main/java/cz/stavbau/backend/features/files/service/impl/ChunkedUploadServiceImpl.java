@@ -0,0 +1,275 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.common.exception.NotFoundException;
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.model.UploadSession;
+import cz.stavbau.backend.features.files.model.UploadSessionStatus;
+import cz.stavbau.backend.features.files.repo.UploadSessionRepository;
+import cz.stavbau.backend.features.files.service.ChunkedUploadService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.files.storage.ResumableSha256;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Chunky se zapisují poziční zápisem přímo do {@code <staging>/<sessionId>.part} mimo transakci
+ * (paralelní PUTy se neblokují); v DB se jen eviduje přijatý index a posouvá se průběžný SHA-256
+ * přes souvislý prefix. Dokončení pak soubor jen předá do {@code FileStorage} – bez dalšího čtení dat.
+ * Limity {@code files.upload.max-size-mb} / {@code allowed-mime} platí stejně jako pro ostatní cesty uploadu
+ * (ověří se při založení session); chunk v už zahashovaném prefixu se nepřepisuje.
+ */
+@Service
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int IO_BUFFER = 64 * 1024;
+
+    private final UploadSessionRepository sessionRepo;
+    private final StoredFileService storedFileService;
+    private final FileUsageService usage;
+    private final FileUploadProperties props;
+    private final TransactionTemplate tx;
+    private final Path stagingDir;
+    private final int defaultChunkSize;
+    private final Duration sessionTtl;
+
+    public ChunkedUploadServiceImpl(UploadSessionRepository sessionRepo,
+                                    StoredFileService storedFileService,
+                                    FileUsageService usage,
+                                    FileUploadProperties props,
+                                    TransactionTemplate tx,
+                                    @Value("${files.upload.chunked.staging-path:${files.storage.local.base-path:/mnt/data/stavbau-data/files}/uploads}") String stagingPath,
+                                    @Value("${files.upload.chunked.default-chunk-size-mb:8}") int defaultChunkSizeMb,
+                                    @Value("${files.upload.chunked.session-ttl:PT24H}") Duration sessionTtl) {
+        this.sessionRepo = sessionRepo;
+        this.storedFileService = storedFileService;
+        this.usage = usage;
+        this.props = props;
+        this.tx = tx;
+        this.stagingDir = Path.of(stagingPath);
+        this.defaultChunkSize = defaultChunkSizeMb * 1024 * 1024;
+        this.sessionTtl = sessionTtl;
+    }
+
+    @Override
+    public UploadSession create(UUID companyId, UUID uploaderId, String originalName, String mimeType,
+                                long totalSize, Integer chunkSize) {
+        int cs = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (cs < MIN_CHUNK_SIZE || cs > MAX_CHUNK_SIZE) {
+            throw ValidationException.ofField("files.upload.invalidChunkSize", "chunkSize", "range");
+        }
+        if (totalSize <= 0 || (totalSize + cs - 1) / cs > Integer.MAX_VALUE) {
+            throw ValidationException.ofField("files.upload.invalidTotalSize", "totalSize", "range");
+        }
+        if (totalSize > props.maxSizeBytes()) {
+            throw ValidationException.ofField("files.upload.tooLarge", "totalSize", "max");
+        }
+        String mime = mimeType != null ? mimeType : "application/octet-stream";
+        if (!props.allowsMime(mime)) {
+            throw ValidationException.ofField("files.upload.mimeNotAllowed", "mimeType", "allowed");
+        }
+        // kvóta hned při založení session – klient neposílá chunky souboru, který by stejně neprošel
+        usage.checkQuota(companyId, totalSize);
+        UploadSession s = new UploadSession();
+        s.setId(UUID.randomUUID());
+        s.setCompanyId(companyId);
+        s.setUploaderId(uploaderId);
+        s.setOriginalName(originalName);
+        s.setMimeType(mime);
+        s.setTotalSize(totalSize);
+        s.setChunkSize(cs);
+        s.setHashedBytes(0);
+        s.setStatus(UploadSessionStatus.OPEN);
+        s.setCreatedAt(Instant.now());
+        s.setExpiresAt(s.getCreatedAt().plus(sessionTtl));
+        try {
+            Files.createDirectories(stagingDir);
+            // předalokace není nutná – poziční zápisy si soubor rozšíří samy
+            Files.deleteIfExists(partFile(s.getId()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return tx.execute(st -> sessionRepo.save(s));
+    }
+
+    @Override
+    public SessionState writeChunk(UUID sessionId, long offset, long length, InputStream data) {
+        UploadSession s = sessionRepo.findById(sessionId)
+                .orElseThrow(() -> new NotFoundException("files.upload.notFound"));
+        requireOpen(s);
+        if (offset < 0 || offset >= s.getTotalSize() || offset % s.getChunkSize() != 0) {
+            throw ValidationException.ofField("files.upload.invalidOffset", "offset", "invalid");
+        }
+        if (offset < s.getHashedBytes()) {
+            // prefix už je v průběžném SHA-256 – přepsaný chunk by neodpovídal uloženému hashi
+            throw new ConflictException("files.upload.chunkAlreadyHashed");
+        }
+        int index = (int) (offset / s.getChunkSize());
+        long expected = Math.min(s.getChunkSize(), s.getTotalSize() - offset);
+        if (length >= 0 && length != expected) {
+            throw ValidationException.ofField("files.upload.invalidChunkLength", "length", "invalid");
+        }
+
+        writeAt(partFile(sessionId), offset, expected, data);
+
+        tx.executeWithoutResult(st -> sessionRepo.insertChunk(sessionId, index, (int) expected));
+        tx.executeWithoutResult(st -> sessionRepo.tryLockById(sessionId).ifPresent(this::advanceHash));
+        return status(sessionId);
+    }
+
+    @Override
+    public SessionState status(UUID sessionId) {
+        UploadSession s = sessionRepo.findById(sessionId)
+                .orElseThrow(() -> new NotFoundException("files.upload.notFound"));
+        return new SessionState(s, sessionRepo.findChunkIndexes(sessionId));
+    }
+
+    @Override
+    public StoredFile complete(UUID sessionId) {
+        return tx.execute(st -> {
+            UploadSession s = sessionRepo.lockById(sessionId)
+                    .orElseThrow(() -> new NotFoundException("files.upload.notFound"));
+            requireOpen(s);
+            advanceHash(s);
+            if (s.getHashedBytes() != s.getTotalSize()) {
+                throw new ConflictException("files.upload.incomplete");
+            }
+            String sha256 = ResumableSha256.restore(s.getHashState()).digestHex();
+            StoredFile sf = storedFileService.uploadStaged(s.getCompanyId(), s.getUploaderId(),
+                    s.getOriginalName(), s.getMimeType(), partFile(sessionId), s.getTotalSize(), sha256);
+            s.setStatus(UploadSessionStatus.COMPLETED);
+            s.setFileId(sf.getId());
+            s.setHashState(null);
+            return sf;
+        });
+    }
+
+    @Override
+    public void abort(UUID sessionId) {
+        tx.executeWithoutResult(st -> {
+            UploadSession s = sessionRepo.lockById(sessionId)
+                    .orElseThrow(() -> new NotFoundException("files.upload.notFound"));
+            requireOpen(s);
+            s.setStatus(UploadSessionStatus.ABORTED);
+            s.setHashState(null);
+        });
+        deletePart(sessionId);
+    }
+
+    @Override
+    public int purgeExpired() {
+        List<UUID> expired = sessionRepo.findExpiredOpen(Instant.now());
+        int purged = 0;
+        for (UUID id : expired) {
+            Boolean done = tx.execute(st -> sessionRepo.tryLockById(id)
+                    .filter(s -> s.getStatus() == UploadSessionStatus.OPEN)
+                    .map(s -> {
+                        s.setStatus(UploadSessionStatus.ABORTED);
+                        s.setHashState(null);
+                        return true;
+                    })
+                    .orElse(false));
+            if (Boolean.TRUE.equals(done)) {
+                deletePart(id);
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    // ------- Internals --------
+
+    /** Posune průběžný hash přes všechny souvisle přijaté chunky (volat pod lockem session). */
+    private void advanceHash(UploadSession s) {
+        if (s.getStatus() != UploadSessionStatus.OPEN || s.getHashedBytes() >= s.getTotalSize()) {
+            return;
+        }
+        int next = (int) (s.getHashedBytes() / s.getChunkSize());
+        List<Integer> received = sessionRepo.findChunkIndexesFrom(s.getId(), next);
+        if (received.isEmpty() || received.get(0) != next) {
+            return;
+        }
+        ResumableSha256 sha = ResumableSha256.restore(s.getHashState());
+        long pos = s.getHashedBytes();
+        try (FileChannel ch = FileChannel.open(partFile(s.getId()), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(IO_BUFFER);
+            for (int idx : received) {
+                if (idx != next) break;
+                long end = Math.min(pos + s.getChunkSize(), s.getTotalSize());
+                while (pos < end) {
+                    buf.clear().limit((int) Math.min(IO_BUFFER, end - pos));
+                    int n = ch.read(buf, pos);
+                    if (n < 0) throw new IOException("Unexpected EOF in " + s.getId());
+                    sha.update(buf.array(), 0, n);
+                    pos += n;
+                }
+                next++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        s.setHashedBytes(pos);
+        s.setHashState(sha.exportState());
+    }
+
+    private void writeAt(Path part, long offset, long expected, InputStream data) {
+        try (FileChannel ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            byte[] buf = new byte[IO_BUFFER];
+            long pos = offset;
+            long remaining = expected;
+            while (remaining > 0) {
+                int n = data.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (n < 0) break;
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                while (bb.hasRemaining()) {
+                    pos += ch.write(bb, pos);
+                }
+                remaining -= n;
+            }
+            if (remaining > 0 || data.read() >= 0) {
+                throw ValidationException.ofField("files.upload.invalidChunkLength", "length", "invalid");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void requireOpen(UploadSession s) {
+        if (s.getStatus() != UploadSessionStatus.OPEN) {
+            throw new ConflictException("files.upload.notOpen");
+        }
+        if (s.getExpiresAt().isBefore(Instant.now())) {
+            throw new ConflictException("files.upload.expired");
+        }
+    }
+
+    private Path partFile(UUID sessionId) {
+        return stagingDir.resolve(sessionId + ".part");
+    }
+
+    private void deletePart(UUID sessionId) {
+        try {
+            Files.deleteIfExists(partFile(sessionId));
+        } catch (IOException ignored) {
+            // nevadí – zbytek uklidí další běh
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.FileArchiveService;
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP export s omezeným read-ahead: čtecí vlákno tahá data z {@link FileStorage}
+ * do fronty bloků o pevné kapacitě, vlákno response je zapisuje do {@link ZipOutputStream}.
+ * Latence úložiště a síť klienta se tak překrývají, paměť na export je shora omezená.
+ * Čtenář je virtuální vlákno per export – pomalý klient blokuje jen svůj export, ne sdílený pool;
+ * když čtenář nedodá data do {@code files.export.read-timeout} (zaseknuté úložiště), export selže.
+ * <p>
+ * Již komprimovaná média (JPEG, PDF, ZIP/Office…) se nekomprimují znovu:
+ * - malé soubory (celé v jednom bloku) → STORED (CRC se spočte při čtení)
+ * - větší → DEFLATED s úrovní 0 ({@code ZipOutputStream} u STORED vyžaduje CRC předem, což by znamenalo číst soubor dvakrát)
+ */
+@Service
+public class FileArchiveServiceImpl implements FileArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileArchiveServiceImpl.class);
+
+    private static final Set<String> COMPRESSED_MIME_PREFIXES = Set.of("image/", "video/", "audio/");
+    private static final Set<String> COMPRESSED_MIME = Set.of(
+            "application/pdf", "application/zip", "application/gzip", "application/x-gzip",
+            "application/x-7z-compressed", "application/vnd.rar", "application/x-rar-compressed",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "application/vnd.oasis.opendocument.text", "application/vnd.oasis.opendocument.spreadsheet");
+
+    private final FileStorage storage;
+    private final ExecutorService readers;
+    private final int blockSize;
+    private final int queueBlocks;
+    private final Duration readTimeout;
+
+    /** Prvek fronty: začátek položky, blok dat, konec, chyba čtení. */
+    private sealed interface Item permits Start, Block, End, Failure {}
+    private record Start(StoredFile file, byte[] whole, long crc) implements Item {}
+    private record Block(byte[] data, int len) implements Item {}
+    private record End() implements Item {}
+    private record Failure(Exception error) implements Item {}
+
+    private static final End END = new End();
+
+    public FileArchiveServiceImpl(FileStorage storage,
+                                  @Value("${files.export.block-size-kb:256}") int blockSizeKb,
+                                  @Value("${files.export.read-ahead-mb:8}") int readAheadMb,
+                                  @Value("${files.export.read-timeout:PT60S}") Duration readTimeout) {
+        this.storage = storage;
+        this.blockSize = blockSizeKb * 1024;
+        this.queueBlocks = Math.max(2, (readAheadMb * 1024) / blockSizeKb);
+        this.readTimeout = readTimeout;
+        this.readers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("files-export-", 1).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        readers.shutdownNow();
+    }
+
+    @Override
+    public void writeZip(List<StoredFile> files, OutputStream out) throws IOException {
+        BlockingQueue<Item> queue = new ArrayBlockingQueue<>(queueBlocks);
+        Future<?> reader = readers.submit(() -> readAll(files, queue));
+        try {
+            writeAll(queue, out);
+        } finally {
+            reader.cancel(true); // klient se odpojil / chyba → ukončit čtení
+        }
+    }
+
+    // ------- Internals --------
+
+    private void readAll(List<StoredFile> files, BlockingQueue<Item> queue) {
+        try {
+            for (StoredFile f : files) {
+                if (f.getSizeBytes() <= blockSize) {
+                    byte[] whole;
+                    try (InputStream in = open(f)) {
+                        whole = in.readAllBytes();
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(whole);
+                    queue.put(new Start(f, whole, crc.getValue()));
+                    continue;
+                }
+                queue.put(new Start(f, null, -1));
+                try (InputStream in = open(f)) {
+                    while (true) {
+                        byte[] buf = new byte[blockSize];
+                        int n = in.readNBytes(buf, 0, blockSize);
+                        if (n <= 0) break;
+                        queue.put(new Block(buf, n));
+                        if (n < blockSize) break;
+                    }
+                }
+            }
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // čtenář je zrušený, pokud response vlákno skončí – offer s timeoutem nevisí donekonečna
+            try {
+                queue.offer(new Failure(e), 30, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private InputStream open(StoredFile f) throws IOException {
+        return CompressingFileStorage.decode(storage.read(f.getStorageKey()), f.getContentEncoding());
+    }
+
+    private void writeAll(BlockingQueue<Item> queue, OutputStream out) throws IOException {
+        Set<String> names = new HashSet<>();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        boolean entryOpen = false;
+        int count = 0;
+        while (true) {
+            Item item;
+            try {
+                item = queue.poll(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("ZIP export interrupted");
+            }
+            if (item == null) {
+                throw new IOException("ZIP export stalled: no data from storage for " + readTimeout);
+            }
+            if (item instanceof Failure fail) {
+                throw new IOException("ZIP export failed", fail.error());
+            }
+            if (entryOpen && !(item instanceof Block)) {
+                zip.closeEntry();
+                entryOpen = false;
+            }
+            if (item instanceof End) {
+                break;
+            }
+            if (item instanceof Block b) {
+                zip.write(b.data(), 0, b.len());
+            } else if (item instanceof Start s) {
+                StoredFile f = s.file();
+                ZipEntry e = new ZipEntry(uniqueName(names, f.getOriginalName()));
+                if (f.getCreatedAt() != null) {
+                    e.setTime(f.getCreatedAt().toEpochMilli());
+                }
+                boolean compressed = isCompressed(f.getMimeType());
+                if (s.whole() != null && compressed) {
+                    e.setMethod(ZipEntry.STORED);
+                    e.setSize(s.whole().length);
+                    e.setCompressedSize(s.whole().length);
+                    e.setCrc(s.crc());
+                } else {
+                    e.setMethod(ZipEntry.DEFLATED);
+                    zip.setLevel(compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                }
+                zip.putNextEntry(e);
+                count++;
+                if (s.whole() != null) {
+                    zip.write(s.whole());
+                    zip.closeEntry();
+                } else {
+                    entryOpen = true;
+                }
+            }
+        }
+        zip.finish();
+        zip.flush();
+        log.debug("files.export: zip entries={}", count);
+    }
+
+    static boolean isCompressed(String mimeType) {
+        if (mimeType == null) return false;
+        String m = mimeType.toLowerCase(Locale.ROOT);
+        if (m.startsWith("image/svg") || m.startsWith("image/bmp") || m.startsWith("image/tiff")) return false;
+        for (String p : COMPRESSED_MIME_PREFIXES) {
+            if (m.startsWith(p)) return true;
+        }
+        return COMPRESSED_MIME.contains(m);
+    }
+
+    /** Název položky bez cest; duplicitní názvy dostanou suffix " (2)", " (3)"… */
+    static String uniqueName(Set<String> used, String originalName) {
+        String name = originalName == null || originalName.isBlank() ? "file" : originalName;
+        name = name.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1);
+        if (name.isBlank() || name.equals(".") || name.equals("..")) name = "file";
+        if (used.add(name)) return name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + " (" + i + ")" + ext;
+            if (used.add(candidate)) return candidate;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import cz.stavbau.backend.features.files.model.FileLink;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileBatchRepository;
+import cz.stavbau.backend.features.files.repo.StoredFileRepository;
+import cz.stavbau.backend.features.files.service.FileBulkUploadService;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Dvě fáze:
+ * 1. zápis do úložiště mimo transakci – každý soubor na vlastním virtuálním vlákně, souběh omezuje sdílený
+ *    semafor ({@code files.upload.bulk.parallelism}) pro celý uzel; SHA-256 počítá úložiště během zápisu
+ * 2. jedna transakce: locky storage klíčů (seřazené, CAS bloby mohou být sdílené), kontrola existence blobů,
+ *    batch insert {@code stored_files} + {@code file_links}, jeden přírůstek čítačů využití
+ * Bloby souborů, jejichž registrace selže, uklidí rekonciliace úložiště (stejně jako u jednotlivého uploadu).
+ */
+@Service
+public class FileBulkUploadServiceImpl implements FileBulkUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileBulkUploadServiceImpl.class);
+
+    private final FileStorage storage;
+    private final StoredFileRepository fileRepo;
+    private final FileBatchRepository batchRepo;
+    private final FileUsageService usage;
+    private final ImageDerivativeService derivatives;
+    private final FileTextService texts;
+    private final FileUploadProperties props;
+    private final TransactionTemplate tx;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("files-bulk-", 0).factory());
+
+    public FileBulkUploadServiceImpl(FileStorage storage,
+                                     StoredFileRepository fileRepo,
+                                     FileBatchRepository batchRepo,
+                                     FileUsageService usage,
+                                     ImageDerivativeService derivatives,
+                                     FileTextService texts,
+                                     FileUploadProperties props,
+                                     TransactionTemplate tx) {
+        this.storage = storage;
+        this.fileRepo = fileRepo;
+        this.batchRepo = batchRepo;
+        this.usage = usage;
+        this.derivatives = derivatives;
+        this.texts = texts;
+        this.props = props;
+        this.tx = tx;
+        this.permits = new Semaphore(Math.max(1, props.getBulk().getParallelism()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public List<Item> upload(UUID companyId, UUID uploaderId, List<MultipartFile> files,
+                             LinkTarget targetType, UUID targetId) {
+        if (files == null || files.isEmpty()) {
+            throw ValidationException.ofField("files.bulk.empty", "files", "notEmpty");
+        }
+        if (files.size() > props.getBulk().getMaxFiles()) {
+            throw ValidationException.ofField("files.bulk.tooManyFiles", "files", "size");
+        }
+        if ((targetType == null) != (targetId == null)) {
+            throw ValidationException.ofField("files.bulk.invalidTarget", "targetId", "required");
+        }
+
+        Item[] results = new Item[files.size()];
+        List<Integer> accepted = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile f = files.get(i);
+            String rejected = f.isEmpty() ? "files.upload.empty"
+                    : f.getSize() > props.maxSizeBytes() ? "files.upload.tooLarge"
+                    : !props.allowsMime(mimeType(f)) ? "files.upload.mimeNotAllowed"
+                    : null;
+            if (rejected != null) {
+                results[i] = new Item(i, f.getOriginalFilename(), Status.REJECTED, null, rejected);
+            } else {
+                accepted.add(i);
+                total += f.getSize();
+            }
+        }
+        if (accepted.isEmpty()) return List.of(results);
+        usage.checkQuota(companyId, total);
+
+        // 1) úložiště – souběžně, mimo transakci
+        List<CompletableFuture<FileStorage.StoreResult>> stores = new ArrayList<>(accepted.size());
+        for (int i : accepted) {
+            MultipartFile f = files.get(i);
+            stores.add(CompletableFuture.supplyAsync(() -> store(companyId, f), executor));
+        }
+        List<StoredFile> created = new ArrayList<>(accepted.size());
+        List<Integer> createdIndex = new ArrayList<>(accepted.size());
+        for (int k = 0; k < accepted.size(); k++) {
+            int i = accepted.get(k);
+            MultipartFile f = files.get(i);
+            try {
+                FileStorage.StoreResult res = stores.get(k).join();
+                created.add(newFile(companyId, uploaderId, f, res));
+                createdIndex.add(i);
+            } catch (Exception e) {
+                log.warn("files.bulk: store failed name={} reason={}", f.getOriginalFilename(), e.toString());
+                results[i] = new Item(i, f.getOriginalFilename(), Status.FAILED, null, "files.upload.failed");
+            }
+        }
+
+        if (created.isEmpty()) return List.of(results);
+
+        // 2) metadata – jedna transakce, jedna dávka
+        Set<UUID> registered = tx.execute(st -> register(companyId, created, targetType, targetId));
+        for (int k = 0; k < created.size(); k++) {
+            int i = createdIndex.get(k);
+            StoredFile sf = created.get(k);
+            results[i] = registered.contains(sf.getId())
+                    ? new Item(i, sf.getOriginalName(), Status.CREATED, sf, null)
+                    : new Item(i, sf.getOriginalName(), Status.FAILED, null, "files.blob.concurrentlyDeleted");
+        }
+        return List.of(results);
+    }
+
+    private FileStorage.StoreResult store(UUID companyId, MultipartFile f) {
+        permits.acquireUninterruptibly();
+        try (InputStream in = f.getInputStream()) {
+            return storage.store(companyId.toString(), f.getOriginalFilename(), mimeType(f), f.getSize(), in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Set<UUID> register(UUID companyId, List<StoredFile> files, LinkTarget targetType, UUID targetId) {
+        // locky v pevném pořadí (souběžný bulk se stejnými CAS bloby se nezablokuje)
+        for (String key : new TreeSet<>(files.stream().map(StoredFile::getStorageKey).toList())) {
+            fileRepo.lockStorageKey(key);
+        }
+        List<StoredFile> ok = new ArrayList<>(files.size());
+        for (StoredFile sf : files) {
+            if (storage.exists(sf.getStorageKey())) ok.add(sf);
+        }
+        batchRepo.insertFiles(ok);
+        if (targetType != null) {
+            List<FileLink> links = new ArrayList<>(ok.size());
+            for (StoredFile sf : ok) {
+                FileLink link = new FileLink(sf.getId(), targetType, targetId);
+                link.setFileCreatedAt(sf.getCreatedAt());
+                links.add(link);
+            }
+            batchRepo.insertLinks(links);
+        }
+        usage.filesAdded(companyId, ok, targetType, targetId);
+        ok.forEach(derivatives::scheduleAfterCommit);
+        texts.indexAfterCommit(ok);
+        return ok.stream().map(StoredFile::getId).collect(Collectors.toSet());
+    }
+
+    private static StoredFile newFile(UUID companyId, UUID uploaderId, MultipartFile f, FileStorage.StoreResult res) {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setCompanyId(companyId);
+        sf.setUploaderId(uploaderId);
+        sf.setOriginalName(f.getOriginalFilename());
+        sf.setMimeType(mimeType(f));
+        sf.setSizeBytes(f.getSize());
+        sf.setSha256(res.sha256());
+        sf.setStorageKey(res.storageKey());
+        sf.setContentEncoding(res.contentEncoding());
+        sf.setStoredSizeBytes(res.storedSize() >= 0 ? res.storedSize() : null);
+        sf.setCreatedAt(Instant.now());
+        return sf;
+    }
+
+    private static String mimeType(MultipartFile f) {
+        return f.getContentType() != null ? f.getContentType() : "application/octet-stream";
+    }
+}
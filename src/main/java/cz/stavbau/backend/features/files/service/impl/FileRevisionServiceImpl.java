@@ -0,0 +1,287 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.common.exception.NotFoundException;
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Kind;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Reason;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Tombstone;
+import cz.stavbau.backend.features.files.repo.FileChunkRepository;
+import cz.stavbau.backend.features.files.repo.StoredFileRepository;
+import cz.stavbau.backend.features.files.service.FileRevisionService;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage.ChunkRef;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage.Manifest;
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
+import cz.stavbau.backend.features.files.storage.ContentDefinedChunker;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+
+@Service
+public class FileRevisionServiceImpl implements FileRevisionService {
+
+    private final StoredFileRepository fileRepo;
+    private final FileChunkRepository chunkRepo;
+    private final BlobTombstoneRepository tombstoneRepo;
+    private final FileStorage storage;
+    private final ChunkedFileStorage chunks;
+    private final ImageDerivativeService derivatives;
+    private final FileTextService texts;
+    private final FileUsageService usage;
+    private final ContentDefinedChunker chunker = new ContentDefinedChunker();
+
+    public FileRevisionServiceImpl(StoredFileRepository fileRepo,
+                                   FileChunkRepository chunkRepo,
+                                   BlobTombstoneRepository tombstoneRepo,
+                                   FileStorage storage,
+                                   ImageDerivativeService derivatives,
+                                   FileTextService texts,
+                                   FileUsageService usage) {
+        this.fileRepo = fileRepo;
+        this.chunkRepo = chunkRepo;
+        this.tombstoneRepo = tombstoneRepo;
+        this.storage = storage;
+        // manifesty a chunky jdou přímo na backend (bez kompresní vrstvy – chunky jsou typicky PDF/DWG)
+        this.chunks = new ChunkedFileStorage(storage.backend());
+        this.derivatives = derivatives;
+        this.texts = texts;
+        this.usage = usage;
+    }
+
+    @Override
+    public ChunkingParams params() {
+        return new ChunkingParams(ContentDefinedChunker.describe(),
+                ContentDefinedChunker.MIN_SIZE, ContentDefinedChunker.AVG_SIZE, ContentDefinedChunker.MAX_SIZE);
+    }
+
+    @Override
+    @Transactional
+    public Negotiation negotiate(UUID fileId, List<String> chunkSha256s) {
+        List<String> shas = validShas(chunkSha256s);
+        StoredFile base = load(fileId);
+        UUID documentId = startDocument(base);
+        ensureChunked(base);
+        Set<String> known = chunkRepo.knownChunks(base.getCompanyId(), shas);
+        List<String> missing = shas.stream().distinct().filter(s -> !known.contains(s)).toList();
+        return new Negotiation(documentId, fileRepo.maxRevision(documentId), missing);
+    }
+
+    @Override
+    @Transactional
+    public void putChunk(UUID companyId, String sha256, long length, InputStream data) {
+        if (!ChunkedFileStorage.isSha256(sha256)) {
+            throw ValidationException.ofField("files.revision.invalidChunk", "sha256", "pattern");
+        }
+        if (length > ContentDefinedChunker.MAX_SIZE) {
+            throw ValidationException.ofField("files.revision.chunkTooLarge", "chunk", "size");
+        }
+        byte[] buf;
+        try {
+            // chunk má nejvýš MAX_SIZE – bufferuje se celý, hash se musí ověřit dřív, než ho uvidí ostatní
+            buf = data.readNBytes(ContentDefinedChunker.MAX_SIZE + 1);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (buf.length > ContentDefinedChunker.MAX_SIZE) {
+            throw ValidationException.ofField("files.revision.chunkTooLarge", "chunk", "size");
+        }
+        if (!sha256.equals(hex(digest().digest(buf)))) {
+            throw ValidationException.ofField("files.revision.chunkHashMismatch", "sha256", "mismatch");
+        }
+        storeChunk(companyId, sha256, buf, 0, buf.length);
+    }
+
+    @Override
+    @Transactional
+    public StoredFile commit(UUID fileId, UUID uploaderId, String originalName, String mimeType, List<String> chunkSha256s) {
+        List<String> shas = validShas(chunkSha256s);
+        if (shas.isEmpty()) {
+            throw ValidationException.ofField("files.revision.noChunks", "chunks", "notEmpty");
+        }
+        StoredFile base = load(fileId);
+        UUID documentId = startDocument(base);
+
+        // chunky zamknout seřazené (jako sweeper) a ověřit, že je firma má a mezitím nezmizely
+        for (String sha : new TreeSet<>(shas)) {
+            fileRepo.lockStorageKey(ChunkedFileStorage.chunkKey(sha));
+            if (!chunkRepo.isRegistered(base.getCompanyId(), sha) || !chunks.exists(ChunkedFileStorage.chunkKey(sha))) {
+                throw new ConflictException("files.revision.chunkMissing");
+            }
+        }
+        MessageDigest md = digest();
+        List<ChunkRef> refs = new ArrayList<>(shas.size());
+        long total = 0;
+        for (String sha : shas) {
+            try (InputStream in = new DigestInputStream(chunks.read(ChunkedFileStorage.chunkKey(sha)), md)) {
+                long n = in.transferTo(OutputStream.nullOutputStream());
+                refs.add(new ChunkRef(sha, (int) n));
+                total += n;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        usage.checkQuota(base.getCompanyId(), total);
+        return saveRevision(base, documentId, uploaderId, originalName, mimeType, refs, total, hex(md.digest()));
+    }
+
+    @Override
+    @Transactional
+    public StoredFile upload(UUID fileId, UUID uploaderId, MultipartFile file) {
+        StoredFile base = load(fileId);
+        usage.checkQuota(base.getCompanyId(), file.getSize());
+        UUID documentId = startDocument(base);
+        MessageDigest md = digest();
+        List<ChunkRef> refs = new ArrayList<>();
+        try (InputStream in = file.getInputStream()) {
+            chunker.split(in, (buf, off, len) -> {
+                md.update(buf, off, len);
+                refs.add(storeChunk(base.getCompanyId(), null, buf, off, len));
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (refs.isEmpty()) {
+            throw ValidationException.ofField("files.revision.noChunks", "file", "notEmpty");
+        }
+        long total = refs.stream().mapToLong(ChunkRef::size).sum();
+        return saveRevision(base, documentId, uploaderId, file.getOriginalFilename(), file.getContentType(),
+                refs, total, hex(md.digest()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StoredFile> revisions(UUID fileId) {
+        StoredFile base = load(fileId);
+        return base.getDocumentId() == null ? List.of(base) : fileRepo.findByDocumentIdOrderByRevisionDesc(base.getDocumentId());
+    }
+
+    private StoredFile load(UUID fileId) {
+        return fileRepo.findById(fileId).orElseThrow(() -> new NotFoundException("files.notFound"));
+    }
+
+    /** Soubor bez revizí se stává revizí 1 nového dokumentu; vše pod lockem dokumentu (číslování revizí). */
+    private UUID startDocument(StoredFile base) {
+        UUID documentId = base.getDocumentId() != null ? base.getDocumentId() : base.getId();
+        fileRepo.lockStorageKey("doc:" + documentId);
+        if (base.getDocumentId() == null) {
+            base.setDocumentId(documentId);
+            base.setRevision(1);
+            fileRepo.save(base);
+        }
+        return documentId;
+    }
+
+    /**
+     * Převede soubor uložený vcelku na manifest z chunků (jednorázově, při prvním vyjednávání revize).
+     * Původní blob dostane tombstone, pokud už na něj nic neukazuje (CAS).
+     */
+    private void ensureChunked(StoredFile base) {
+        String oldKey = base.getStorageKey();
+        if (ChunkedFileStorage.isManifest(oldKey)) return;
+        fileRepo.lockStorageKey(oldKey);
+        MessageDigest md = digest();
+        List<ChunkRef> refs = new ArrayList<>();
+        try (InputStream in = CompressingFileStorage.decode(storage.read(oldKey), base.getContentEncoding())) {
+            chunker.split(in, (buf, off, len) -> {
+                md.update(buf, off, len);
+                refs.add(storeChunk(base.getCompanyId(), null, buf, off, len));
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        long total = refs.stream().mapToLong(ChunkRef::size).sum();
+        base.setStorageKey(writeManifest(hex(md.digest()), refs, total));
+        base.setContentEncoding(null);
+        base.setStoredSizeBytes(null);
+        fileRepo.save(base);
+        fileRepo.flush();
+        if (fileRepo.countByStorageKey(oldKey) == 0) {
+            tombstoneRepo.enqueue(List.of(new Tombstone(oldKey, Kind.BLOB, base.getSha256(), base.getSizeBytes(), Reason.DELETE, 0)));
+        }
+    }
+
+    private ChunkRef storeChunk(UUID companyId, String knownSha, byte[] buf, int off, int len) {
+        String sha = knownSha != null ? knownSha : hex(sha256(buf, off, len));
+        String key = ChunkedFileStorage.chunkKey(sha);
+        fileRepo.lockStorageKey(key);
+        if (!chunks.exists(key)) {
+            chunks.putChunk(sha, new ByteArrayInputStream(buf, off, len));
+        }
+        chunkRepo.register(companyId, sha, len);
+        return new ChunkRef(sha, len);
+    }
+
+    private String writeManifest(String contentSha, List<ChunkRef> refs, long total) {
+        String key = ChunkedFileStorage.manifestKey(contentSha);
+        fileRepo.lockStorageKey(key);
+        chunks.putManifest(contentSha, new Manifest(total, refs));
+        chunkRepo.insertManifest(key, refs);
+        return key;
+    }
+
+    private StoredFile saveRevision(StoredFile base, UUID documentId, UUID uploaderId, String originalName,
+                                    String mimeType, List<ChunkRef> refs, long total, String contentSha) {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setCompanyId(base.getCompanyId());
+        sf.setUploaderId(uploaderId);
+        sf.setOriginalName(originalName != null && !originalName.isBlank() ? originalName : base.getOriginalName());
+        sf.setMimeType(mimeType != null && !mimeType.isBlank() ? mimeType : base.getMimeType());
+        sf.setSizeBytes(total);
+        sf.setSha256(contentSha);
+        sf.setStorageKey(writeManifest(contentSha, refs, total));
+        sf.setCreatedAt(Instant.now());
+        sf.setDocumentId(documentId);
+        sf.setRevision(fileRepo.maxRevision(documentId) + 1);
+        StoredFile saved = fileRepo.save(sf);
+        derivatives.scheduleAfterCommit(saved);
+        texts.indexAfterCommit(saved);
+        usage.fileAdded(saved);
+        return saved;
+    }
+
+    private static List<String> validShas(List<String> shas) {
+        if (shas == null) return List.of();
+        for (String s : shas) {
+            if (!ChunkedFileStorage.isSha256(s)) {
+                throw ValidationException.ofField("files.revision.invalidChunk", "chunks", "pattern");
+            }
+        }
+        return shas;
+    }
+
+    private static byte[] sha256(byte[] buf, int off, int len) {
+        MessageDigest md = digest();
+        md.update(buf, off, len);
+        return md.digest();
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+}
@@ -0,0 +1,160 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cz.stavbau.backend.features.files.repo.FileTagJoinRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * In-memory invertovaný index tagů per firma: soubor dostane v rámci firmy pořadové číslo (ordinal)
+ * a každý tag drží {@link BitSet} ordinálů. "Soubory se všemi/některým z tagů" je pak AND/OR bitmap
+ * – u desítek tisíc fotek ze stavby jde o mikrosekundy a pár KB na tag.
+ * <p>
+ * Index se staví líně z DB při prvním dotazu a po commitu se udržuje inkrementálně ({@link #replace}, {@link #remove}).
+ * Změny z jiných uzlů se projeví nejpozději po {@code files.tags.index.ttl} (expirace → rebuild).
+ */
+@Component
+public class FileTagIndex {
+
+    public record Match(long total, List<UUID> fileIds) {}
+
+    private final FileTagJoinRepository tagJoinRepo;
+    private final Cache<UUID, CompanyIndex> cache;
+
+    public FileTagIndex(FileTagJoinRepository tagJoinRepo,
+                        @Value("${files.tags.index.ttl:PT10M}") Duration ttl,
+                        @Value("${files.tags.index.max-companies:1000}") long maxCompanies) {
+        this.tagJoinRepo = tagJoinRepo;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxCompanies)
+                .build();
+    }
+
+    /**
+     * Soubory firmy, které mají všechny ({@code matchAll}) / aspoň jeden z tagů; stránkováno v pořadí indexu.
+     */
+    public Match query(UUID companyId, Collection<String> tags, boolean matchAll, int page, int size) {
+        CompanyIndex idx = cache.get(companyId, this::load);
+        return idx.query(tags, matchAll, (long) page * size, size);
+    }
+
+    /** Po commitu nahradí tagy souboru v indexu (pokud je index firmy načtený). */
+    public void replace(UUID companyId, UUID fileId, Collection<String> tags) {
+        Set<String> copy = Set.copyOf(tags);
+        afterCommit(() -> cache.asMap().computeIfPresent(companyId, (k, idx) -> {
+            idx.replace(fileId, copy);
+            return idx;
+        }));
+    }
+
+    /** Po commitu odebere soubor z indexu. */
+    public void remove(UUID companyId, UUID fileId) {
+        afterCommit(() -> cache.asMap().computeIfPresent(companyId, (k, idx) -> {
+            idx.remove(fileId);
+            return idx;
+        }));
+    }
+
+    public void invalidate(UUID companyId) {
+        cache.invalidate(companyId);
+    }
+
+    private CompanyIndex load(UUID companyId) {
+        CompanyIndex idx = new CompanyIndex();
+        for (var row : tagJoinRepo.findRowsByCompanyId(companyId)) {
+            idx.add(row.getFileId(), row.getName());
+        }
+        return idx;
+    }
+
+    // computeIfPresent čeká na případný souběžný load téže firmy → změna se nikdy neztratí
+    // (replace/remove jsou idempotentní, takže nevadí, když ji load už obsahuje).
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** Index jedné firmy; čtení i zápisy jsou krátké, stačí monitor. */
+    static final class CompanyIndex {
+        private final Map<UUID, Integer> ordinals = new HashMap<>();
+        private final List<UUID> files = new ArrayList<>();
+        private final Map<String, BitSet> postings = new HashMap<>();
+
+        synchronized void add(UUID fileId, String tag) {
+            int ord = ordinal(fileId);
+            postings.computeIfAbsent(tag, t -> new BitSet()).set(ord);
+        }
+
+        synchronized void replace(UUID fileId, Set<String> tags) {
+            int ord = ordinal(fileId);
+            clear(ord);
+            for (String t : tags) {
+                postings.computeIfAbsent(t, k -> new BitSet()).set(ord);
+            }
+        }
+
+        synchronized void remove(UUID fileId) {
+            Integer ord = ordinals.remove(fileId);
+            if (ord == null) return;
+            clear(ord);
+            files.set(ord, null); // díra se zacelí při dalším rebuildu
+        }
+
+        synchronized Match query(Collection<String> tags, boolean matchAll, long offset, int limit) {
+            BitSet acc = null;
+            for (String t : tags) {
+                BitSet bits = postings.get(t);
+                if (bits == null) {
+                    if (matchAll) return new Match(0, List.of());
+                    continue;
+                }
+                if (acc == null) {
+                    acc = (BitSet) bits.clone();
+                } else if (matchAll) {
+                    acc.and(bits);
+                } else {
+                    acc.or(bits);
+                }
+            }
+            if (acc == null) return new Match(0, List.of());
+
+            List<UUID> out = new ArrayList<>(Math.min(limit, 256));
+            long skipped = 0;
+            for (int i = acc.nextSetBit(0); i >= 0 && out.size() < limit; i = acc.nextSetBit(i + 1)) {
+                if (skipped++ >= offset) out.add(files.get(i));
+            }
+            return new Match(acc.cardinality(), out);
+        }
+
+        private int ordinal(UUID fileId) {
+            return ordinals.computeIfAbsent(fileId, id -> {
+                files.add(id);
+                return files.size() - 1;
+            });
+        }
+
+        private void clear(int ord) {
+            var it = postings.values().iterator();
+            while (it.hasNext()) {
+                BitSet bits = it.next();
+                bits.clear(ord);
+                if (bits.isEmpty()) it.remove();
+            }
+        }
+    }
+}
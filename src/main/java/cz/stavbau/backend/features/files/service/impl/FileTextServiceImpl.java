@@ -0,0 +1,209 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileTextRepository;
+import cz.stavbau.backend.features.files.repo.FileTextRepository.Status;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.text.DocumentTextExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extrakce textu na omezeném poolu (pevný počet vláken + omezená fronta) – stejný model jako náhledy:
+ * - upload zapíše PENDING řádek ve své transakci, po commitu se soubor hned zkusí zpracovat
+ * - plná fronta / pád uzlu nevadí: řádek zůstane PENDING a doplní ho {@code FileTextIndexJob}
+ * - každý soubor se zpracuje jednou (claim s lease), extrakce je omezená velikostí zdroje i textu
+ * - nejvýš {@code max-attempts} pokusů; soubor, který extrakci shodí (StackOverflowError/OOM), končí hned jako FAILED
+ */
+@Service
+public class FileTextServiceImpl implements FileTextService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileTextServiceImpl.class);
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    private final FileTextRepository textRepo;
+    private final FileStorage storage;
+    private final DocumentTextExtractor extractor;
+    private final boolean enabled;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final ThreadPoolExecutor executor;
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry meterRegistry;
+    private final Timer extractTimer;
+
+    public FileTextServiceImpl(FileTextRepository textRepo,
+                               FileStorage storage,
+                               MeterRegistry meterRegistry,
+                               @Value("${files.text.enabled:true}") boolean enabled,
+                               @Value("${files.text.threads:2}") int threads,
+                               @Value("${files.text.queue-capacity:200}") int queueCapacity,
+                               @Value("${files.text.max-chars:200000}") int maxChars,
+                               @Value("${files.text.max-source-mb:32}") int maxSourceMb,
+                               @Value("${files.text.index.lease:PT10M}") Duration lease,
+                               @Value("${files.text.index.max-attempts:3}") int maxAttempts) {
+        this.textRepo = textRepo;
+        this.storage = storage;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.extractor = new DocumentTextExtractor(maxChars, maxSourceMb * 1024L * 1024L);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "files-text-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.extractTimer = Timer.builder("files_text_extract_duration_seconds")
+                .description("Doba extrakce textu jednoho souboru")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void indexAfterCommit(StoredFile file) {
+        if (!enabled) return;
+        UUID fileId = file.getId();
+        textRepo.enqueue(fileId, file.getCompanyId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(fileId, false);
+                }
+            });
+        } else {
+            submit(fileId, false);
+        }
+    }
+
+    @Override
+    public void indexAfterCommit(List<StoredFile> files) {
+        if (!enabled || files.isEmpty()) return;
+        List<UUID> ids = files.stream().map(StoredFile::getId).toList();
+        textRepo.enqueueAll(ids, files.get(0).getCompanyId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // co se nevejde do fronty, zůstane PENDING pro FileTextIndexJob
+                    ids.forEach(id -> submit(id, false));
+                }
+            });
+        } else {
+            ids.forEach(id -> submit(id, false));
+        }
+    }
+
+    @Override
+    public int indexPending() {
+        if (!enabled) return 0;
+        // claimnout jen tolik, kolik se vejde do fronty – zbytek počká na další běh
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) return 0;
+        List<UUID> claimed = textRepo.claimDue(capacity, lease, maxAttempts);
+        claimed.forEach(id -> submit(id, true));
+        return claimed.size();
+    }
+
+    @Override
+    public List<FileTextRepository.Hit> search(UUID companyId, String query, LinkTarget targetType, UUID targetId, int limit) {
+        String q = query == null ? "" : query.strip();
+        if (q.isEmpty()) return List.of();
+        if (q.length() > MAX_QUERY_LENGTH) {
+            throw ValidationException.ofField("files.search.queryTooLong", "q", "size");
+        }
+        return textRepo.search(companyId, q, targetType, targetId, limit);
+    }
+
+    // ------- Internals --------
+
+    private void submit(UUID fileId, boolean claimed) {
+        if (!inFlight.add(fileId)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    if (claimed || textRepo.claim(fileId, lease, maxAttempts)) {
+                        extractTimer.record(() -> process(fileId));
+                    }
+                } finally {
+                    inFlight.remove(fileId);
+                }
+            });
+        } catch (Exception rejected) {
+            inFlight.remove(fileId);
+            log.debug("files.text: queue full, deferring file={}", fileId);
+        }
+    }
+
+    private void process(UUID fileId) {
+        FileTextRepository.Source src = textRepo.source(fileId);
+        if (src == null) return; // soubor mezitím smazán (řádek zmizel kaskádou)
+        try {
+            var format = DocumentTextExtractor.format(src.mimeType(), src.originalName());
+            if (format.isEmpty()) {
+                textRepo.complete(fileId, Status.UNSUPPORTED, src.originalName(), null);
+                result(Status.UNSUPPORTED);
+                return;
+            }
+            String text;
+            try (InputStream in = CompressingFileStorage.decode(storage.read(src.storageKey()), src.contentEncoding())) {
+                text = extractor.extract(format.get(), in);
+            }
+            Status status = text.isBlank() ? Status.EMPTY : Status.DONE;
+            textRepo.complete(fileId, status, src.originalName(), text.isBlank() ? null : text);
+            result(status);
+        } catch (Exception e) {
+            log.warn("files.text: extraction failed file={} key={} reason={}", fileId, src.storageKey(), e.toString());
+            textRepo.fail(fileId, src.originalName(), e.toString(), maxAttempts);
+            result(Status.FAILED);
+        } catch (StackOverflowError | OutOfMemoryError e) {
+            // soubor, který shodí extrakci, se nezkouší znovu – další pokus by jen znovu ohrozil uzel
+            log.error("files.text: extraction crashed file={} key={} reason={}", fileId, src.storageKey(), e.toString());
+            textRepo.fail(fileId, src.originalName(), e.toString(), 0);
+            result(Status.FAILED);
+        }
+    }
+
+    private void result(Status status) {
+        Counter.builder("files_text_extracted_total")
+                .description("Zpracovane soubory fulltextu podle vysledku")
+                .tag("result", status.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,300 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.features.files.model.FileLink;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository.CompanyRow;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository.Delta;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository.TargetRow;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Čítače využití:
+ * - běžná firma: upsert přírůstku ve stávající transakci (rollback uploadu = rollback čítače)
+ * - horká firma (≥ {@code hot-threshold} zápisů za interval flushe na tomto uzlu): přírůstek se po commitu
+ *   přičte do {@link LongAdder}ů (bez zámku řádku) a {@link #flush()} ho zapíše jednou dávkou;
+ *   spadlý uzel přijde nejvýš o jeden interval, který opraví noční {@link #reconcile()}
+ * - přepočet se zápisy nepřekrývá (advisory lock v {@link FileUsageRepository}) a zvyšuje generaci čítačů;
+ *   přírůstek nese generaci transakce, ve které vznikl, a flush zahodí starší – ty už přepočet započetl
+ *   ze {@code stored_files} (neflushnuté přírůstky ostatních uzlů i zápisy mezi flush a přepočtem)
+ * - kvóta se kontroluje před přijetím dat (deklarovaná velikost) proti DB + neflushnutým přírůstkům tohoto uzlu;
+ *   souběžné uploady ji mohou překročit nejvýš o rozpracovaná data (měkký limit)
+ */
+@Service
+public class FileUsageServiceImpl implements FileUsageService {
+
+    private final FileUsageRepository usageRepo;
+    private final TransactionTemplate tx;
+    private final long defaultQuotaBytes;
+    private final long hotThreshold;
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    private final MultiGauge bytesGauge;
+    private final MultiGauge filesGauge;
+    private final MultiGauge quotaGauge;
+    private final Counter rejected;
+    /** Nejvyšší generace čítačů, kterou tento uzel viděl; starší přírůstky se do čtení nezapočítají. */
+    private volatile long generation;
+
+    public FileUsageServiceImpl(FileUsageRepository usageRepo,
+                                TransactionTemplate tx,
+                                MeterRegistry meterRegistry,
+                                @Value("${files.usage.quota.default-mb:0}") long defaultQuotaMb,
+                                @Value("${files.usage.hot-threshold:50}") long hotThreshold) {
+        this.usageRepo = usageRepo;
+        this.tx = tx;
+        this.defaultQuotaBytes = defaultQuotaMb * 1024 * 1024;
+        this.hotThreshold = hotThreshold;
+        this.bytesGauge = MultiGauge.builder("files_storage_usage_bytes")
+                .description("Objem souboru firmy (logicka velikost)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.filesGauge = MultiGauge.builder("files_storage_usage_files")
+                .description("Pocet souboru firmy")
+                .register(meterRegistry);
+        this.quotaGauge = MultiGauge.builder("files_storage_quota_bytes")
+                .description("Kvota firmy (jen firmy s limitem)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("files_quota_rejected_total")
+                .description("Uploady odmitnute kvotou")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void checkQuota(UUID companyId, long incomingBytes) {
+        CompanyRow row = usageRepo.find(companyId);
+        long quota = quota(row);
+        if (quota <= 0) return;
+        long used = (row != null ? row.sizeBytes() : 0) + pendingBytes(companyId);
+        if (used + Math.max(incomingBytes, 0) > quota) {
+            rejected.increment();
+            throw new ConflictException("files.quota.exceeded");
+        }
+    }
+
+    @Override
+    public void fileAdded(StoredFile file) {
+        record(file.getCompanyId(), List.of(Delta.company(file.getCompanyId(), 1, file.getSizeBytes())));
+    }
+
+    @Override
+    public void filesAdded(UUID companyId, List<StoredFile> files, LinkTarget targetType, UUID targetId) {
+        if (files.isEmpty()) return;
+        long bytes = files.stream().mapToLong(StoredFile::getSizeBytes).sum();
+        List<Delta> deltas = new ArrayList<>(2);
+        deltas.add(Delta.company(companyId, files.size(), bytes));
+        if (targetType != null && targetId != null) {
+            deltas.add(new Delta(companyId, targetType, targetId, files.size(), bytes));
+        }
+        record(companyId, deltas);
+    }
+
+    @Override
+    public void fileRemoved(StoredFile file, Collection<FileLink> links) {
+        List<Delta> deltas = new ArrayList<>(links.size() + 1);
+        deltas.add(Delta.company(file.getCompanyId(), -1, -file.getSizeBytes()));
+        for (FileLink l : links) {
+            deltas.add(new Delta(file.getCompanyId(), l.getId().targetType, l.getId().targetId, -1, -file.getSizeBytes()));
+        }
+        record(file.getCompanyId(), deltas);
+    }
+
+    @Override
+    public void fileLinked(StoredFile file, LinkTarget targetType, UUID targetId) {
+        record(file.getCompanyId(), List.of(new Delta(file.getCompanyId(), targetType, targetId, 1, file.getSizeBytes())));
+    }
+
+    @Override
+    public Usage usage(UUID companyId, LinkTarget targetType, UUID targetId, int targetLimit) {
+        CompanyRow row = usageRepo.find(companyId);
+        long quota = quota(row);
+        List<TargetRow> targets = targetType != null && targetId != null
+                ? List.of(withPending(usageRepo.target(companyId, targetType, targetId), companyId))
+                : usageRepo.targets(companyId, targetLimit);
+        Pending p = pending.get(Key.company(companyId));
+        return new Usage(companyId,
+                (row != null ? row.fileCount() : 0) + (p != null ? p.files(generation) : 0),
+                (row != null ? row.sizeBytes() : 0) + (p != null ? p.bytes(generation) : 0),
+                quota > 0 ? quota : null,
+                targets);
+    }
+
+    @Override
+    public int flush() {
+        // zápisy za uplynulý interval rozhodnou, jestli je firma horká i pro další interval
+        pending.values().forEach(p -> p.hot = p.writes.sumThenReset() >= hotThreshold);
+        if (pending.values().stream().noneMatch(Pending::nonZero)) return 0;
+        List<Delta> batch = new ArrayList<>();
+        long[] flushed = {-1};
+        try {
+            tx.executeWithoutResult(st -> {
+                usageRepo.lockShared();
+                long current = seen(usageRepo.generation());
+                pending.forEach((key, p) -> {
+                    Delta d = p.drain(key, current);
+                    if (d != null) batch.add(d);
+                });
+                flushed[0] = current;
+                if (!batch.isEmpty()) usageRepo.apply(batch);
+            });
+        } catch (RuntimeException e) {
+            // vrátit do adderů – zkusí se v dalším intervalu (přepočet mezitím je zahodí jako starší generaci)
+            if (flushed[0] >= 0) batch.forEach(d -> accumulate(d, flushed[0]));
+            throw e;
+        }
+        return batch.size();
+    }
+
+    @Override
+    public void publishMetrics() {
+        List<CompanyRow> rows = usageRepo.findAll();
+        bytesGauge.register(gaugeRows(rows, CompanyRow::sizeBytes), true);
+        filesGauge.register(gaugeRows(rows, CompanyRow::fileCount), true);
+        quotaGauge.register(gaugeRows(rows.stream().filter(r -> quota(r) > 0).toList(), this::quota), true);
+    }
+
+    @Override
+    public int reconcile() {
+        flush();
+        Integer fixed = tx.execute(st -> usageRepo.reconcile());
+        return fixed != null ? fixed : 0;
+    }
+
+    // ------- Internals --------
+
+    private void record(UUID companyId, List<Delta> deltas) {
+        Pending company = pending.computeIfAbsent(Key.company(companyId), k -> new Pending());
+        company.writes.increment();
+        // zámek do konce transakce zápisu – přepočet nezačne, dokud zápis nedoběhne (a naopak)
+        usageRepo.lockShared();
+        if (!company.hot) {
+            usageRepo.apply(deltas);
+            return;
+        }
+        long gen = seen(usageRepo.generation());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deltas.forEach(d -> accumulate(d, gen));
+                }
+            });
+        } else {
+            deltas.forEach(d -> accumulate(d, gen));
+        }
+    }
+
+    private void accumulate(Delta d, long gen) {
+        Pending p = pending.computeIfAbsent(new Key(d.companyId(), d.targetType(), d.targetId()), k -> new Pending());
+        p.add(gen, d.files(), d.bytes());
+    }
+
+    private long seen(long gen) {
+        if (gen > generation) generation = gen;
+        return gen;
+    }
+
+    private long pendingBytes(UUID companyId) {
+        Pending p = pending.get(Key.company(companyId));
+        return p != null ? p.bytes(generation) : 0;
+    }
+
+    private TargetRow withPending(TargetRow row, UUID companyId) {
+        Pending p = pending.get(new Key(companyId, row.targetType(), row.targetId()));
+        if (p == null) return row;
+        return new TargetRow(row.targetType(), row.targetId(),
+                row.fileCount() + p.files(generation), row.sizeBytes() + p.bytes(generation));
+    }
+
+    private long quota(CompanyRow row) {
+        return row != null && row.quotaBytes() != null ? row.quotaBytes() : defaultQuotaBytes;
+    }
+
+    private static List<MultiGauge.Row<?>> gaugeRows(List<CompanyRow> rows, ToLongFunction<CompanyRow> value) {
+        List<MultiGauge.Row<?>> out = new ArrayList<>(rows.size());
+        for (CompanyRow r : rows) {
+            out.add(MultiGauge.Row.of(Tags.of("company", r.companyId().toString()), value.applyAsLong(r)));
+        }
+        return out;
+    }
+
+    /** Čítač firmy ({@code targetType == null}) nebo cíle linku. */
+    private record Key(UUID companyId, LinkTarget targetType, UUID targetId) {
+        static Key company(UUID companyId) {
+            return new Key(companyId, null, null);
+        }
+    }
+
+    /** Neflushnuté přírůstky po generacích; {@code writes}/{@code hot} se používají jen u čítače firmy. */
+    private static final class Pending {
+        final Map<Long, Sums> byGeneration = new ConcurrentHashMap<>();
+        final LongAdder writes = new LongAdder();
+        volatile boolean hot;
+
+        void add(long gen, long files, long bytes) {
+            Sums s = byGeneration.computeIfAbsent(gen, g -> new Sums());
+            s.files.add(files);
+            s.bytes.add(bytes);
+        }
+
+        long files(long fromGen) {
+            return sum(fromGen, s -> s.files.sum());
+        }
+
+        long bytes(long fromGen) {
+            return sum(fromGen, s -> s.bytes.sum());
+        }
+
+        boolean nonZero() {
+            return files(Long.MIN_VALUE) != 0 || bytes(Long.MIN_VALUE) != 0;
+        }
+
+        private long sum(long fromGen, ToLongFunction<Sums> value) {
+            long total = 0;
+            for (var e : byGeneration.entrySet()) {
+                if (e.getKey() >= fromGen) total += value.applyAsLong(e.getValue());
+            }
+            return total;
+        }
+
+        /** Přírůstek generace {@code current} k zápisu (vynuluje ho); starší generace zahodí – ty už zná přepočet. */
+        Delta drain(Key key, long current) {
+            long files = 0;
+            long bytes = 0;
+            for (var e : byGeneration.entrySet()) {
+                if (e.getKey() < current) {
+                    byGeneration.remove(e.getKey());
+                } else if (e.getKey() == current) {
+                    files += e.getValue().files.sumThenReset();
+                    bytes += e.getValue().bytes.sumThenReset();
+                }
+            }
+            return files != 0 || bytes != 0 ? new Delta(key.companyId(), key.targetType(), key.targetId(), files, bytes) : null;
+        }
+    }
+
+    private static final class Sums {
+        final LongAdder files = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+}
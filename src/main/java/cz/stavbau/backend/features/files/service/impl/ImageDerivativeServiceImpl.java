@@ -0,0 +1,261 @@
+package cz.stavbau.backend.features.files.service.impl;
+
+import cz.stavbau.backend.features.files.model.ImageVariant;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.storage.HotBlobCache;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Náhledy přes ImageIO na omezeném poolu (pevný počet vláken + omezená fronta).
+ * - dekóduje se se subsamplingem rovnou na ~velikost největší varianty (24 Mpx JPEG tak nezabere ~100 MB heapu)
+ * - menší varianty vznikají z větší postupným půlením (kvalita bez artefaktů, bez dalšího dekódování)
+ * - plná fronta → úloha se zahodí; chybějící varianta se doplní při prvním dotazu ({@link #find})
+ */
+@Service
+public class ImageDerivativeServiceImpl implements ImageDerivativeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeServiceImpl.class);
+
+    private static final Set<String> SUPPORTED = Set.of("image/jpeg", "image/png", "image/gif", "image/bmp");
+    /** Ochrana proti "decompression bomb" – rozměry se čtou z hlavičky před dekódováním. */
+    private static final long MAX_PIXELS = 150_000_000L;
+
+    private final FileStorage storage;
+    private final HotBlobCache cache;
+    private final boolean enabled;
+    private final float quality;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ImageDerivativeServiceImpl(FileStorage storage,
+                                      @Value("${files.derivatives.enabled:true}") boolean enabled,
+                                      @Value("${files.derivatives.threads:2}") int threads,
+                                      @Value("${files.derivatives.queue-capacity:200}") int queueCapacity,
+                                      @Value("${files.derivatives.jpeg-quality:0.82}") float quality,
+                                      HotBlobCache cache) {
+        this.storage = storage;
+        this.cache = cache;
+        this.enabled = enabled;
+        this.quality = quality;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "files-derivatives-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public boolean supports(String mimeType) {
+        return enabled && mimeType != null && SUPPORTED.contains(mimeType.toLowerCase());
+    }
+
+    @Override
+    public void scheduleAfterCommit(StoredFile file) {
+        if (!supports(file.getMimeType())) return;
+        String sha = file.getSha256();
+        String key = file.getStorageKey();
+        String encoding = file.getContentEncoding();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(sha, key, encoding);
+                }
+            });
+        } else {
+            submit(sha, key, encoding);
+        }
+    }
+
+    @Override
+    public Optional<Derivative> find(StoredFile file, ImageVariant variant) {
+        if (!supports(file.getMimeType())) return Optional.empty();
+        String key = variant.storageKey(file.getSha256());
+        if (storage.exists(key)) {
+            return Optional.of(new Derivative(key, storage.size(key)));
+        }
+        submit(file.getSha256(), file.getStorageKey(), file.getContentEncoding());
+        return Optional.empty();
+    }
+
+    @Override
+    public void writeContent(Derivative derivative, long offset, long length, OutputStream out) {
+        // klíč náhledu je odvozený ze sha256 zdroje → stejně neměnný jako obsah originálu
+        try (HotBlobCache.Handle h = cache.open(derivative.storageKey(), derivative.size(),
+                () -> storage.read(derivative.storageKey()))) {
+            if (h != null) {
+                h.writeTo(offset, length, out);
+                return;
+            }
+            storage.transferTo(derivative.storageKey(), offset, length, Channels.newChannel(out));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // ------- Internals --------
+
+    private void submit(String sha256, String sourceKey, String contentEncoding) {
+        if (!inFlight.add(sha256)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(sha256, sourceKey, contentEncoding);
+                } catch (Exception e) {
+                    log.warn("files.derivatives: failed sha256={} key={} reason={}", sha256, sourceKey, e.toString());
+                } finally {
+                    inFlight.remove(sha256);
+                }
+            });
+        } catch (Exception rejected) {
+            inFlight.remove(sha256);
+            log.debug("files.derivatives: queue full, skipping sha256={}", sha256);
+        }
+    }
+
+    private void generate(String sha256, String sourceKey, String contentEncoding) throws IOException {
+        ImageVariant[] variants = ImageVariant.values();
+        boolean missing = false;
+        for (ImageVariant v : variants) {
+            missing |= !storage.exists(v.storageKey(sha256));
+        }
+        if (!missing) return;
+
+        // varianty od největší; každá další se zmenšuje z předchozí
+        BufferedImage img = decode(sourceKey, contentEncoding, maxEdge(variants));
+        if (img == null) return;
+        for (int i = variants.length - 1; i >= 0; i--) {
+            ImageVariant v = variants[i];
+            img = downscale(img, v.maxEdge());
+            String key = v.storageKey(sha256);
+            if (!storage.exists(key)) {
+                byte[] jpeg = encodeJpeg(img);
+                storage.put(key, "image/jpeg", new ByteArrayInputStream(jpeg));
+            }
+        }
+    }
+
+    private static int maxEdge(ImageVariant[] variants) {
+        int max = 0;
+        for (ImageVariant v : variants) max = Math.max(max, v.maxEdge());
+        return max;
+    }
+
+    private BufferedImage decode(String storageKey, String contentEncoding, int targetEdge) throws IOException {
+        try (InputStream in = CompressingFileStorage.decode(storage.read(storageKey), contentEncoding);
+             ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                if ((long) w * h > MAX_PIXELS) {
+                    log.warn("files.derivatives: image too large {}x{} key={}", w, h, storageKey);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int sub = Math.max(1, Math.max(w, h) / targetEdge);
+                param.setSourceSubsampling(sub, sub, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Zmenší obrázek (nikdy nezvětšuje) do RGB; velké poměry po krocích 1/2 kvůli aliasingu bilineárního filtru. */
+    static BufferedImage downscale(BufferedImage src, int maxEdge) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(w, h));
+        int tw = Math.max(1, (int) Math.round(w * scale));
+        int th = Math.max(1, (int) Math.round(h * scale));
+
+        BufferedImage cur = src;
+        do {
+            int nw = Math.max(tw, cur.getWidth() / 2);
+            int nh = Math.max(th, cur.getHeight() / 2);
+            if (cur.getWidth() / 2 < tw || cur.getHeight() / 2 < th) {
+                nw = tw;
+                nh = th;
+            }
+            BufferedImage next = new BufferedImage(nw, nh, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setColor(Color.WHITE); // průhlednost (PNG/GIF) → bílé pozadí
+                g.fillRect(0, 0, nw, nh);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(cur, 0, 0, nw, nh, null);
+            } finally {
+                g.dispose();
+            }
+            cur = next;
+        } while (cur.getWidth() != tw || cur.getHeight() != th);
+        return cur;
+    }
+
+    private byte[] encodeJpeg(BufferedImage img) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+}
@@ -1,20 +1,36 @@
 package cz.stavbau.backend.features.files.service.impl;
 
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.common.exception.NotFoundException;
+import cz.stavbau.backend.common.exception.ValidationException;
 import cz.stavbau.backend.features.files.model.*;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Kind;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Reason;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Tombstone;
 import cz.stavbau.backend.features.files.repo.FileLinkRepository;
+import cz.stavbau.backend.features.files.repo.FileQueryRepository;
 import cz.stavbau.backend.features.files.repo.FileTagJoinRepository;
 import cz.stavbau.backend.features.files.repo.FileTagRepository;
 import cz.stavbau.backend.features.files.repo.StoredFileRepository;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
 import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
 import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.storage.HotBlobCache;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 @Service
 public class StoredFileServiceImpl implements StoredFileService {
@@ -24,61 +40,172 @@ public class StoredFileServiceImpl implements StoredFileService {
     private final FileTagJoinRepository tagJoinRepo;
     private final FileLinkRepository linkRepo;
     private final FileStorage storage;
+    private final FileTagIndex tagIndex;
+    private final ImageDerivativeService derivatives;
+    private final FileQueryRepository fileQueryRepo;
+    private final BlobTombstoneRepository tombstoneRepo;
+    private final FileTextService texts;
+    private final FileUsageService usage;
+    private final HotBlobCache cache;
+
+    private static final int MAX_TAG_LENGTH = 64;
 
     public StoredFileServiceImpl(StoredFileRepository fileRepo,
                                  FileTagRepository tagRepo,
                                  FileTagJoinRepository tagJoinRepo,
                                  FileLinkRepository linkRepo,
-                                 FileStorage storage) {
+                                 FileStorage storage,
+                                 FileTagIndex tagIndex,
+                                 ImageDerivativeService derivatives,
+                                 FileQueryRepository fileQueryRepo,
+                                 BlobTombstoneRepository tombstoneRepo,
+                                 FileTextService texts,
+                                 FileUsageService usage,
+                                 HotBlobCache cache) {
         this.fileRepo = fileRepo;
         this.tagRepo = tagRepo;
         this.tagJoinRepo = tagJoinRepo;
         this.linkRepo = linkRepo;
         this.storage = storage;
+        this.tagIndex = tagIndex;
+        this.derivatives = derivatives;
+        this.fileQueryRepo = fileQueryRepo;
+        this.tombstoneRepo = tombstoneRepo;
+        this.texts = texts;
+        this.usage = usage;
+        this.cache = cache;
     }
 
     @Override
     @Transactional
     public StoredFile upload(UUID companyId, UUID uploaderId, MultipartFile file) {
+        usage.checkQuota(companyId, file.getSize());
         try {
             var res = storage.store(companyId.toString(),
                     file.getOriginalFilename(),
                     file.getContentType(),
                     file.getSize(),
                     file.getInputStream());
+            return register(companyId, uploaderId, file.getOriginalFilename(), file.getContentType(), file.getSize(), res);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            StoredFile sf = new StoredFile();
-            sf.setId(UUID.randomUUID());
-            sf.setCompanyId(companyId);
-            sf.setUploaderId(uploaderId);
-            sf.setOriginalName(file.getOriginalFilename());
-            sf.setMimeType(file.getContentType() != null ? file.getContentType() : "application/octet-stream");
-            sf.setSizeBytes(file.getSize());
-            sf.setSha256(res.sha256());
-            sf.setStorageKey(res.storageKey());
-            sf.setCreatedAt(Instant.now());
-            return fileRepo.save(sf);
+    @Override
+    @Transactional
+    public StoredFile uploadStaged(UUID companyId, UUID uploaderId, String originalName, String mimeType,
+                                   Path staged, long size, String sha256) {
+        usage.checkQuota(companyId, size);
+        var res = storage.storeFile(companyId.toString(), originalName, mimeType, staged, sha256);
+        return register(companyId, uploaderId, originalName, mimeType, size, res);
+    }
+
+    private StoredFile register(UUID companyId, UUID uploaderId, String originalName, String mimeType,
+                                long size, FileStorage.StoreResult res) {
+        // Blob může být sdílený (CAS) – referenci bereme pod lockem a ověříme, že ho souběžný delete nesmazal.
+        fileRepo.lockStorageKey(res.storageKey());
+        if (!storage.exists(res.storageKey())) {
+            throw new ConflictException("files.blob.concurrentlyDeleted");
+        }
+
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setCompanyId(companyId);
+        sf.setUploaderId(uploaderId);
+        sf.setOriginalName(originalName);
+        sf.setMimeType(mimeType != null ? mimeType : "application/octet-stream");
+        sf.setSizeBytes(size);
+        sf.setSha256(res.sha256());
+        sf.setStorageKey(res.storageKey());
+        sf.setContentEncoding(res.contentEncoding());
+        sf.setStoredSizeBytes(res.storedSize() >= 0 ? res.storedSize() : null);
+        sf.setCreatedAt(Instant.now());
+        StoredFile saved = fileRepo.save(sf);
+        derivatives.scheduleAfterCommit(saved);
+        texts.indexAfterCommit(saved);
+        usage.fileAdded(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StoredFile get(UUID fileId) {
+        return fileRepo.findById(fileId).orElseThrow();
+    }
+
+    @Override
+    public void writeContent(StoredFile file, long offset, long length, OutputStream out) {
+        if (file.getContentEncoding() == null) {
+            writeStored(file, offset, length, out);
+            return;
+        }
+        // komprimovaný blob → dekódovat; rozsah se dopočítá přeskočením dekódovaných bajtů
+        try (HotBlobCache.Handle h = cached(file);
+             InputStream in = CompressingFileStorage.decode(
+                     h != null ? h.inputStream() : storage.read(file.getStorageKey()), file.getContentEncoding())) {
+            in.skipNBytes(offset);
+            byte[] buf = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (n < 0) break;
+                out.write(buf, 0, n);
+                remaining -= n;
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public byte[] download(UUID fileId) {
-        StoredFile sf = fileRepo.findById(fileId).orElseThrow();
-        try (var is = storage.read(sf.getStorageKey())) {
-            return is.readAllBytes();
+    public void writeStored(StoredFile file, long offset, long length, OutputStream out) {
+        try (HotBlobCache.Handle h = cached(file)) {
+            if (h != null) {
+                h.writeTo(offset, length, out);
+                return;
+            }
+            storage.transferTo(file.getStorageKey(), offset, length, Channels.newChannel(out));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /** Uložený (případně komprimovaný) obsah z cache; klíč = sha256 (+ kódování), blob se podle něj nemění. */
+    private HotBlobCache.Handle cached(StoredFile file) {
+        if (file.getSha256() == null) return null;
+        String encoding = file.getContentEncoding();
+        String key = encoding != null ? file.getSha256() + "." + encoding : file.getSha256();
+        long size = encoding == null ? file.getSizeBytes()
+                : file.getStoredSizeBytes() != null ? file.getStoredSizeBytes() : -1;
+        return cache.open(key, size, () -> storage.read(file.getStorageKey()));
+    }
+
     @Override
     @Transactional
     public void delete(UUID fileId) {
         StoredFile sf = fileRepo.findById(fileId).orElseThrow();
-        storage.delete(sf.getStorageKey());
+        String key = sf.getStorageKey();
+        fileRepo.lockStorageKey(key);
+        tagJoinRepo.deleteByFileId(fileId);
+        usage.fileRemoved(sf, linkRepo.findByIdFileId(fileId));
+        linkRepo.deleteByFileId(fileId); // až po odečtu využití cílů – ten vazby čte
         fileRepo.delete(sf);
+        fileRepo.flush();
+        // Poslední reference (deduplikované bloby sdílí více řádků) → tombstone ve stejné transakci;
+        // fyzicky maže až BlobSweeperJob po commitu, takže rollback nikdy nepřijde o data.
+        List<Tombstone> tombstones = new ArrayList<>();
+        if (fileRepo.countByStorageKey(key) == 0) {
+            Long stored = sf.getStoredSizeBytes() != null ? sf.getStoredSizeBytes() : sf.getSizeBytes();
+            tombstones.add(new Tombstone(key, Kind.BLOB, sf.getSha256(), stored, Reason.DELETE, 0));
+        }
+        if (sf.getSha256() != null && !fileRepo.existsBySha256(sf.getSha256())) {
+            for (ImageVariant v : ImageVariant.values()) {
+                tombstones.add(new Tombstone(v.storageKey(sf.getSha256()), Kind.DERIVED, sf.getSha256(), null, Reason.DELETE, 0));
+            }
+        }
+        tombstoneRepo.enqueue(tombstones);
+        tagIndex.remove(sf.getCompanyId(), fileId);
     }
 
     @Override
@@ -86,27 +213,67 @@ public class StoredFileServiceImpl implements StoredFileService {
     public void setTags(UUID fileId, List<String> tags) {
         StoredFile sf = fileRepo.findById(fileId).orElseThrow();
         UUID companyId = sf.getCompanyId();
+        Set<String> names = normalizeTags(tags);
+
+        // Set-based: jeden delete joinů souboru, jeden upsert tagů firmy, jeden insert…select joinů.
+        tagJoinRepo.deleteByFileId(fileId);
+        if (!names.isEmpty()) {
+            tagRepo.upsertNames(companyId, names);
+            tagJoinRepo.insertForNames(fileId, companyId, names);
+        }
+        tagIndex.replace(companyId, fileId, names);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TagQueryResult findByTags(UUID companyId, List<String> tags, boolean matchAll, int page, int size) {
+        Set<String> names = normalizeTags(tags);
+        if (names.isEmpty()) {
+            return new TagQueryResult(List.of(), 0);
+        }
+        FileTagIndex.Match match = tagIndex.query(companyId, names, matchAll, page, size);
+        Map<UUID, StoredFile> byId = new HashMap<>();
+        for (StoredFile f : fileRepo.findAllById(match.fileIds())) {
+            byId.put(f.getId(), f);
+        }
+        List<StoredFile> items = match.fileIds().stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new TagQueryResult(items, match.total());
+    }
 
-        tagJoinRepo.deleteAll(
-            tagJoinRepo.findAll().stream().filter(j -> j.getId().fileId.equals(fileId)).toList()
-        );
-
-        for (String name : tags) {
-            var tag = tagRepo.findByCompanyIdAndName(companyId, name)
-                    .orElseGet(() -> {
-                        FileTag t = new FileTag();
-                        t.setId(UUID.randomUUID());
-                        t.setCompanyId(companyId);
-                        t.setName(name);
-                        return tagRepo.save(t);
-                    });
-            tagJoinRepo.save(new FileTagJoin(fileId, tag.getId()));
+    private static Set<String> normalizeTags(List<String> tags) {
+        Set<String> names = new LinkedHashSet<>();
+        if (tags == null) return names;
+        for (String t : tags) {
+            if (t == null || t.isBlank()) continue;
+            String name = t.strip();
+            if (name.length() > MAX_TAG_LENGTH) {
+                throw ValidationException.ofField("files.tags.tooLong", "tags", "size");
+            }
+            names.add(name);
         }
+        return names;
     }
 
     @Override
     @Transactional
     public void link(UUID fileId, LinkTarget targetType, UUID targetId) {
-        linkRepo.save(new FileLink(fileId, targetType, targetId));
+        StoredFile sf = fileRepo.findById(fileId).orElseThrow(() -> new NotFoundException("files.notFound"));
+        FileLink link = new FileLink(fileId, targetType, targetId);
+        link.setFileCreatedAt(sf.getCreatedAt());
+        if (linkRepo.existsById(link.getId())) return;
+        linkRepo.save(link);
+        usage.fileLinked(sf, targetType, targetId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FileQueryRepository.Page list(FileQueryRepository.Filter filter, String cursor, int limit) {
+        return fileQueryRepo.list(filter, cursor, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StoredFile> findLinked(LinkTarget targetType, UUID targetId) {
+        return fileRepo.findLinkedTo(targetType, targetId);
     }
 }
@@ -0,0 +1,142 @@
+package cz.stavbau.backend.features.files.storage;
+
+import java.io.*;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Revize složené z content-defined chunků: objekt pod klíčem {@code cdc/ab/<sha256 obsahu>} je jen manifest
+ * (pořadí chunků), data leží v {@code chunks/ab/cd/<sha256 chunku>} a sdílí se mezi revizemi.
+ * Pro zbytek aplikace je to obyčejný objekt – {@link #read}, {@link #size} i {@link #transferTo} (Range,
+ * zero-copy po chuncích) vrací složený obsah, takže download, ZIP export i náhledy fungují beze změny.
+ * Ostatní klíče jdou na delegáta. Reference na chunky a jejich GC drží DB ({@code file_manifest_chunks}).
+ */
+public class ChunkedFileStorage implements FileStorage {
+
+    public static final String MANIFEST_PREFIX = "cdc/";
+    public static final String CHUNK_PREFIX = "chunks/";
+
+    private static final String MAGIC = "stavbau-cdc-v1";
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    public record ChunkRef(String sha256, int size) {}
+
+    public record Manifest(long size, List<ChunkRef> chunks) {}
+
+    private final FileStorage delegate;
+
+    public ChunkedFileStorage(FileStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    public static boolean isManifest(String storageKey) {
+        return storageKey != null && storageKey.startsWith(MANIFEST_PREFIX);
+    }
+
+    public static String manifestKey(String sha256) {
+        return MANIFEST_PREFIX + requireSha(sha256).substring(0, 2) + "/" + sha256;
+    }
+
+    public static String chunkKey(String sha256) {
+        return CHUNK_PREFIX + requireSha(sha256).substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    public static boolean isSha256(String value) {
+        return value != null && SHA256.matcher(value).matches();
+    }
+
+    private static String requireSha(String sha256) {
+        if (!isSha256(sha256)) {
+            throw new IllegalArgumentException("Invalid sha256: " + sha256);
+        }
+        return sha256;
+    }
+
+    /** Uloží manifest pod klíč odvozený z hashe celého obsahu (stejná revize = stejný klíč). */
+    public String putManifest(String contentSha256, Manifest manifest) {
+        String key = manifestKey(contentSha256);
+        StringBuilder sb = new StringBuilder(MAGIC).append('\n').append(manifest.size()).append('\n');
+        for (ChunkRef c : manifest.chunks()) {
+            sb.append(c.sha256()).append(' ').append(c.size()).append('\n');
+        }
+        delegate.put(key, "text/plain", new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.US_ASCII)));
+        return key;
+    }
+
+    public Manifest readManifest(String storageKey) {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(delegate.read(storageKey), StandardCharsets.US_ASCII))) {
+            if (!MAGIC.equals(r.readLine())) {
+                throw new IllegalStateException("Not a chunk manifest: " + storageKey);
+            }
+            long size = Long.parseLong(r.readLine());
+            List<ChunkRef> chunks = new ArrayList<>();
+            for (String line = r.readLine(); line != null && !line.isEmpty(); line = r.readLine()) {
+                int sp = line.indexOf(' ');
+                chunks.add(new ChunkRef(line.substring(0, sp), Integer.parseInt(line.substring(sp + 1))));
+            }
+            return new Manifest(size, Collections.unmodifiableList(chunks));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void putChunk(String sha256, InputStream data) {
+        delegate.put(chunkKey(sha256), "application/octet-stream", data);
+    }
+
+    @Override
+    public InputStream read(String storageKey) {
+        if (!isManifest(storageKey)) return delegate.read(storageKey);
+        Iterator<ChunkRef> it = readManifest(storageKey).chunks().iterator();
+        // chunky se otevírají líně, vždy jen jeden najednou
+        return new SequenceInputStream(new java.util.Enumeration<>() {
+            @Override public boolean hasMoreElements() { return it.hasNext(); }
+            @Override public InputStream nextElement() { return delegate.read(chunkKey(it.next().sha256())); }
+        });
+    }
+
+    @Override
+    public long size(String storageKey) {
+        return isManifest(storageKey) ? readManifest(storageKey).size() : delegate.size(storageKey);
+    }
+
+    @Override
+    public long transferTo(String storageKey, long offset, long length, WritableByteChannel target) throws IOException {
+        if (!isManifest(storageKey)) return delegate.transferTo(storageKey, offset, length, target);
+        long end = offset + length;
+        long pos = 0;
+        long written = 0;
+        for (ChunkRef c : readManifest(storageKey).chunks()) {
+            long chunkEnd = pos + c.size();
+            if (chunkEnd > offset && pos < end) {
+                long from = Math.max(offset, pos) - pos;
+                long to = Math.min(end, chunkEnd) - pos;
+                written += delegate.transferTo(chunkKey(c.sha256()), from, to - from, target);
+            }
+            if (chunkEnd >= end) break;
+            pos = chunkEnd;
+        }
+        return written;
+    }
+
+    @Override
+    public StoreResult store(String companyPrefix, String originalFilename, String mimeType, long size, InputStream data) {
+        return delegate.store(companyPrefix, originalFilename, mimeType, size, data);
+    }
+
+    @Override
+    public StoreResult storeFile(String companyPrefix, String originalFilename, String mimeType, java.nio.file.Path source, String sha256) {
+        return delegate.storeFile(companyPrefix, originalFilename, mimeType, source, sha256);
+    }
+
+    /** U manifestu maže jen manifest – chunky uvolňuje GC podle {@code file_manifest_chunks}. */
+    @Override public void delete(String storageKey) { delegate.delete(storageKey); }
+    @Override public boolean exists(String storageKey) { return delegate.exists(storageKey); }
+    @Override public void put(String storageKey, String mimeType, InputStream data) { delegate.put(storageKey, mimeType, data); }
+    @Override public FileStorage backend() { return delegate.backend(); }
+}
@@ -0,0 +1,248 @@
+package cz.stavbau.backend.features.files.storage;
+
+import java.io.*;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Kompresní vrstva nad libovolným {@link FileStorage}: dobře komprimovatelné dokumenty (text, CSV, XML/ISDOC,
+ * nekomprimovaná PDF…) uloží jako gzip. Rozhoduje MIME typ + entropie vzorku ze začátku souboru.
+ * - komprese je "pull" ({@link DeflaterInputStream}) – žádné vlákno ani dočasný soubor navíc
+ * - {@code sha256} ve výsledku je vždy z původního obsahu (ETag, deduplikace), kódování vrací {@link StoreResult}
+ * - čtení vrací uložené bajty beze změny; dekódování řídí volající podle {@code StoredFile.contentEncoding}
+ *   (gzip lze klientovi poslat rovnou s {@code Content-Encoding: gzip})
+ */
+public class CompressingFileStorage implements FileStorage {
+
+    public static final String GZIP = "gzip";
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int MIN_SIZE = 1024;
+    /** Bity/bajt; zkomprimovaná nebo náhodná data mají ~7.9–8.0. */
+    private static final double MAX_ENTROPY = 7.2;
+
+    private static final Set<String> COMPRESSIBLE = Set.of(
+            "application/xml", "application/json", "application/x-ndjson", "application/javascript",
+            "application/csv", "application/rtf", "application/pdf", "application/postscript",
+            "application/msword", "application/vnd.ms-excel", "application/vnd.ms-powerpoint",
+            "application/x-isdoc", "image/svg+xml", "image/bmp", "image/tiff");
+
+    private final FileStorage delegate;
+    private final int level;
+
+    public CompressingFileStorage(FileStorage delegate, int level) {
+        this.delegate = delegate;
+        this.level = level;
+    }
+
+    public FileStorage delegate() {
+        return delegate;
+    }
+
+    @Override
+    public FileStorage backend() {
+        return delegate.backend();
+    }
+
+    /** Dekóduje uložená data podle kódování ze {@code StoredFile} (null = identity). */
+    public static InputStream decode(InputStream stored, String contentEncoding) throws IOException {
+        return GZIP.equals(contentEncoding) ? new GZIPInputStream(stored, 64 * 1024) : stored;
+    }
+
+    public static boolean compressibleMime(String mimeType) {
+        if (mimeType == null) return false;
+        String m = mimeType.toLowerCase(Locale.ROOT);
+        int semi = m.indexOf(';');
+        if (semi >= 0) m = m.substring(0, semi).trim();
+        return m.startsWith("text/") || m.endsWith("+xml") || m.endsWith("+json") || COMPRESSIBLE.contains(m);
+    }
+
+    /** Shannonova entropie vzorku v bitech na bajt. */
+    static double entropy(byte[] sample, int len) {
+        if (len == 0) return 0;
+        int[] freq = new int[256];
+        for (int i = 0; i < len; i++) freq[sample[i] & 0xff]++;
+        double h = 0;
+        for (int f : freq) {
+            if (f == 0) continue;
+            double p = (double) f / len;
+            h -= p * (Math.log(p) / Math.log(2));
+        }
+        return h;
+    }
+
+    @Override
+    public StoreResult store(String companyPrefix, String originalFilename, String mimeType, long size, InputStream data) {
+        if (size >= 0 && size < MIN_SIZE || !compressibleMime(mimeType)) {
+            return delegate.store(companyPrefix, originalFilename, mimeType, size, data);
+        }
+        try {
+            BufferedInputStream in = new BufferedInputStream(data, SAMPLE_SIZE);
+            in.mark(SAMPLE_SIZE);
+            byte[] sample = in.readNBytes(SAMPLE_SIZE);
+            in.reset();
+            if (sample.length < MIN_SIZE || entropy(sample, sample.length) > MAX_ENTROPY) {
+                return delegate.store(companyPrefix, originalFilename, mimeType, size, in);
+            }
+
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            try (GzipEncoder gz = new GzipEncoder(new DigestInputStream(in, md), level)) {
+                StoreResult res = delegate.store(companyPrefix, originalFilename, mimeType, -1, gz);
+                return new StoreResult(res.storageKey(), HexFormat.of().formatHex(md.digest()), GZIP, gz.encodedBytes());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public StoreResult storeFile(String companyPrefix, String originalFilename, String mimeType, Path source, String sha256) {
+        try {
+            long size = Files.size(source);
+            if (size < MIN_SIZE || !compressibleMime(mimeType)) {
+                return delegate.storeFile(companyPrefix, originalFilename, mimeType, source, sha256);
+            }
+            byte[] sample = new byte[SAMPLE_SIZE];
+            int n;
+            try (InputStream in = Files.newInputStream(source)) {
+                n = in.readNBytes(sample, 0, SAMPLE_SIZE);
+            }
+            if (entropy(sample, n) > MAX_ENTROPY) {
+                return delegate.storeFile(companyPrefix, originalFilename, mimeType, source, sha256);
+            }
+            StoreResult res;
+            try (InputStream in = Files.newInputStream(source)) {
+                res = store(companyPrefix, originalFilename, mimeType, size, in);
+            }
+            Files.deleteIfExists(source);
+            return res;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public InputStream read(String storageKey) { return delegate.read(storageKey); }
+    @Override public void delete(String storageKey) { delegate.delete(storageKey); }
+    @Override public boolean exists(String storageKey) { return delegate.exists(storageKey); }
+    @Override public long size(String storageKey) { return delegate.size(storageKey); }
+    @Override public void put(String storageKey, String mimeType, InputStream data) { delegate.put(storageKey, mimeType, data); }
+
+    @Override
+    public long transferTo(String storageKey, long offset, long length, WritableByteChannel target) throws IOException {
+        return delegate.transferTo(storageKey, offset, length, target);
+    }
+
+    /**
+     * Gzip (RFC 1952) jako InputStream: hlavička + raw deflate + trailer (CRC32, délka mod 2^32).
+     * Kompresní data se vyrábí až při čtení – proto jde rovnou do {@link FileStorage#store}.
+     */
+    static final class GzipEncoder extends InputStream {
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final CRC32 crc = new CRC32();
+        private final Deflater deflater;
+        private final InputStream body;
+        private long rawBytes;
+        private long encodedBytes;
+        private int stage; // 0 = hlavička, 1 = data, 2 = trailer, 3 = konec
+        private byte[] pending = HEADER;
+        private int pendingPos;
+
+        GzipEncoder(InputStream raw, int level) {
+            this.deflater = new Deflater(level, true);
+            InputStream counting = new FilterInputStream(raw) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        crc.update(b);
+                        rawBytes++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        crc.update(b, off, n);
+                        rawBytes += n;
+                    }
+                    return n;
+                }
+            };
+            this.body = new DeflaterInputStream(counting, deflater, 64 * 1024);
+        }
+
+        long encodedBytes() {
+            return encodedBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (true) {
+                if (stage == 0 || stage == 2) {
+                    if (pendingPos < pending.length) {
+                        int n = Math.min(len, pending.length - pendingPos);
+                        System.arraycopy(pending, pendingPos, b, off, n);
+                        pendingPos += n;
+                        encodedBytes += n;
+                        return n;
+                    }
+                    stage++;
+                    continue;
+                }
+                if (stage == 1) {
+                    int n = body.read(b, off, len);
+                    if (n > 0) {
+                        encodedBytes += n;
+                        return n;
+                    }
+                    if (n == 0) continue;
+                    pending = trailer();
+                    pendingPos = 0;
+                    stage = 2;
+                    continue;
+                }
+                return -1;
+            }
+        }
+
+        private byte[] trailer() {
+            long c = crc.getValue();
+            long s = rawBytes & 0xffffffffL;
+            return new byte[]{
+                    (byte) c, (byte) (c >> 8), (byte) (c >> 16), (byte) (c >> 24),
+                    (byte) s, (byte) (s >> 8), (byte) (s >> 16), (byte) (s >> 24)};
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                body.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package cz.stavbau.backend.features.files.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed úložiště: klíč objektu je odvozen ze SHA-256 obsahu
+ * ({@code cas/ab/cd/abcd…}), takže stejný soubor nahraný vícekrát zabírá na disku jen jednu kopii.
+ * - zápis jde do dočasného souboru (hash se počítá za běhu), pak atomický rename na cílový klíč
+ * - pokud blob už existuje, dočasný soubor se zahodí (deduplikace)
+ * - počet referencí drží DB ({@code stored_files.storage_key}); fyzické smazání řídí služba
+ * Čtení/mazání legacy klíčů ({@code companyId/uuid.ext}) funguje dál – cesty se řeší vůči stejnému basePath.
+ */
+public class ContentAddressedFileStorage extends LocalFileStorage {
+
+    public static final String KEY_PREFIX = "cas/";
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path tmpDir;
+
+    public ContentAddressedFileStorage(Path basePath) {
+        super(basePath);
+        this.tmpDir = basePath.resolve("tmp");
+    }
+
+    public static boolean isContentAddressed(String storageKey) {
+        return storageKey != null && storageKey.startsWith(KEY_PREFIX);
+    }
+
+    /** Fan-out 2 úrovně × 256 adresářů, aby žádný adresář nenarostl na statisíce položek. */
+    public static String keyFor(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Invalid sha256: " + sha256);
+        }
+        return KEY_PREFIX + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    @Override
+    public StoreResult store(String companyPrefix, String originalFilename, String mimeType, long size, InputStream data) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(tmpDir);
+            tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            try (OutputStream os = Files.newOutputStream(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                data.transferTo(new DigestOutputStream(os, md));
+            }
+            String sha = HexFormat.of().formatHex(md.digest());
+            String key = keyFor(sha);
+            place(tmp, basePath.resolve(key));
+            tmp = null;
+            return new StoreResult(key, sha);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    @Override
+    public StoreResult storeFile(String companyPrefix, String originalFilename, String mimeType, Path source, String sha256) {
+        try {
+            String key = keyFor(sha256);
+            Path staged = source;
+            Files.createDirectories(tmpDir);
+            if (!Files.getFileStore(source).equals(Files.getFileStore(tmpDir))) {
+                // jiný FS → rename by nebyl atomický; zkopírujeme do tmp vedle blobů
+                staged = Files.createTempFile(tmpDir, "upload-", ".part");
+                Files.copy(source, staged, StandardCopyOption.REPLACE_EXISTING);
+                Files.delete(source);
+            }
+            place(staged, basePath.resolve(key));
+            return new StoreResult(key, sha256);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Převede legacy objekt na CAS klíč bez kopírování dat (hard link; fallback kopie, pokud FS linky neumí).
+     * Původní soubor nechává na místě – smaže se až po commitu přepisu {@code storage_key} v DB.
+     */
+    public String adopt(String legacyKey, String sha256) throws IOException {
+        String key = keyFor(sha256);
+        Path target = basePath.resolve(key);
+        if (Files.exists(target)) {
+            return key;
+        }
+        Path source = basePath.resolve(legacyKey);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            // souběžný upload stejného obsahu – blob už je na místě
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.createDirectories(tmpDir);
+            Path tmp = Files.createTempFile(tmpDir, "adopt-", ".part");
+            try {
+                Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+                place(tmp, target);
+                tmp = null;
+            } finally {
+                deleteQuietly(tmp);
+            }
+        }
+        return key;
+    }
+
+    private void place(Path tmp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            // Duplicitní obsah – jen "osvěžíme" mtime, aby blob nespadl do úklidu orphanů.
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            Files.delete(tmp);
+            return;
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(tmp);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        if (p == null) return;
+        try { Files.deleteIfExists(p); } catch (IOException ignored) { }
+    }
+}
@@ -0,0 +1,101 @@
+package cz.stavbau.backend.features.files.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content-defined chunking (Gear rolling hash, princip FastCDC): hranice chunku určuje obsah posledních
+ * 64 bajtů, ne pozice v souboru – vložení/smazání pár bajtů uprostřed výkresu tak změní jen 1–2 chunky,
+ * zbytek revize se deduplikuje. Klient musí dělit stejně – parametry a tabulka jsou proto pevné a
+ * publikované ({@link #describe()}).
+ * - Gear: {@code h = (h << 1) + GEAR[b]}; řez, když jsou horní {@code log2(avg)} bity nulové
+ * - chunk nikdy není menší než {@code min} (kromě posledního) ani větší než {@code max}
+ * - streamuje přes buffer {@code 2 × max} – paměť nezávisí na velikosti souboru
+ */
+public final class ContentDefinedChunker {
+
+    public static final int MIN_SIZE = 256 * 1024;
+    public static final int AVG_SIZE = 1024 * 1024;
+    public static final int MAX_SIZE = 4 * 1024 * 1024;
+
+    /** Seed pro SplitMix64, kterým se generuje tabulka ({@code GEAR[i]} = i-tý výstup). */
+    public static final long GEAR_SEED = 0x5354415642415543L; // "STAVBAUC"
+
+    private static final long[] GEAR = gearTable(GEAR_SEED);
+    private static final int WINDOW = 64;
+
+    @FunctionalInterface
+    public interface Sink {
+        void chunk(byte[] buf, int off, int len) throws IOException;
+    }
+
+    private final int min;
+    private final int max;
+    private final long mask;
+
+    public ContentDefinedChunker() {
+        this(MIN_SIZE, AVG_SIZE, MAX_SIZE);
+    }
+
+    ContentDefinedChunker(int min, int avg, int max) {
+        if (Integer.bitCount(avg) != 1 || min >= avg || avg >= max) {
+            throw new IllegalArgumentException("Invalid chunking parameters");
+        }
+        this.min = min;
+        this.max = max;
+        this.mask = -1L << (64 - Integer.numberOfTrailingZeros(avg));
+    }
+
+    public static String describe() {
+        return "gear64-splitmix64:" + Long.toHexString(GEAR_SEED) + ";min=" + MIN_SIZE + ";avg=" + AVG_SIZE + ";max=" + MAX_SIZE;
+    }
+
+    public void split(InputStream in, Sink sink) throws IOException {
+        byte[] buf = new byte[2 * max];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+        while (true) {
+            if (!eof && end - start < max) {
+                if (buf.length - start < max) {
+                    System.arraycopy(buf, start, buf, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                while (!eof && end - start < max) {
+                    int n = in.read(buf, end, buf.length - end);
+                    if (n < 0) eof = true;
+                    else end += n;
+                }
+            }
+            if (end == start) return;
+            int len = cut(buf, start, Math.min(end - start, max));
+            sink.chunk(buf, start, len);
+            start += len;
+        }
+    }
+
+    /** Délka chunku od {@code off}; {@code avail} ≤ max bajtů k dispozici. */
+    private int cut(byte[] buf, int off, int avail) {
+        if (avail <= min) return avail; // jen na konci souboru
+        long h = 0;
+        for (int i = Math.max(0, min - WINDOW); i < avail; i++) {
+            h = (h << 1) + GEAR[buf[off + i] & 0xff];
+            if (i + 1 >= min && (h & mask) == 0) return i + 1;
+        }
+        return avail;
+    }
+
+    static long[] gearTable(long seed) {
+        long[] t = new long[256];
+        long x = seed;
+        for (int i = 0; i < t.length; i++) {
+            x += 0x9e3779b97f4a7c15L;
+            long z = x;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            t[i] = z ^ (z >>> 31);
+        }
+        return t;
+    }
+}
@@ -1,10 +1,77 @@
 package cz.stavbau.backend.features.files.storage;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public interface FileStorage {
-    record StoreResult(String storageKey, String sha256) {}
+    /**
+     * @param sha256          hash původního (nekódovaného) obsahu
+     * @param contentEncoding kódování uložených dat ({@code gzip}), null = uloženo beze změny
+     * @param storedSize      velikost uložených dat, -1 = stejná jako původní
+     */
+    record StoreResult(String storageKey, String sha256, String contentEncoding, long storedSize) {
+        public StoreResult(String storageKey, String sha256) {
+            this(storageKey, sha256, null, -1);
+        }
+    }
     StoreResult store(String companyPrefix, String originalFilename, String mimeType, long size, InputStream data);
     InputStream read(String storageKey);
     void delete(String storageKey);
+    boolean exists(String storageKey);
+
+    /** Vlastní backend pod dekorátory (komprese, chunky) – pro joby, které potřebují konkrétní typ úložiště. */
+    default FileStorage backend() {
+        return this;
+    }
+
+    /** Velikost objektu v bajtech. */
+    long size(String storageKey);
+
+    /**
+     * Zapíše objekt pod daný (odvozený) klíč, např. náhled obrázku; existující objekt atomicky nahradí.
+     * Klíč volí volající – na rozdíl od {@link #store}, kde ho přiděluje úložiště.
+     */
+    void put(String storageKey, String mimeType, InputStream data);
+
+    /**
+     * Převezme lokální soubor, který už je celý zapsaný a zahashovaný (např. složený z chunků).
+     * Lokální backendy ho jen přesunou (rename, bez dalšího čtení dat); default ho streamuje přes
+     * {@link #store}. Zdrojový soubor po úspěchu zaniká.
+     */
+    default StoreResult storeFile(String companyPrefix, String originalFilename, String mimeType, Path source, String sha256) {
+        try (InputStream in = Files.newInputStream(source)) {
+            StoreResult res = store(companyPrefix, originalFilename, mimeType, Files.size(source), in);
+            Files.deleteIfExists(source);
+            return res;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Zapíše rozsah [offset, offset + length) objektu do cílového kanálu (HTTP Range, resumable download).
+     * Default implementace čte přes {@link #read(String)} s bufferem; implementace nad souborovým
+     * systémem by měly použít zero-copy ({@code FileChannel.transferTo}).
+     *
+     * @return počet zapsaných bajtů
+     */
+    default long transferTo(String storageKey, long offset, long length, WritableByteChannel target) throws IOException {
+        try (InputStream is = read(storageKey)) {
+            is.skipNBytes(offset);
+            var out = Channels.newOutputStream(target);
+            byte[] buf = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = is.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (n < 0) break;
+                out.write(buf, 0, n);
+                remaining -= n;
+            }
+            return length - remaining;
+        }
+    }
 }
@@ -0,0 +1,287 @@
+package cz.stavbau.backend.features.files.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache malých, často čtených blobů (logo firmy, hlavičkový papír, titulní fotky projektů) mimo heap.
+ * - paměť = předem alokované direct slaby rozdělené na stránky pevné velikosti; záznam = seznam stránek,
+ *   uvolněné stránky se recyklují → žádné GC ani fragmentace, strop paměti = {@code budgetBytes}
+ * - o tom, co v cache zůstane, rozhoduje Caffeine (W-TinyLFU: jednorázově čtený soubor nevytlačí oblíbený)
+ * - klíč je odvozený z obsahu (sha256 + kódování) → záznam se nikdy nezmění, invalidace není potřeba
+ * - čtenář si záznam "připne" ({@link Handle}); vyhozený záznam vrátí stránky až po zavření posledního handle
+ * Chybí-li volné stránky (vše připnuté), soubor se prostě neukládá a čte se z úložiště.
+ */
+public final class HotBlobCache {
+
+    /** Otevře obsah blobu (jen při missu). */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private static final int SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final ByteBuffer[] slabs;
+    private final int pageSize;
+    private final int pagesPerSlab;
+    private final long maxEntryBytes;
+    private final PageStack free;
+    private final Cache<String, Entry> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public HotBlobCache(long budgetBytes, int pageSize, long maxEntryBytes) {
+        if (pageSize <= 0 || SLAB_SIZE % pageSize != 0) {
+            throw new IllegalArgumentException("pageSize must divide " + SLAB_SIZE);
+        }
+        this.pageSize = pageSize;
+        this.pagesPerSlab = SLAB_SIZE / pageSize;
+        this.maxEntryBytes = Math.min(maxEntryBytes, budgetBytes);
+        int totalPages = (int) Math.min(budgetBytes / pageSize, Integer.MAX_VALUE);
+        int slabCount = (totalPages + pagesPerSlab - 1) / pagesPerSlab;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            int pages = Math.min(pagesPerSlab, totalPages - i * pagesPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect(pages * pageSize);
+        }
+        this.free = new PageStack(totalPages);
+        // rezerva nad limitem Caffeine: nový záznam se alokuje dřív, než ho cache přijme (a případně něco vyhodí)
+        long total = (long) totalPages * pageSize;
+        long reserve = Math.min(total / 2, Math.max(this.maxEntryBytes * 4, total / 10));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(total - reserve)
+                .weigher((String k, Entry e) -> e.pages.length * pageSize)
+                // vyhození synchronně ve vlákně zápisu → stránky jsou hned zpět pro další load
+                .executor(Runnable::run)
+                .removalListener((String k, Entry e, RemovalCause c) -> {
+                    if (e != null) e.release();
+                })
+                .build();
+    }
+
+    /**
+     * Handle na obsah blobu z cache; při missu ho načte ze {@code source} (jen pokud {@code size} ≤ max. velikost).
+     * {@code null} = neobslouží cache (velký/neznámý soubor, plná paměť) → číst z úložiště. Handle je nutné zavřít.
+     */
+    public Handle open(String key, long size, Source source) {
+        Entry e = cache.getIfPresent(key);
+        if (e != null && e.retain()) {
+            hits.increment();
+            return new Handle(e);
+        }
+        if (size <= 0 || size > maxEntryBytes) {
+            bypassed.increment();
+            return null;
+        }
+        misses.increment();
+        // souběžný miss téhož klíče načte obsah dvakrát – u malých souborů levnější než zámek na klíč
+        Entry loaded = fill(size, source);
+        if (loaded == null) return null;
+        loaded.retain(); // handle → přežije i okamžité odmítnutí admission politikou
+        if (cache.asMap().putIfAbsent(key, loaded) != null) {
+            loaded.release(); // cache už má jiný záznam; stránky se vrátí zavřením handle
+        }
+        return new Handle(loaded);
+    }
+
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long bypassed() { return bypassed.sum(); }
+    public long usedBytes() { return usedBytes.get(); }
+    public long entries() { return cache.estimatedSize(); }
+
+    // ------- Internals --------
+
+    private Entry fill(long size, Source source) {
+        int n = (int) ((size + pageSize - 1) / pageSize);
+        int[] pages = free.pop(n);
+        if (pages == null) {
+            cache.cleanUp(); // doběhnout čekající vyhození a zkusit znovu
+            pages = free.pop(n);
+            if (pages == null) return null;
+        }
+        Entry entry = new Entry(pages, size);
+        try (InputStream in = source.open()) {
+            byte[] buf = new byte[Math.min(pageSize, 64 * 1024)];
+            long pos = 0;
+            while (pos < size) {
+                int r = in.read(buf, 0, (int) Math.min(buf.length, size - pos));
+                if (r < 0) break;
+                put(pages, pos, buf, r);
+                pos += r;
+            }
+            if (pos != size || in.read() >= 0) {
+                // metadata nesedí s obsahem – takový blob necachovat
+                entry.release();
+                return null;
+            }
+        } catch (IOException ex) {
+            entry.release();
+            throw new UncheckedIOException(ex);
+        } catch (RuntimeException ex) {
+            entry.release();
+            throw ex;
+        }
+        return entry;
+    }
+
+    private void put(int[] pages, long pos, byte[] src, int len) {
+        int off = 0;
+        while (off < len) {
+            int page = pages[(int) (pos / pageSize)];
+            int inPage = (int) (pos % pageSize);
+            int n = Math.min(len - off, pageSize - inPage);
+            slab(page).put(slabOffset(page) + inPage, src, off, n);
+            off += n;
+            pos += n;
+        }
+    }
+
+    private ByteBuffer slab(int page) {
+        return slabs[page / pagesPerSlab];
+    }
+
+    private int slabOffset(int page) {
+        return (page % pagesPerSlab) * pageSize;
+    }
+
+    /** Záznam: stránky + počet referencí (1 = drží ho cache, +1 za každý otevřený handle). */
+    private final class Entry {
+        final int[] pages;
+        final long length;
+        final AtomicInteger refs = new AtomicInteger(1);
+
+        Entry(int[] pages, long length) {
+            this.pages = pages;
+            this.length = length;
+            usedBytes.addAndGet((long) pages.length * pageSize);
+        }
+
+        boolean retain() {
+            for (;;) {
+                int r = refs.get();
+                if (r == 0) return false; // už vyhozený a uvolněný
+                if (refs.compareAndSet(r, r + 1)) return true;
+            }
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                free.push(pages);
+                usedBytes.addAndGet(-(long) pages.length * pageSize);
+            }
+        }
+    }
+
+    /** Připnutý obsah jednoho blobu; čtení je bezpečné z více vláken (absolutní get, bez pozice bufferu). */
+    public final class Handle implements AutoCloseable {
+
+        private final Entry entry;
+        private boolean closed;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public long length() {
+            return entry.length;
+        }
+
+        /** Zapíše rozsah [offset, offset + length) do výstupu. */
+        public void writeTo(long offset, long length, OutputStream out) throws IOException {
+            byte[] buf = new byte[(int) Math.min(64 * 1024, Math.max(length, 1))];
+            long pos = offset;
+            long end = Math.min(entry.length, offset + length);
+            while (pos < end) {
+                int n = read(pos, buf, 0, (int) Math.min(buf.length, end - pos));
+                out.write(buf, 0, n);
+                pos += n;
+            }
+        }
+
+        public InputStream inputStream() {
+            return new InputStream() {
+                private long pos;
+
+                @Override
+                public int read() {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (pos >= entry.length) return -1;
+                    int n = Handle.this.read(pos, b, off, (int) Math.min(len, entry.length - pos));
+                    pos += n;
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) {
+                    long s = Math.max(0, Math.min(n, entry.length - pos));
+                    pos += s;
+                    return s;
+                }
+
+                @Override
+                public int available() {
+                    return (int) Math.min(Integer.MAX_VALUE, entry.length - pos);
+                }
+            };
+        }
+
+        /** Přečte nejvýš do konce stránky. */
+        private int read(long pos, byte[] dst, int off, int len) {
+            int page = entry.pages[(int) (pos / pageSize)];
+            int inPage = (int) (pos % pageSize);
+            int n = Math.min(len, pageSize - inPage);
+            slab(page).get(slabOffset(page) + inPage, dst, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            entry.release();
+        }
+    }
+
+    /** Zásobník volných stránek (pop/push celé sady stránek záznamu pod jedním zámkem). */
+    private static final class PageStack {
+        private final int[] pages;
+        private int top;
+
+        PageStack(int total) {
+            pages = new int[total];
+            for (int i = 0; i < total; i++) pages[i] = total - 1 - i;
+            top = total;
+        }
+
+        synchronized int[] pop(int n) {
+            if (n > top) return null;
+            int[] out = new int[n];
+            for (int i = 0; i < n; i++) out[i] = pages[--top];
+            return out;
+        }
+
+        synchronized void push(int[] released) {
+            for (int p : released) pages[top++] = p;
+        }
+    }
+}
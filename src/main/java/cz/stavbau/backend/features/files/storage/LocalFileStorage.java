@@ -1,39 +1,62 @@
 package cz.stavbau.backend.features.files.storage;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
 import java.security.MessageDigest;
 import java.util.HexFormat;
 import java.util.UUID;
 
 public class LocalFileStorage implements FileStorage {
-    private final Path basePath;
+    protected final Path basePath;
 
     public LocalFileStorage(Path basePath) {
         this.basePath = basePath;
     }
 
+    /** Kořen úložiště (klíč = relativní cesta vůči němu) – pro rekonciliaci se {@code stored_files}. */
+    public Path basePath() {
+        return basePath;
+    }
+
     @Override
     public StoreResult store(String companyPrefix, String originalFilename, String mimeType, long size, InputStream data) {
         try {
-            String ext = originalFilename != null && originalFilename.contains(".")
-                    ? originalFilename.substring(originalFilename.lastIndexOf('.')) : "";
-            String fname = UUID.randomUUID() + ext;
-            Path dir = basePath.resolve(companyPrefix);
-            Files.createDirectories(dir);
-            Path target = dir.resolve(fname);
+            String key = newKey(companyPrefix, originalFilename);
+            Path target = basePath.resolve(key);
+            Files.createDirectories(target.getParent());
 
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             try (OutputStream os = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)) {
                 data.transferTo(new DigestOutputStream(os, md));
             }
             String sha = HexFormat.of().formatHex(md.digest());
-            return new StoreResult(companyPrefix + "/" + fname, sha);
+            return new StoreResult(key, sha);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public StoreResult storeFile(String companyPrefix, String originalFilename, String mimeType, Path source, String sha256) {
+        try {
+            String key = newKey(companyPrefix, originalFilename);
+            Path target = basePath.resolve(key);
+            Files.createDirectories(target.getParent());
+            Files.move(source, target);
+            return new StoreResult(key, sha256);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String newKey(String companyPrefix, String originalFilename) {
+        String ext = originalFilename != null && originalFilename.contains(".")
+                ? originalFilename.substring(originalFilename.lastIndexOf('.')) : "";
+        return companyPrefix + "/" + UUID.randomUUID() + ext;
+    }
+
     static class DigestOutputStream extends FilterOutputStream {
         private final MessageDigest md;
         public DigestOutputStream(OutputStream out, MessageDigest md) { super(out); this.md = md; }
@@ -49,4 +72,47 @@ public class LocalFileStorage implements FileStorage {
         try { Files.deleteIfExists(basePath.resolve(storageKey)); }
         catch (IOException e) { throw new RuntimeException(e); }
     }
+    @Override public boolean exists(String storageKey) {
+        return Files.isRegularFile(basePath.resolve(storageKey));
+    }
+    @Override public long size(String storageKey) {
+        try { return Files.size(basePath.resolve(storageKey)); }
+        catch (IOException e) { throw new RuntimeException(e); }
+    }
+
+    @Override
+    public void put(String storageKey, String mimeType, InputStream data) {
+        Path target = basePath.resolve(storageKey);
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            tmp = Files.createTempFile(target.getParent(), ".put-", ".part");
+            try (OutputStream os = Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
+                data.transferTo(os);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (tmp != null) {
+                try { Files.deleteIfExists(tmp); } catch (IOException ignored) { }
+            }
+        }
+    }
+
+    /** Zero-copy: kernel přesune data ze souboru rovnou do socketu (pokud to cílový kanál umožní). */
+    @Override
+    public long transferTo(String storageKey, long offset, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel ch = FileChannel.open(basePath.resolve(storageKey), StandardOpenOption.READ)) {
+            long end = Math.min(offset + length, ch.size());
+            long pos = offset;
+            while (pos < end) {
+                long n = ch.transferTo(pos, end - pos, target);
+                if (n <= 0) break;
+                pos += n;
+            }
+            return pos - offset;
+        }
+    }
 }
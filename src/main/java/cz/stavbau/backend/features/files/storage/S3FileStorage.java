@@ -0,0 +1,399 @@
+package cz.stavbau.backend.features.files.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * S3-kompatibilní úložiště (AWS S3, MinIO, Ceph RGW…) – data sdílí všechny uzly aplikace bez NFS.
+ * - upload po částech (multipart): stream se čte po {@code partSize} blocích, SHA-256 se počítá za běhu
+ *   a části se nahrávají paralelně na omezeném poolu; {@code parallelism} omezuje části v paměti přes všechny
+ *   uploady uzlu (sdílený semafor, stejně jako {@code files.upload.bulk.parallelism}) – permit se bere před čtením
+ * - menší soubory než jedna část → jediný PUT
+ * - čtení rozsahu (HTTP Range) jde rovnou z S3 bez stahování celého objektu
+ * Klíče mají stejný tvar jako u {@link LocalFileStorage} ({@code companyId/uuid.ext}).
+ */
+public class S3FileStorage implements FileStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3FileStorage.class);
+
+    /** S3 minimum pro všechny části kromě poslední. */
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final Pattern SAFE_EXT = Pattern.compile("\\.[A-Za-z0-9]{1,16}");
+
+    public record Settings(String endpoint, String region, String bucket, String accessKey, String secretKey,
+                           boolean pathStyle, int partSizeMb, int parallelism, int uploadThreads) {}
+
+    private final URI endpoint;
+    private final String bucket;
+    private final boolean pathStyle;
+    private final int partSize;
+    /** Buffery částí (× {@code partSize}) přes všechny uploady uzlu. */
+    private final Semaphore inFlight;
+    private final S3Signer signer;
+    private final HttpClient http;
+    private final ExecutorService uploadPool;
+
+    public S3FileStorage(Settings s) {
+        this.endpoint = URI.create(s.endpoint().endsWith("/") ? s.endpoint().substring(0, s.endpoint().length() - 1) : s.endpoint());
+        this.bucket = s.bucket();
+        this.pathStyle = s.pathStyle();
+        this.partSize = Math.max(MIN_PART_SIZE, s.partSizeMb() * 1024 * 1024);
+        this.inFlight = new Semaphore(Math.max(1, s.parallelism()));
+        this.signer = new S3Signer(s.accessKey(), s.secretKey(), s.region());
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        AtomicInteger seq = new AtomicInteger();
+        this.uploadPool = Executors.newFixedThreadPool(Math.max(1, s.uploadThreads()), r -> {
+            Thread t = new Thread(r, "files-s3-upload-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void shutdown() {
+        uploadPool.shutdownNow();
+    }
+
+    @Override
+    public StoreResult store(String companyPrefix, String originalFilename, String mimeType, long size, InputStream data) {
+        String key = newKey(companyPrefix, originalFilename);
+        return new StoreResult(key, upload(key, mimeType, data));
+    }
+
+    @Override
+    public void put(String storageKey, String mimeType, InputStream data) {
+        upload(storageKey, mimeType, data);
+    }
+
+    @Override
+    public InputStream read(String storageKey) {
+        HttpResponse<InputStream> res = send("GET", storageKey, Map.of(), Map.of(), null,
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (res.statusCode() != 200) {
+            throw failure("GET", storageKey, res.statusCode(), drain(res.body()));
+        }
+        return res.body();
+    }
+
+    @Override
+    public long transferTo(String storageKey, long offset, long length, WritableByteChannel target) throws IOException {
+        if (length <= 0) return 0;
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        HttpResponse<InputStream> res = send("GET", storageKey, Map.of(), Map.of("range", range), null,
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (res.statusCode() != 206 && res.statusCode() != 200) {
+            throw failure("GET", storageKey, res.statusCode(), drain(res.body()));
+        }
+        try (InputStream in = res.body()) {
+            if (res.statusCode() == 200) {
+                in.skipNBytes(offset); // backend Range ignoroval
+            }
+            OutputStream out = Channels.newOutputStream(target);
+            byte[] buf = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (n < 0) break;
+                out.write(buf, 0, n);
+                remaining -= n;
+            }
+            return length - remaining;
+        }
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        HttpResponse<String> res = send("DELETE", storageKey, Map.of(), Map.of(), null, HttpResponse.BodyHandlers.ofString());
+        if (res.statusCode() != 204 && res.statusCode() != 200 && res.statusCode() != 404) {
+            throw failure("DELETE", storageKey, res.statusCode(), res.body());
+        }
+    }
+
+    @Override
+    public boolean exists(String storageKey) {
+        return head(storageKey) >= 0;
+    }
+
+    @Override
+    public long size(String storageKey) {
+        long size = head(storageKey);
+        if (size < 0) {
+            throw new IllegalStateException("S3 object not found: " + storageKey);
+        }
+        return size;
+    }
+
+    // ------- Upload --------
+
+    /** Nahraje stream pod klíč (single PUT nebo multipart) a vrátí SHA-256 obsahu. */
+    private String upload(String key, String mimeType, InputStream data) {
+        MessageDigest md = sha256();
+        byte[] first = readPart(data);
+        boolean held = true; // permit bufferu, který ještě nedostala úloha poolu
+        try {
+            md.update(first);
+            if (first.length < partSize) {
+                putObject(key, mimeType, first);
+                return HexFormat.of().formatHex(md.digest());
+            }
+
+            String uploadId = createMultipart(key, mimeType);
+            List<Future<String>> parts = new ArrayList<>();
+            List<AtomicBoolean> permits = new ArrayList<>();
+            try {
+                byte[] buf = first;
+                int partNo = 1;
+                while (true) {
+                    failFast(parts);
+                    final byte[] body = buf;
+                    final int n = partNo++;
+                    AtomicBoolean permit = new AtomicBoolean(true);
+                    parts.add(uploadPool.submit(() -> {
+                        try {
+                            return uploadPart(key, uploadId, n, body);
+                        } finally {
+                            release(permit);
+                        }
+                    }));
+                    permits.add(permit);
+                    held = false;
+                    if (buf.length < partSize) break;
+                    buf = readPart(data); // čeká na volný buffer uzlu
+                    held = true;
+                    if (buf.length == 0) break;
+                    md.update(buf);
+                }
+                List<String> etags = new ArrayList<>(parts.size());
+                for (Future<String> f : parts) {
+                    etags.add(f.get());
+                }
+                completeMultipart(key, uploadId, etags);
+                return HexFormat.of().formatHex(md.digest());
+            } catch (Exception e) {
+                parts.forEach(f -> f.cancel(true));
+                // zrušená úloha, která se nestihla spustit, svůj permit sama nevrátí
+                permits.forEach(this::release);
+                abortMultipart(key, uploadId);
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                throw e instanceof RuntimeException re ? re : new RuntimeException(e);
+            }
+        } finally {
+            if (held) inFlight.release();
+        }
+    }
+
+    /** Vezme permit sdíleného limitu a přečte jednu část; při chybě čtení permit vrátí. */
+    private byte[] readPart(InputStream data) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("S3 upload interrupted", e);
+        }
+        try {
+            return data.readNBytes(partSize);
+        } catch (IOException e) {
+            inFlight.release();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void release(AtomicBoolean permit) {
+        if (permit.getAndSet(false)) inFlight.release();
+    }
+
+    private static void failFast(List<Future<String>> parts) throws ExecutionException, InterruptedException {
+        for (Future<String> f : parts) {
+            if (f.isDone()) f.get(); // vyhodí chybu dokončené části
+        }
+    }
+
+    private void putObject(String key, String mimeType, byte[] body) {
+        HttpResponse<String> res = withRetry(() -> send("PUT", key, Map.of(), contentType(mimeType), body,
+                HttpResponse.BodyHandlers.ofString()));
+        if (res.statusCode() != 200) {
+            throw failure("PUT", key, res.statusCode(), res.body());
+        }
+    }
+
+    private String createMultipart(String key, String mimeType) {
+        HttpResponse<String> res = send("POST", key, Map.of("uploads", ""), contentType(mimeType), new byte[0],
+                HttpResponse.BodyHandlers.ofString());
+        Matcher m = UPLOAD_ID.matcher(res.body() == null ? "" : res.body());
+        if (res.statusCode() != 200 || !m.find()) {
+            throw failure("CreateMultipartUpload", key, res.statusCode(), res.body());
+        }
+        return m.group(1);
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, byte[] body) {
+        Map<String, String> query = Map.of("partNumber", Integer.toString(partNumber), "uploadId", uploadId);
+        HttpResponse<String> res = withRetry(() -> send("PUT", key, query, Map.of(), body, HttpResponse.BodyHandlers.ofString()));
+        String etag = res.headers().firstValue("ETag").orElse(null);
+        if (res.statusCode() != 200 || etag == null) {
+            throw failure("UploadPart#" + partNumber, key, res.statusCode(), res.body());
+        }
+        return etag;
+    }
+
+    private void completeMultipart(String key, String uploadId, List<String> etags) {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(etags.get(i).replace("\"", "&quot;")).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+        HttpResponse<String> res = withRetry(() -> send("POST", key, Map.of("uploadId", uploadId),
+                Map.of("content-type", "application/xml"), body, HttpResponse.BodyHandlers.ofString()));
+        // S3 může vrátit 200 a chybu až v těle
+        if (res.statusCode() != 200 || (res.body() != null && res.body().contains("<Error>"))) {
+            throw failure("CompleteMultipartUpload", key, res.statusCode(), res.body());
+        }
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        try {
+            send("DELETE", key, Map.of("uploadId", uploadId), Map.of(), null, HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            log.warn("files.s3: abort multipart failed key={} uploadId={} reason={}", key, uploadId, e.toString());
+        }
+    }
+
+    // ------- HTTP --------
+
+    private long head(String key) {
+        HttpResponse<Void> res = send("HEAD", key, Map.of(), Map.of(), null, HttpResponse.BodyHandlers.discarding());
+        if (res.statusCode() == 404) return -1;
+        if (res.statusCode() != 200) {
+            throw failure("HEAD", key, res.statusCode(), null);
+        }
+        return res.headers().firstValueAsLong("Content-Length").orElse(0L);
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query, Map<String, String> extraHeaders,
+                                     byte[] body, HttpResponse.BodyHandler<T> handler) {
+        String encodedKey = S3Signer.encodePath(key);
+        String path;
+        String host;
+        String basePath = endpoint.getRawPath() == null ? "" : endpoint.getRawPath();
+        if (pathStyle) {
+            host = endpoint.getRawAuthority();
+            path = basePath + "/" + bucket + "/" + encodedKey;
+        } else {
+            host = bucket + "." + endpoint.getRawAuthority();
+            path = basePath + "/" + encodedKey;
+        }
+        String queryString = new TreeMap<>(query).entrySet().stream()
+                .map(e -> S3Signer.encode(e.getKey()) + "=" + S3Signer.encode(e.getValue()))
+                .reduce((a, b) -> a + "&" + b).orElse("");
+        URI uri = URI.create(endpoint.getScheme() + "://" + host + path + (queryString.isEmpty() ? "" : "?" + queryString));
+
+        String amzDate = S3Signer.amzDate(Instant.now());
+        String payloadHash = body == null ? S3Signer.EMPTY_SHA256 : S3Signer.UNSIGNED_PAYLOAD;
+        Map<String, String> signed = new TreeMap<>();
+        signed.put("host", host);
+        signed.put("x-amz-date", amzDate);
+        signed.put("x-amz-content-sha256", payloadHash);
+        signed.putAll(extraHeaders);
+
+        HttpRequest.Builder rb = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        signed.forEach((k, v) -> {
+            if (!k.equals("host")) rb.header(k, v);
+        });
+        rb.header("Authorization", signer.authorization(method, path, query, signed, payloadHash, amzDate));
+        try {
+            return http.send(rb.build(), handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("S3 request interrupted", e);
+        }
+    }
+
+    private static <T> HttpResponse<T> withRetry(Callable<HttpResponse<T>> call) {
+        RuntimeException last = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                HttpResponse<T> res = call.call();
+                if (res.statusCode() < 500 || attempt == MAX_ATTEMPTS) return res;
+            } catch (UncheckedIOException e) {
+                last = e;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            try {
+                Thread.sleep(200L * attempt);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("S3 retry interrupted", ie);
+            }
+        }
+        throw last;
+    }
+
+    private static Map<String, String> contentType(String mimeType) {
+        return Map.of("content-type", mimeType != null ? mimeType : "application/octet-stream");
+    }
+
+    private static IllegalStateException failure(String op, String key, int status, String body) {
+        String detail = body == null ? "" : body.length() > 500 ? body.substring(0, 500) : body;
+        return new IllegalStateException("S3 " + op + " failed: key=" + key + " status=" + status + " " + detail);
+    }
+
+    private static String drain(InputStream in) {
+        try (in) {
+            return new String(in.readNBytes(2048), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String newKey(String companyPrefix, String originalFilename) {
+        String ext = originalFilename != null && originalFilename.contains(".")
+                ? originalFilename.substring(originalFilename.lastIndexOf('.')) : "";
+        if (!SAFE_EXT.matcher(ext).matches()) ext = "";
+        return companyPrefix + "/" + UUID.randomUUID() + ext;
+    }
+}
@@ -0,0 +1,115 @@
+package cz.stavbau.backend.features.files.storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * AWS Signature V4 pro S3 (hlavička {@code Authorization}); kompatibilní s MinIO, Ceph RGW apod.
+ * Záměrně bez AWS SDK – potřebujeme jen pár operací nad {@link java.net.http.HttpClient}.
+ */
+public final class S3Signer {
+
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    public static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    public S3Signer(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    public static String amzDate(Instant now) {
+        return AMZ_DATE.format(now);
+    }
+
+    /**
+     * @param path    URI-enkódovaná cesta (např. {@code /bucket/key})
+     * @param query   nekódované parametry dotazu (hodnota "" pro parametry bez hodnoty)
+     * @param headers podepisované hlavičky (musí obsahovat host, x-amz-date, x-amz-content-sha256)
+     * @return hodnota hlavičky {@code Authorization}
+     */
+    public String authorization(String method, String path, Map<String, String> query,
+                                Map<String, String> headers, String payloadHash, String amzDate) {
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+
+        SortedMap<String, String> canonicalHeaders = new TreeMap<>();
+        headers.forEach((k, v) -> canonicalHeaders.put(k.toLowerCase(), v.trim()));
+        String signedHeaders = String.join(";", canonicalHeaders.keySet());
+
+        String canonicalQuery = new TreeMap<>(query).entrySet().stream()
+                .map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+                .collect(Collectors.joining("&"));
+
+        StringBuilder cr = new StringBuilder()
+                .append(method).append('\n')
+                .append(path).append('\n')
+                .append(canonicalQuery).append('\n');
+        canonicalHeaders.forEach((k, v) -> cr.append(k).append(':').append(v).append('\n'));
+        cr.append('\n').append(signedHeaders).append('\n').append(payloadHash);
+
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(cr.toString());
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(key, stringToSign));
+
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ",SignedHeaders=" + signedHeaders + ",Signature=" + signature;
+    }
+
+    /** RFC 3986 enkódování dle S3 (mezera = %20, {@code ~} se nekóduje). */
+    public static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8)
+                .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+    }
+
+    /** Enkóduje klíč objektu po segmentech (lomítka zůstávají). */
+    public static String encodePath(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (String seg : key.split("/", -1)) {
+            if (!sb.isEmpty()) sb.append('/');
+            sb.append(encode(seg));
+        }
+        return sb.toString();
+    }
+
+    private static String sha256Hex(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
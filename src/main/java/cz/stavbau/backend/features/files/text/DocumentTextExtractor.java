@@ -0,0 +1,140 @@
+package cz.stavbau.backend.features.files.text;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extrakce prostého textu z dokumentů pro fulltext:
+ * - PDF: PDFBox (celý soubor v paměti, proto {@code maxSourceBytes}; stránky po naplnění limitu se přeskočí)
+ * - Office: docx/xlsx/pptx a odt/ods/odp ({@link OfficeTextExtractor}, streamovaně)
+ * - text: txt, csv, md, json, xml, html (UTF-8, jinak windows-1250)
+ * Výstup je oříznutý na {@code maxChars} znaků se sloučenými bílými znaky.
+ */
+public final class DocumentTextExtractor {
+
+    public enum Format { PDF, OFFICE, TEXT }
+
+    private static final Set<String> OFFICE_EXT = Set.of("docx", "xlsx", "pptx", "odt", "ods", "odp");
+    private static final Set<String> TEXT_EXT = Set.of("txt", "csv", "md", "json", "xml", "html", "htm", "log");
+    private static final Pattern TAGS = Pattern.compile("(?s)<(script|style)\\b.*?</\\1>|<[^>]*>");
+    private static final Charset CP1250 = Charset.forName("windows-1250");
+
+    private final int maxChars;
+    private final long maxSourceBytes;
+
+    public DocumentTextExtractor(int maxChars, long maxSourceBytes) {
+        this.maxChars = maxChars;
+        this.maxSourceBytes = maxSourceBytes;
+    }
+
+    /** Formát podle MIME, případně přípony (prohlížeče často posílají {@code application/octet-stream}). */
+    public static Optional<Format> format(String mimeType, String fileName) {
+        String mime = mimeType == null ? "" : mimeType.toLowerCase(Locale.ROOT);
+        String ext = fileName == null || fileName.lastIndexOf('.') < 0 ? ""
+                : fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        if (mime.equals("application/pdf") || ext.equals("pdf")) return Optional.of(Format.PDF);
+        if (mime.startsWith("application/vnd.openxmlformats-officedocument.")
+                || mime.startsWith("application/vnd.oasis.opendocument.") || OFFICE_EXT.contains(ext)) {
+            return Optional.of(Format.OFFICE);
+        }
+        if (mime.startsWith("text/") || mime.equals("application/json") || mime.endsWith("+xml")
+                || mime.equals("application/xml") || TEXT_EXT.contains(ext)) {
+            return Optional.of(Format.TEXT);
+        }
+        return Optional.empty();
+    }
+
+    public String extract(Format format, InputStream in) throws IOException {
+        TextBuffer out = new TextBuffer(maxChars);
+        switch (format) {
+            case PDF -> {
+                byte[] data = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxSourceBytes + 1));
+                if (data.length > maxSourceBytes) {
+                    throw new IOException("PDF larger than " + maxSourceBytes + " bytes");
+                }
+                pdf(data, out);
+            }
+            case OFFICE -> OfficeTextExtractor.extract(in, out);
+            case TEXT -> {
+                // 4 B/znak stačí i na UTF-8 s diakritikou; zbytek souboru se nečte
+                byte[] data = in.readNBytes((int) Math.min(maxSourceBytes, 4L * maxChars));
+                String text = decode(data);
+                if (text.regionMatches(true, 0, "<!doctype html", 0, 14) || text.regionMatches(true, 0, "<html", 0, 5)) {
+                    text = TAGS.matcher(text).replaceAll(" ");
+                }
+                out.append(text);
+            }
+        }
+        return out.toString();
+    }
+
+    private void pdf(byte[] data, TextBuffer out) throws IOException {
+        // pomocná paměť PDFBoxu je omezená stejně jako zdroj
+        try (PDDocument doc = Loader.loadPDF(data, "", null, null,
+                MemoryUsageSetting.setupMainMemoryOnly(maxSourceBytes).streamCache)) {
+            PDFTextStripper stripper = new PDFTextStripper() {
+                @Override
+                public void processPage(PDPage page) throws IOException {
+                    if (!out.full()) super.processPage(page);
+                }
+            };
+            stripper.setLineSeparator("\n");
+            stripper.writeText(doc, new Writer() {
+                @Override
+                public void write(char[] buf, int off, int len) {
+                    out.append(CharBuffer.wrap(buf, off, len));
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+    }
+
+    private static String decode(byte[] data) {
+        int off = data.length >= 3 && (data[0] & 0xff) == 0xEF && (data[1] & 0xff) == 0xBB && (data[2] & 0xff) == 0xBF ? 3 : 0;
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data, off, trimPartialUtf8(data, off)))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return new String(data, CP1250); // starší české exporty (účetnictví, CSV z Excelu)
+        }
+    }
+
+    /** Délka bez useknuté vícebajtové sekvence na konci (čteme jen prefix souboru). */
+    private static int trimPartialUtf8(byte[] data, int off) {
+        int end = data.length;
+        for (int k = 1; k <= 3 && end - k >= off; k++) {
+            int b = data[end - k] & 0xff;
+            if ((b & 0xC0) == 0x80) continue;
+            int need = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            return need > k ? end - k - off : end - off;
+        }
+        return end - off;
+    }
+}
@@ -0,0 +1,119 @@
+package cz.stavbau.backend.features.files.text;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Text z Office Open XML (docx, xlsx, pptx) a OpenDocument (odt, ods, odp) – oba formáty jsou ZIP s XML,
+ * stačí JDK (ZipInputStream + StAX, bez DTD a externích entit). Čte se streamovaně po položkách archivu.
+ * - OOXML: jen textové elementy ({@code w:t}, {@code a:t}, {@code t} ve sdílených řetězcích)
+ * - ODF: veškerý text v {@code content.xml}
+ * Binární .doc/.xls nepodporuje.
+ */
+final class OfficeTextExtractor {
+
+    private static final Pattern OOXML_PARTS = Pattern.compile(
+            "word/(document|header\\d*|footer\\d*|footnotes|endnotes)\\.xml"
+                    + "|xl/sharedStrings\\.xml|xl/worksheets/sheet\\d+\\.xml"
+                    + "|ppt/(slides/slide|notesSlides/notesSlide)\\d+\\.xml");
+    private static final Set<String> BLOCKS = Set.of("p", "h", "si", "row", "tr", "list-item", "br", "cr");
+    private static final Set<String> SPACES = Set.of("tab", "s", "c", "table-cell", "tc");
+    /** Ochrana proti ZIP bombě – nekomprimovaná velikost jedné položky. */
+    private static final long MAX_ENTRY_BYTES = 64L * 1024 * 1024;
+
+    private static final XMLInputFactory XML = xmlFactory();
+
+    private OfficeTextExtractor() {}
+
+    static void extract(InputStream in, TextBuffer out) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        for (ZipEntry e = zip.getNextEntry(); e != null && !out.full(); e = zip.getNextEntry()) {
+            String name = e.getName();
+            boolean odf = name.equals("content.xml");
+            if (odf || OOXML_PARTS.matcher(name).matches()) {
+                parse(new Limited(zip, MAX_ENTRY_BYTES), !odf, out);
+                out.newline();
+            }
+        }
+    }
+
+    private static void parse(InputStream xml, boolean onlyTextElements, TextBuffer out) throws IOException {
+        try {
+            XMLStreamReader r = XML.createXMLStreamReader(xml);
+            int inText = 0;
+            try {
+                while (r.hasNext() && !out.full()) {
+                    switch (r.next()) {
+                        case XMLStreamConstants.START_ELEMENT -> {
+                            String local = r.getLocalName();
+                            if (local.equals("t")) inText++;
+                            if (SPACES.contains(local)) out.space();
+                            if (local.equals("br") || local.equals("cr")) out.newline();
+                        }
+                        case XMLStreamConstants.END_ELEMENT -> {
+                            String local = r.getLocalName();
+                            if (local.equals("t")) inText--;
+                            if (BLOCKS.contains(local)) out.newline();
+                        }
+                        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                            if (!onlyTextElements || inText > 0) out.append(r.getText());
+                        }
+                        default -> { }
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid office XML: " + e.getMessage(), e);
+        }
+    }
+
+    private static XMLInputFactory xmlFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return f;
+    }
+
+    /** Čte nejvýš {@code max} bajtů aktuální položky a nezavírá ZIP. */
+    private static final class Limited extends FilterInputStream {
+        private long remaining;
+
+        Limited(InputStream in, long max) {
+            super(in);
+            this.remaining = max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // ZipInputStream zavírá volající
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package cz.stavbau.backend.features.files.text;
+
+/**
+ * Omezený výstup extrakce: slučuje bílé znaky (řádky zůstávají), zahazuje řídicí znaky
+ * a po dosažení limitu další text ignoruje – extraktory se ptají {@link #full()} a končí dřív.
+ */
+final class TextBuffer {
+
+    private final StringBuilder sb = new StringBuilder();
+    private final int maxChars;
+    private char pending; // odložený oddělovač (' ' nebo '\n')
+
+    TextBuffer(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    boolean full() {
+        return sb.length() >= maxChars;
+    }
+
+    void append(CharSequence text) {
+        for (int i = 0; i < text.length() && !full(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                newline();
+            } else if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                space();
+            } else if (!Character.isISOControl(c) && c != '�') {
+                if (pending != 0 && sb.length() > 0) sb.append(pending);
+                pending = 0;
+                sb.append(c);
+            }
+        }
+    }
+
+    void space() {
+        if (pending == 0) pending = ' ';
+    }
+
+    void newline() {
+        pending = '\n';
+    }
+
+    @Override
+    public String toString() {
+        return sb.length() > maxChars ? sb.substring(0, maxChars) : sb.toString();
+    }
+}
@@ -1,8 +1,18 @@
 package cz.stavbau.backend.features.invoices.api;
 
+import cz.stavbau.backend.features.files.api.FileDownloads;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.StoredFileService;
 import cz.stavbau.backend.features.invoices.api.dto.*;
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser;
 import cz.stavbau.backend.features.invoices.model.Invoice;
 import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoiceExportRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository;
+import cz.stavbau.backend.features.invoices.service.InvoiceDocumentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceExportService;
+import cz.stavbau.backend.features.invoices.service.InvoicePaymentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
 import cz.stavbau.backend.features.invoices.service.InvoiceService;
 import cz.stavbau.backend.features.invoices.util.InvoiceMapper;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,11 +24,18 @@ import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -31,9 +48,24 @@ import java.util.UUID;
 public class InvoiceController {
 
     private final InvoiceService invoiceService;
+    private final InvoiceRollupService rollupService;
+    private final InvoiceDocumentService documentService;
+    private final StoredFileService storedFileService;
+    private final InvoiceExportService exportService;
+    private final InvoicePaymentService paymentService;
 
-    public InvoiceController(InvoiceService invoiceService) {
+    public InvoiceController(InvoiceService invoiceService,
+                             InvoiceRollupService rollupService,
+                             InvoiceDocumentService documentService,
+                             StoredFileService storedFileService,
+                             InvoiceExportService exportService,
+                             InvoicePaymentService paymentService) {
         this.invoiceService = invoiceService;
+        this.rollupService = rollupService;
+        this.documentService = documentService;
+        this.storedFileService = storedFileService;
+        this.exportService = exportService;
+        this.paymentService = paymentService;
     }
 
     @Operation(summary = "Vytvoří DRAFT fakturu")
@@ -66,6 +98,33 @@ public class InvoiceController {
         return ResponseEntity.noContent().build();
     }
 
+    @Operation(summary = "Přidá/upraví/odebere jednotlivé řádky DRAFT faktury",
+            description = "Součty se posunou o změnu daných řádků; vrací id nových řádků, změnu součtů a nové součty.")
+    @PreAuthorize("hasAuthority('invoices:write')")
+    @PatchMapping(value="/{id}/lines", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<InvoiceLinesPatchResponse> patchLines(@PathVariable UUID id, @Valid @RequestBody InvoiceLinesPatchRequest req) {
+        var patch = new InvoiceService.LinesPatch(
+                req.add() == null ? List.of() : req.add().stream()
+                        .map(l -> new InvoiceService.LineCreate(l.itemName(), l.quantity(), l.unit(), l.unitPrice(), l.vatRate()))
+                        .toList(),
+                req.update() == null ? List.of() : req.update().stream()
+                        .map(l -> new InvoiceService.LineUpdate(l.id(), l.itemName(), l.quantity(), l.unit(), l.unitPrice(), l.vatRate()))
+                        .toList(),
+                req.remove() == null ? List.of() : req.remove());
+        var res = invoiceService.patchLines(id, patch);
+        return ResponseEntity.ok(new InvoiceLinesPatchResponse(res.addedIds(),
+                InvoiceMapper.toTotals(res.delta()), InvoiceMapper.toTotals(res.totals())));
+    }
+
+    @Operation(summary = "Rekapitulace DPH po sazbách")
+    @PreAuthorize("hasAuthority('invoices:read')")
+    @GetMapping("/{id}/vat-recap")
+    public ResponseEntity<List<InvoiceVatRecapDto>> vatRecap(@PathVariable UUID id) {
+        return ResponseEntity.ok(invoiceService.vatRecap(id).stream()
+                .map(r -> new InvoiceVatRecapDto(r.vatRate(), r.lines(), r.base(), r.vat()))
+                .toList());
+    }
+
     @Operation(summary = "Vydá fakturu (ISSUE) a přidělí číslo ze série")
     @PreAuthorize("hasAuthority('invoices:write')")
     @PostMapping("/{id}/issue")
@@ -74,6 +133,51 @@ public class InvoiceController {
         return ResponseEntity.ok(Map.of("number", number));
     }
 
+    @Operation(summary = "Doklad faktury k tisku",
+            description = "Uložená aktuální verze (ETag/Range jako u souborů); po změně faktury se vygeneruje znovu")
+    @PreAuthorize("hasAuthority('invoices:read')")
+    @GetMapping(value = "/{id}/document", produces = MediaType.ALL_VALUE)
+    public ResponseEntity<StreamingResponseBody> document(@PathVariable UUID id,
+                                                          @RequestParam(defaultValue = "inline") String disposition,
+                                                          @RequestHeader HttpHeaders requestHeaders) {
+        StoredFile sf = documentService.document(id);
+        return FileDownloads.respond(FileDownloads.Meta.of(sf), disposition, requestHeaders,
+                (offset, length, out) -> storedFileService.writeContent(sf, offset, length, out));
+    }
+
+    @Operation(summary = "Hromadně vydá DRAFT faktury",
+            description = "Jedna transakce a jeden posun série; čísla chronologicky podle data vystavení. Výsledek per faktura.")
+    @PreAuthorize("hasAuthority('invoices:write')")
+    @PostMapping(value="/issue-batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<InvoiceIssueResultDto>> issueBatch(@Valid @RequestBody InvoiceIssueBatchRequest req) {
+        return ResponseEntity.ok(invoiceService.issueBatch(req.invoiceIds()).stream()
+                .map(r -> new InvoiceIssueResultDto(r.invoiceId(), r.number(), r.error()))
+                .toList());
+    }
+
+    @Operation(summary = "Import bankovního výpisu a úhrada faktur",
+            description = "GPC/ABO nebo CSV (format vynechán = podle obsahu). Příchozí platby se párují s vydanými fakturami "
+                    + "podle VS (číslice čísla faktury), měny a částky; spárované faktury → PAID v jedné transakci. "
+                    + "dryRun=true jen ukáže párování.")
+    @PreAuthorize("hasAuthority('invoices:write')")
+    @PostMapping(value = "/bank-statements", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<InvoiceBankImportResponse> importBankStatement(
+            @RequestParam UUID companyId,
+            @RequestParam(required = false) BankStatementParser.Format format,
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            @RequestPart("file") MultipartFile file
+    ) throws IOException {
+        InvoicePaymentService.ImportResult res;
+        try (InputStream in = file.getInputStream()) {
+            res = paymentService.importStatement(companyId, in, format, dryRun);
+        }
+        return ResponseEntity.ok(new InvoiceBankImportResponse(res.format().name(), res.transactions(), res.matched(),
+                res.paid(), res.lines().stream()
+                        .map(l -> new InvoiceBankImportResponse.Line(l.line(), l.reference(), l.bookedOn(), l.amount(),
+                                l.currency(), l.variableSymbol(), l.result().name(), l.invoiceId(), l.invoiceNumber()))
+                        .toList()));
+    }
+
     @Operation(summary = "Změna stavu faktury", description = "Povoleno: ISSUED->PAID|CANCELLED")
     @PreAuthorize("hasAuthority('invoices:write')")
     @PostMapping(value="/{id}/status", consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -98,7 +202,8 @@ public class InvoiceController {
 
     @Operation(
         summary = "Seznam faktur (stránkování, filtry)",
-        description = "Filtry: companyId (povinné), projectId, status, q, dateFrom, dateTo; stránkování parametry page, size",
+        description = "Filtry: companyId (povinné), projectId, status, q, dateFrom, dateTo; stránkování parametry page, size. "
+                + "S q jsou výsledky seřazené podle relevance (shoda fulltextu, podobnost fragmentu, novější faktury).",
         responses = @ApiResponse(responseCode = "200", description = "PageDto<InvoiceResponse>")
     )
     @PreAuthorize("hasAuthority('invoices:read')")
@@ -126,4 +231,53 @@ public class InvoiceController {
         var items = result.getContent().stream().map(InvoiceMapper::toResponse).toList();
         return ResponseEntity.ok(new PageDto<>(items, result.getTotalElements(), result.getNumber(), result.getSize()));
     }
+
+    @Operation(summary = "Hromadný export faktur pro účetní",
+            description = "format=CSV (řádek na fakturu, ; a desetinná čárka) | ISDOC (ZIP, jeden ISDOC na vydanou fakturu). "
+                    + "Streamovaně z DB kurzoru; filtry jako u seznamu (bez fulltextu).")
+    @PreAuthorize("hasAuthority('invoices:read')")
+    @GetMapping(value = "/export", produces = {"text/csv", "application/zip"})
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam UUID companyId,
+                                                        @RequestParam(defaultValue = "CSV") InvoiceExportService.Format format,
+                                                        @RequestParam(required = false) UUID projectId,
+                                                        @RequestParam(required = false) InvoiceStatus status,
+                                                        @RequestParam(required = false) LocalDate dateFrom,
+                                                        @RequestParam(required = false) LocalDate dateTo) {
+        var filter = new InvoiceExportRepository.Filter(companyId, projectId, status, dateFrom, dateTo);
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.mimeType()));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("faktury-" + companyId + format.extension(), StandardCharsets.UTF_8)
+                .build());
+        return ResponseEntity.ok().headers(headers)
+                .body(out -> exportService.write(filter, format, out));
+    }
+
+    @Operation(summary = "Finanční přehled: tržby po měsících, fakturace po projektech, pohledávky po odběratelích",
+            description = "Čte jen průběžně udržované součty (rollupy) – cena nezávisí na počtu faktur. "
+                    + "Výchozí rozsah: posledních 12 měsíců.")
+    @PreAuthorize("hasAuthority('invoices:read')")
+    @GetMapping("/dashboard")
+    public ResponseEntity<InvoiceDashboardResponse> dashboard(
+            @RequestParam UUID companyId,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusMonths(11).withDayOfMonth(1);
+        var d = rollupService.dashboard(companyId, start, end, Math.min(Math.max(limit, 1), 100));
+        return ResponseEntity.ok(new InvoiceDashboardResponse(d.companyId(), d.from(), d.to(),
+                d.months().stream()
+                        .map(m -> new InvoiceDashboardResponse.Month(m.month(), m.status(), m.currency(),
+                                m.sums().invoices(), m.sums().subtotal(), m.sums().vatTotal(), m.sums().total()))
+                        .toList(),
+                d.projects().stream().map(InvoiceController::party).toList(),
+                d.customers().stream().map(InvoiceController::party).toList()));
+    }
+
+    private static InvoiceDashboardResponse.Party party(InvoiceRollupRepository.PartyRow p) {
+        return new InvoiceDashboardResponse.Party(p.key(), p.name(), p.currency(), p.invoices(), p.invoiced(),
+                p.outstanding(), p.paid());
+    }
 }
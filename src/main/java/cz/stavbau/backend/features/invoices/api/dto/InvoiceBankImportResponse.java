@@ -0,0 +1,16 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Výsledek importu bankovního výpisu: počty a výsledek párování každé příchozí platby")
+public record InvoiceBankImportResponse(String format, int transactions, int matched, int paid, List<Line> lines) {
+
+    /** {@code result}: MATCHED | AMOUNT_MISMATCH | ALREADY_MATCHED | UNKNOWN_SYMBOL | NO_SYMBOL | CONFLICT */
+    public record Line(int line, String reference, LocalDate bookedOn, BigDecimal amount, String currency,
+                       String variableSymbol, String result, UUID invoiceId, String invoiceNumber) {}
+}
@@ -0,0 +1,22 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Finanční přehled faktur firmy z průběžných součtů: měsíce × stav × měna, "
+        + "projekty s nejvyšší fakturací, odběratelé s nejvyššími pohledávkami")
+public record InvoiceDashboardResponse(UUID companyId, LocalDate from, LocalDate to, List<Month> months,
+                                       List<Party> projects, List<Party> customers) {
+
+    public record Month(LocalDate month, InvoiceStatus status, String currency, long invoices,
+                        BigDecimal subtotal, BigDecimal vatTotal, BigDecimal total) {}
+
+    /** {@code invoiced} = ISSUED + PAID, {@code outstanding} = ISSUED. */
+    public record Party(String key, String name, String currency, long invoices, BigDecimal invoiced,
+                        BigDecimal outstanding, BigDecimal paid) {}
+}
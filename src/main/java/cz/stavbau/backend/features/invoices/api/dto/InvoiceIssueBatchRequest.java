@@ -0,0 +1,11 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Hromadné vydání DRAFT faktur")
+public record InvoiceIssueBatchRequest(
+        @NotEmpty List<UUID> invoiceIds
+) {}
@@ -0,0 +1,11 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.UUID;
+
+@Schema(description = "Výsledek vydání jedné faktury: číslo, nebo kód chyby")
+public record InvoiceIssueResultDto(
+        UUID invoiceId,
+        String number,
+        String error
+) {}
@@ -0,0 +1,13 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Změna jednotlivých řádků faktury (přidat / upravit / odebrat)")
+public record InvoiceLinesPatchRequest(
+        @Valid List<InvoiceLineDto> add,
+        @Valid List<InvoiceLinePatchDto> update,
+        List<UUID> remove
+) {}
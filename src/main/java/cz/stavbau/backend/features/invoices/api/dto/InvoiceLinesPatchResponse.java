@@ -0,0 +1,12 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Výsledek změny řádků: id nových řádků, změna součtů a nové součty")
+public record InvoiceLinesPatchResponse(
+        List<UUID> addedIds,
+        InvoiceTotalsDto delta,
+        InvoiceTotalsDto totals
+) {}
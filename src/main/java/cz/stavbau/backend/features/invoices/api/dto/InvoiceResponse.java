@@ -20,5 +20,7 @@ public record InvoiceResponse(
         BigDecimal subtotal,
         BigDecimal vatTotal,
         BigDecimal total,
-        InvoiceStatus status
+        InvoiceStatus status,
+        @Schema(description = "První den prodlení (faktura po splatnosti); zůstává i po zaplacení")
+        LocalDate overdueSince
 ) {}
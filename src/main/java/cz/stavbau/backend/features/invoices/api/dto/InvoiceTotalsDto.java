@@ -0,0 +1,11 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.math.BigDecimal;
+
+@Schema(description = "Součty faktury (nebo jejich změna)")
+public record InvoiceTotalsDto(
+        BigDecimal subtotal,
+        BigDecimal vatTotal,
+        BigDecimal total
+) {}
@@ -0,0 +1,12 @@
+package cz.stavbau.backend.features.invoices.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.math.BigDecimal;
+
+@Schema(description = "Rekapitulace DPH za jednu sazbu")
+public record InvoiceVatRecapDto(
+        BigDecimal vatRate,
+        int lines,
+        BigDecimal base,
+        BigDecimal vat
+) {}
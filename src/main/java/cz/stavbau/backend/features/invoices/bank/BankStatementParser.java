@@ -0,0 +1,297 @@
+package cz.stavbau.backend.features.invoices.bank;
+
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.invoices.util.VariableSymbol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streamované čtení bankovních výpisů – řádek po řádku do {@code sink}, soubor se nikdy nedrží celý.
+ * - GPC (ABO): pevné záznamy 128 znaků v CP1250; pohyby jsou záznamy {@code 075}, částka v haléřích,
+ *   kód účtování 2 = kredit (1 debet, 4/5 storna se neberou jako platby)
+ * - CSV: hlavička s názvy sloupců (česky i anglicky, bez ohledu na diakritiku), oddělovač {@code ;}, {@code ,}
+ *   nebo tabulátor; kódování UTF-8 (s BOM i bez), jinak CP1250 – stejná heuristika jako u textu souborů
+ * Chybný řádek = 400 s číslem řádku; import je všechno, nebo nic.
+ */
+public final class BankStatementParser {
+
+    public enum Format { GPC, CSV }
+
+    private static final Charset CP1250 = Charset.forName("windows-1250");
+    private static final int SNIFF_BYTES = 16 * 1024;
+    private static final int GPC_RECORD = 128;
+    private static final String DEFAULT_CURRENCY = "CZK";
+    private static final DateTimeFormatter GPC_DATE = DateTimeFormatter.ofPattern("ddMMyy");
+    private static final DateTimeFormatter CZ_DATE = DateTimeFormatter.ofPattern("d.M.yyyy");
+
+    /** Sloupce CSV podle normalizovaného názvu v hlavičce (malá písmena, bez diakritiky a interpunkce). */
+    private enum Column {
+        AMOUNT("castka", "objem", "amount", "castka v mene uctu", "suma"),
+        CURRENCY("mena", "currency", "mena uctu"),
+        DATE("datum", "datum zauctovani", "datum provedeni", "datum pohybu", "date", "booking date", "valuta"),
+        VS("vs", "variabilni symbol", "variable symbol", "var symbol"),
+        REFERENCE("id pohybu", "id transakce", "id", "transaction id", "reference"),
+        COUNTER_ACCOUNT("protiucet", "cislo protiuctu", "counter account", "protiucet a kod banky"),
+        MESSAGE("zprava pro prijemce", "zprava", "poznamka", "popis", "message", "note");
+
+        private final String[] names;
+
+        Column(String... names) {
+            this.names = names;
+        }
+    }
+
+    private BankStatementParser() {
+    }
+
+    /** Formát podle začátku souboru: GPC začíná hlavičkou {@code 074}. Stream musí podporovat mark/reset. */
+    public static Format detect(BufferedInputStream in) throws IOException {
+        in.mark(3);
+        byte[] head = in.readNBytes(3);
+        in.reset();
+        return head.length == 3 && head[0] == '0' && head[1] == '7' && head[2] == '4' ? Format.GPC : Format.CSV;
+    }
+
+    public static void parse(InputStream in, Format format, Consumer<BankTransaction> sink) throws IOException {
+        BufferedInputStream buffered = in instanceof BufferedInputStream b ? b : new BufferedInputStream(in, SNIFF_BYTES);
+        switch (format) {
+            case GPC -> gpc(new BufferedReader(new InputStreamReader(buffered, CP1250)), sink);
+            case CSV -> csv(new BufferedReader(new InputStreamReader(buffered, sniffCharset(buffered))), sink);
+        }
+    }
+
+    // ------- GPC / ABO --------
+
+    private static void gpc(BufferedReader r, Consumer<BankTransaction> sink) throws IOException {
+        String line;
+        int n = 0;
+        while ((line = r.readLine()) != null) {
+            n++;
+            if (line.isBlank() || !line.startsWith("075")) continue; // 074 hlavička, 076/078/079 doplňující údaje
+            String rec = line.length() >= GPC_RECORD ? line : line + " ".repeat(GPC_RECORD - line.length());
+            try {
+                char code = rec.charAt(60);
+                String currency = gpcCurrency(rec.substring(118, 122));
+                BigDecimal amount = new BigDecimal(rec.substring(48, 60).strip()).movePointLeft(2);
+                sink.accept(new BankTransaction(n,
+                        blankToNull(rec.substring(35, 48)),
+                        LocalDate.parse(rec.substring(91, 97), GPC_DATE),
+                        amount, currency, code == '2',
+                        VariableSymbol.normalize(rec.substring(61, 71)),
+                        blankToNull(stripLeadingZeros(rec.substring(19, 35))),
+                        blankToNull(rec.substring(97, 117))));
+            } catch (NumberFormatException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw invalid(n);
+            }
+        }
+    }
+
+    /** ISO 4217 číselný kód (0203 = CZK); prázdný / neznámý = CZK. */
+    private static String gpcCurrency(String numeric) {
+        String s = numeric.strip();
+        if (s.isEmpty()) return DEFAULT_CURRENCY;
+        int code = Integer.parseInt(s);
+        if (code == 0) return DEFAULT_CURRENCY;
+        for (Currency c : Currency.getAvailableCurrencies()) {
+            if (c.getNumericCode() == code) return c.getCurrencyCode();
+        }
+        return DEFAULT_CURRENCY;
+    }
+
+    // ------- CSV --------
+
+    private static void csv(BufferedReader r, Consumer<BankTransaction> sink) throws IOException {
+        String header = r.readLine();
+        int n = 1;
+        if (header == null) return;
+        if (!header.isEmpty() && header.charAt(0) == '\uFEFF') header = header.substring(1);
+        char sep = separator(header);
+        Map<Column, Integer> cols = columns(split(header, sep));
+        if (!cols.containsKey(Column.AMOUNT)) {
+            throw ValidationException.ofField("invoices.bank.invalid", "file", "amountColumn");
+        }
+        String line;
+        while ((line = r.readLine()) != null) {
+            n++;
+            if (line.isBlank()) continue;
+            List<String> f = split(line, sep);
+            String rawAmount = get(f, cols, Column.AMOUNT);
+            if (rawAmount == null) throw invalid(n);
+            try {
+                BigDecimal amount = amount(rawAmount);
+                String currency = get(f, cols, Column.CURRENCY);
+                String date = get(f, cols, Column.DATE);
+                sink.accept(new BankTransaction(n,
+                        get(f, cols, Column.REFERENCE),
+                        date == null ? null : date(date),
+                        amount.abs(),
+                        currency == null ? DEFAULT_CURRENCY : currency.toUpperCase(Locale.ROOT),
+                        amount.signum() > 0,
+                        VariableSymbol.normalize(get(f, cols, Column.VS)),
+                        get(f, cols, Column.COUNTER_ACCOUNT),
+                        get(f, cols, Column.MESSAGE)));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw invalid(n);
+            }
+        }
+    }
+
+    private static Map<Column, Integer> columns(List<String> header) {
+        Map<String, Integer> byName = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            byName.putIfAbsent(normalizeName(header.get(i)), i);
+        }
+        Map<Column, Integer> out = new HashMap<>();
+        for (Column c : Column.values()) {
+            for (String name : c.names) {
+                Integer idx = byName.get(name);
+                if (idx != null) {
+                    out.put(c, idx);
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    static String normalizeName(String s) {
+        String ascii = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return ascii.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").strip();
+    }
+
+    private static char separator(String header) {
+        int semi = count(header, ';'), comma = count(header, ','), tab = count(header, '\t');
+        if (tab > semi && tab > comma) return '\t';
+        return semi >= comma ? ';' : ',';
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) == c) n++;
+        return n;
+    }
+
+    /** Jeden řádek CSV (RFC 4180 uvozovky, bez víceřádkových polí). */
+    static List<String> split(String line, char sep) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == sep) {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString());
+        return out;
+    }
+
+    private static String get(List<String> fields, Map<Column, Integer> cols, Column c) {
+        Integer idx = cols.get(c);
+        if (idx == null || idx >= fields.size()) return null;
+        return blankToNull(fields.get(idx));
+    }
+
+    /** „1 234,50“, „-1234.50“, „1,234.50“ – desetinný je poslední z oddělovačů {@code ,}/{@code .}. */
+    static BigDecimal amount(String raw) {
+        String s = raw.replace(" ", "").replace("\u00A0", "").replace("\u202F", "");
+        int comma = s.lastIndexOf(','), dot = s.lastIndexOf('.');
+        if (comma > dot) {
+            s = s.replace(".", "").replace(',', '.');
+        } else {
+            s = s.replace(",", "");
+        }
+        return new BigDecimal(s);
+    }
+
+    /** {@code 2025-10-31}, {@code 31.10.2025} i {@code 31. 10. 2025}; případný čas se ignoruje. */
+    static LocalDate date(String raw) {
+        String s = raw.strip();
+        if (s.length() >= 10 && s.charAt(4) == '-') return LocalDate.parse(s.substring(0, 10));
+        int time = s.indexOf(':');
+        if (time > 0) s = s.substring(0, Math.max(s.lastIndexOf(' ', time), 0));
+        return LocalDate.parse(s.replace(" ", ""), CZ_DATE);
+    }
+
+    // ------- common --------
+
+    /** UTF-8 (BOM nebo platné UTF-8 v úvodu souboru), jinak CP1250. */
+    private static Charset sniffCharset(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_BYTES);
+        byte[] head = in.readNBytes(SNIFF_BYTES);
+        in.reset();
+        int end = head.length;
+        // useknutá vícebajtová sekvence na konci vzorku není chyba kódování
+        for (int k = 1; k <= 3 && end - k >= 0; k++) {
+            int b = head[end - k] & 0xff;
+            if ((b & 0xC0) == 0x80) continue;
+            int need = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            if (need > k) end -= k;
+            break;
+        }
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(head, 0, end));
+            return StandardCharsets.UTF_8;
+        } catch (CharacterCodingException e) {
+            return CP1250;
+        }
+    }
+
+    private static String stripLeadingZeros(String s) {
+        String t = s.strip();
+        int i = 0;
+        while (i < t.length() - 1 && t.charAt(i) == '0') i++;
+        return t.substring(i).equals("0") ? "" : t.substring(i);
+    }
+
+    private static String blankToNull(String s) {
+        if (s == null) return null;
+        String t = s.strip();
+        return t.isEmpty() ? null : t;
+    }
+
+    private static ValidationException invalid(int line) {
+        return new ValidationException("invoices.bank.invalid",
+                List.of(new ValidationException.Violation("file", "invalidLine", "line " + line)));
+    }
+}
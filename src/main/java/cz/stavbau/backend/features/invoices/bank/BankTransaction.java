@@ -0,0 +1,13 @@
+package cz.stavbau.backend.features.invoices.bank;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Jeden pohyb z bankovního výpisu.
+ * {@code amount} je vždy kladná částka pohybu, směr udává {@code credit} (příchozí platba);
+ * {@code variableSymbol} je už normalizovaný ({@code VariableSymbol#normalize}), {@code line} = řádek v souboru.
+ */
+public record BankTransaction(int line, String reference, LocalDate bookedOn, BigDecimal amount, String currency,
+                              boolean credit, String variableSymbol, String counterAccount, String message) {
+}
@@ -0,0 +1,66 @@
+package cz.stavbau.backend.features.invoices.bank;
+
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository.OpenInvoice;
+import cz.stavbau.backend.features.invoices.util.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash index vydaných (neuhrazených) faktur jedné firmy podle variabilního symbolu, postavený jednou na dávku
+ * výpisu – párování pohybu je O(1) bez dotazu do DB. Shoda = VS + měna + přesná částka; spárovaná faktura
+ * z indexu vypadne, takže druhá platba téže faktury ve výpisu se nahlásí jako {@link Result#ALREADY_MATCHED}.
+ */
+public final class PaymentMatcher {
+
+    public enum Result {
+        MATCHED,
+        /** VS sedí, částka nebo měna ne (částečná / přeplatek) – k ručnímu řešení, nic se nemění. */
+        AMOUNT_MISMATCH,
+        ALREADY_MATCHED,
+        UNKNOWN_SYMBOL,
+        NO_SYMBOL,
+        /** Odchozí platba / storno – nepáruje se. */
+        IGNORED,
+        /** Spárováno, ale faktura se mezi načtením indexu a zámkem změnila (uhrazena, stornována, jiná částka). */
+        CONFLICT
+    }
+
+    public record Match(Result result, OpenInvoice invoice) {}
+
+    private final Map<String, List<OpenInvoice>> bySymbol;
+    private final Set<String> matchedSymbols = new HashSet<>();
+
+    public PaymentMatcher(List<OpenInvoice> open) {
+        this.bySymbol = new HashMap<>(Math.max(16, open.size() * 4 / 3 + 1));
+        for (OpenInvoice inv : open) {
+            String vs = VariableSymbol.of(inv.number());
+            if (vs != null) bySymbol.computeIfAbsent(vs, k -> new ArrayList<>(1)).add(inv);
+        }
+    }
+
+    public Match match(BankTransaction tx) {
+        if (!tx.credit() || tx.amount().signum() <= 0) return new Match(Result.IGNORED, null);
+        if (tx.variableSymbol() == null) return new Match(Result.NO_SYMBOL, null);
+        List<OpenInvoice> candidates = bySymbol.get(tx.variableSymbol());
+        if (candidates == null || candidates.isEmpty()) {
+            return new Match(matchedSymbols.contains(tx.variableSymbol()) ? Result.ALREADY_MATCHED
+                    : Result.UNKNOWN_SYMBOL, null);
+        }
+        // stejný VS může mít víc faktur (různé řady) – rozhodne částka a měna
+        for (Iterator<OpenInvoice> it = candidates.iterator(); it.hasNext(); ) {
+            OpenInvoice inv = it.next();
+            if (inv.currency().equalsIgnoreCase(tx.currency()) && inv.total().compareTo(tx.amount()) == 0) {
+                it.remove();
+                matchedSymbols.add(tx.variableSymbol());
+                return new Match(Result.MATCHED, inv);
+            }
+        }
+        return new Match(Result.AMOUNT_MISMATCH, candidates.get(0));
+    }
+}
@@ -0,0 +1,105 @@
+package cz.stavbau.backend.features.invoices.document;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Vstup pro vykreslení dokladu: faktura, řádky (v pevném pořadí) a rozparsované strany z JSON snapshotů.
+ * Rekapitulace DPH se počítá stejně jako {@code InvoiceLineBatchRepository#vatRecap} (DPH zaokrouhlené po řádcích).
+ */
+public record InvoiceDocument(Invoice invoice, List<InvoiceLine> lines, Party supplier, Party customer,
+                              List<VatRow> vatRecap) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** Strana dokladu; {@code address} = řádky adresy pro tisk, {@code postal} = tytéž údaje po polích (ISDOC). */
+    public record Party(String name, String ico, String dic, List<String> address, Postal postal) {}
+
+    public record Postal(String street, String zip, String city, String country) {}
+
+    private static final Pattern ZIP_CITY = Pattern.compile("^(\\d{3} ?\\d{2})\\s+(.+)$");
+
+    public record VatRow(BigDecimal vatRate, BigDecimal base, BigDecimal vat) {}
+
+    public static InvoiceDocument of(Invoice invoice, List<InvoiceLine> lines) {
+        List<InvoiceLine> sorted = lines.stream()
+                .sorted(Comparator.comparing(InvoiceLine::getItemName).thenComparing(InvoiceLine::getId))
+                .toList();
+        Map<BigDecimal, BigDecimal[]> recap = new TreeMap<>(Comparator.reverseOrder());
+        for (InvoiceLine l : sorted) {
+            BigDecimal[] row = recap.computeIfAbsent(l.getVatRate().stripTrailingZeros(),
+                    k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            row[0] = row[0].add(l.getLineTotal());
+            if (invoice.getVatMode() == VatMode.STANDARD) {
+                row[1] = row[1].add(l.getLineTotal().multiply(l.getVatRate()).divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP));
+            }
+        }
+        List<VatRow> vat = new ArrayList<>();
+        recap.forEach((rate, row) -> vat.add(new VatRow(rate, row[0], row[1].setScale(2, RoundingMode.HALF_UP))));
+        return new InvoiceDocument(invoice, sorted, party(invoice.getSupplierJson()), party(invoice.getCustomerJson()), vat);
+    }
+
+    /** Tolerantní čtení snapshotu strany – neznámá / chybějící pole se vynechají. */
+    public static Party party(String json) {
+        JsonNode n;
+        try {
+            n = json == null || json.isBlank() ? JSON.createObjectNode() : JSON.readTree(json);
+        } catch (Exception e) {
+            n = JSON.createObjectNode();
+        }
+        List<String> address = new ArrayList<>();
+        Postal postal = new Postal(null, null, null, null);
+        JsonNode a = n.path("address");
+        if (a.isTextual()) {
+            address.addAll(a.asText().lines().map(String::strip).filter(s -> !s.isEmpty()).toList());
+            postal = postal(address);
+        } else if (a.isObject()) {
+            postal = new Postal(text(a, "street"), text(a, "zip"), text(a, "city"), text(a, "country"));
+            add(address, postal.street());
+            String city = join(postal.zip(), postal.city());
+            add(address, city);
+            add(address, postal.country());
+        }
+        return new Party(text(n, "name"), text(n, "ico"), text(n, "dic"), address, postal);
+    }
+
+    /** Adresa jako text: ulice, „PSČ obec“, případně stát. */
+    private static Postal postal(List<String> lines) {
+        String street = lines.isEmpty() ? null : lines.get(0);
+        for (int i = 1; i < lines.size(); i++) {
+            Matcher m = ZIP_CITY.matcher(lines.get(i));
+            if (m.matches()) {
+                return new Postal(street, m.group(1).replace(" ", ""), m.group(2),
+                        i + 1 < lines.size() ? lines.get(i + 1) : null);
+            }
+        }
+        return new Postal(street, null, lines.size() > 1 ? lines.get(1) : null, null);
+    }
+
+    private static String text(JsonNode n, String field) {
+        JsonNode v = n.path(field);
+        return v.isValueNode() && !v.asText().isBlank() ? v.asText() : null;
+    }
+
+    private static String join(String a, String b) {
+        if (a == null) return b;
+        return b == null ? a : a + " " + b;
+    }
+
+    private static void add(List<String> out, String s) {
+        if (s != null) out.add(s);
+    }
+}
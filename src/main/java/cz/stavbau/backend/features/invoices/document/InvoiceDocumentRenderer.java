@@ -0,0 +1,18 @@
+package cz.stavbau.backend.features.invoices.document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Vykreslení dokladu faktury do jednoho formátu. */
+public interface InvoiceDocumentRenderer {
+
+    String mimeType();
+
+    /** Přípona souboru včetně tečky. */
+    String extension();
+
+    /** Verze šablony a rendereru – součást otisku dokladu, její změna vynutí nové vygenerování. */
+    String version();
+
+    void render(InvoiceDocument document, OutputStream out) throws IOException;
+}
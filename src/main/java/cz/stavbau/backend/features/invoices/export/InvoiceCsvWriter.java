@@ -0,0 +1,87 @@
+package cz.stavbau.backend.features.invoices.export;
+
+import cz.stavbau.backend.features.invoices.document.InvoiceDocument;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * CSV pro účetní: jeden řádek na fakturu, oddělovač {@code ;}, desetinná čárka a BOM – otevře se rovnou
+ * v českém Excelu. Pole se uvozují jen když obsahují oddělovač, uvozovky nebo konec řádku (RFC 4180).
+ * Zapisuje se průběžně do bufferovaného writeru, nic se nedrží.
+ */
+public final class InvoiceCsvWriter {
+
+    public static final String MIME_TYPE = "text/csv";
+
+    private static final String[] HEADER = {
+            "Číslo", "Stav", "Datum vystavení", "DUZP", "Splatnost", "Měna",
+            "Odběratel", "IČO", "DIČ", "Základ", "DPH", "Celkem", "Projekt", "Id"
+    };
+
+    private final Writer out;
+    private final StringBuilder row = new StringBuilder(256);
+    private int columns;
+
+    public InvoiceCsvWriter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.out.write('\uFEFF');
+        for (String h : HEADER) field(h);
+        endRow();
+    }
+
+    public void write(Invoice inv) throws IOException {
+        InvoiceDocument.Party customer = InvoiceDocument.party(inv.getCustomerJson());
+        field(inv.getNumber());
+        field(inv.getStatus().name());
+        field(inv.getIssueDate());
+        field(inv.getTaxDate());
+        field(inv.getDueDate());
+        field(inv.getCurrency());
+        field(customer.name());
+        field(customer.ico());
+        field(customer.dic());
+        field(inv.getSubtotal());
+        field(inv.getVatTotal());
+        field(inv.getTotal());
+        field(inv.getProjectId());
+        field(inv.getId());
+        endRow();
+    }
+
+    /** Dopíše buffer; podkladový stream nezavírá (patří kontejneru). */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void field(Object v) {
+        if (columns++ > 0) row.append(';');
+        if (v == null) return;
+        String s = switch (v) {
+            case BigDecimal d -> d.toPlainString().replace('.', ',');
+            case LocalDate d -> d.toString();
+            case UUID id -> id.toString();
+            default -> v.toString();
+        };
+        if (s.indexOf(';') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+            row.append('"').append(s.replace("\"", "\"\"")).append('"');
+        } else {
+            row.append(s);
+        }
+    }
+
+    private void endRow() throws IOException {
+        row.append("\r\n");
+        out.append(row);
+        row.setLength(0);
+        columns = 0;
+    }
+}
@@ -0,0 +1,190 @@
+package cz.stavbau.backend.features.invoices.export;
+
+import cz.stavbau.backend.features.invoices.document.InvoiceDocument;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Faktura ve formátu ISDOC 6.0.2 (český standard e-faktury) zapsaná přes StAX přímo do výstupu – bez DOM.
+ * Mapování:
+ * - DocumentType 1 (faktura – daňový doklad), VATApplicable podle režimu DPH
+ * - částky jsou v měně faktury vedené jako lokální (kurz 1), bez zálohových plateb
+ * - DPH na řádku i v rekapitulaci zaokrouhlené po řádcích – stejně jako součty faktury
+ * Splatnost ISDOC nese jen ve {@code PaymentMeans} spolu s bankovním spojením, které faktura nemá – vynechává se.
+ */
+public final class IsdocInvoiceWriter {
+
+    public static final String NAMESPACE = "http://isdoc.cz/namespace/2013";
+    public static final String VERSION = "6.0.2";
+    public static final String EXTENSION = ".isdoc";
+
+    private static final XMLOutputFactory XML = XMLOutputFactory.newFactory();
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    private IsdocInvoiceWriter() {
+    }
+
+    /** Zapíše jeden doklad; {@code out} se nezavírá (typicky položka ZIP archivu). */
+    public static void write(InvoiceDocument doc, OutputStream out) throws IOException {
+        try {
+            XMLStreamWriter w = XML.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+            new Doc(w, doc).write();
+            w.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("ISDOC write failed", e);
+        }
+    }
+
+    private record Doc(XMLStreamWriter w, InvoiceDocument doc) {
+
+        void write() throws XMLStreamException {
+            Invoice inv = doc.invoice();
+            boolean vat = inv.getVatMode() == VatMode.STANDARD;
+            w.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            w.setDefaultNamespace(NAMESPACE);
+            w.writeStartElement(NAMESPACE, "Invoice");
+            w.writeDefaultNamespace(NAMESPACE);
+            w.writeAttribute("version", VERSION);
+
+            el("DocumentType", "1");
+            el("ID", inv.getNumber());
+            el("UUID", inv.getId().toString().toUpperCase(Locale.ROOT));
+            el("IssuingSystem", "StavBau");
+            el("IssueDate", inv.getIssueDate().toString());
+            if (inv.getTaxDate() != null) el("TaxPointDate", inv.getTaxDate().toString());
+            el("VATApplicable", Boolean.toString(vat));
+            el("ElectronicPossibilityAgreementReference", "");
+            el("LocalCurrencyCode", inv.getCurrency());
+            el("CurrRate", "1");
+            el("RefCurrRate", "1");
+
+            w.writeStartElement("AccountingSupplierParty");
+            party(doc.supplier());
+            w.writeEndElement();
+            w.writeStartElement("AccountingCustomerParty");
+            party(doc.customer());
+            w.writeEndElement();
+
+            w.writeStartElement("InvoiceLines");
+            int n = 0;
+            for (InvoiceLine l : doc.lines()) {
+                line(++n, l, vat);
+            }
+            w.writeEndElement();
+
+            // bez DPH (nebo bez řádků) jedna nulová sazba – ISDOC vyžaduje aspoň jeden TaxSubTotal
+            List<InvoiceDocument.VatRow> recap = vat && !doc.vatRecap().isEmpty() ? doc.vatRecap()
+                    : List.of(new InvoiceDocument.VatRow(BigDecimal.ZERO, inv.getSubtotal(), BigDecimal.ZERO));
+            w.writeStartElement("TaxTotal");
+            for (InvoiceDocument.VatRow r : recap) {
+                w.writeStartElement("TaxSubTotal");
+                amount("TaxableAmount", r.base());
+                amount("TaxAmount", r.vat());
+                amount("TaxInclusiveAmount", r.base().add(r.vat()));
+                amount("AlreadyClaimedTaxableAmount", BigDecimal.ZERO);
+                amount("AlreadyClaimedTaxAmount", BigDecimal.ZERO);
+                amount("AlreadyClaimedTaxInclusiveAmount", BigDecimal.ZERO);
+                amount("DifferenceTaxableAmount", r.base());
+                amount("DifferenceTaxAmount", r.vat());
+                amount("DifferenceTaxInclusiveAmount", r.base().add(r.vat()));
+                w.writeStartElement("TaxCategory");
+                el("Percent", r.vatRate().stripTrailingZeros().toPlainString());
+                w.writeEndElement();
+                w.writeEndElement();
+            }
+            amount("TaxAmount", inv.getVatTotal());
+            w.writeEndElement();
+
+            w.writeStartElement("LegalMonetaryTotal");
+            amount("TaxExclusiveAmount", inv.getSubtotal());
+            amount("TaxInclusiveAmount", inv.getTotal());
+            amount("AlreadyClaimedTaxExclusiveAmount", BigDecimal.ZERO);
+            amount("AlreadyClaimedTaxInclusiveAmount", BigDecimal.ZERO);
+            amount("DifferenceTaxExclusiveAmount", inv.getSubtotal());
+            amount("DifferenceTaxInclusiveAmount", inv.getTotal());
+            amount("PaidDepositsAmount", BigDecimal.ZERO);
+            amount("PayableAmount", inv.getTotal());
+            w.writeEndElement();
+
+            w.writeEndElement();
+            w.writeEndDocument();
+        }
+
+        private void party(InvoiceDocument.Party p) throws XMLStreamException {
+            InvoiceDocument.Postal a = p.postal();
+            w.writeStartElement("Party");
+            w.writeStartElement("PartyIdentification");
+            el("ID", p.ico());
+            w.writeEndElement();
+            w.writeStartElement("PartyName");
+            el("Name", p.name());
+            w.writeEndElement();
+            w.writeStartElement("PostalAddress");
+            el("StreetName", a.street());
+            el("BuildingNumber", "");
+            el("CityName", a.city());
+            el("PostalZone", a.zip());
+            w.writeStartElement("Country");
+            el("IdentificationCode", "CZ");
+            el("Name", a.country() != null ? a.country() : "Česká republika");
+            w.writeEndElement();
+            w.writeEndElement();
+            if (p.dic() != null) {
+                w.writeStartElement("PartyTaxScheme");
+                el("CompanyID", p.dic());
+                el("TaxScheme", "VAT");
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+        }
+
+        private void line(int n, InvoiceLine l, boolean vat) throws XMLStreamException {
+            BigDecimal lineVat = vat
+                    ? l.getLineTotal().multiply(l.getVatRate()).divide(HUNDRED, 2, RoundingMode.HALF_UP)
+                    : BigDecimal.ZERO;
+            BigDecimal rate = vat ? l.getVatRate() : BigDecimal.ZERO;
+            w.writeStartElement("InvoiceLine");
+            el("ID", Integer.toString(n));
+            w.writeStartElement("InvoicedQuantity");
+            if (l.getUnit() != null && !l.getUnit().isBlank()) w.writeAttribute("unitCode", l.getUnit());
+            w.writeCharacters(l.getQuantity().stripTrailingZeros().toPlainString());
+            w.writeEndElement();
+            amount("LineExtensionAmount", l.getLineTotal());
+            amount("LineExtensionAmountTaxInclusive", l.getLineTotal().add(lineVat));
+            amount("LineExtensionTaxAmount", lineVat);
+            amount("UnitPrice", l.getUnitPrice());
+            amount("UnitPriceTaxInclusive",
+                    l.getUnitPrice().multiply(HUNDRED.add(rate)).divide(HUNDRED, 2, RoundingMode.HALF_UP));
+            w.writeStartElement("ClassifiedTaxCategory");
+            el("Percent", rate.stripTrailingZeros().toPlainString());
+            el("VATCalculationMethod", "0");
+            w.writeEndElement();
+            w.writeStartElement("Item");
+            el("Description", l.getItemName());
+            w.writeEndElement();
+            w.writeEndElement();
+        }
+
+        private void amount(String name, BigDecimal v) throws XMLStreamException {
+            el(name, (v == null ? BigDecimal.ZERO : v).setScale(2, RoundingMode.HALF_UP).toPlainString());
+        }
+
+        private void el(String name, String text) throws XMLStreamException {
+            w.writeStartElement(name);
+            w.writeCharacters(text == null ? "" : text);
+            w.writeEndElement();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package cz.stavbau.backend.features.invoices.jobs;
+
+import cz.stavbau.backend.features.invoices.repo.InvoiceOverdueRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Označuje vydané faktury po splatnosti ({@code overdue_since}); stav zůstává ISSUED, rollupy se nemění.
+ * Dávka = jedna transakce s jedním UPDATE … RETURNING nad částečným indexem splatnosti (SKIP LOCKED claim),
+ * takže běh na více uzlech ani souběžné placení se navzájem neblokují a nic se nenačítá do paměti.
+ * Den splatnosti se počítá v pásmu {@code invoices.overdue.zone} – faktura je po splatnosti až den po ní.
+ */
+@Component
+@ConditionalOnProperty(prefix = "invoices.overdue", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class InvoiceOverdueJob {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceOverdueJob.class);
+    private static final int MAX_LOOPS = 1000; // tvrdá brzda na jeden běh
+
+    private final InvoiceOverdueRepository overdueRepo;
+    private final TransactionTemplate tx;
+
+    private final int batchSize;
+    private final ZoneId zone;
+    private final Counter flaggedCounter;
+    private final Timer runTimer;
+
+    public InvoiceOverdueJob(InvoiceOverdueRepository overdueRepo,
+                             TransactionTemplate tx,
+                             MeterRegistry meterRegistry,
+                             @Value("${invoices.overdue.batch-size:1000}") int batchSize,
+                             @Value("${invoices.overdue.zone:Europe/Prague}") ZoneId zone) {
+        this.overdueRepo = overdueRepo;
+        this.tx = tx;
+        this.batchSize = batchSize > 0 ? batchSize : 1000;
+        this.zone = zone;
+
+        this.flaggedCounter = Counter.builder("invoices_overdue_flagged_total")
+                .description("Pocet faktur oznacenych jako po splatnosti")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("invoices_overdue_job_duration_seconds")
+                .description("Doba behu oznacovani faktur po splatnosti")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${invoices.overdue.cron:0 5 * * * *}", zone = "${invoices.overdue.zone:Europe/Prague}")
+    public void schedule() {
+        runTimer.record(this::sweepSafely);
+    }
+
+    /**
+     * Počty po firmách jdou jen do logu – tag s ID firmy by v metrikách dělal neomezenou kardinalitu.
+     */
+    private void sweepSafely() {
+        Map<UUID, Integer> byCompany = new HashMap<>();
+        int total = 0;
+        int loops = 0;
+        try {
+            LocalDate today = LocalDate.now(zone);
+            while (loops++ < MAX_LOOPS) {
+                Map<UUID, Integer> batch = tx.execute(st -> overdueRepo.flagDue(today, batchSize));
+                if (batch == null || batch.isEmpty()) break;
+                // dávka je commitnutá – počítat hned, ať pád další dávky neschová už označené faktury
+                int flagged = batch.values().stream().mapToInt(Integer::intValue).sum();
+                flaggedCounter.increment(flagged);
+                batch.forEach((companyId, n) -> byCompany.merge(companyId, n, Integer::sum));
+                total += flagged;
+            }
+            if (total > 0) {
+                log.info("invoices.overdue: flagged={} loops={} byCompany={}", total, loops, byCompany);
+            }
+        } catch (Exception e) {
+            log.error("invoices.overdue: FAILED after flagged={} byCompany={}", total, byCompany, e);
+        }
+    }
+}
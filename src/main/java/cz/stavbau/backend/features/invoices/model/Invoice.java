@@ -64,4 +64,8 @@ public class Invoice {
     @Column(name="status", nullable=false, length=16)
     private InvoiceStatus status;
 
+    /** První den prodlení; zapisuje jen {@code InvoiceOverdueJob} (SQL), JPA ho nikdy nepřepíše. */
+    @Column(name="overdue_since", insertable=false, updatable=false)
+    private LocalDate overdueSince;
+
 }
@@ -0,0 +1,50 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/** Poslední vygenerovaný doklad faktury ({@code invoice_documents}): soubor + otisk vstupů. */
+@Repository
+public class InvoiceDocumentRepository {
+
+    public record Row(UUID fileId, String fingerprint) {}
+
+    private final JdbcTemplate jdbc;
+
+    public InvoiceDocumentRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public Row find(UUID invoiceId) {
+        List<Row> rows = jdbc.query("select file_id, fingerprint from invoice_documents where invoice_id = ?",
+                (rs, i) -> new Row(rs.getObject(1, UUID.class), rs.getString(2)), invoiceId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Zamkne řádek faktury (serializuje uložení dokladu téže faktury) a vrátí aktuální doklad;
+     * {@code Row(null, null)} = faktura bez dokladu, {@code null} = faktura neexistuje.
+     */
+    public Row lock(UUID invoiceId) {
+        List<Row> rows = jdbc.query("""
+                select d.file_id, d.fingerprint
+                  from invoices i
+                  left join invoice_documents d on d.invoice_id = i.id
+                 where i.id = ?
+                   for update of i
+                """,
+                (rs, i) -> new Row(rs.getObject(1, UUID.class), rs.getString(2)), invoiceId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public void save(UUID invoiceId, UUID companyId, UUID fileId, String fingerprint) {
+        jdbc.update("""
+                insert into invoice_documents(invoice_id, company_id, file_id, fingerprint) values (?, ?, ?, ?)
+                on conflict (invoice_id) do update
+                   set file_id = excluded.file_id, fingerprint = excluded.fingerprint, rendered_at = now()
+                """, invoiceId, companyId, fileId, fingerprint);
+    }
+}
@@ -0,0 +1,163 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Export faktur kurzorem: forward-only/read-only statement s {@code fetchSize}, takže driver drží v paměti
+ * jen jednu dávku řádků (Postgres otevře kurzor jen uvnitř transakce – volá se pod read-only transakcí).
+ * Řádky se mapují přímo do nespravovaných {@link Invoice}/{@link InvoiceLine} (žádný persistence context);
+ * s položkami jde o jeden JOIN seřazený podle faktury, faktura se předá hned, jak je kompletní.
+ * Poznámky ({@code notes}, large object) se neexportují.
+ */
+@Repository
+public class InvoiceExportRepository {
+
+    public record Filter(UUID companyId, UUID projectId, InvoiceStatus status, LocalDate dateFrom, LocalDate dateTo) {}
+
+    private static final String COLUMNS = """
+            i.id, i.company_id, i.project_id, i.number, i.status, i.vat_mode, i.issue_date, i.tax_date, i.due_date,
+            i.currency, i.supplier_json, i.customer_json, i.subtotal, i.vat_total, i.total""";
+
+    private final JdbcTemplate jdbc;
+    private final int fetchSize;
+
+    public InvoiceExportRepository(JdbcTemplate jdbc,
+                                   @Value("${invoices.export.fetch-size:500}") int fetchSize) {
+        this.jdbc = jdbc;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Projde faktury filtru v pořadí data vystavení a čísla. {@code numberedOnly} vynechá návrhy (bez čísla);
+     * bez {@code withLines} dostane sink prázdný seznam položek.
+     */
+    public void forEach(Filter f, boolean numberedOnly, boolean withLines, BiConsumer<Invoice, List<InvoiceLine>> sink) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder("i.company_id = ?");
+        args.add(f.companyId());
+        if (f.projectId() != null) {
+            where.append(" and i.project_id = ?");
+            args.add(f.projectId());
+        }
+        if (f.status() != null) {
+            where.append(" and i.status = ?");
+            args.add(f.status().name());
+        }
+        if (f.dateFrom() != null) {
+            where.append(" and i.issue_date >= ?");
+            args.add(f.dateFrom());
+        }
+        if (f.dateTo() != null) {
+            where.append(" and i.issue_date <= ?");
+            args.add(f.dateTo());
+        }
+        if (numberedOnly) {
+            where.append(" and i.number is not null");
+        }
+        String sql = withLines
+                ? """
+                  select %s,
+                         l.id, l.item_name, l.quantity, l.unit, l.unit_price, l.vat_rate, l.line_total
+                    from invoices i
+                    left join invoice_lines l on l.invoice_id = i.id
+                   where %s
+                   order by i.issue_date, i.number, i.id, l.item_name, l.id
+                  """.formatted(COLUMNS, where)
+                : """
+                  select %s
+                    from invoices i
+                   where %s
+                   order by i.issue_date, i.number, i.id
+                  """.formatted(COLUMNS, where);
+
+        Grouping grouping = new Grouping(withLines, sink);
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, grouping::row);
+        grouping.flush();
+    }
+
+    /** Skládá po sobě jdoucí řádky JOINu do jedné faktury; drží vždy jen tu rozpracovanou. */
+    private static final class Grouping {
+        private final boolean withLines;
+        private final BiConsumer<Invoice, List<InvoiceLine>> sink;
+        private Invoice current;
+        private List<InvoiceLine> lines = new ArrayList<>();
+
+        Grouping(boolean withLines, BiConsumer<Invoice, List<InvoiceLine>> sink) {
+            this.withLines = withLines;
+            this.sink = sink;
+        }
+
+        void row(ResultSet rs) throws SQLException {
+            UUID id = rs.getObject(1, UUID.class);
+            if (current == null || !current.getId().equals(id)) {
+                flush();
+                current = invoice(rs);
+            }
+            if (withLines && rs.getObject(16) != null) {
+                lines.add(line(rs, id));
+            }
+        }
+
+        void flush() {
+            if (current == null) return;
+            sink.accept(current, lines);
+            current = null;
+            lines = new ArrayList<>();
+        }
+    }
+
+    private static Invoice invoice(ResultSet rs) throws SQLException {
+        Invoice inv = new Invoice();
+        inv.setId(rs.getObject(1, UUID.class));
+        inv.setCompanyId(rs.getObject(2, UUID.class));
+        inv.setProjectId(rs.getObject(3, UUID.class));
+        inv.setNumber(rs.getString(4));
+        inv.setStatus(InvoiceStatus.valueOf(rs.getString(5)));
+        inv.setVatMode(VatMode.valueOf(rs.getString(6)));
+        inv.setIssueDate(rs.getObject(7, LocalDate.class));
+        inv.setTaxDate(rs.getObject(8, LocalDate.class));
+        inv.setDueDate(rs.getObject(9, LocalDate.class));
+        inv.setCurrency(rs.getString(10));
+        inv.setSupplierJson(rs.getString(11));
+        inv.setCustomerJson(rs.getString(12));
+        inv.setSubtotal(rs.getBigDecimal(13));
+        inv.setVatTotal(rs.getBigDecimal(14));
+        inv.setTotal(rs.getBigDecimal(15));
+        return inv;
+    }
+
+    private static InvoiceLine line(ResultSet rs, UUID invoiceId) throws SQLException {
+        InvoiceLine l = new InvoiceLine();
+        l.setId(rs.getObject(16, UUID.class));
+        l.setInvoiceId(invoiceId);
+        l.setItemName(rs.getString(17));
+        l.setQuantity(rs.getBigDecimal(18));
+        l.setUnit(rs.getString(19));
+        l.setUnitPrice(rs.getBigDecimal(20));
+        l.setVatRate(rs.getBigDecimal(21));
+        l.setLineTotal(rs.getBigDecimal(22));
+        return l;
+    }
+}
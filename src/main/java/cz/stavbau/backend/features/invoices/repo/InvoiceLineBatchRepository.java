@@ -0,0 +1,160 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Řádky faktury po dávkách (rozpočty staveb mají stovky položek):
+ * - mazání jedním set-based DELETE, vkládání/úpravy jednou JDBC dávkou (bez entit v persistence contextu)
+ * - součty počítá DB jedním agregačním dotazem nad indexem {@code (invoice_id) INCLUDE (vat_rate, line_total)}
+ * DPH se zaokrouhluje po řádcích (stejně jako dosud), takže přírůstky součtů po řádcích jsou přesné.
+ * {@code invoices.lines_tsv} (názvy položek pro fulltext faktur) se skládá znovu jen při změně názvů –
+ * čte všechny řádky faktury z heapu, což index nepokrývá.
+ */
+@Repository
+public class InvoiceLineBatchRepository {
+
+    /** Stav faktury pod zámkem řádku. */
+    public record Head(InvoiceStatus status, VatMode vatMode) {}
+
+    /** Částky jednoho řádku – stačí pro výpočet přírůstku součtů; název pro rozhodnutí o přestavbě {@code lines_tsv}. */
+    public record Amount(UUID id, String itemName, BigDecimal lineTotal, BigDecimal vatRate) {}
+
+    public record Totals(BigDecimal subtotal, BigDecimal vatTotal, BigDecimal total) {}
+
+    /** Rekapitulace DPH za jednu sazbu. */
+    public record VatRecapRow(BigDecimal vatRate, int lines, BigDecimal base, BigDecimal vat) {}
+
+    private final JdbcTemplate jdbc;
+
+    public InvoiceLineBatchRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** {@code SELECT … FOR UPDATE} faktury – serializuje změny řádků téže faktury; {@code null} = neexistuje. */
+    public Head lockInvoice(UUID invoiceId) {
+        List<Head> rows = jdbc.query("select status, vat_mode from invoices where id = ? for update",
+                (rs, i) -> new Head(InvoiceStatus.valueOf(rs.getString(1)), VatMode.valueOf(rs.getString(2))),
+                invoiceId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public int deleteByInvoice(UUID invoiceId) {
+        return jdbc.update("delete from invoice_lines where invoice_id = ?", invoiceId);
+    }
+
+    /** Smaže řádky a vrátí jejich částky (nenalezené id ve výsledku chybí). */
+    public List<Amount> deleteByIds(UUID invoiceId, Collection<UUID> ids) {
+        if (ids.isEmpty()) return List.of();
+        return jdbc.query("""
+                delete from invoice_lines where invoice_id = ? and id = any(?)
+                returning id, item_name, line_total, vat_rate
+                """,
+                (rs, i) -> new Amount(rs.getObject(1, UUID.class), rs.getString(2), rs.getBigDecimal(3), rs.getBigDecimal(4)),
+                invoiceId, ids.toArray(UUID[]::new));
+    }
+
+    public List<Amount> findAmounts(UUID invoiceId, Collection<UUID> ids) {
+        if (ids.isEmpty()) return List.of();
+        return jdbc.query("select id, item_name, line_total, vat_rate from invoice_lines where invoice_id = ? and id = any(?)",
+                (rs, i) -> new Amount(rs.getObject(1, UUID.class), rs.getString(2), rs.getBigDecimal(3), rs.getBigDecimal(4)),
+                invoiceId, ids.toArray(UUID[]::new));
+    }
+
+    public void insert(List<InvoiceLine> lines) {
+        if (lines.isEmpty()) return;
+        jdbc.batchUpdate("""
+                insert into invoice_lines(id, invoice_id, item_name, quantity, unit, unit_price, vat_rate, line_total)
+                values (?, ?, ?, ?, ?, ?, ?, ?)
+                """,
+                lines.stream().map(l -> new Object[]{
+                        l.getId(), l.getInvoiceId(), l.getItemName(), l.getQuantity(), l.getUnit(),
+                        l.getUnitPrice(), l.getVatRate(), l.getLineTotal()}).toList());
+    }
+
+    public void update(List<InvoiceLine> lines) {
+        if (lines.isEmpty()) return;
+        jdbc.batchUpdate("""
+                update invoice_lines
+                   set item_name = ?, quantity = ?, unit = ?, unit_price = ?, vat_rate = ?, line_total = ?
+                 where id = ? and invoice_id = ?
+                """,
+                lines.stream().map(l -> new Object[]{
+                        l.getItemName(), l.getQuantity(), l.getUnit(), l.getUnitPrice(), l.getVatRate(),
+                        l.getLineTotal(), l.getId(), l.getInvoiceId()}).toList());
+    }
+
+    /** Přepočet součtů (a názvů položek pro vyhledávání) z řádků jedním UPDATE … FROM (agregace) … RETURNING. */
+    public Totals recalcTotals(UUID invoiceId) {
+        return jdbc.queryForObject("""
+                update invoices i
+                   set subtotal  = a.base,
+                       vat_total = case when i.vat_mode = 'STANDARD' then a.vat else 0 end,
+                       total     = a.base + case when i.vat_mode = 'STANDARD' then a.vat else 0 end,
+                       lines_tsv = setweight(to_tsvector('public.stavbau_simple', coalesce(a.names, '')), 'C')
+                  from (select coalesce(sum(l.line_total), 0) as base,
+                               coalesce(sum(round(l.line_total * l.vat_rate / 100, 2)), 0) as vat,
+                               string_agg(l.item_name, ' ') as names
+                          from invoice_lines l
+                         where l.invoice_id = ?) a
+                 where i.id = ?
+                returning i.subtotal, i.vat_total, i.total
+                """,
+                (rs, i) -> new Totals(rs.getBigDecimal(1), rs.getBigDecimal(2), rs.getBigDecimal(3)),
+                invoiceId, invoiceId);
+    }
+
+    /**
+     * Přičte přírůstek k uloženým součtům (částky řádků se nečtou). Při {@code namesChanged} se názvy položek
+     * skládají znovu – z tsvectoru nejde odebrat slovo, které může mít i jiný řádek; změna množství či ceny
+     * tak zůstává O(změněné řádky).
+     */
+    public Totals addToTotals(UUID invoiceId, BigDecimal subtotalDelta, BigDecimal vatDelta, boolean namesChanged) {
+        if (!namesChanged) {
+            return jdbc.queryForObject("""
+                    update invoices
+                       set subtotal = subtotal + ?, vat_total = vat_total + ?, total = total + ? + ?
+                     where id = ?
+                    returning subtotal, vat_total, total
+                    """,
+                    (rs, i) -> new Totals(rs.getBigDecimal(1), rs.getBigDecimal(2), rs.getBigDecimal(3)),
+                    subtotalDelta, vatDelta, subtotalDelta, vatDelta, invoiceId);
+        }
+        return jdbc.queryForObject("""
+                update invoices
+                   set subtotal = subtotal + ?, vat_total = vat_total + ?, total = total + ? + ?,
+                       lines_tsv = (select setweight(to_tsvector('public.stavbau_simple',
+                                                                 coalesce(string_agg(l.item_name, ' '), '')), 'C')
+                                      from invoice_lines l where l.invoice_id = ?)
+                 where id = ?
+                returning subtotal, vat_total, total
+                """,
+                (rs, i) -> new Totals(rs.getBigDecimal(1), rs.getBigDecimal(2), rs.getBigDecimal(3)),
+                subtotalDelta, vatDelta, subtotalDelta, vatDelta, invoiceId, invoiceId);
+    }
+
+    public List<VatRecapRow> vatRecap(UUID invoiceId) {
+        return jdbc.query("""
+                select l.vat_rate,
+                       count(*),
+                       sum(l.line_total),
+                       case when i.vat_mode = 'STANDARD' then sum(round(l.line_total * l.vat_rate / 100, 2)) else 0 end
+                  from invoice_lines l
+                  join invoices i on i.id = l.invoice_id
+                 where l.invoice_id = ?
+                 group by l.vat_rate, i.vat_mode
+                 order by l.vat_rate desc
+                """,
+                (rs, i) -> new VatRecapRow(rs.getBigDecimal(1), rs.getInt(2), rs.getBigDecimal(3),
+                        rs.getBigDecimal(4).setScale(2)),
+                invoiceId);
+    }
+}
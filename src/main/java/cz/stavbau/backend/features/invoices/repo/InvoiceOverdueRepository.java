@@ -0,0 +1,56 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Označování faktur po splatnosti ({@code invoices.overdue_since}) – set-based, bez načítání entit.
+ * Kandidáti se berou z částečného indexu {@code ix_invoices_issued_due}; zpracování: {@code InvoiceOverdueJob}.
+ */
+@Repository
+public class InvoiceOverdueRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public InvoiceOverdueRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Jedna dávka: zamkne nejvýš {@code limit} vydaných neoznačených faktur se splatností před {@code today}
+     * (řádky zamčené jinou transakcí – typicky právě placené/stornované – přeskočí, SKIP LOCKED),
+     * označí je jedním UPDATE a vrátí počty označených po firmách.
+     */
+    public Map<UUID, Integer> flagDue(LocalDate today, int limit) {
+        Map<UUID, Integer> byCompany = new LinkedHashMap<>();
+        jdbc.query("""
+                with due as (
+                    select id
+                      from invoices
+                     where status = 'ISSUED'
+                       and overdue_since is null
+                       and due_date < ?
+                     order by due_date
+                     limit ?
+                       for update skip locked
+                ), flagged as (
+                    update invoices i
+                       set overdue_since = i.due_date + 1
+                      from due
+                     where i.id = due.id
+                 returning i.company_id
+                )
+                select company_id, count(*) from flagged group by company_id
+                """,
+                rs -> {
+                    byCompany.put(rs.getObject(1, UUID.class), rs.getInt(2));
+                },
+                today, limit);
+        return byCompany;
+    }
+}
@@ -0,0 +1,66 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Úhrady faktur z bankovních výpisů: kandidáti pro párování (index-only scan přes částečný index vydaných faktur),
+ * set-based přepnutí ISSUED → PAID a záznam pohybů, které fakturu uhradily (dávkou).
+ */
+@Repository
+public class InvoicePaymentRepository {
+
+    /** Vydaná neuhrazená faktura – jen to, co párování potřebuje. */
+    public record OpenInvoice(UUID id, String number, BigDecimal total, String currency) {}
+
+    /** Pohyb z výpisu, který uhradil fakturu. */
+    public record Payment(UUID invoiceId, UUID companyId, String reference, LocalDate bookedOn, BigDecimal amount,
+                          String currency, String variableSymbol, String counterAccount, String message) {}
+
+    private final JdbcTemplate jdbc;
+
+    public InvoicePaymentRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<OpenInvoice> findOpen(UUID companyId) {
+        return jdbc.query("""
+                select id, number, total, currency
+                  from invoices
+                 where company_id = ? and status = 'ISSUED' and number is not null
+                """,
+                (rs, i) -> new OpenInvoice(rs.getObject(1, UUID.class), rs.getString(2), rs.getBigDecimal(3),
+                        rs.getString(4)),
+                companyId);
+    }
+
+    /** Jeden UPDATE pro celou dávku; vrací id, která opravdu přešla (volající je drží zamčená). */
+    public List<UUID> markPaid(Collection<UUID> invoiceIds) {
+        if (invoiceIds.isEmpty()) return List.of();
+        return jdbc.query("""
+                update invoices set status = 'PAID'
+                 where id = any(?) and status = 'ISSUED'
+                returning id
+                """,
+                (rs, i) -> rs.getObject(1, UUID.class),
+                (Object) invoiceIds.toArray(UUID[]::new));
+    }
+
+    public void insert(List<Payment> payments) {
+        if (payments.isEmpty()) return;
+        jdbc.batchUpdate("""
+                insert into invoice_payments(id, invoice_id, company_id, reference, booked_on, amount, currency,
+                                             variable_symbol, counter_account, message)
+                values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """,
+                payments.stream().map(p -> new Object[]{
+                        UUID.randomUUID(), p.invoiceId(), p.companyId(), p.reference(), p.bookedOn(), p.amount(),
+                        p.currency(), p.variableSymbol(), p.counterAccount(), p.message()}).toList());
+    }
+}
@@ -1,6 +1,18 @@
 package cz.stavbau.backend.features.invoices.repo;
 import cz.stavbau.backend.features.invoices.model.Invoice;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
-public interface InvoiceRepository extends JpaRepository<Invoice, UUID>, JpaSpecificationExecutor<Invoice> {}
+public interface InvoiceRepository extends JpaRepository<Invoice, UUID>, JpaSpecificationExecutor<Invoice> {
+
+    /** Zamkne faktury v pořadí podle id (souběžné dávky se nezablokují navzájem). */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Invoice i where i.id in :ids order by i.id")
+    List<Invoice> lockAllById(@Param("ids") Collection<UUID> ids);
+}
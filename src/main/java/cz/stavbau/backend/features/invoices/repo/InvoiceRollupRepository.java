@@ -0,0 +1,264 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Rollupy faktur ({@code invoice_rollup_months / _projects / _customers}). Mění se jen přírůstky
+ * (upsert {@code x = x + ?}) ve stejné transakci jako faktura; přehledy čtou jen tyto tabulky.
+ */
+@Repository
+public class InvoiceRollupRepository {
+
+    /** Vše, co určuje buckety faktury a její příspěvek do nich. */
+    public record Snapshot(UUID invoiceId, UUID companyId, UUID projectId, String customerKey, String customerName,
+                           LocalDate issueDate, InvoiceStatus status, String currency,
+                           BigDecimal subtotal, BigDecimal vatTotal, BigDecimal total) {
+
+        public Snapshot withStatus(InvoiceStatus status) {
+            return new Snapshot(invoiceId, companyId, projectId, customerKey, customerName, issueDate, status, currency,
+                    subtotal, vatTotal, total);
+        }
+
+        public Snapshot withTotals(BigDecimal subtotal, BigDecimal vatTotal, BigDecimal total) {
+            return new Snapshot(invoiceId, companyId, projectId, customerKey, customerName, issueDate, status, currency,
+                    subtotal, vatTotal, total);
+        }
+
+        public LocalDate month() {
+            return issueDate.withDayOfMonth(1);
+        }
+    }
+
+    /** Příspěvek faktury se znaménkem: {@code -1} = odečíst starý stav, {@code +1} = přičíst nový. */
+    public record Change(Snapshot invoice, int sign) {}
+
+    public record Sums(long invoices, BigDecimal subtotal, BigDecimal vatTotal, BigDecimal total) {
+
+        static final Sums ZERO = new Sums(0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+
+        Sums plus(Snapshot s, int sign) {
+            BigDecimal k = BigDecimal.valueOf(sign);
+            return new Sums(invoices + sign, subtotal.add(s.subtotal().multiply(k)), vatTotal.add(s.vatTotal().multiply(k)),
+                    total.add(s.total().multiply(k)));
+        }
+
+        Sums add(Sums o) {
+            return new Sums(invoices + o.invoices, subtotal.add(o.subtotal), vatTotal.add(o.vatTotal), total.add(o.total));
+        }
+
+        boolean isZero() {
+            return invoices == 0 && subtotal.signum() == 0 && vatTotal.signum() == 0 && total.signum() == 0;
+        }
+    }
+
+    public record MonthRow(LocalDate month, InvoiceStatus status, String currency, Sums sums) {}
+
+    /** Součty jedné strany (projekt / odběratel) v měně: vydáno (ISSUED + PAID), z toho neuhrazeno (ISSUED). */
+    public record PartyRow(String key, String name, String currency, long invoices, BigDecimal invoiced,
+                           BigDecimal outstanding, BigDecimal paid) {}
+
+    private record MonthKey(UUID companyId, LocalDate month, String status, String currency) {}
+
+    private record ProjectKey(UUID companyId, UUID projectId, String status, String currency) {}
+
+    private record CustomerKey(UUID companyId, String customerKey, String status, String currency) {}
+
+    // stejné pořadí zámků řádků ve všech transakcích → souběžné změny faktur se nezablokují navzájem
+    private static final Comparator<MonthKey> MONTH_ORDER = Comparator.comparing(MonthKey::companyId)
+            .thenComparing(MonthKey::month).thenComparing(MonthKey::status).thenComparing(MonthKey::currency);
+    private static final Comparator<ProjectKey> PROJECT_ORDER = Comparator.comparing(ProjectKey::companyId)
+            .thenComparing(ProjectKey::projectId).thenComparing(ProjectKey::status).thenComparing(ProjectKey::currency);
+    private static final Comparator<CustomerKey> CUSTOMER_ORDER = Comparator.comparing(CustomerKey::companyId)
+            .thenComparing(CustomerKey::customerKey).thenComparing(CustomerKey::status).thenComparing(CustomerKey::currency);
+
+    private final JdbcTemplate jdbc;
+
+    public InvoiceRollupRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** {@code SELECT … FOR UPDATE} faktur v pořadí podle id; chybějící id ve výsledku nejsou. */
+    public List<Snapshot> lock(Collection<UUID> invoiceIds) {
+        if (invoiceIds.isEmpty()) return List.of();
+        return jdbc.query("""
+                select id, company_id, project_id,
+                       public.invoice_customer_key(coalesce(buyer_ico, customer_json ->> 'ico'),
+                                                   coalesce(buyer_name, customer_json ->> 'name')),
+                       coalesce(buyer_name, customer_json ->> 'name', ''),
+                       issue_date, status, currency, subtotal, vat_total, total
+                  from invoices
+                 where id = any(?)
+                 order by id
+                   for update
+                """,
+                (rs, i) -> new Snapshot(
+                        rs.getObject(1, UUID.class),
+                        rs.getObject(2, UUID.class),
+                        rs.getObject(3, UUID.class),
+                        rs.getString(4),
+                        rs.getString(5),
+                        rs.getObject(6, LocalDate.class),
+                        InvoiceStatus.valueOf(rs.getString(7)),
+                        rs.getString(8),
+                        rs.getBigDecimal(9),
+                        rs.getBigDecimal(10),
+                        rs.getBigDecimal(11)),
+                (Object) invoiceIds.toArray(UUID[]::new));
+    }
+
+    /** Sečte změny po bucketech a zapíše je (jedna JDBC dávka na tabulku, nulové přírůstky se přeskočí). */
+    public void apply(Collection<Change> changes) {
+        Map<MonthKey, Sums> months = new TreeMap<>(MONTH_ORDER);
+        Map<ProjectKey, Sums> projects = new TreeMap<>(PROJECT_ORDER);
+        Map<CustomerKey, Sums> customers = new TreeMap<>(CUSTOMER_ORDER);
+        Map<CustomerKey, String> names = new TreeMap<>(CUSTOMER_ORDER);
+        for (Change c : changes) {
+            Snapshot s = c.invoice();
+            String status = s.status().name();
+            months.merge(new MonthKey(s.companyId(), s.month(), status, s.currency()), Sums.ZERO.plus(s, c.sign()), Sums::add);
+            if (s.projectId() != null) {
+                projects.merge(new ProjectKey(s.companyId(), s.projectId(), status, s.currency()),
+                        Sums.ZERO.plus(s, c.sign()), Sums::add);
+            }
+            CustomerKey ck = new CustomerKey(s.companyId(), Objects.requireNonNullElse(s.customerKey(), ""), status, s.currency());
+            customers.merge(ck, Sums.ZERO.plus(s, c.sign()), Sums::add);
+            if (c.sign() > 0 || !names.containsKey(ck)) names.put(ck, Objects.requireNonNullElse(s.customerName(), ""));
+        }
+
+        List<Object[]> monthRows = new ArrayList<>();
+        months.forEach((k, v) -> {
+            if (!v.isZero()) monthRows.add(row(v, k.companyId(), Date.valueOf(k.month()), k.status(), k.currency()));
+        });
+        List<Object[]> projectRows = new ArrayList<>();
+        projects.forEach((k, v) -> {
+            if (!v.isZero()) projectRows.add(row(v, k.companyId(), k.projectId(), k.status(), k.currency()));
+        });
+        List<Object[]> customerRows = new ArrayList<>();
+        customers.forEach((k, v) -> {
+            if (!v.isZero()) customerRows.add(row(v, k.companyId(), k.customerKey(), k.status(), k.currency(), names.get(k)));
+        });
+
+        if (!monthRows.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into invoice_rollup_months(invoice_count, subtotal, vat_total, total,
+                                                      company_id, month, status, currency)
+                    values (?, ?, ?, ?, ?, ?, ?, ?)
+                    on conflict (company_id, month, status, currency) do update
+                       set invoice_count = invoice_rollup_months.invoice_count + excluded.invoice_count,
+                           subtotal = invoice_rollup_months.subtotal + excluded.subtotal,
+                           vat_total = invoice_rollup_months.vat_total + excluded.vat_total,
+                           total = invoice_rollup_months.total + excluded.total,
+                           updated_at = now()
+                    """, monthRows);
+        }
+        if (!projectRows.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into invoice_rollup_projects(invoice_count, subtotal, vat_total, total,
+                                                        company_id, project_id, status, currency)
+                    values (?, ?, ?, ?, ?, ?, ?, ?)
+                    on conflict (company_id, project_id, status, currency) do update
+                       set invoice_count = invoice_rollup_projects.invoice_count + excluded.invoice_count,
+                           subtotal = invoice_rollup_projects.subtotal + excluded.subtotal,
+                           vat_total = invoice_rollup_projects.vat_total + excluded.vat_total,
+                           total = invoice_rollup_projects.total + excluded.total,
+                           updated_at = now()
+                    """, projectRows);
+        }
+        if (!customerRows.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into invoice_rollup_customers(invoice_count, subtotal, vat_total, total,
+                                                         company_id, customer_key, status, currency, customer_name)
+                    values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    on conflict (company_id, customer_key, status, currency) do update
+                       set invoice_count = invoice_rollup_customers.invoice_count + excluded.invoice_count,
+                           subtotal = invoice_rollup_customers.subtotal + excluded.subtotal,
+                           vat_total = invoice_rollup_customers.vat_total + excluded.vat_total,
+                           total = invoice_rollup_customers.total + excluded.total,
+                           customer_name = case when excluded.customer_name <> '' then excluded.customer_name
+                                                else invoice_rollup_customers.customer_name end,
+                           updated_at = now()
+                    """, customerRows);
+        }
+    }
+
+    public List<MonthRow> months(UUID companyId, LocalDate from, LocalDate to) {
+        return jdbc.query("""
+                select month, status, currency, invoice_count, subtotal, vat_total, total
+                  from invoice_rollup_months
+                 where company_id = ? and month >= ? and month <= ? and invoice_count <> 0
+                 order by month, status, currency
+                """,
+                (rs, i) -> new MonthRow(rs.getObject(1, LocalDate.class), InvoiceStatus.valueOf(rs.getString(2)),
+                        rs.getString(3), sums(rs, 4)),
+                companyId, from.withDayOfMonth(1), to);
+    }
+
+    /** Projekty s nejvyšší fakturací. */
+    public List<PartyRow> projects(UUID companyId, int limit) {
+        return jdbc.query("""
+                select project_id::text, null::text, currency, %s
+                  from invoice_rollup_projects
+                 where company_id = ?
+                 group by project_id, currency
+                having sum(total) filter (where status in ('ISSUED', 'PAID')) <> 0
+                 order by 5 desc, 1
+                 limit ?
+                """.formatted(PARTY_SUMS),
+                (rs, i) -> party(rs), companyId, limit);
+    }
+
+    /** Odběratelé s nejvyššími neuhrazenými pohledávkami. */
+    public List<PartyRow> customers(UUID companyId, int limit) {
+        return jdbc.query("""
+                select customer_key, max(customer_name), currency, %s
+                  from invoice_rollup_customers
+                 where company_id = ?
+                 group by customer_key, currency
+                having sum(total) filter (where status in ('ISSUED', 'PAID')) <> 0
+                 order by 6 desc, 5 desc, 1
+                 limit ?
+                """.formatted(PARTY_SUMS),
+                (rs, i) -> party(rs), companyId, limit);
+    }
+
+    private static final String PARTY_SUMS = """
+            coalesce(sum(invoice_count) filter (where status in ('ISSUED', 'PAID')), 0),
+                   coalesce(sum(total) filter (where status in ('ISSUED', 'PAID')), 0),
+                   coalesce(sum(total) filter (where status = 'ISSUED'), 0),
+                   coalesce(sum(total) filter (where status = 'PAID'), 0)""";
+
+    private static Object[] row(Sums s, Object... key) {
+        Object[] out = new Object[4 + key.length];
+        out[0] = s.invoices();
+        out[1] = s.subtotal();
+        out[2] = s.vatTotal();
+        out[3] = s.total();
+        System.arraycopy(key, 0, out, 4, key.length);
+        return out;
+    }
+
+    private static Sums sums(ResultSet rs, int from) throws SQLException {
+        return new Sums(rs.getLong(from), rs.getBigDecimal(from + 1), rs.getBigDecimal(from + 2), rs.getBigDecimal(from + 3));
+    }
+
+    private static PartyRow party(ResultSet rs) throws SQLException {
+        return new PartyRow(rs.getString(1), rs.getString(2), rs.getString(3), rs.getLong(4),
+                rs.getBigDecimal(5), rs.getBigDecimal(6), rs.getBigDecimal(7));
+    }
+}
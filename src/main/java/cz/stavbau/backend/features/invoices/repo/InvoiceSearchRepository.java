@@ -0,0 +1,122 @@
+package cz.stavbau.backend.features.invoices.repo;
+
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Vyhledávání faktur nad udržovaným dokumentem (V20251018_36):
+ * - {@code search_tsv} (GIN): celá slova z čísla, IČO, názvu odběratele a názvů položek; websearch syntaxe
+ * - {@code search_text} (GIN trigramy): fragmenty čísla/IČO/názvu ("0042", "stavb") od 3 znaků
+ * Obojí bez diakritiky a malými písmeny. Pořadí: relevance fulltextu, podobnost fragmentu, novější faktury;
+ * explicitní {@link Sort} volajícího má přednost a relevance pak jen rozhoduje shody.
+ */
+@Repository
+public class InvoiceSearchRepository {
+
+    /** Id faktur stránky v pořadí relevance + celkový počet shod. */
+    public record Result(List<UUID> ids, long total) {}
+
+    private static final String TS_QUERY = "websearch_to_tsquery('public.stavbau_simple', ?)";
+    private static final String NORMALIZED = "public.unaccent_immutable(lower(?))";
+
+    /** Kratší dotaz dává příliš obecné trigramy – hledá se jen fulltextem. */
+    private static final int MIN_FRAGMENT = 3;
+
+    /** Vlastnosti {@code Invoice}, podle kterých lze řadit výsledky hledání (jen whitelist – sloupec jde do SQL). */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "issueDate", "i.issue_date",
+            "dueDate", "i.due_date",
+            "taxDate", "i.tax_date",
+            "number", "i.number",
+            "status", "i.status",
+            "currency", "i.currency",
+            "subtotal", "i.subtotal",
+            "total", "i.total");
+
+    private final JdbcTemplate jdbc;
+
+    public InvoiceSearchRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public Result search(UUID companyId, UUID projectId, InvoiceStatus status, LocalDate dateFrom, LocalDate dateTo,
+                         String query, Sort sort, long offset, int limit) {
+        String q = query.strip();
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder("i.company_id = ?");
+        args.add(companyId);
+        if (projectId != null) {
+            where.append(" and i.project_id = ?");
+            args.add(projectId);
+        }
+        if (status != null) {
+            where.append(" and i.status = ?");
+            args.add(status.name());
+        }
+        if (dateFrom != null) {
+            where.append(" and i.issue_date >= ?");
+            args.add(dateFrom);
+        }
+        if (dateTo != null) {
+            where.append(" and i.issue_date <= ?");
+            args.add(dateTo);
+        }
+        // dotaz se skládá inline z parametrů (ne přes FROM), aby ho planner bral jako konstantu pro GIN indexy
+        if (q.length() >= MIN_FRAGMENT) {
+            where.append(" and (i.search_tsv @@ ").append(TS_QUERY)
+                    .append(" or i.search_text like '%' || replace(replace(replace(").append(NORMALIZED)
+                    .append(", '\\', '\\\\'), '%', '\\%'), '_', '\\_') || '%')");
+            args.add(q);
+            args.add(q);
+        } else {
+            where.append(" and i.search_tsv @@ ").append(TS_QUERY);
+            args.add(q);
+        }
+
+        List<Object> pageArgs = new ArrayList<>(args);
+        pageArgs.addAll(List.of(q, q, offset, limit));
+        List<long[]> total = new ArrayList<>(1);
+        List<UUID> ids = jdbc.query("""
+                select i.id, count(*) over ()
+                  from invoices i
+                 where %s
+                 order by %sts_rank_cd(i.search_tsv, %s) desc, similarity(i.search_text, %s) desc,
+                          i.issue_date desc, i.id
+                offset ? limit ?
+                """.formatted(where, orderBy(sort), TS_QUERY, NORMALIZED),
+                (rs, i) -> {
+                    if (i == 0) total.add(new long[]{rs.getLong(2)});
+                    return rs.getObject(1, UUID.class);
+                },
+                pageArgs.toArray());
+
+        if (!total.isEmpty()) return new Result(ids, total.get(0)[0]);
+        // prázdná stránka za koncem výsledků – počet okno nevrátí
+        long count = offset == 0 ? 0
+                : jdbc.queryForObject("select count(*) from invoices i where " + where, Long.class, args.toArray());
+        return new Result(ids, count);
+    }
+
+    /** Explicitní řazení volajícího jako prefix ORDER BY (s čárkou), prázdné = jen relevance. */
+    private static String orderBy(Sort sort) {
+        if (sort == null || sort.isUnsorted()) return "";
+        StringBuilder sb = new StringBuilder();
+        for (Sort.Order o : sort) {
+            String column = SORT_COLUMNS.get(o.getProperty());
+            if (column == null) {
+                throw ValidationException.ofField("invoices.search.invalidSort", "sort", o.getProperty());
+            }
+            sb.append(column).append(o.isAscending() ? " asc" : " desc").append(", ");
+        }
+        return sb.toString();
+    }
+}
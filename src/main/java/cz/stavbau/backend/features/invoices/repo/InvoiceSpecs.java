@@ -25,12 +25,4 @@ public final class InvoiceSpecs {
     public static Specification<Invoice> dateTo(LocalDate to) {
         return (root, q, cb) -> cb.lessThanOrEqualTo(root.get("issueDate"), to);
     }
-    public static Specification<Invoice> q(String text) {
-        String like = "%" + text.toLowerCase() + "%";
-        return (root, q, cb) -> cb.or(
-            cb.like(cb.lower(root.get("number")), like),
-            cb.like(cb.lower(root.get("supplierJson")), like),
-            cb.like(cb.lower(root.get("customerJson")), like)
-        );
-    }
 }
@@ -0,0 +1,19 @@
+package cz.stavbau.backend.features.invoices.service;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+
+import java.util.UUID;
+
+/**
+ * Doklad faktury (vykreslený ze šablony, uložený ve {@code FileStorage}, link INVOICE).
+ * Generuje se na omezeném poolu po vydání faktury; při čtení se servíruje uložený soubor,
+ * pokud se od vygenerování nezměnila faktura, řádky ani šablona (otisk vstupů).
+ */
+public interface InvoiceDocumentService {
+
+    /** Naplánuje vygenerování po commitu aktuální transakce (plná fronta nevadí – doklad vznikne při čtení). */
+    void renderAfterCommit(UUID invoiceId);
+
+    /** Aktuální doklad; chybí-li nebo je zastaralý, vygeneruje se (souběžné požadavky sdílí jedno generování). */
+    StoredFile document(UUID invoiceId);
+}
@@ -0,0 +1,36 @@
+package cz.stavbau.backend.features.invoices.service;
+
+import cz.stavbau.backend.features.invoices.repo.InvoiceExportRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Hromadný export faktur pro účetní streamovaně z DB kurzoru – paměť nezávisí na počtu faktur.
+ * CSV = řádek na fakturu (vč. návrhů), ISDOC = ZIP s jedním {@code .isdoc} na vydanou fakturu.
+ */
+public interface InvoiceExportService {
+
+    enum Format {
+        CSV("text/csv", ".csv"),
+        ISDOC("application/zip", ".zip");
+
+        private final String mimeType;
+        private final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    void write(InvoiceExportRepository.Filter filter, Format format, OutputStream out) throws IOException;
+}
@@ -0,0 +1,33 @@
+package cz.stavbau.backend.features.invoices.service;
+
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser;
+import cz.stavbau.backend.features.invoices.bank.PaymentMatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Import bankovního výpisu (GPC/ABO nebo CSV): příchozí platby se spárují s vydanými fakturami firmy
+ * podle variabilního symbolu, měny a částky a spárované faktury se v jedné transakci označí jako PAID.
+ */
+public interface InvoicePaymentService {
+
+    /** Výsledek jednoho příchozího pohybu; {@code invoiceId} u MATCHED / AMOUNT_MISMATCH / CONFLICT. */
+    record Line(int line, String reference, LocalDate bookedOn, BigDecimal amount, String currency,
+                String variableSymbol, PaymentMatcher.Result result, UUID invoiceId, String invoiceNumber) {}
+
+    /**
+     * {@code transactions} = všechny pohyby výpisu, {@code lines} = jen příchozí platby;
+     * {@code paid} = faktury opravdu přepnuté na PAID (0 při {@code dryRun}).
+     */
+    record ImportResult(BankStatementParser.Format format, int transactions, int matched, int paid,
+                        List<Line> lines) {}
+
+    /** {@code format == null} = podle obsahu souboru; {@code dryRun} = jen párování, bez změn. */
+    ImportResult importStatement(UUID companyId, InputStream in, BankStatementParser.Format format, boolean dryRun)
+            throws IOException;
+}
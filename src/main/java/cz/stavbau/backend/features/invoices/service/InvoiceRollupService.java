@@ -0,0 +1,37 @@
+package cz.stavbau.backend.features.invoices.service;
+
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.MonthRow;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.PartyRow;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Průběžně udržované součty faktur (měsíc × stav × měna, projekt, odběratel). Každá změna faktury se promítne
+ * ve stejné transakci: starý stav se odečte, nový přičte. Přehledy čtou jen rollupy – cena O(bucketů), ne O(faktur).
+ * Volající drží zámek řádku faktury mezi {@link #lock} a {@link #changed}, jinak by souběžná změna počítala se starým stavem.
+ */
+public interface InvoiceRollupService {
+
+    record Dashboard(UUID companyId, LocalDate from, LocalDate to, List<MonthRow> months,
+                     List<PartyRow> projects, List<PartyRow> customers) {}
+
+    /** Stav faktury pod zámkem řádku; {@code null} = neexistuje. */
+    Snapshot lock(UUID invoiceId);
+
+    List<Snapshot> lockAll(Collection<UUID> invoiceIds);
+
+    /** Nová faktura. */
+    void added(Snapshot invoice);
+
+    void changed(Snapshot before, Snapshot after);
+
+    /** Dávka změn (stejné pořadí obou seznamů) – zápis jednou dávkou na tabulku. */
+    void changedAll(List<Snapshot> before, List<Snapshot> after);
+
+    /** Měsíce v rozsahu + projekty s nejvyšší fakturací a odběratelé s nejvyššími pohledávkami. */
+    Dashboard dashboard(UUID companyId, LocalDate from, LocalDate to, int limit);
+}
@@ -15,15 +15,42 @@ public interface InvoiceService {
 
     record LineCreate(String itemName, BigDecimal quantity, String unit, BigDecimal unitPrice, BigDecimal vatRate) {}
 
+    record LineUpdate(UUID id, String itemName, BigDecimal quantity, String unit, BigDecimal unitPrice, BigDecimal vatRate) {}
+
+    /** Změna jednotlivých řádků: přidat, přepsat (podle id), odebrat. */
+    record LinesPatch(List<LineCreate> add, List<LineUpdate> update, List<UUID> remove) {}
+
+    record Totals(BigDecimal subtotal, BigDecimal vatTotal, BigDecimal total) {}
+
+    record VatRecap(BigDecimal vatRate, int lines, BigDecimal base, BigDecimal vat) {}
+
+    /** {@code number} při úspěchu, jinak kód chyby v {@code error}. */
+    record IssueResult(UUID invoiceId, String number, String error) {}
+
+    /** {@code delta} = změna součtů touto operací, {@code totals} = nové součty faktury. */
+    record LinesPatchResult(List<UUID> addedIds, Totals delta, Totals totals) {}
+
     UUID createDraft(UUID companyId, UUID projectId, LocalDate issueDate, LocalDate dueDate, LocalDate taxDate,
                      String currency, String supplierJson, String customerJson);
 
     void addOrReplaceLines(UUID invoiceId, List<LineCreate> lines);
 
+    /** Přidá/upraví/odebere řádky DRAFT faktury; součty se posunou o přírůstek (bez přepočtu všech řádků). */
+    LinesPatchResult patchLines(UUID invoiceId, LinesPatch patch);
+
     void recalcTotals(UUID invoiceId);
 
+    /** Rekapitulace DPH po sazbách (jeden agregační dotaz). */
+    List<VatRecap> vatRecap(UUID invoiceId);
+
     String issue(UUID invoiceId);
 
+    /**
+     * Vydá více DRAFT faktur najednou: jedna transakce, jeden zámek série za rok a jeden posun counteru.
+     * Čísla se přidělí chronologicky podle data vystavení; chyba jedné faktury ostatní neblokuje.
+     */
+    List<IssueResult> issueBatch(List<UUID> invoiceIds);
+
     void markPaid(UUID invoiceId);
 
     void cancel(UUID invoiceId);
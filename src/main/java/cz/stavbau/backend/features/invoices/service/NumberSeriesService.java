@@ -1,9 +1,20 @@
 package cz.stavbau.backend.features.invoices.service;
 
+import cz.stavbau.backend.features.invoices.util.NumberPattern;
+
 import java.time.LocalDate;
 import java.util.UUID;
 
 public interface NumberSeriesService {
+
+    /** Souvislý blok pořadových čísel {@code first … first + count - 1} rezervovaný jedním posunem counteru. */
+    record Block(NumberPattern pattern, int first, int count) {
+        /** Číslo {@code i}-tého dokladu bloku (0-based) pro dané datum. */
+        public String number(LocalDate date, int i) {
+            return pattern.format(date, first + i);
+        }
+    }
+
     /**
      * Vygeneruje další číslo faktury podle série (key) a data.
      * - Roční reset: pokud se rok změnil, counter se resetuje na 0 a nastaví se nový rok.
@@ -16,4 +27,11 @@ public interface NumberSeriesService {
      * @return vygenerované číslo (unikátní v rámci firmy)
      */
     String generateNextNumber(UUID companyId, String seriesKey, LocalDate date);
+
+    /**
+     * Rezervuje {@code count} po sobě jdoucích čísel série za rok {@code year} pod jedním zámkem řádku série
+     * (jeden SELECT … FOR UPDATE + jeden UPDATE bez ohledu na počet). Čísla bez mezer: counter se posune
+     * ve stejné transakci, ve které volající čísla přidělí – rollback vrátí i counter.
+     */
+    Block reserve(UUID companyId, String seriesKey, int year, int count);
 }
@@ -0,0 +1,290 @@
+package cz.stavbau.backend.features.invoices.service.impl;
+
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.common.exception.NotFoundException;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.invoices.document.InvoiceDocument;
+import cz.stavbau.backend.features.invoices.document.InvoiceDocumentRenderer;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.repo.InvoiceDocumentRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceDocumentRepository.Row;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRepository;
+import cz.stavbau.backend.features.invoices.service.InvoiceDocumentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Doklady faktur na omezeném poolu (pevný počet vláken + omezená fronta) – stejný model jako extrakce textu:
+ * - vydání faktury naplánuje vygenerování po commitu; plná fronta nevadí, doklad vznikne při prvním čtení
+ * - otisk (SHA-256) dat faktury, řádků a verze šablony rozhoduje, zda je uložený doklad aktuální –
+ *   čtení aktuálního dokladu je jeden dotaz, šablona se nespouští
+ * - souběžná generování téže faktury se slučují do jednoho; vykresluje se mimo transakci do dočasného souboru,
+ *   uložení + link + záznam otisku (a smazání předchozí verze) je jedna krátká transakce pod zámkem faktury
+ */
+@Service
+public class InvoiceDocumentServiceImpl implements InvoiceDocumentService {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceDocumentServiceImpl.class);
+
+    /** Načtená faktura pro vykreslení + její otisk a aktuálně uložený doklad. */
+    private record Source(InvoiceDocument document, String fingerprint, Row current) {
+        boolean fresh() {
+            return current != null && fingerprint.equals(current.fingerprint());
+        }
+    }
+
+    private final InvoiceRepository invoiceRepo;
+    private final InvoiceLineRepository lineRepo;
+    private final InvoiceDocumentRepository docRepo;
+    private final StoredFileService files;
+    private final InvoiceDocumentRenderer renderer;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readTx;
+    private final boolean renderOnIssue;
+    private final Duration timeout;
+    private final UUID uploaderId;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<UUID, CompletableFuture<StoredFile>> inFlight = new ConcurrentHashMap<>();
+    private final Timer renderTimer;
+    private final Counter cached;
+    private final Counter rendered;
+
+    public InvoiceDocumentServiceImpl(InvoiceRepository invoiceRepo,
+                                      InvoiceLineRepository lineRepo,
+                                      InvoiceDocumentRepository docRepo,
+                                      StoredFileService files,
+                                      InvoiceDocumentRenderer renderer,
+                                      TransactionTemplate tx,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${invoices.document.render-on-issue:true}") boolean renderOnIssue,
+                                      @Value("${invoices.document.threads:2}") int threads,
+                                      @Value("${invoices.document.queue-capacity:100}") int queueCapacity,
+                                      @Value("${invoices.document.timeout:PT30S}") Duration timeout,
+                                      @Value("${invoices.document.uploader-id:00000000-0000-0000-0000-000000000000}") UUID uploaderId) {
+        this.invoiceRepo = invoiceRepo;
+        this.lineRepo = lineRepo;
+        this.docRepo = docRepo;
+        this.files = files;
+        this.renderer = renderer;
+        this.tx = tx;
+        this.readTx = new TransactionTemplate(tx.getTransactionManager());
+        this.readTx.setReadOnly(true);
+        this.renderOnIssue = renderOnIssue;
+        this.timeout = timeout;
+        this.uploaderId = uploaderId;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "invoices-document-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.renderTimer = Timer.builder("invoices_document_render_duration_seconds")
+                .description("Doba vykreslení dokladu faktury")
+                .register(meterRegistry);
+        this.cached = Counter.builder("invoices_document_requests_total").tag("result", "cached")
+                .description("Čtení dokladu faktury: uložený aktuální / nově vygenerovaný")
+                .register(meterRegistry);
+        this.rendered = Counter.builder("invoices_document_requests_total").tag("result", "rendered")
+                .description("Čtení dokladu faktury: uložený aktuální / nově vygenerovaný")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void renderAfterCommit(UUID invoiceId) {
+        if (!renderOnIssue) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    prerender(invoiceId);
+                }
+            });
+        } else {
+            prerender(invoiceId);
+        }
+    }
+
+    @Override
+    public StoredFile document(UUID invoiceId) {
+        Source src = load(invoiceId);
+        if (src.fresh()) {
+            cached.increment();
+            return files.get(src.current().fileId());
+        }
+        try {
+            return submit(invoiceId).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            throw new ConflictException("invoices.document.busy");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("invoices.document.busy");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) throw new ConflictException("invoices.document.busy");
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // ------- Internals --------
+
+    private void prerender(UUID invoiceId) {
+        submit(invoiceId).whenComplete((sf, e) -> {
+            if (e != null && !(e instanceof RejectedExecutionException)) {
+                log.warn("Invoice document render failed for {}: {}", invoiceId, e.toString());
+            }
+        });
+    }
+
+    /** Jedno generování na fakturu – další volající dostanou rozběhnutý výsledek. */
+    private CompletableFuture<StoredFile> submit(UUID invoiceId) {
+        CompletableFuture<StoredFile> mine = new CompletableFuture<>();
+        CompletableFuture<StoredFile> running = inFlight.putIfAbsent(invoiceId, mine);
+        if (running != null) return running;
+        try {
+            executor.execute(() -> {
+                try {
+                    mine.complete(render(invoiceId));
+                } catch (Throwable e) {
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(invoiceId, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(invoiceId, mine);
+            mine.completeExceptionally(e);
+        }
+        return mine;
+    }
+
+    private StoredFile render(UUID invoiceId) throws IOException {
+        Source src = load(invoiceId);
+        if (src.fresh()) {
+            cached.increment();
+            return files.get(src.current().fileId());
+        }
+        Path tmp = Files.createTempFile("invoice-", renderer.extension());
+        try {
+            MessageDigest sha = sha256();
+            Timer.Sample sample = Timer.start();
+            try (OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)), sha)) {
+                renderer.render(src.document(), out);
+            }
+            sample.stop(renderTimer);
+            long size = Files.size(tmp);
+            String hash = HexFormat.of().formatHex(sha.digest());
+            StoredFile sf = tx.execute(st -> store(src, tmp, size, hash));
+            rendered.increment();
+            return sf;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private StoredFile store(Source src, Path tmp, long size, String sha256) {
+        Invoice inv = src.document().invoice();
+        Row current = docRepo.lock(inv.getId());
+        if (current == null) {
+            throw new NotFoundException("invoices.notFound");
+        }
+        if (src.fingerprint().equals(current.fingerprint())) {
+            return files.get(current.fileId()); // mezitím uložil jiný uzel
+        }
+        StoredFile sf = files.uploadStaged(inv.getCompanyId(), uploaderId, fileName(inv), renderer.mimeType(),
+                tmp, size, sha256);
+        files.link(sf.getId(), LinkTarget.INVOICE, inv.getId());
+        docRepo.save(inv.getId(), inv.getCompanyId(), sf.getId(), src.fingerprint());
+        if (current.fileId() != null) {
+            files.delete(current.fileId());
+        }
+        return sf;
+    }
+
+    private Source load(UUID invoiceId) {
+        return readTx.execute(st -> {
+            Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow(() -> new NotFoundException("invoices.notFound"));
+            InvoiceDocument doc = InvoiceDocument.of(inv, lineRepo.findByInvoiceId(invoiceId));
+            return new Source(doc, fingerprint(renderer, doc), docRepo.find(invoiceId));
+        });
+    }
+
+    /** SHA-256 všeho, co se v dokladu zobrazí, + formát a verze šablony. */
+    static String fingerprint(InvoiceDocumentRenderer renderer, InvoiceDocument doc) {
+        MessageDigest sha = sha256();
+        Invoice i = doc.invoice();
+        feed(sha, renderer.mimeType(), renderer.version(), i.getId(), i.getNumber(), i.getStatus(), i.getVatMode(),
+                i.getIssueDate(), i.getTaxDate(), i.getDueDate(), i.getCurrency(), i.getSupplierJson(), i.getCustomerJson(),
+                i.getSubtotal(), i.getVatTotal(), i.getTotal(), i.getNotes());
+        for (InvoiceLine l : doc.lines()) {
+            feed(sha, l.getId(), l.getItemName(), l.getQuantity(), l.getUnit(), l.getUnitPrice(), l.getVatRate(),
+                    l.getLineTotal());
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    private static void feed(MessageDigest sha, Object... values) {
+        for (Object v : values) {
+            String s = v == null ? "\u0000" : v instanceof BigDecimal d ? d.toPlainString() : v.toString();
+            sha.update(s.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0x1F);
+        }
+    }
+
+    private String fileName(Invoice inv) {
+        String base = inv.getNumber() != null ? inv.getNumber() : inv.getId().toString();
+        return "faktura-" + base.replaceAll("[^A-Za-z0-9._-]", "_") + renderer.extension();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
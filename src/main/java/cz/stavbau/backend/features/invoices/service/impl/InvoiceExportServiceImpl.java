@@ -0,0 +1,91 @@
+package cz.stavbau.backend.features.invoices.service.impl;
+
+import cz.stavbau.backend.features.invoices.document.InvoiceDocument;
+import cz.stavbau.backend.features.invoices.export.InvoiceCsvWriter;
+import cz.stavbau.backend.features.invoices.export.IsdocInvoiceWriter;
+import cz.stavbau.backend.features.invoices.repo.InvoiceExportRepository;
+import cz.stavbau.backend.features.invoices.service.InvoiceExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export běží v jedné read-only transakci (konzistentní snímek + serverový kurzor) a zapisuje každou fakturu,
+ * jakmile ji kurzor dočte. Spojení drží po dobu streamování – proto žádné entity ani persistence context.
+ */
+@Service
+public class InvoiceExportServiceImpl implements InvoiceExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceExportServiceImpl.class);
+
+    private final InvoiceExportRepository exportRepo;
+    private final TransactionTemplate readTx;
+
+    public InvoiceExportServiceImpl(InvoiceExportRepository exportRepo, TransactionTemplate tx) {
+        this.exportRepo = exportRepo;
+        this.readTx = new TransactionTemplate(tx.getTransactionManager());
+        this.readTx.setReadOnly(true);
+    }
+
+    @Override
+    public void write(InvoiceExportRepository.Filter filter, Format format, OutputStream out) throws IOException {
+        try {
+            switch (format) {
+                case CSV -> csv(filter, out);
+                case ISDOC -> isdoc(filter, out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void csv(InvoiceExportRepository.Filter filter, OutputStream out) throws IOException {
+        InvoiceCsvWriter csv = new InvoiceCsvWriter(out);
+        int[] count = {0};
+        readTx.executeWithoutResult(st -> exportRepo.forEach(filter, false, false, (inv, lines) -> {
+            try {
+                csv.write(inv);
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        csv.flush();
+        log.debug("invoices.export: csv rows={}", count[0]);
+    }
+
+    private void isdoc(InvoiceExportRepository.Filter filter, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        int[] count = {0};
+        readTx.executeWithoutResult(st -> exportRepo.forEach(filter, true, true, (inv, lines) -> {
+            try {
+                zip.putNextEntry(new ZipEntry(entryName(inv.getNumber(), inv.getId())));
+                IsdocInvoiceWriter.write(InvoiceDocument.of(inv, lines), zip);
+                zip.closeEntry();
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        zip.finish();
+        log.debug("invoices.export: isdoc entries={}", count[0]);
+    }
+
+    /**
+     * Číslo faktury jako název souboru (čísla jsou v rámci firmy unikátní). Upravené číslo dostane začátek id,
+     * aby se např. „FV/2025/1“ a „FV_2025_1“ nepotkaly – bez pamatování už použitých názvů.
+     */
+    static String entryName(String number, UUID id) {
+        String safe = number.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (!safe.equals(number)) safe += "-" + id.toString().substring(0, 8);
+        return safe + IsdocInvoiceWriter.EXTENSION;
+    }
+}
@@ -0,0 +1,248 @@
+package cz.stavbau.backend.features.invoices.service.impl;
+
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
+import cz.stavbau.backend.features.invoices.service.NumberSeriesService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Vydávání faktur (přidělení čísla ze série INV) po dávkách.
+ * - {@link #issueAll}: N faktur v jedné transakci – faktury zamčené podle id, pak jeden zámek série za rok
+ *   a jeden posun counteru; čísla se přidělí chronologicky podle data vystavení
+ * - {@link #issue}: souběžné požadavky téže série (firma + rok) se řadí do fronty; první volající vydá
+ *   v jedné transakci vše, co mezitím čeká (flat combining), ostatní jen čekají na výsledek.
+ *   Obsluhující vlákno (HTTP požadavek) skončí, jakmile má vlastní číslo – frontu převezme další čekající.
+ *   Selže-li transakce dávky, faktury se vydají znovu po jedné; chyba tak dojde jen k té, které patří.
+ * Číslování zůstává bez mezer: counter i faktury se zapisují v téže transakci (rollback vrátí obojí).
+ */
+@Component
+public class InvoiceIssuer {
+
+    public static final String SERIES_KEY = "INV";
+
+    /** Výsledek pro jednu fakturu: číslo, nebo výjimka (stejná jako u jednotlivého vydání). */
+    public record Outcome(UUID invoiceId, String number, RuntimeException error) {}
+
+    private record LaneKey(UUID companyId, int year) implements Comparable<LaneKey> {
+        @Override
+        public int compareTo(LaneKey o) {
+            int c = companyId.compareTo(o.companyId);
+            return c != 0 ? c : Integer.compare(year, o.year);
+        }
+    }
+
+    private record Pending(UUID invoiceId, CompletableFuture<String> result) {}
+
+    private static final class Lane {
+        final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean busy = new AtomicBoolean();
+    }
+
+    private final InvoiceRepository invoiceRepo;
+    private final NumberSeriesService numberSeries;
+    private final InvoiceRollupService rollups;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate txNew;
+    private final int maxBatch;
+    private final Map<LaneKey, Lane> lanes = new ConcurrentHashMap<>();
+
+    public InvoiceIssuer(InvoiceRepository invoiceRepo,
+                         NumberSeriesService numberSeries,
+                         InvoiceRollupService rollups,
+                         TransactionTemplate tx,
+                         @Value("${invoices.issue.max-batch:500}") int maxBatch) {
+        this.invoiceRepo = invoiceRepo;
+        this.numberSeries = numberSeries;
+        this.rollups = rollups;
+        this.tx = tx;
+        // dávka posbíraná z cizích požadavků nesmí viset na transakci volajícího
+        this.txNew = new TransactionTemplate(tx.getTransactionManager());
+        this.txNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    public int maxBatch() {
+        return maxBatch;
+    }
+
+    /** Vydá faktury v jedné transakci (připojí se k běžící); chyba jedné faktury ostatní neblokuje. */
+    public List<Outcome> issueAll(List<UUID> invoiceIds) {
+        return tx.execute(st -> issueInTx(invoiceIds));
+    }
+
+    /** Vydá jednu fakturu; souběžné požadavky téže série sdílí jednu transakci. */
+    public String issue(UUID invoiceId) {
+        Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow();
+        Lane lane = lanes.computeIfAbsent(new LaneKey(inv.getCompanyId(), inv.getIssueDate().getYear()), k -> new Lane());
+        Pending p = new Pending(invoiceId, new CompletableFuture<>());
+        lane.queue.add(p);
+        boolean interrupted = false;
+        while (!p.result().isDone()) {
+            if (lane.busy.compareAndSet(false, true)) {
+                try {
+                    combine(lane, p);
+                } finally {
+                    lane.busy.set(false);
+                    signal(lane);
+                }
+            } else {
+                // požadavek už je ve frontě a číslo dostane tak jako tak – přerušení se jen předá dál
+                interrupted |= await(lane, p);
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        try {
+            return p.result().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    // ------- Internals --------
+
+    /**
+     * Kdo získá {@code busy}, vyřizuje frontu po dávkách, jen dokud nemá výsledek sám – fronta je FIFO,
+     * takže obslouží nejvýš to, co čekalo před ním. Zbytek po uvolnění převezme některý z čekajících
+     * (každý čekající se po {@link #signal} znovu pokusí o {@code busy}), takže fronta nezůstane bez obsluhy.
+     */
+    private void combine(Lane lane, Pending own) {
+        List<Pending> batch;
+        while (!own.result().isDone() && !(batch = poll(lane)).isEmpty()) {
+            run(batch);
+            signal(lane);
+        }
+    }
+
+    /** Čeká na vlastní výsledek nebo uvolnění {@code busy}; vrací, zda bylo vlákno přerušeno. */
+    private static boolean await(Lane lane, Pending p) {
+        synchronized (lane) {
+            // busy se nastavuje na false před signal(), který bere tentýž monitor – probuzení se neztratí
+            if (p.result().isDone() || !lane.busy.get()) return false;
+            try {
+                lane.wait();
+                return false;
+            } catch (InterruptedException e) {
+                return true;
+            }
+        }
+    }
+
+    private static void signal(Lane lane) {
+        synchronized (lane) {
+            lane.notifyAll();
+        }
+    }
+
+    private List<Pending> poll(Lane lane) {
+        List<Pending> batch = new ArrayList<>();
+        Pending p;
+        while (batch.size() < maxBatch && (p = lane.queue.poll()) != null) {
+            batch.add(p);
+        }
+        return batch;
+    }
+
+    private void run(List<Pending> batch) {
+        try {
+            complete(batch, txNew.execute(st -> issueInTx(batch.stream().map(Pending::invoiceId).toList())));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // transakce dávky padla (serializace, deadlock, chyba jedné faktury) – každá zvlášť ve vlastní transakci
+            for (Pending p : batch) {
+                try {
+                    complete(List.of(p), txNew.execute(st -> issueInTx(List.of(p.invoiceId()))));
+                } catch (RuntimeException single) {
+                    p.result().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private static void complete(List<Pending> batch, List<Outcome> outcomes) {
+        for (int i = 0; i < batch.size(); i++) {
+            Outcome o = outcomes.get(i);
+            if (o.error() != null) batch.get(i).result().completeExceptionally(o.error());
+            else batch.get(i).result().complete(o.number());
+        }
+    }
+
+    /** Jeden výsledek na každé vstupní id (ve stejném pořadí). */
+    private List<Outcome> issueInTx(List<UUID> invoiceIds) {
+        Map<UUID, Invoice> locked = new HashMap<>();
+        for (Invoice inv : invoiceRepo.lockAllById(new LinkedHashSet<>(invoiceIds))) {
+            locked.put(inv.getId(), inv);
+        }
+
+        Map<UUID, RuntimeException> errors = new HashMap<>();
+        Map<LaneKey, List<Invoice>> groups = new TreeMap<>();
+        for (UUID id : new LinkedHashSet<>(invoiceIds)) {
+            Invoice inv = locked.get(id);
+            if (inv == null) {
+                errors.put(id, new NoSuchElementException("Invoice not found"));
+            } else if (inv.getStatus() != InvoiceStatus.DRAFT) {
+                errors.put(id, new IllegalStateException("Invoice must be DRAFT to ISSUE"));
+            } else {
+                groups.computeIfAbsent(new LaneKey(inv.getCompanyId(), inv.getIssueDate().getYear()), k -> new ArrayList<>())
+                        .add(inv);
+            }
+        }
+
+        // faktury jsou už zamčené – snapshot jen pro přesun v rollupech DRAFT → ISSUED
+        List<Snapshot> before = rollups.lockAll(groups.values().stream().flatMap(List::stream).map(Invoice::getId).toList());
+        rollups.changedAll(before, before.stream().map(s -> s.withStatus(InvoiceStatus.ISSUED)).toList());
+
+        Map<UUID, String> numbers = new HashMap<>();
+        // série zamykané v pevném pořadí (firma, rok)
+        groups.forEach((key, invoices) -> {
+            invoices.sort(Comparator.comparing(Invoice::getIssueDate)); // stabilní → při shodě pořadí požadavků
+            NumberSeriesService.Block block = numberSeries.reserve(key.companyId(), SERIES_KEY, key.year(), invoices.size());
+            for (int i = 0; i < invoices.size(); i++) {
+                Invoice inv = invoices.get(i);
+                inv.setNumber(block.number(inv.getIssueDate(), i));
+                inv.setStatus(InvoiceStatus.ISSUED);
+                numbers.put(inv.getId(), inv.getNumber());
+            }
+            invoiceRepo.saveAll(invoices);
+        });
+
+        Set<UUID> reported = new HashSet<>();
+        List<Outcome> out = new ArrayList<>(invoiceIds.size());
+        for (UUID id : invoiceIds) {
+            if (!reported.add(id)) {
+                // stejné id podruhé v téže dávce – faktura už je vydaná prvním výskytem
+                out.add(new Outcome(id, null, new IllegalStateException("Invoice must be DRAFT to ISSUE")));
+            } else if (numbers.containsKey(id)) {
+                out.add(new Outcome(id, numbers.get(id), null));
+            } else {
+                out.add(new Outcome(id, null, errors.get(id)));
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,130 @@
+package cz.stavbau.backend.features.invoices.service.impl;
+
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser;
+import cz.stavbau.backend.features.invoices.bank.BankTransaction;
+import cz.stavbau.backend.features.invoices.bank.PaymentMatcher;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository.OpenInvoice;
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository.Payment;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.service.InvoicePaymentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Párování výpisu bez dotazu na pohyb:
+ * - vydané faktury firmy se načtou jednou do hash indexu podle VS ({@link PaymentMatcher})
+ * - výpis se čte streamovaně a každý pohyb se spáruje hned
+ * - spárované faktury se zamknou (snapshot pro rollupy), pod zámkem se ověří stav a částka,
+ *   a přepnou jedním UPDATE … WHERE id = any(?); pohyby se zapíšou jednou dávkou
+ * Vše v jedné transakci – výpis se buď promítne celý, nebo vůbec.
+ */
+@Service
+public class InvoicePaymentServiceImpl implements InvoicePaymentService {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoicePaymentServiceImpl.class);
+
+    private static final int SHORT_TEXT = 64;
+
+    private final InvoicePaymentRepository paymentRepo;
+    private final InvoiceRollupService rollups;
+
+    public InvoicePaymentServiceImpl(InvoicePaymentRepository paymentRepo, InvoiceRollupService rollups) {
+        this.paymentRepo = paymentRepo;
+        this.rollups = rollups;
+    }
+
+    @Override
+    @Transactional
+    public ImportResult importStatement(UUID companyId, InputStream in, BankStatementParser.Format format,
+                                        boolean dryRun) throws IOException {
+        PaymentMatcher matcher = new PaymentMatcher(paymentRepo.findOpen(companyId));
+        BufferedInputStream buffered = new BufferedInputStream(in, 16 * 1024);
+        BankStatementParser.Format fmt = format != null ? format : BankStatementParser.detect(buffered);
+
+        List<Line> lines = new ArrayList<>();
+        Map<UUID, Integer> lineOf = new LinkedHashMap<>();
+        Map<UUID, BankTransaction> paidBy = new HashMap<>();
+        int[] transactions = {0};
+        BankStatementParser.parse(buffered, fmt, tx -> {
+            transactions[0]++;
+            PaymentMatcher.Match m = matcher.match(tx);
+            if (m.result() == PaymentMatcher.Result.IGNORED) return;
+            OpenInvoice inv = m.invoice();
+            if (m.result() == PaymentMatcher.Result.MATCHED) {
+                lineOf.put(inv.id(), lines.size());
+                paidBy.put(inv.id(), tx);
+            }
+            lines.add(line(tx, m.result(), inv));
+        });
+
+        int paid = 0;
+        if (!dryRun && !lineOf.isEmpty()) {
+            paid = apply(companyId, lineOf, paidBy, lines);
+        }
+        log.info("invoices.bank: company={} format={} transactions={} matched={} paid={} dryRun={}",
+                companyId, fmt, transactions[0], lineOf.size(), paid, dryRun);
+        return new ImportResult(fmt, transactions[0], lineOf.size(), paid, lines);
+    }
+
+    /** Pod zámkem faktur: co se mezitím změnilo, se nepřepne (CONFLICT); zbytek jedním UPDATE. */
+    private int apply(UUID companyId, Map<UUID, Integer> lineOf, Map<UUID, BankTransaction> paidBy, List<Line> lines) {
+        List<Snapshot> before = new ArrayList<>();
+        Set<UUID> conflicts = new HashSet<>(lineOf.keySet());
+        for (Snapshot s : rollups.lockAll(lineOf.keySet())) {
+            BankTransaction tx = paidBy.get(s.invoiceId());
+            if (s.status() == InvoiceStatus.ISSUED && s.companyId().equals(companyId)
+                    && s.currency().equalsIgnoreCase(tx.currency()) && s.total().compareTo(tx.amount()) == 0) {
+                before.add(s);
+                conflicts.remove(s.invoiceId());
+            }
+        }
+
+        Set<UUID> switched = new HashSet<>(paymentRepo.markPaid(before.stream().map(Snapshot::invoiceId).toList()));
+        before.removeIf(s -> !switched.contains(s.invoiceId()));
+        rollups.changedAll(before, before.stream().map(s -> s.withStatus(InvoiceStatus.PAID)).toList());
+
+        List<Payment> payments = new ArrayList<>(before.size());
+        for (Snapshot s : before) {
+            BankTransaction tx = paidBy.get(s.invoiceId());
+            payments.add(new Payment(s.invoiceId(), companyId, shorten(tx.reference()), tx.bookedOn(), tx.amount(),
+                    tx.currency(), tx.variableSymbol(), shorten(tx.counterAccount()), tx.message()));
+        }
+        paymentRepo.insert(payments);
+
+        for (UUID id : lineOf.keySet()) {
+            if (conflicts.contains(id) || !switched.contains(id)) {
+                int idx = lineOf.get(id);
+                Line l = lines.get(idx);
+                lines.set(idx, new Line(l.line(), l.reference(), l.bookedOn(), l.amount(), l.currency(),
+                        l.variableSymbol(), PaymentMatcher.Result.CONFLICT, l.invoiceId(), l.invoiceNumber()));
+            }
+        }
+        return before.size();
+    }
+
+    private static Line line(BankTransaction tx, PaymentMatcher.Result result, OpenInvoice inv) {
+        return new Line(tx.line(), tx.reference(), tx.bookedOn(), tx.amount(), tx.currency(), tx.variableSymbol(),
+                result, inv != null ? inv.id() : null, inv != null ? inv.number() : null);
+    }
+
+    private static String shorten(String s) {
+        return s == null || s.length() <= SHORT_TEXT ? s : s.substring(0, SHORT_TEXT);
+    }
+}
@@ -0,0 +1,61 @@
+package cz.stavbau.backend.features.invoices.service.impl;
+
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Change;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class InvoiceRollupServiceImpl implements InvoiceRollupService {
+
+    private final InvoiceRollupRepository repo;
+
+    public InvoiceRollupServiceImpl(InvoiceRollupRepository repo) {
+        this.repo = repo;
+    }
+
+    @Override
+    public Snapshot lock(UUID invoiceId) {
+        List<Snapshot> rows = repo.lock(List.of(invoiceId));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public List<Snapshot> lockAll(Collection<UUID> invoiceIds) {
+        return repo.lock(invoiceIds);
+    }
+
+    @Override
+    public void added(Snapshot invoice) {
+        repo.apply(List.of(new Change(invoice, 1)));
+    }
+
+    @Override
+    public void changed(Snapshot before, Snapshot after) {
+        repo.apply(List.of(new Change(before, -1), new Change(after, 1)));
+    }
+
+    @Override
+    public void changedAll(List<Snapshot> before, List<Snapshot> after) {
+        if (before.isEmpty() && after.isEmpty()) return;
+        List<Change> changes = new ArrayList<>(before.size() + after.size());
+        before.forEach(s -> changes.add(new Change(s, -1)));
+        after.forEach(s -> changes.add(new Change(s, 1)));
+        repo.apply(changes);
+    }
+
+    @Override
+    public Dashboard dashboard(UUID companyId, LocalDate from, LocalDate to, int limit) {
+        return new Dashboard(companyId, from, to,
+                repo.months(companyId, from, to),
+                repo.projects(companyId, limit),
+                repo.customers(companyId, limit));
+    }
+}
@@ -1,16 +1,24 @@
 package cz.stavbau.backend.features.invoices.service.impl;
 
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.common.exception.NotFoundException;
+import cz.stavbau.backend.common.exception.ValidationException;
 import cz.stavbau.backend.features.invoices.model.Invoice;
 import cz.stavbau.backend.features.invoices.model.InvoiceLine;
 import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
 import cz.stavbau.backend.features.invoices.model.VatMode;
-import cz.stavbau.backend.features.invoices.repo.InvoiceLineRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository.Amount;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository.Head;
 import cz.stavbau.backend.features.invoices.repo.InvoiceRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.repo.InvoiceSearchRepository;
 import cz.stavbau.backend.features.invoices.repo.InvoiceSpecs;
-import cz.stavbau.backend.features.invoices.repo.NumberSeriesRepository;
+import cz.stavbau.backend.features.invoices.service.InvoiceDocumentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
 import cz.stavbau.backend.features.invoices.service.InvoiceService;
-import cz.stavbau.backend.features.invoices.service.NumberSeriesService;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -19,26 +27,40 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class InvoiceServiceImpl implements InvoiceService {
 
     private final InvoiceRepository invoiceRepo;
-    private final InvoiceLineRepository lineRepo;
-    private final NumberSeriesService numberSeriesService;
-    private final NumberSeriesRepository numberSeriesRepo;
+    private final InvoiceLineBatchRepository lineRepo;
+    private final InvoiceIssuer issuer;
+    private final InvoiceSearchRepository searchRepo;
+    private final InvoiceRollupService rollups;
+    private final InvoiceDocumentService documents;
 
     public InvoiceServiceImpl(InvoiceRepository invoiceRepo,
-                              InvoiceLineRepository lineRepo,
-                              NumberSeriesService numberSeriesService,
-                              NumberSeriesRepository numberSeriesRepo) {
+                              InvoiceLineBatchRepository lineRepo,
+                              InvoiceIssuer issuer,
+                              InvoiceSearchRepository searchRepo,
+                              InvoiceRollupService rollups,
+                              InvoiceDocumentService documents) {
         this.invoiceRepo = invoiceRepo;
         this.lineRepo = lineRepo;
-        this.numberSeriesService = numberSeriesService;
-        this.numberSeriesRepo = numberSeriesRepo;
+        this.issuer = issuer;
+        this.searchRepo = searchRepo;
+        this.rollups = rollups;
+        this.documents = documents;
     }
 
     @Override
@@ -60,100 +82,196 @@ public class InvoiceServiceImpl implements InvoiceService {
         inv.setVatTotal(BigDecimal.ZERO);
         inv.setTotal(BigDecimal.ZERO);
         inv.setStatus(InvoiceStatus.DRAFT);
-        invoiceRepo.save(inv);
+        invoiceRepo.saveAndFlush(inv);
+        rollups.added(rollups.lock(inv.getId()));
         return inv.getId();
     }
 
     @Override
     @Transactional
     public void addOrReplaceLines(UUID invoiceId, List<LineCreate> lines) {
-        List<InvoiceLine> existing = lineRepo.findByInvoiceId(invoiceId);
-        lineRepo.deleteAll(existing);
-
-        for (LineCreate l : lines) {
-            InvoiceLine il = new InvoiceLine();
-            il.setId(UUID.randomUUID());
-            il.setInvoiceId(invoiceId);
-            il.setItemName(l.itemName());
-            il.setQuantity(l.quantity());
-            il.setUnit(l.unit());
-            il.setUnitPrice(l.unitPrice());
-            il.setVatRate(l.vatRate());
-            BigDecimal lineTotal = l.quantity().multiply(l.unitPrice()).setScale(2, RoundingMode.HALF_UP);
-            il.setLineTotal(lineTotal);
-            lineRepo.save(il);
-        }
-        recalcTotals(invoiceId);
+        lockDraft(invoiceId);
+        Snapshot before = rollups.lock(invoiceId);
+        lineRepo.deleteByInvoice(invoiceId);
+        lineRepo.insert(lines.stream()
+                .map(l -> newLine(invoiceId, UUID.randomUUID(), l.itemName(), l.quantity(), l.unit(), l.unitPrice(), l.vatRate()))
+                .toList());
+        totalsChanged(before, lineRepo.recalcTotals(invoiceId));
     }
 
     @Override
     @Transactional
-    public void recalcTotals(UUID invoiceId) {
-        Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow();
-        List<InvoiceLine> lines = lineRepo.findByInvoiceId(invoiceId);
+    public LinesPatchResult patchLines(UUID invoiceId, LinesPatch patch) {
+        Head head = lockDraft(invoiceId);
+        Snapshot snapshot = rollups.lock(invoiceId);
+        List<LineCreate> add = patch.add() != null ? patch.add() : List.of();
+        List<LineUpdate> update = patch.update() != null ? patch.update() : List.of();
+        Set<UUID> remove = patch.remove() != null ? new HashSet<>(patch.remove()) : Set.of();
+        Set<UUID> updateIds = new HashSet<>();
+        for (LineUpdate u : update) {
+            if (!updateIds.add(u.id()) || remove.contains(u.id())) {
+                throw ValidationException.ofField("invoices.lines.duplicateLine", "update", "unique");
+            }
+        }
 
-        BigDecimal subtotal = BigDecimal.ZERO;
-        BigDecimal vat = BigDecimal.ZERO;
+        boolean vat = head.vatMode() == VatMode.STANDARD;
+        BigDecimal base = BigDecimal.ZERO;
+        BigDecimal vatDelta = BigDecimal.ZERO;
 
-        for (InvoiceLine il : lines) {
-            subtotal = subtotal.add(il.getLineTotal());
-            if (inv.getVatMode() == VatMode.STANDARD) {
-                BigDecimal lineVat = il.getLineTotal().multiply(il.getVatRate()).divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
-                vat = vat.add(lineVat);
-            }
+        List<Amount> removed = lineRepo.deleteByIds(invoiceId, remove);
+        List<Amount> before = lineRepo.findAmounts(invoiceId, updateIds);
+        if (removed.size() != remove.size() || before.size() != updateIds.size()) {
+            throw new NotFoundException("invoices.line.notFound");
+        }
+        for (Amount a : removed) {
+            base = base.subtract(a.lineTotal());
+            vatDelta = vatDelta.subtract(lineVat(a.lineTotal(), a.vatRate(), vat));
+        }
+        for (Amount a : before) {
+            base = base.subtract(a.lineTotal());
+            vatDelta = vatDelta.subtract(lineVat(a.lineTotal(), a.vatRate(), vat));
         }
-        subtotal = subtotal.setScale(2, RoundingMode.HALF_UP);
-        vat = vat.setScale(2, RoundingMode.HALF_UP);
-        BigDecimal total = subtotal.add(vat).setScale(2, RoundingMode.HALF_UP);
 
-        inv.setSubtotal(subtotal);
-        inv.setVatTotal(vat);
-        inv.setTotal(total);
-        invoiceRepo.save(inv);
+        List<InvoiceLine> updated = update.stream()
+                .map(u -> newLine(invoiceId, u.id(), u.itemName(), u.quantity(), u.unit(), u.unitPrice(), u.vatRate()))
+                .toList();
+        List<InvoiceLine> added = add.stream()
+                .map(l -> newLine(invoiceId, UUID.randomUUID(), l.itemName(), l.quantity(), l.unit(), l.unitPrice(), l.vatRate()))
+                .toList();
+        for (InvoiceLine il : updated) {
+            base = base.add(il.getLineTotal());
+            vatDelta = vatDelta.add(lineVat(il.getLineTotal(), il.getVatRate(), vat));
+        }
+        for (InvoiceLine il : added) {
+            base = base.add(il.getLineTotal());
+            vatDelta = vatDelta.add(lineVat(il.getLineTotal(), il.getVatRate(), vat));
+        }
+        lineRepo.update(updated);
+        lineRepo.insert(added);
+
+        // lines_tsv jen při změně názvů – přepočet množství/ceny nečte ostatní řádky
+        Map<UUID, String> namesBefore = new HashMap<>();
+        before.forEach(a -> namesBefore.put(a.id(), a.itemName()));
+        boolean namesChanged = !removed.isEmpty() || !added.isEmpty()
+                || updated.stream().anyMatch(il -> !Objects.equals(namesBefore.get(il.getId()), il.getItemName()));
+        var totals = lineRepo.addToTotals(invoiceId, base, vatDelta, namesChanged);
+        totalsChanged(snapshot, totals);
+        return new LinesPatchResult(
+                added.stream().map(InvoiceLine::getId).toList(),
+                new Totals(base, vatDelta, base.add(vatDelta)),
+                new Totals(totals.subtotal(), totals.vatTotal(), totals.total()));
     }
 
     @Override
     @Transactional
-    public String issue(UUID invoiceId) {
+    public void recalcTotals(UUID invoiceId) {
+        Snapshot before = rollups.lock(invoiceId);
+        if (before == null) {
+            throw new NotFoundException("invoices.notFound");
+        }
+        totalsChanged(before, lineRepo.recalcTotals(invoiceId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<VatRecap> vatRecap(UUID invoiceId) {
+        return lineRepo.vatRecap(invoiceId).stream()
+                .map(r -> new VatRecap(r.vatRate(), r.lines(), r.base(), r.vat()))
+                .toList();
+    }
+
+    /** Zamkne fakturu (řádkový zámek) – řádky lze měnit jen u DRAFT. */
+    private Head lockDraft(UUID invoiceId) {
+        Head head = lineRepo.lockInvoice(invoiceId);
+        if (head == null) {
+            throw new NotFoundException("invoices.notFound");
+        }
+        if (head.status() != InvoiceStatus.DRAFT) {
+            throw new ConflictException("invoices.lines.notDraft");
+        }
+        return head;
+    }
+
+    private void totalsChanged(Snapshot before, InvoiceLineBatchRepository.Totals totals) {
+        rollups.changed(before, before.withTotals(totals.subtotal(), totals.vatTotal(), totals.total()));
+    }
+
+    /**
+     * Změna stavu pod zámkem řádku (rollup snapshot {@code FOR UPDATE}) – souběžné změny téže faktury se serializují
+     * a rollupy se posunou právě jednou.
+     */
+    private void transition(UUID invoiceId, InvoiceStatus from, InvoiceStatus to, String error) {
+        Snapshot before = rollups.lock(invoiceId);
+        if (before == null) {
+            throw new NoSuchElementException("Invoice not found");
+        }
         Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow();
-        if (inv.getStatus() != InvoiceStatus.DRAFT) {
-            throw new IllegalStateException("Invoice must be DRAFT to ISSUE");
+        if (from != null && inv.getStatus() != from) {
+            throw new IllegalStateException(error);
         }
-        String number = numberSeriesService.generateNextNumber(inv.getCompanyId(), "INV", inv.getIssueDate());
-        inv.setNumber(number);
-        inv.setStatus(InvoiceStatus.ISSUED);
+        inv.setStatus(to);
         invoiceRepo.save(inv);
+        rollups.changed(before, before.withStatus(to));
+    }
+
+    private static InvoiceLine newLine(UUID invoiceId, UUID id, String itemName, BigDecimal quantity, String unit,
+                                       BigDecimal unitPrice, BigDecimal vatRate) {
+        InvoiceLine il = new InvoiceLine();
+        il.setId(id);
+        il.setInvoiceId(invoiceId);
+        il.setItemName(itemName);
+        il.setQuantity(quantity);
+        il.setUnit(unit);
+        il.setUnitPrice(unitPrice);
+        il.setVatRate(vatRate);
+        il.setLineTotal(quantity.multiply(unitPrice).setScale(2, RoundingMode.HALF_UP));
+        return il;
+    }
+
+    /** DPH řádku zaokrouhlené po řádcích – stejně jako agregace v {@link InvoiceLineBatchRepository#recalcTotals}. */
+    private static BigDecimal lineVat(BigDecimal lineTotal, BigDecimal vatRate, boolean vat) {
+        if (!vat) return BigDecimal.ZERO;
+        return lineTotal.multiply(vatRate).divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+    }
+
+    /** Vlastní transakce (sdílená se souběžnými požadavky téže série) – viz {@link InvoiceIssuer}. */
+    @Override
+    public String issue(UUID invoiceId) {
+        String number = issuer.issue(invoiceId);
+        documents.renderAfterCommit(invoiceId);
         return number;
     }
 
     @Override
     @Transactional
-    public void markPaid(UUID invoiceId) {
-        Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow();
-        if (inv.getStatus() != InvoiceStatus.ISSUED) {
-            throw new IllegalStateException("Only ISSUED can be marked PAID");
+    public List<IssueResult> issueBatch(List<UUID> invoiceIds) {
+        if (invoiceIds.size() > issuer.maxBatch()) {
+            throw ValidationException.ofField("invoices.issue.tooManyInvoices", "invoiceIds", "size");
         }
-        inv.setStatus(InvoiceStatus.PAID);
-        invoiceRepo.save(inv);
+        var outcomes = issuer.issueAll(invoiceIds);
+        outcomes.stream().filter(o -> o.error() == null).forEach(o -> documents.renderAfterCommit(o.invoiceId()));
+        return outcomes.stream()
+                .map(o -> new IssueResult(o.invoiceId(), o.number(), o.error() == null ? null
+                        : o.error() instanceof NoSuchElementException ? "invoices.notFound" : "invoices.notDraft"))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public void markPaid(UUID invoiceId) {
+        transition(invoiceId, InvoiceStatus.ISSUED, InvoiceStatus.PAID, "Only ISSUED can be marked PAID");
     }
 
     @Override
     @Transactional
     public void changeStatus(UUID invoiceId, InvoiceStatus status) {
-        Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow();
-        inv.setStatus(status);
-        invoiceRepo.save(inv);
+        transition(invoiceId, null, status, null);
     }
 
     @Override
     @Transactional
     public void cancel(UUID invoiceId) {
-        Invoice inv = invoiceRepo.findById(invoiceId).orElseThrow();
-        if (inv.getStatus() != InvoiceStatus.ISSUED) {
-            throw new IllegalStateException("Only ISSUED can be CANCELLED");
-        }
-        inv.setStatus(InvoiceStatus.CANCELLED);
-        invoiceRepo.save(inv);
+        transition(invoiceId, InvoiceStatus.ISSUED, InvoiceStatus.CANCELLED, "Only ISSUED can be CANCELLED");
     }
 
     @Override
@@ -170,12 +288,28 @@ public class InvoiceServiceImpl implements InvoiceService {
     public Page<Invoice> search(UUID companyId, Optional<UUID> projectId, Optional<InvoiceStatus> status,
                                 Optional<String> q, Optional<LocalDate> dateFrom, Optional<LocalDate> dateTo,
                                 Pageable pageable) {
+        if (q.isPresent() && !q.get().isBlank()) {
+            return fulltext(companyId, projectId, status, q.get(), dateFrom, dateTo, pageable);
+        }
         Specification<Invoice> spec = Specification.where(InvoiceSpecs.company(companyId));
         if (projectId.isPresent()) spec = spec.and(InvoiceSpecs.project(projectId.get()));
         if (status.isPresent()) spec = spec.and(InvoiceSpecs.status(status.get()));
         if (dateFrom.isPresent()) spec = spec.and(InvoiceSpecs.dateFrom(dateFrom.get()));
         if (dateTo.isPresent()) spec = spec.and(InvoiceSpecs.dateTo(dateTo.get()));
-        if (q.isPresent() && !q.get().isBlank()) spec = spec.and(InvoiceSpecs.q(q.get()));
         return invoiceRepo.findAll(spec, pageable);
     }
+
+    /**
+     * Dotaz s textem: id stránky seřazená podle relevance z indexu (explicitní řazení {@code pageable} má přednost),
+     * entity se dočtou jen pro tuto stránku.
+     */
+    private Page<Invoice> fulltext(UUID companyId, Optional<UUID> projectId, Optional<InvoiceStatus> status, String q,
+                                   Optional<LocalDate> dateFrom, Optional<LocalDate> dateTo, Pageable pageable) {
+        InvoiceSearchRepository.Result hits = searchRepo.search(companyId, projectId.orElse(null), status.orElse(null),
+                dateFrom.orElse(null), dateTo.orElse(null), q, pageable.getSort(), pageable.getOffset(), pageable.getPageSize());
+        Map<UUID, Invoice> byId = invoiceRepo.findAllById(hits.ids()).stream()
+                .collect(Collectors.toMap(Invoice::getId, Function.identity()));
+        List<Invoice> content = hits.ids().stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, hits.total());
+    }
 }
@@ -3,6 +3,7 @@ package cz.stavbau.backend.features.invoices.service.impl;
 import cz.stavbau.backend.features.invoices.model.NumberSeries;
 import cz.stavbau.backend.features.invoices.repo.NumberSeriesRepository;
 import cz.stavbau.backend.features.invoices.service.NumberSeriesService;
+import cz.stavbau.backend.features.invoices.util.NumberPattern;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,7 +23,13 @@ public class NumberSeriesServiceImpl implements NumberSeriesService {
     @Override
     @Transactional
     public String generateNextNumber(UUID companyId, String seriesKey, LocalDate date) {
-        int year = date.getYear();
+        return reserve(companyId, seriesKey, date.getYear(), 1).number(date, 0);
+    }
+
+    @Override
+    @Transactional
+    public Block reserve(UUID companyId, String seriesKey, int year, int count) {
+        if (count < 1) throw new IllegalArgumentException("count must be >= 1");
         // Lock current year series row
         Optional<NumberSeries> opt = repo.lockByCompanyKeyYear(companyId, seriesKey, year);
         NumberSeries series = opt.orElseGet(() -> {
@@ -45,30 +52,14 @@ public class NumberSeriesServiceImpl implements NumberSeriesService {
             series.setCounterValue(0);
         }
 
-        int next = series.getCounterValue() + 1;
-        series.setCounterValue(next);
+        int first = series.getCounterValue() + 1;
+        series.setCounterValue(series.getCounterValue() + count);
         repo.save(series); // persist increment
 
-        return format(series.getPattern(), date, next);
+        return new Block(NumberPattern.of(series.getPattern()), first, count);
     }
 
-   public static String format(String pattern, LocalDate date, int counter) {
-        String out = pattern;
-        out = out.replace("{YYYY}", String.format("%04d", date.getYear()));
-        out = out.replace("{YY}", String.format("%02d", date.getYear() % 100));
-        out = out.replace("{MM}", String.format("%02d", date.getMonthValue()));
-
-        // Handle variable N* tokens: {NN}, {NNN}, {NNNN}
-        for (int n = 6; n >= 2; n--) {
-            String token = "{" + "N".repeat(n) + "}";
-            if (out.contains(token)) {
-                out = out.replace(token, String.format("%0" + n + "d", counter));
-            }
-        }
-        // Default: no token present -> append counter
-        if (!out.contains("{N")) {
-            out = out + "-" + counter;
-        }
-        return out;
+    public static String format(String pattern, LocalDate date, int counter) {
+        return NumberPattern.of(pattern).format(date, counter);
     }
 }
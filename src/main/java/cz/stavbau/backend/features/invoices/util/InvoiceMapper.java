@@ -1,7 +1,9 @@
 package cz.stavbau.backend.features.invoices.util;
 
 import cz.stavbau.backend.features.invoices.api.dto.InvoiceResponse;
+import cz.stavbau.backend.features.invoices.api.dto.InvoiceTotalsDto;
 import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.service.InvoiceService;
 
 public final class InvoiceMapper {
     private InvoiceMapper(){}
@@ -18,7 +20,12 @@ public final class InvoiceMapper {
             i.getSubtotal(),
             i.getVatTotal(),
             i.getTotal(),
-            i.getStatus()
+            i.getStatus(),
+            i.getOverdueSince()
         );
     }
+
+    public static InvoiceTotalsDto toTotals(InvoiceService.Totals t) {
+        return new InvoiceTotalsDto(t.subtotal(), t.vatTotal(), t.total());
+    }
 }
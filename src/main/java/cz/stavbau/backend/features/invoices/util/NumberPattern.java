@@ -0,0 +1,101 @@
+package cz.stavbau.backend.features.invoices.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Předkompilovaný pattern čísla dokladu: text se projde jednou při kompilaci na seznam segmentů
+ * (literál / rok / měsíc / pořadí), formátování je pak jeden průchod do {@link StringBuilder}.
+ * Tokeny: {YYYY}, {YY}, {MM}, {NN}…{NNNNNN} (zero-pad dle počtu N). Bez tokenu pořadí se číslo připojí za "-".
+ * Zkompilované patterny se sdílí přes {@link #of(String)} (patternů je málo – jeden až pár na firmu).
+ */
+public final class NumberPattern {
+
+    private static final Cache<String, NumberPattern> CACHE = Caffeine.newBuilder()
+            .maximumSize(2000)
+            .build();
+
+    private enum Kind { LITERAL, YEAR4, YEAR2, MONTH, COUNTER }
+
+    private record Segment(Kind kind, String text, int width) {}
+
+    private final Segment[] segments;
+    private final boolean appendCounter;
+
+    private NumberPattern(Segment[] segments, boolean appendCounter) {
+        this.segments = segments;
+        this.appendCounter = appendCounter;
+    }
+
+    public static NumberPattern of(String pattern) {
+        return CACHE.get(pattern, NumberPattern::compile);
+    }
+
+    public static NumberPattern compile(String pattern) {
+        List<Segment> out = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean counter = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            Segment token = pattern.charAt(i) == '{' ? token(pattern, i) : null;
+            if (token == null) {
+                literal.append(pattern.charAt(i++));
+                continue;
+            }
+            if (!literal.isEmpty()) {
+                out.add(new Segment(Kind.LITERAL, literal.toString(), 0));
+                literal.setLength(0);
+            }
+            out.add(token);
+            counter |= token.kind() == Kind.COUNTER;
+            i += token.text().length();
+        }
+        if (!literal.isEmpty()) out.add(new Segment(Kind.LITERAL, literal.toString(), 0));
+        // neznámý {N…} token (např. {N}) potlačí připojení pořadí – stejně jako původní replace-based formát
+        boolean unknownCounterToken = out.stream().anyMatch(s -> s.kind() == Kind.LITERAL && s.text().contains("{N"));
+        return new NumberPattern(out.toArray(Segment[]::new), !counter && !unknownCounterToken);
+    }
+
+    public String format(LocalDate date, int counter) {
+        StringBuilder sb = new StringBuilder(32);
+        for (Segment s : segments) {
+            switch (s.kind()) {
+                case LITERAL -> sb.append(s.text());
+                case YEAR4 -> pad(sb, date.getYear(), 4);
+                case YEAR2 -> pad(sb, date.getYear() % 100, 2);
+                case MONTH -> pad(sb, date.getMonthValue(), 2);
+                case COUNTER -> pad(sb, counter, s.width());
+            }
+        }
+        if (appendCounter) sb.append('-').append(counter);
+        return sb.toString();
+    }
+
+    private static Segment token(String p, int at) {
+        int end = p.indexOf('}', at);
+        if (end < 0) return null;
+        String t = p.substring(at, end + 1);
+        switch (t) {
+            case "{YYYY}": return new Segment(Kind.YEAR4, t, 4);
+            case "{YY}": return new Segment(Kind.YEAR2, t, 2);
+            case "{MM}": return new Segment(Kind.MONTH, t, 2);
+            default:
+                int n = t.length() - 2;
+                if (n >= 2 && n <= 6 && t.substring(1, end - at).chars().allMatch(c -> c == 'N')) {
+                    return new Segment(Kind.COUNTER, t, n);
+                }
+                return null;
+        }
+    }
+
+    private static void pad(StringBuilder sb, int value, int width) {
+        String digits = Integer.toString(Math.abs(value));
+        if (value < 0) sb.append('-');
+        for (int k = digits.length() + (value < 0 ? 1 : 0); k < width; k++) sb.append('0');
+        sb.append(digits);
+    }
+}
@@ -0,0 +1,32 @@
+package cz.stavbau.backend.features.invoices.util;
+
+/**
+ * Variabilní symbol (max. 10 číslic) – pro fakturu odvozený z čísla dokladu: jen číslice, posledních 10,
+ * bez úvodních nul. Stejně se normalizuje VS z výpisu (banky ho doplňují nulami zleva), takže se porovnává
+ * prosté {@code equals}.
+ */
+public final class VariableSymbol {
+
+    public static final int MAX_DIGITS = 10;
+
+    private VariableSymbol() {
+    }
+
+    /** VS faktury; {@code null} = číslo bez číslic (nebo faktura bez čísla). */
+    public static String of(String invoiceNumber) {
+        return normalize(invoiceNumber);
+    }
+
+    /** Normalizovaný VS; {@code null} = prázdný / nulový. */
+    public static String normalize(String raw) {
+        if (raw == null) return null;
+        StringBuilder digits = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+        }
+        int from = Math.max(0, digits.length() - MAX_DIGITS);
+        while (from < digits.length() && digits.charAt(from) == '0') from++;
+        return from == digits.length() ? null : digits.substring(from);
+    }
+}
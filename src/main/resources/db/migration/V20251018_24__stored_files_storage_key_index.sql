@@ -0,0 +1,4 @@
+-- V20251018_24__stored_files_storage_key_index.sql
+-- Content-addressed storage: více řádků stored_files sdílí jeden blob (storage_key = cas/ab/cd/<sha256>).
+-- Počet referencí se počítá dotazem nad storage_key → potřebujeme index (delete, GC).
+create index if not exists ix_stored_files_storage_key on stored_files (storage_key);
@@ -0,0 +1,26 @@
+-- Resumable (chunkovaný) upload: session + evidence přijatých chunků
+CREATE TABLE IF NOT EXISTS file_upload_sessions (
+    id              UUID PRIMARY KEY,
+    company_id      UUID NOT NULL,
+    uploader_id     UUID NOT NULL,
+    original_name   TEXT NOT NULL,
+    mime_type       TEXT NOT NULL,
+    total_size      BIGINT NOT NULL,
+    chunk_size      INTEGER NOT NULL,
+    hashed_bytes    BIGINT NOT NULL DEFAULT 0,
+    hash_state      BYTEA,
+    status          VARCHAR(16) NOT NULL,
+    file_id         UUID,
+    created_at      TIMESTAMPTZ NOT NULL,
+    expires_at      TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS ix_file_upload_sessions_open_expires
+    ON file_upload_sessions(expires_at) WHERE status = 'OPEN';
+
+CREATE TABLE IF NOT EXISTS file_upload_chunks (
+    session_id      UUID NOT NULL REFERENCES file_upload_sessions(id) ON DELETE CASCADE,
+    chunk_index     INTEGER NOT NULL,
+    size_bytes      INTEGER NOT NULL,
+    PRIMARY KEY (session_id, chunk_index)
+);
@@ -0,0 +1,3 @@
+-- Reverzní směr k PK (file_id, tag_id): "soubory s tagem X" a stavba per-company tag indexu
+CREATE INDEX IF NOT EXISTS ix_file_tag_join_tag_file
+    ON file_tag_join(tag_id, file_id);
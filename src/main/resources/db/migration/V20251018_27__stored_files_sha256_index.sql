@@ -0,0 +1,3 @@
+-- Náhledy obrázků jsou klíčované sha256 obsahu – při mazání se ověřuje, zda obsah ještě někdo používá
+CREATE INDEX IF NOT EXISTS ix_stored_files_sha256
+    ON stored_files(sha256);
@@ -0,0 +1,3 @@
+-- PK file_links začíná file_id; export "vše napojené na projekt/fakturu" hledá podle cíle
+CREATE INDEX IF NOT EXISTS ix_file_links_target
+    ON file_links(target_type, target_id);
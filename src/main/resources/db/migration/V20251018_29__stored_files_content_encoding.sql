@@ -0,0 +1,4 @@
+-- Transparentní komprese: kódování uložených dat (gzip) a jejich velikost
+ALTER TABLE stored_files
+    ADD COLUMN IF NOT EXISTS content_encoding  VARCHAR(16),
+    ADD COLUMN IF NOT EXISTS stored_size_bytes BIGINT;
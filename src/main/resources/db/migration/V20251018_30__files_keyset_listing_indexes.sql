@@ -0,0 +1,23 @@
+-- Keyset listing souborů (created_at desc, id desc) per firma / uploader / cíl linku
+
+CREATE INDEX IF NOT EXISTS ix_stored_files_company_created
+    ON stored_files(company_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_stored_files_company_uploader_created
+    ON stored_files(company_id, uploader_id, created_at DESC, id DESC);
+
+-- Denormalizovaný created_at souboru v linku, aby stránka souborů projektu šla po jednom indexu
+ALTER TABLE file_links
+    ADD COLUMN IF NOT EXISTS file_created_at TIMESTAMPTZ;
+
+UPDATE file_links l
+   SET file_created_at = f.created_at
+  FROM stored_files f
+ WHERE f.id = l.file_id
+   AND l.file_created_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS ix_file_links_target_created
+    ON file_links(target_type, target_id, file_created_at DESC, file_id DESC);
+
+-- ix_file_links_target (V20251018_28) je teď prefixem nového indexu
+DROP INDEX IF EXISTS ix_file_links_target;
@@ -0,0 +1,15 @@
+-- Odložené mazání blobů: delete souboru v transakci jen zapíše tombstone, fyzicky maže sweeper po commitu
+CREATE TABLE IF NOT EXISTS file_blob_tombstones (
+    storage_key  VARCHAR(512) PRIMARY KEY,
+    kind         VARCHAR(16)  NOT NULL,           -- BLOB (stored_files.storage_key) | DERIVED (náhled podle sha256)
+    sha256       VARCHAR(64),
+    size_bytes   BIGINT,
+    reason       VARCHAR(16)  NOT NULL,           -- DELETE | RECONCILE
+    created_at   TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    not_before   TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    attempts     INT          NOT NULL DEFAULT 0,
+    last_error   TEXT
+);
+
+CREATE INDEX IF NOT EXISTS ix_file_blob_tombstones_not_before
+    ON file_blob_tombstones(not_before);
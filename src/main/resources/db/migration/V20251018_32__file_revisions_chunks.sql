@@ -0,0 +1,31 @@
+-- Revize souborů (řetěz revizí jednoho dokumentu) + content-defined chunky
+
+ALTER TABLE stored_files
+    ADD COLUMN IF NOT EXISTS document_id UUID,
+    ADD COLUMN IF NOT EXISTS revision    INT;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_stored_files_document_revision
+    ON stored_files(document_id, revision)
+    WHERE document_id IS NOT NULL;
+
+-- Chunky, které firma má (nahrála nebo jsou v jejích revizích) – podklad pro "které chunky už máte"
+CREATE TABLE IF NOT EXISTS file_chunks (
+    company_id  UUID        NOT NULL,
+    sha256      VARCHAR(64) NOT NULL,
+    size_bytes  INT         NOT NULL,
+    created_at  TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (company_id, sha256)
+);
+
+CREATE INDEX IF NOT EXISTS ix_file_chunks_sha256 ON file_chunks(sha256);
+
+-- Manifest (storage key cdc/…) → pořadí chunků; reference pro GC chunků
+CREATE TABLE IF NOT EXISTS file_manifest_chunks (
+    manifest_key  VARCHAR(512) NOT NULL,
+    seq           INT          NOT NULL,
+    chunk_sha256  VARCHAR(64)  NOT NULL,
+    size_bytes    INT          NOT NULL,
+    PRIMARY KEY (manifest_key, seq)
+);
+
+CREATE INDEX IF NOT EXISTS ix_file_manifest_chunks_chunk ON file_manifest_chunks(chunk_sha256);
@@ -0,0 +1,36 @@
+-- Fulltext obsahu souborů: extrahovaný text + tsvector per soubor (dotazy vždy v rámci firmy)
+
+-- Konfigurace bez jazykového stemmingu, ale s odstraněním diakritiky ("beton" najde "betón", "zaruka" → "záruka");
+-- stejná konfigurace slouží to_tsvector, websearch_to_tsquery i ts_headline.
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_ts_config WHERE cfgname = 'stavbau_simple') THEN
+        CREATE TEXT SEARCH CONFIGURATION public.stavbau_simple (COPY = pg_catalog.simple);
+        ALTER TEXT SEARCH CONFIGURATION public.stavbau_simple
+            ALTER MAPPING FOR hword, hword_part, word WITH public.unaccent, pg_catalog.simple;
+    END IF;
+END $$;
+
+CREATE TABLE IF NOT EXISTS file_texts (
+    file_id       UUID PRIMARY KEY REFERENCES stored_files(id) ON DELETE CASCADE,
+    company_id    UUID         NOT NULL,
+    status        VARCHAR(16)  NOT NULL,           -- PENDING | DONE | EMPTY | UNSUPPORTED | FAILED
+    content       TEXT,
+    tsv           TSVECTOR,                        -- název (váha A) + obsah (váha B)
+    attempts      INT          NOT NULL DEFAULT 0,
+    claimed_at    TIMESTAMPTZ,
+    last_error    TEXT,
+    created_at    TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    extracted_at  TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS ix_file_texts_tsv ON file_texts USING gin (tsv);
+CREATE INDEX IF NOT EXISTS ix_file_texts_company ON file_texts(company_id);
+CREATE INDEX IF NOT EXISTS ix_file_texts_pending ON file_texts(created_at) WHERE status = 'PENDING';
+
+-- existující soubory zaindexuje FileTextIndexJob postupně
+INSERT INTO file_texts(file_id, company_id, status, created_at)
+SELECT id, company_id, 'PENDING', created_at FROM stored_files
+ON CONFLICT (file_id) DO NOTHING;
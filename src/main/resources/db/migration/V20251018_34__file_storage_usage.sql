@@ -0,0 +1,38 @@
+-- Průběžně udržované čítače využití úložiště (firma + cíl linku) a kvóty firem.
+-- Čtení využití / kontrola kvóty = jeden řádek podle PK, nikdy SUM přes stored_files.
+
+CREATE TABLE IF NOT EXISTS file_storage_usage (
+    company_id   UUID        PRIMARY KEY,
+    file_count   BIGINT      NOT NULL DEFAULT 0,
+    size_bytes   BIGINT      NOT NULL DEFAULT 0,
+    quota_bytes  BIGINT,                           -- NULL = výchozí kvóta z konfigurace
+    updated_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS file_storage_usage_targets (
+    company_id   UUID         NOT NULL,
+    target_type  VARCHAR(255) NOT NULL,
+    target_id    UUID         NOT NULL,
+    file_count   BIGINT       NOT NULL DEFAULT 0,
+    size_bytes   BIGINT       NOT NULL DEFAULT 0,
+    updated_at   TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    PRIMARY KEY (company_id, target_type, target_id)
+);
+
+-- "největší projekty firmy"
+CREATE INDEX IF NOT EXISTS ix_file_storage_usage_targets_company_size
+    ON file_storage_usage_targets(company_id, size_bytes DESC);
+
+-- Počáteční stav z existujících souborů
+INSERT INTO file_storage_usage(company_id, file_count, size_bytes)
+SELECT company_id, count(*), coalesce(sum(size_bytes), 0)
+  FROM stored_files
+ GROUP BY company_id
+ON CONFLICT (company_id) DO NOTHING;
+
+INSERT INTO file_storage_usage_targets(company_id, target_type, target_id, file_count, size_bytes)
+SELECT f.company_id, l.target_type, l.target_id, count(*), coalesce(sum(f.size_bytes), 0)
+  FROM file_links l
+  JOIN stored_files f ON f.id = l.file_id
+ GROUP BY f.company_id, l.target_type, l.target_id
+ON CONFLICT (company_id, target_type, target_id) DO NOTHING;
@@ -0,0 +1,5 @@
+-- Řádky faktury se vždy čtou/mažou/sčítají podle faktury; dosud bez indexu (seq scan celé tabulky).
+-- INCLUDE → agregace součtů a rekapitulace DPH jde čistě z indexu (index-only scan).
+
+CREATE INDEX IF NOT EXISTS ix_invoice_lines_invoice
+    ON invoice_lines(invoice_id) INCLUDE (vat_rate, line_total);
@@ -0,0 +1,36 @@
+-- Vyhledávání faktur: udržovaný vyhledávací dokument místo lower(...) LIKE nad JSON textem.
+-- - search_tsv: číslo + IČO (váha A), název odběratele (B), názvy položek (C); konfigurace public.stavbau_simple (V33)
+--   = bez stemmingu, bez diakritiky
+-- - search_text: číslo + IČO + název bez diakritiky, malými písmeny → trigramy pro fragmenty ("0042", "2745")
+-- Obojí generují sloupce řádku faktury; názvy položek jsou v jiné tabulce, proto je lines_tsv udržuje
+-- aplikace spolu se součty (InvoiceLineBatchRepository).
+-- Poznámka (invoices.notes) je large object (oid, @Lob) – generovaný sloupec ho číst nemůže, do dokumentu nepatří.
+
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS lines_tsv TSVECTOR;
+
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS search_text TEXT GENERATED ALWAYS AS (
+    public.unaccent_immutable(lower(
+        coalesce(number, '') || ' ' ||
+        coalesce(buyer_ico, customer_json ->> 'ico', '') || ' ' ||
+        coalesce(buyer_name, customer_json ->> 'name', '')))
+) STORED;
+
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS search_tsv TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('public.stavbau_simple'::regconfig,
+                          coalesce(number, '') || ' ' || coalesce(buyer_ico, customer_json ->> 'ico', '')), 'A') ||
+    setweight(to_tsvector('public.stavbau_simple'::regconfig,
+                          coalesce(buyer_name, customer_json ->> 'name', '')), 'B') ||
+    coalesce(lines_tsv, ''::tsvector)
+) STORED;
+
+-- existující položky
+UPDATE invoices i
+   SET lines_tsv = l.tsv
+  FROM (SELECT invoice_id,
+               setweight(to_tsvector('public.stavbau_simple'::regconfig, string_agg(item_name, ' ')), 'C') AS tsv
+          FROM invoice_lines
+         GROUP BY invoice_id) l
+ WHERE l.invoice_id = i.id;
+
+CREATE INDEX IF NOT EXISTS ix_invoices_search_tsv ON invoices USING gin (search_tsv);
+CREATE INDEX IF NOT EXISTS ix_invoices_search_trgm ON invoices USING gin (search_text gin_trgm_ops);
@@ -0,0 +1,80 @@
+-- Průběžně udržované součty faktur pro finanční přehledy (tržby za měsíc, pohledávky po odběratelích,
+-- fakturace po projektech). Čtení přehledu = řádky rollupů firmy, nikdy agregace přes invoices.
+-- Každá faktura je v každé tabulce právě v jednom bucketu (měsíc vystavení / projekt / odběratel × stav × měna);
+-- změna stavu nebo součtů ji ve stejné transakci odečte ze starého bucketu a přičte do nového.
+
+-- Odběratel = IČO, bez IČO normalizovaný název (stejné pravidlo v aplikaci, InvoiceRollupRepository)
+CREATE OR REPLACE FUNCTION public.invoice_customer_key(ico text, name text)
+RETURNS text
+LANGUAGE sql
+IMMUTABLE
+PARALLEL SAFE
+AS $$
+  SELECT coalesce(nullif(btrim(ico), ''), public.unaccent_immutable(lower(btrim(coalesce(name, '')))))
+$$;
+
+CREATE TABLE IF NOT EXISTS invoice_rollup_months (
+    company_id     UUID          NOT NULL,
+    month          DATE          NOT NULL,           -- první den měsíce vystavení
+    status         VARCHAR(16)   NOT NULL,
+    currency       VARCHAR(3)    NOT NULL,
+    invoice_count  BIGINT        NOT NULL DEFAULT 0,
+    subtotal       NUMERIC(20,2) NOT NULL DEFAULT 0,
+    vat_total      NUMERIC(20,2) NOT NULL DEFAULT 0,
+    total          NUMERIC(20,2) NOT NULL DEFAULT 0,
+    updated_at     TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    PRIMARY KEY (company_id, month, status, currency)
+);
+
+CREATE TABLE IF NOT EXISTS invoice_rollup_projects (
+    company_id     UUID          NOT NULL,
+    project_id     UUID          NOT NULL,
+    status         VARCHAR(16)   NOT NULL,
+    currency       VARCHAR(3)    NOT NULL,
+    invoice_count  BIGINT        NOT NULL DEFAULT 0,
+    subtotal       NUMERIC(20,2) NOT NULL DEFAULT 0,
+    vat_total      NUMERIC(20,2) NOT NULL DEFAULT 0,
+    total          NUMERIC(20,2) NOT NULL DEFAULT 0,
+    updated_at     TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    PRIMARY KEY (company_id, project_id, status, currency)
+);
+
+CREATE TABLE IF NOT EXISTS invoice_rollup_customers (
+    company_id     UUID          NOT NULL,
+    customer_key   TEXT          NOT NULL,
+    status         VARCHAR(16)   NOT NULL,
+    currency       VARCHAR(3)    NOT NULL,
+    customer_name  TEXT          NOT NULL DEFAULT '',  -- poslední známý název (pro zobrazení)
+    invoice_count  BIGINT        NOT NULL DEFAULT 0,
+    subtotal       NUMERIC(20,2) NOT NULL DEFAULT 0,
+    vat_total      NUMERIC(20,2) NOT NULL DEFAULT 0,
+    total          NUMERIC(20,2) NOT NULL DEFAULT 0,
+    updated_at     TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    PRIMARY KEY (company_id, customer_key, status, currency)
+);
+
+-- Počáteční stav z existujících faktur
+INSERT INTO invoice_rollup_months(company_id, month, status, currency, invoice_count, subtotal, vat_total, total)
+SELECT company_id, date_trunc('month', issue_date)::date, status, currency,
+       count(*), sum(subtotal), sum(vat_total), sum(total)
+  FROM invoices
+ GROUP BY company_id, date_trunc('month', issue_date)::date, status, currency
+ON CONFLICT (company_id, month, status, currency) DO NOTHING;
+
+INSERT INTO invoice_rollup_projects(company_id, project_id, status, currency, invoice_count, subtotal, vat_total, total)
+SELECT company_id, project_id, status, currency, count(*), sum(subtotal), sum(vat_total), sum(total)
+  FROM invoices
+ WHERE project_id IS NOT NULL
+ GROUP BY company_id, project_id, status, currency
+ON CONFLICT (company_id, project_id, status, currency) DO NOTHING;
+
+INSERT INTO invoice_rollup_customers(company_id, customer_key, status, currency, customer_name,
+                                     invoice_count, subtotal, vat_total, total)
+SELECT company_id,
+       public.invoice_customer_key(coalesce(buyer_ico, customer_json ->> 'ico'), coalesce(buyer_name, customer_json ->> 'name')),
+       status, currency,
+       max(coalesce(buyer_name, customer_json ->> 'name', '')),
+       count(*), sum(subtotal), sum(vat_total), sum(total)
+  FROM invoices
+ GROUP BY 1, 2, 3, 4
+ON CONFLICT (company_id, customer_key, status, currency) DO NOTHING;
@@ -0,0 +1,10 @@
+-- Vygenerovaný doklad faktury (soubor v úložišti, link INVOICE) + otisk vstupů, ze kterých vznikl.
+-- Doklad se generuje znovu jen při změně otisku (faktura, řádky, verze šablony); jinak se servíruje uložený soubor.
+
+CREATE TABLE IF NOT EXISTS invoice_documents (
+    invoice_id   UUID        PRIMARY KEY REFERENCES invoices(id) ON DELETE CASCADE,
+    company_id   UUID        NOT NULL,
+    file_id      UUID        NOT NULL,
+    fingerprint  VARCHAR(64) NOT NULL,              -- SHA-256 hex
+    rendered_at  TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,4 @@
+-- Export faktur (GET /api/v1/invoices/export) čte kurzorem v pořadí data vystavení a čísla v rámci firmy.
+-- S tímto indexem plán nepotřebuje třídit celou sadu před prvním řádkem – export začne streamovat hned.
+CREATE INDEX IF NOT EXISTS ix_invoices_company_issue
+    ON invoices (company_id, issue_date, number, id);
@@ -0,0 +1,23 @@
+-- Úhrady faktur z bankovních výpisů (POST /api/v1/invoices/bank-statements).
+-- Párování čte jen vydané faktury firmy – částečný index pokrývá celý dotaz (index-only scan),
+-- velikost indexu odpovídá neuhrazeným fakturám, ne celé historii.
+CREATE INDEX IF NOT EXISTS ix_invoices_issued_company
+    ON invoices (company_id) INCLUDE (number, total, currency)
+    WHERE status = 'ISSUED';
+
+-- Pohyb, který fakturu uhradil (dohledatelnost pro účetní)
+CREATE TABLE IF NOT EXISTS invoice_payments (
+    id               UUID          PRIMARY KEY,
+    invoice_id       UUID          NOT NULL REFERENCES invoices(id) ON DELETE CASCADE,
+    company_id       UUID          NOT NULL,
+    reference        VARCHAR(64),                      -- id pohybu v bance
+    booked_on        DATE,
+    amount           NUMERIC(18,2) NOT NULL,
+    currency         VARCHAR(3)    NOT NULL,
+    variable_symbol  VARCHAR(10),
+    counter_account  VARCHAR(64),
+    message          TEXT,
+    imported_at      TIMESTAMPTZ   NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS ix_invoice_payments_invoice ON invoice_payments (invoice_id);
@@ -0,0 +1,9 @@
+-- Příznak faktury po splatnosti: první den prodlení (due_date + 1). Nastavuje ho výhradně InvoiceOverdueJob,
+-- stav faktury zůstává ISSUED (rollupy podle stavu se tím nemění); po zaplacení zůstává jako „zaplaceno po splatnosti“.
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS overdue_since DATE;
+
+-- Kandidáti sweeperu = vydané a ještě neoznačené faktury podle splatnosti. Index drží jen tyto řádky:
+-- označením, zaplacením i stornem z něj faktura vypadne, takže běh čte jen rozsah due_date < dnes, nikdy celou tabulku.
+CREATE INDEX IF NOT EXISTS ix_invoices_issued_due
+    ON invoices (due_date)
+    WHERE status = 'ISSUED' AND overdue_since IS NULL;
@@ -0,0 +1,10 @@
+-- Generace čítačů využití: noční přepočet ji zvýší ve stejné transakci, ve které čítače přepíše ze stored_files.
+-- Neflushnuté přírůstky horkých firem nesou generaci, pod kterou vznikly; přírůstek ze starší generace je
+-- už v přepočtu započtený a flush ho zahodí (jinak by se přičetl podruhé).
+CREATE TABLE IF NOT EXISTS file_storage_usage_generation (
+    id          SMALLINT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    generation  BIGINT   NOT NULL DEFAULT 0
+);
+
+INSERT INTO file_storage_usage_generation(id, generation) VALUES (1, 0)
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,229 @@
+package cz.stavbau.backend.files.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.stavbau.backend.features.files.api.AsyncUploadServlet;
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AsyncUploadServletTest {
+
+    private static final UUID COMPANY = UUID.randomUUID();
+    private static final UUID UPLOADER = UUID.randomUUID();
+
+    @TempDir
+    Path staging;
+
+    private StoredFileService storedFileService;
+    private FileUploadProperties props;
+    private AsyncUploadServlet servlet;
+    private final ExecutorService container = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void setup() {
+        storedFileService = Mockito.mock(StoredFileService.class);
+        props = new FileUploadProperties();
+        props.getAsync().setMaxInFlight(2); // málo bufferů → čtení se musí pozastavovat a obnovovat
+        servlet = new AsyncUploadServlet(storedFileService, Mockito.mock(FileUsageService.class), props, staging,
+                new ObjectMapper().findAndRegisterModules());
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("u", null, "files:write"));
+    }
+
+    @AfterEach
+    void cleanup() {
+        SecurityContextHolder.clearContext();
+        container.shutdownNow();
+    }
+
+    @Test
+    void upload_registers_staged_file_with_sha256_of_body() throws Exception {
+        byte[] body = new byte[700 * 1024];
+        new Random(42).nextBytes(body);
+        System.arraycopy("%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII), 0, body, 0, 9);
+        AtomicReference<byte[]> staged = new AtomicReference<>();
+        when(storedFileService.uploadStaged(eq(COMPANY), eq(UPLOADER), eq("smlouva.pdf"), eq("application/pdf"),
+                any(), eq((long) body.length), anyString())).thenAnswer(i -> {
+            staged.set(Files.readAllBytes(i.<Path>getArgument(4)));
+            StoredFile sf = new StoredFile();
+            sf.setId(UUID.randomUUID());
+            sf.setSha256(i.getArgument(6));
+            return sf;
+        });
+
+        MockHttpServletResponse res = put("application/pdf", body);
+
+        assertEquals(200, res.getStatus());
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        verify(storedFileService).uploadStaged(eq(COMPANY), eq(UPLOADER), eq("smlouva.pdf"), eq("application/pdf"),
+                any(), eq((long) body.length), eq(sha256));
+        assertArrayEquals(body, staged.get());
+        assertTrue(res.getContentAsString().contains(sha256));
+    }
+
+    @Test
+    void body_over_limit_is_rejected_mid_stream_with_413() throws Exception {
+        props.setMaxSizeMb(1);
+        byte[] body = new byte[3 * 1024 * 1024];
+        System.arraycopy("%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII), 0, body, 0, 9);
+
+        ChunkedInput in = new ChunkedInput(body);
+        MockHttpServletResponse res = put("application/pdf", in);
+
+        assertEquals(413, res.getStatus());
+        assertTrue(res.getContentAsString().contains("files.upload.tooLarge"));
+        assertTrue(in.consumed() < body.length, "zbytek těla se už nečte");
+        verify(storedFileService, never()).uploadStaged(any(), any(), any(), any(), any(), anyLong(), any());
+        assertStagingEmpty();
+    }
+
+    @Test
+    void content_not_matching_declared_type_is_rejected_with_415() throws Exception {
+        byte[] body = new byte[256 * 1024];
+        System.arraycopy("%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII), 0, body, 0, 9);
+
+        MockHttpServletResponse res = put("image/png", body);
+
+        assertEquals(415, res.getStatus());
+        assertTrue(res.getContentAsString().contains("files.upload.contentMismatch"));
+        verify(storedFileService, never()).uploadStaged(any(), any(), any(), any(), any(), anyLong(), any());
+        assertStagingEmpty();
+    }
+
+    private MockHttpServletResponse put(String contentType, byte[] body) throws Exception {
+        return put(contentType, new ChunkedInput(body));
+    }
+
+    /** PUT bez Content-Length (chunked) – limit se musí poznat až z přijatých bajtů. */
+    private MockHttpServletResponse put(String contentType, ChunkedInput in) throws Exception {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        MockHttpServletRequest req = new MockHttpServletRequest("PUT", AsyncUploadServlet.PATH) {
+            @Override
+            public ServletInputStream getInputStream() {
+                return in;
+            }
+
+            @Override
+            public AsyncContext startAsync() {
+                // kontejner k async kontextu připojí i response (mock bez argumentů ne)
+                return startAsync(this, res);
+            }
+        };
+        req.setAsyncSupported(true);
+        req.setContentType(contentType);
+        req.setParameter("companyId", COMPANY.toString());
+        req.setParameter("uploaderId", UPLOADER.toString());
+        req.setParameter("name", "smlouva.pdf");
+
+        servlet.service(req, res);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (req.isAsyncStarted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(req.isAsyncStarted(), "upload skončil");
+        return res;
+    }
+
+    private void assertStagingEmpty() throws IOException {
+        try (var files = Files.list(staging)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Tělo po 16 KiB jako od kontejneru: listener se volá z "kontejnerového" vlákna, {@code isReady()} vrací
+     * false až na konci, kdy se naplánuje {@code onAllDataRead}. Čtení může obnovit i AIO vlákno servletu.
+     */
+    private final class ChunkedInput extends ServletInputStream {
+
+        private final byte[] data;
+        private int pos;
+        private boolean eof;
+        private ReadListener listener;
+
+        ChunkedInput(byte[] data) {
+            this.data = data;
+        }
+
+        synchronized int consumed() {
+            return pos;
+        }
+
+        @Override
+        public synchronized boolean isFinished() {
+            return pos >= data.length;
+        }
+
+        @Override
+        public synchronized boolean isReady() {
+            if (pos < data.length) return true;
+            if (!eof) {
+                eof = true;
+                container.execute(() -> {
+                    try {
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            return false;
+        }
+
+        @Override
+        public synchronized void setReadListener(ReadListener readListener) {
+            this.listener = readListener;
+            container.execute(() -> {
+                try {
+                    readListener.onDataAvailable();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            if (pos >= data.length) return -1;
+            int n = Math.min(Math.min(len, 16 * 1024), data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package cz.stavbau.backend.files.api;
 
 import cz.stavbau.backend.features.files.api.FilesController;
+import cz.stavbau.backend.features.files.api.SignedDownloadTokens;
 import cz.stavbau.backend.features.files.api.dto.LinkRequest;
 import cz.stavbau.backend.features.files.api.dto.TagsRequest;
 import cz.stavbau.backend.features.files.model.LinkTarget;
 import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileTextRepository;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository;
+import cz.stavbau.backend.features.files.service.FileArchiveService;
+import cz.stavbau.backend.features.files.service.FileBulkUploadService;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
 import cz.stavbau.backend.features.files.service.StoredFileService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -29,6 +37,12 @@ class FilesControllerTest {
     @Autowired MockMvc mvc;
     @Autowired ObjectMapper om;
     @MockBean StoredFileService storedFileService;
+    @MockBean ImageDerivativeService imageDerivativeService;
+    @MockBean FileArchiveService fileArchiveService;
+    @MockBean SignedDownloadTokens signedDownloadTokens;
+    @MockBean FileTextService fileTextService;
+    @MockBean FileUsageService fileUsageService;
+    @MockBean FileBulkUploadService fileBulkUploadService;
 
     @Test
     void upload_returns_metadata() throws Exception {
@@ -50,6 +64,54 @@ class FilesControllerTest {
            .andExpect(jsonPath("$.originalName", is("a.txt")));
     }
 
+    @Test
+    void download_range_returns_206_with_content_range() throws Exception {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID()); sf.setOriginalName("výkres.pdf"); sf.setMimeType("application/pdf");
+        sf.setSizeBytes(10L); sf.setSha256("abc");
+        Mockito.when(storedFileService.get(sf.getId())).thenReturn(sf);
+        Mockito.doAnswer(i -> {
+            ((java.io.OutputStream) i.getArgument(3)).write("2345".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(storedFileService).writeContent(Mockito.eq(sf), Mockito.eq(2L), Mockito.eq(4L), Mockito.any());
+
+        var result = mvc.perform(get("/api/v1/files/" + sf.getId()).header("Range", "bytes=2-5"))
+           .andExpect(request().asyncStarted())
+           .andReturn();
+        mvc.perform(asyncDispatch(result))
+           .andExpect(status().isPartialContent())
+           .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+           .andExpect(header().string("ETag", "\"abc\""))
+           .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void download_if_none_match_returns_304() throws Exception {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID()); sf.setOriginalName("a.txt"); sf.setMimeType("text/plain");
+        sf.setSizeBytes(2L); sf.setSha256("abc");
+        Mockito.when(storedFileService.get(sf.getId())).thenReturn(sf);
+
+        mvc.perform(get("/api/v1/files/" + sf.getId()).header("If-None-Match", "\"abc\""))
+           .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void download_gzip_blob_is_sent_encoded_when_accepted() throws Exception {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID()); sf.setOriginalName("a.csv"); sf.setMimeType("text/csv");
+        sf.setSizeBytes(5000L); sf.setSha256("abc");
+        sf.setContentEncoding("gzip"); sf.setStoredSizeBytes(120L);
+        Mockito.when(storedFileService.get(sf.getId())).thenReturn(sf);
+
+        mvc.perform(get("/api/v1/files/" + sf.getId()).header("Accept-Encoding", "gzip, deflate"))
+           .andExpect(status().isOk())
+           .andExpect(header().string("Content-Encoding", "gzip"))
+           .andExpect(header().string("Content-Length", "120"))
+           .andExpect(header().string("ETag", "\"abc-gzip\""))
+           .andExpect(header().string("Vary", "Accept-Encoding"));
+    }
+
     @Test
     void set_tags_204() throws Exception {
         UUID id = UUID.randomUUID();
@@ -69,4 +131,71 @@ class FilesControllerTest {
                 .content(om.writeValueAsString(body)))
            .andExpect(status().isNoContent());
     }
+
+    @Test
+    void signed_url_is_issued_after_authorization() throws Exception {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID()); sf.setOriginalName("a.pdf"); sf.setMimeType("application/pdf");
+        sf.setSizeBytes(10L); sf.setSha256("abc"); sf.setStorageKey("c/uuid.pdf");
+        Mockito.when(storedFileService.get(sf.getId())).thenReturn(sf);
+        Mockito.when(signedDownloadTokens.nextExpiry(Mockito.any())).thenReturn(java.time.Instant.parse("2030-01-01T00:00:00Z"));
+        Mockito.when(signedDownloadTokens.sign(Mockito.any())).thenReturn("tok.sig");
+
+        mvc.perform(get("/api/v1/files/" + sf.getId() + "/signed-url"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.url", is("/api/v1/public/files/tok.sig")))
+           .andExpect(jsonPath("$.expiresAt", is("2030-01-01T00:00:00Z")));
+    }
+
+    @Test
+    void search_returns_ranked_hits_with_snippets() throws Exception {
+        UUID company = UUID.randomUUID(), fileId = UUID.randomUUID();
+        var hit = new FileTextRepository.Hit(fileId, "smlouva.pdf", "application/pdf", 1234L,
+                java.time.Instant.parse("2025-10-01T08:00:00Z"), 0.8, "… smluvní <mark>pokuta</mark> 0,05 % …");
+        Mockito.when(fileTextService.search(company, "pokuta", null, null, 20)).thenReturn(java.util.List.of(hit));
+
+        mvc.perform(get("/api/v1/files/search").param("companyId", company.toString()).param("q", "pokuta"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.items[0].id", is(fileId.toString())))
+           .andExpect(jsonPath("$.items[0].snippet", containsString("<mark>pokuta</mark>")));
+    }
+
+    @Test
+    void usage_returns_counters_quota_and_targets() throws Exception {
+        UUID company = UUID.randomUUID(), project = UUID.randomUUID();
+        var target = new FileUsageRepository.TargetRow(LinkTarget.PROJECT, project, 3, 3000);
+        Mockito.when(fileUsageService.usage(company, null, null, 20))
+               .thenReturn(new FileUsageService.Usage(company, 10, 8000, 10000L, java.util.List.of(target)));
+
+        mvc.perform(get("/api/v1/files/usage").param("companyId", company.toString()))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.sizeBytes", is(8000)))
+           .andExpect(jsonPath("$.remainingBytes", is(2000)))
+           .andExpect(jsonPath("$.targets[0].targetId", is(project.toString())));
+    }
+
+    @Test
+    void bulk_upload_returns_per_file_results() throws Exception {
+        UUID company = UUID.randomUUID(), uploader = UUID.randomUUID(), project = UUID.randomUUID();
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID()); sf.setCompanyId(company); sf.setOriginalName("a.jpg");
+        Mockito.when(fileBulkUploadService.upload(Mockito.eq(company), Mockito.eq(uploader), Mockito.anyList(),
+                        Mockito.eq(LinkTarget.PROJECT), Mockito.eq(project)))
+               .thenReturn(java.util.List.of(
+                       new FileBulkUploadService.Item(0, "a.jpg", FileBulkUploadService.Status.CREATED, sf, null),
+                       new FileBulkUploadService.Item(1, "b.exe", FileBulkUploadService.Status.REJECTED, null, "files.upload.mimeNotAllowed")));
+
+        mvc.perform(multipart("/api/v1/files/bulk")
+                .file(new MockMultipartFile("files", "a.jpg", "image/jpeg", new byte[]{1}))
+                .file(new MockMultipartFile("files", "b.exe", "application/octet-stream", new byte[]{2}))
+                .param("companyId", company.toString())
+                .param("uploaderId", uploader.toString())
+                .param("targetType", "PROJECT")
+                .param("targetId", project.toString()))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.created", is(1)))
+           .andExpect(jsonPath("$.items[0].file.id", is(sf.getId().toString())))
+           .andExpect(jsonPath("$.items[1].status", is("REJECTED")))
+           .andExpect(jsonPath("$.items[1].error", is("files.upload.mimeNotAllowed")));
+    }
 }
@@ -0,0 +1,60 @@
+package cz.stavbau.backend.files.api;
+
+import cz.stavbau.backend.features.files.api.SignedDownloadTokens;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedDownloadTokensTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final SignedDownloadTokens tokens =
+            new SignedDownloadTokens(KEY, Duration.ofMinutes(15), Duration.ofMinutes(5));
+
+    private static SignedDownloadTokens.Token token(Instant exp) {
+        return new SignedDownloadTokens.Token("cas/ab/cd/abcd", "výkres.pdf", "application/pdf", 1234, "abcd",
+                "gzip", 600, Instant.ofEpochMilli(1_700_000_000_123L), null, "inline", exp);
+    }
+
+    @Test
+    void sign_and_verify_roundtrip() {
+        Instant now = Instant.parse("2025-10-18T10:00:00Z");
+        var t = token(tokens.nextExpiry(now));
+        var parsed = tokens.verify(tokens.sign(t), now).orElseThrow();
+        assertEquals(t, parsed);
+    }
+
+    @Test
+    void expiry_is_bucketed_so_urls_are_stable() {
+        Instant a = Instant.parse("2025-10-18T10:00:01Z");
+        Instant b = Instant.parse("2025-10-18T10:04:59Z");
+        assertEquals(tokens.nextExpiry(a), tokens.nextExpiry(b));
+        assertEquals(Instant.parse("2025-10-18T10:20:00Z"), tokens.nextExpiry(a));
+        assertEquals(tokens.sign(token(tokens.nextExpiry(a))), tokens.sign(token(tokens.nextExpiry(b))));
+    }
+
+    @Test
+    void rejects_expired_tampered_and_foreign_tokens() {
+        Instant now = Instant.parse("2025-10-18T10:00:00Z");
+        String signed = tokens.sign(token(now.plusSeconds(60)));
+
+        assertTrue(tokens.verify(signed, now.plusSeconds(60)).isEmpty());
+
+        char c = signed.charAt(3);
+        String tampered = signed.substring(0, 3) + (c == 'A' ? 'B' : 'A') + signed.substring(4);
+        assertTrue(tokens.verify(tampered, now).isEmpty());
+
+        var other = new SignedDownloadTokens(Base64.getEncoder().encodeToString(new byte[]{
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32}),
+                Duration.ofMinutes(15), Duration.ofMinutes(5));
+        assertTrue(other.verify(signed, now).isEmpty());
+        assertTrue(tokens.verify("garbage", now).isEmpty());
+        assertTrue(tokens.verify(null, now).isEmpty());
+    }
+}
@@ -0,0 +1,29 @@
+package cz.stavbau.backend.files.config;
+
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUploadPropertiesTest {
+
+    @Test
+    void allowed_mime_ignores_parameters_and_case() {
+        FileUploadProperties props = new FileUploadProperties();
+        props.setAllowedMime(List.of("application/pdf", "text/plain"));
+
+        assertTrue(props.allowsMime("text/plain; charset=UTF-8"));
+        assertTrue(props.allowsMime("Application/PDF"));
+        assertFalse(props.allowsMime("image/gif"));
+        assertFalse(props.allowsMime(null));
+    }
+
+    @Test
+    void empty_allow_list_accepts_everything() {
+        FileUploadProperties props = new FileUploadProperties();
+        assertTrue(props.allowsMime("application/x-anything"));
+        assertEquals(25L * 1024 * 1024, props.maxSizeBytes());
+    }
+}
@@ -0,0 +1,111 @@
+package cz.stavbau.backend.files.service;
+
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import cz.stavbau.backend.features.files.model.UploadSession;
+import cz.stavbau.backend.features.files.model.UploadSessionStatus;
+import cz.stavbau.backend.features.files.repo.UploadSessionRepository;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.files.service.impl.ChunkedUploadServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChunkedUploadServiceImplTest {
+
+    private static final int CHUNK = 256 * 1024;
+
+    @TempDir
+    Path staging;
+
+    private UploadSessionRepository sessionRepo;
+    private FileUploadProperties props;
+    private ChunkedUploadServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        sessionRepo = Mockito.mock(UploadSessionRepository.class);
+        when(sessionRepo.save(any())).thenAnswer(i -> i.getArgument(0));
+        props = new FileUploadProperties();
+        props.setMaxSizeMb(1);
+        props.setAllowedMime(List.of("application/pdf"));
+        service = new ChunkedUploadServiceImpl(sessionRepo, Mockito.mock(StoredFileService.class),
+                Mockito.mock(FileUsageService.class), props,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)),
+                staging.toString(), 8, Duration.ofHours(24));
+    }
+
+    @Test
+    void session_within_limits_is_created() {
+        UploadSession s = service.create(UUID.randomUUID(), UUID.randomUUID(), "vykres.pdf", "application/pdf",
+                1024 * 1024, CHUNK);
+
+        assertEquals(UploadSessionStatus.OPEN, s.getStatus());
+        verify(sessionRepo).save(s);
+    }
+
+    @Test
+    void session_over_max_size_is_rejected() {
+        assertThrows(ValidationException.class, () -> service.create(UUID.randomUUID(), UUID.randomUUID(),
+                "vykres.pdf", "application/pdf", 1024 * 1024 + 1, CHUNK));
+        verify(sessionRepo, never()).save(any());
+    }
+
+    @Test
+    void session_with_mime_outside_allow_list_is_rejected() {
+        assertThrows(ValidationException.class, () -> service.create(UUID.randomUUID(), UUID.randomUUID(),
+                "setup.exe", "application/x-msdownload", 1024, CHUNK));
+        assertThrows(ValidationException.class, () -> service.create(UUID.randomUUID(), UUID.randomUUID(),
+                "neznamy", null, 1024, CHUNK));
+        verify(sessionRepo, never()).save(any());
+    }
+
+    @Test
+    void chunk_inside_hashed_prefix_cannot_be_rewritten() throws Exception {
+        UploadSession s = session(4L * CHUNK, CHUNK);
+        Path part = staging.resolve(s.getId() + ".part");
+        byte[] original = new byte[CHUNK];
+        Files.write(part, original);
+
+        assertThrows(ConflictException.class,
+                () -> service.writeChunk(s.getId(), 0, CHUNK, new ByteArrayInputStream(new byte[CHUNK])));
+
+        assertArrayEquals(original, Files.readAllBytes(part));
+        verify(sessionRepo, never()).insertChunk(any(), anyInt(), anyInt());
+    }
+
+    private UploadSession session(long totalSize, long hashedBytes) {
+        UploadSession s = new UploadSession();
+        s.setId(UUID.randomUUID());
+        s.setCompanyId(UUID.randomUUID());
+        s.setUploaderId(UUID.randomUUID());
+        s.setOriginalName("vykres.pdf");
+        s.setMimeType("application/pdf");
+        s.setTotalSize(totalSize);
+        s.setChunkSize(CHUNK);
+        s.setHashedBytes(hashedBytes);
+        s.setStatus(UploadSessionStatus.OPEN);
+        s.setCreatedAt(Instant.now());
+        s.setExpiresAt(Instant.now().plus(Duration.ofHours(1)));
+        when(sessionRepo.findById(s.getId())).thenReturn(Optional.of(s));
+        return s;
+    }
+}
@@ -0,0 +1,148 @@
+package cz.stavbau.backend.files.service;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.impl.FileArchiveServiceImpl;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.storage.LocalFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class FileArchiveServiceImplTest {
+
+    @TempDir Path base;
+
+    @Test
+    void zip_contains_all_files_with_unique_names() throws Exception {
+        var storage = new LocalFileStorage(base);
+        var random = new Random(7);
+        int[] sizes = {12, 2_000_000, 4_000};
+        String[] mimes = {"text/plain", "image/jpeg", "image/jpeg"};
+        List<StoredFile> files = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] data = new byte[sizes[i]];
+            random.nextBytes(data);
+            var res = storage.store("c1", "foto.jpg", mimes[i], data.length, new ByteArrayInputStream(data));
+            StoredFile f = new StoredFile();
+            f.setOriginalName("foto.jpg");
+            f.setMimeType(mimes[i]);
+            f.setSizeBytes(data.length);
+            f.setStorageKey(res.storageKey());
+            files.add(f);
+        }
+
+        var service = new FileArchiveServiceImpl(storage, 256, 1, Duration.ofSeconds(30));
+        var out = new ByteArrayOutputStream();
+        service.writeZip(files, out);
+
+        List<String> names = new ArrayList<>();
+        try (var zin = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry e;
+            int i = 0;
+            while ((e = zin.getNextEntry()) != null) {
+                names.add(e.getName());
+                assertEquals(sizes[i++], zin.readAllBytes().length);
+            }
+        }
+        assertEquals(List.of("foto.jpg", "foto (2).jpg", "foto (3).jpg"), names);
+    }
+
+    @Test
+    void slow_clients_do_not_block_other_exports() throws Exception {
+        var storage = Mockito.mock(FileStorage.class);
+        when(storage.read("k")).thenAnswer(inv -> new ByteArrayInputStream(new byte[600 * 1024]));
+        var service = new FileArchiveServiceImpl(storage, 64, 1, Duration.ofSeconds(30));
+        List<StoredFile> files = List.of(file("k", 600 * 1024), file("k", 600 * 1024));
+
+        // 8 exportů, jejichž klient nečte – dřív obsadily celý pool čtenářů
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 8; i++) {
+                clients.submit(() -> {
+                    service.writeZip(files, new OutputStream() {
+                        @Override
+                        public void write(int b) throws IOException {
+                            awaitRelease();
+                        }
+
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            awaitRelease();
+                        }
+
+                        private void awaitRelease() throws IOException {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                    });
+                    return null;
+                });
+            }
+
+            Future<byte[]> fast = Executors.newSingleThreadExecutor().submit(() -> {
+                var out = new ByteArrayOutputStream();
+                service.writeZip(files, out);
+                return out.toByteArray();
+            });
+            assertTrue(fast.get(10, TimeUnit.SECONDS).length > 0);
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void stalled_storage_fails_export_after_read_timeout() {
+        var storage = Mockito.mock(FileStorage.class);
+        when(storage.read("k")).thenReturn(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return -1;
+            }
+        });
+        var service = new FileArchiveServiceImpl(storage, 256, 1, Duration.ofMillis(200));
+
+        IOException e = assertThrows(IOException.class,
+                () -> service.writeZip(List.of(file("k", 1024)), new ByteArrayOutputStream()));
+        assertTrue(e.getMessage().contains("stalled"));
+    }
+
+    private static StoredFile file(String key, long size) {
+        StoredFile f = new StoredFile();
+        f.setOriginalName("vykres.pdf");
+        f.setMimeType("application/pdf");
+        f.setSizeBytes(size);
+        f.setStorageKey(key);
+        return f;
+    }
+}
@@ -0,0 +1,81 @@
+package cz.stavbau.backend.files.service;
+
+import cz.stavbau.backend.features.files.config.FileUploadProperties;
+import cz.stavbau.backend.features.files.model.FileLink;
+import cz.stavbau.backend.features.files.model.LinkTarget;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileBatchRepository;
+import cz.stavbau.backend.features.files.repo.StoredFileRepository;
+import cz.stavbau.backend.features.files.service.FileBulkUploadService;
+import cz.stavbau.backend.features.files.service.FileBulkUploadService.Status;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
+import cz.stavbau.backend.features.files.service.impl.FileBulkUploadServiceImpl;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileBulkUploadServiceImplTest {
+
+    private FileStorage storage;
+    private StoredFileRepository fileRepo;
+    private FileBatchRepository batchRepo;
+    private FileUsageService usage;
+    private FileBulkUploadService service;
+
+    @BeforeEach
+    void setup() {
+        storage = Mockito.mock(FileStorage.class);
+        fileRepo = Mockito.mock(StoredFileRepository.class);
+        batchRepo = Mockito.mock(FileBatchRepository.class);
+        usage = Mockito.mock(FileUsageService.class);
+        FileUploadProperties props = new FileUploadProperties();
+        props.setAllowedMime(List.of("image/jpeg"));
+        service = new FileBulkUploadServiceImpl(storage, fileRepo, batchRepo, usage,
+                Mockito.mock(ImageDerivativeService.class), Mockito.mock(FileTextService.class), props,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void stores_in_parallel_and_inserts_metadata_in_one_batch() {
+        UUID company = UUID.randomUUID(), project = UUID.randomUUID();
+        when(storage.store(anyString(), eq("a.jpg"), anyString(), anyLong(), any()))
+                .thenReturn(new FileStorage.StoreResult("c/a.jpg", "aaa"));
+        when(storage.store(anyString(), eq("b.jpg"), anyString(), anyLong(), any()))
+                .thenThrow(new IllegalStateException("disk full"));
+        when(storage.exists("c/a.jpg")).thenReturn(true);
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "a.jpg", "image/jpeg", new byte[]{1, 2}),
+                new MockMultipartFile("files", "b.jpg", "image/jpeg", new byte[]{3}),
+                new MockMultipartFile("files", "c.exe", "application/octet-stream", new byte[]{4}));
+
+        var items = service.upload(company, UUID.randomUUID(), files, LinkTarget.PROJECT, project);
+
+        assertEquals(Status.CREATED, items.get(0).status());
+        assertEquals("aaa", items.get(0).file().getSha256());
+        assertEquals(Status.FAILED, items.get(1).status());
+        assertEquals(Status.REJECTED, items.get(2).status());
+        assertEquals("files.upload.mimeNotAllowed", items.get(2).error());
+
+        verify(usage).checkQuota(company, 3L);
+        verify(batchRepo, times(1)).insertFiles(argThat((List<StoredFile> l) -> l.size() == 1));
+        verify(batchRepo, times(1)).insertLinks(argThat((List<FileLink> l) ->
+                l.size() == 1 && l.get(0).getId().targetId.equals(project)));
+        verify(usage).filesAdded(eq(company), argThat((List<StoredFile> l) -> l.size() == 1), eq(LinkTarget.PROJECT), eq(project));
+        verify(fileRepo, never()).save(any());
+    }
+}
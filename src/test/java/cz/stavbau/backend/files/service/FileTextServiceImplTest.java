@@ -0,0 +1,90 @@
+package cz.stavbau.backend.files.service;
+
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileTextRepository;
+import cz.stavbau.backend.features.files.repo.FileTextRepository.Source;
+import cz.stavbau.backend.features.files.repo.FileTextRepository.Status;
+import cz.stavbau.backend.features.files.service.impl.FileTextServiceImpl;
+import cz.stavbau.backend.features.files.storage.FileStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileTextServiceImplTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    private FileTextRepository repo;
+    private FileStorage storage;
+    private FileTextServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        repo = Mockito.mock(FileTextRepository.class);
+        storage = Mockito.mock(FileStorage.class);
+        service = new FileTextServiceImpl(repo, storage, new SimpleMeterRegistry(), true, 1, 10, 1000, 1, LEASE, 3);
+    }
+
+    @Test
+    void extracted_text_is_stored() {
+        StoredFile f = file("zapis.txt");
+        when(repo.claim(f.getId(), LEASE, 3)).thenReturn(true);
+        when(storage.read("k")).thenReturn(new ByteArrayInputStream("Předávací protokol".getBytes(StandardCharsets.UTF_8)));
+
+        service.indexAfterCommit(f);
+
+        verify(repo, timeout(2000)).complete(f.getId(), Status.DONE, "zapis.txt", "Předávací protokol");
+    }
+
+    @Test
+    void extraction_error_is_retried_up_to_max_attempts() {
+        StoredFile f = file("smlouva.pdf");
+        when(repo.claim(f.getId(), LEASE, 3)).thenReturn(true);
+        when(storage.read("k")).thenThrow(new UncheckedIOException(new java.io.IOException("storage down")));
+
+        service.indexAfterCommit(f);
+
+        verify(repo, timeout(2000)).fail(eq(f.getId()), eq("smlouva.pdf"), contains("storage down"), eq(3));
+    }
+
+    @Test
+    void crash_of_extraction_is_recorded_as_terminal_failure() {
+        StoredFile f = file("bomba.pdf");
+        when(repo.claim(f.getId(), LEASE, 3)).thenReturn(true);
+        when(storage.read("k")).thenThrow(new StackOverflowError());
+
+        service.indexAfterCommit(f);
+
+        // 0 pokusů navíc → FAILED hned, soubor se už neclaimne
+        verify(repo, timeout(2000)).fail(eq(f.getId()), eq("bomba.pdf"), contains("StackOverflowError"), eq(0));
+    }
+
+    @Test
+    void backfill_claims_only_files_with_attempts_left() {
+        when(repo.claimDue(anyInt(), eq(LEASE), eq(3))).thenReturn(List.of());
+
+        service.indexPending();
+
+        verify(repo).claimDue(10, LEASE, 3);
+    }
+
+    private StoredFile file(String name) {
+        StoredFile f = new StoredFile();
+        f.setId(UUID.randomUUID());
+        f.setCompanyId(UUID.randomUUID());
+        f.setOriginalName(name);
+        when(repo.source(f.getId())).thenReturn(new Source(f.getId(), "k", null, null, name));
+        return f;
+    }
+}
@@ -0,0 +1,123 @@
+package cz.stavbau.backend.files.service;
+
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository.CompanyRow;
+import cz.stavbau.backend.features.files.repo.FileUsageRepository.Delta;
+import cz.stavbau.backend.features.files.service.impl.FileUsageServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileUsageServiceImplTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private FileUsageRepository repo;
+    private FileUsageServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        repo = Mockito.mock(FileUsageRepository.class);
+        service = new FileUsageServiceImpl(repo, new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), 10, 3);
+    }
+
+    @Test
+    void quota_rejects_upload_that_would_exceed_it() {
+        UUID company = UUID.randomUUID();
+        when(repo.find(company)).thenReturn(new CompanyRow(company, 5, 8 * MB, null));
+
+        service.checkQuota(company, 2 * MB);
+        assertThrows(ConflictException.class, () -> service.checkQuota(company, 2 * MB + 1));
+    }
+
+    @Test
+    void company_quota_overrides_default() {
+        UUID company = UUID.randomUUID();
+        when(repo.find(company)).thenReturn(new CompanyRow(company, 5, 8 * MB, 100 * MB));
+
+        service.checkQuota(company, 50 * MB);
+        assertEquals(100 * MB, service.usage(company, null, null, 10).quotaBytes());
+    }
+
+    @Test
+    void regular_company_is_counted_in_the_current_transaction() {
+        StoredFile f = file(UUID.randomUUID(), 100);
+        service.fileAdded(f);
+
+        verify(repo).apply(List.of(Delta.company(f.getCompanyId(), 1, 100)));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void hot_company_accumulates_in_memory_and_flushes_one_batch() {
+        UUID company = UUID.randomUUID();
+        // 3 zápisy za interval → od dalšího intervalu je firma horká
+        for (int i = 0; i < 3; i++) service.fileAdded(file(company, 10));
+        service.flush();
+        clearInvocations(repo);
+
+        for (int i = 0; i < 5; i++) service.fileAdded(file(company, 10));
+        verify(repo, never()).apply(any());
+        when(repo.find(company)).thenReturn(new CompanyRow(company, 3, 30, null));
+        assertEquals(80, service.usage(company, null, null, 10).sizeBytes());
+
+        assertEquals(1, service.flush());
+        verify(repo).apply(List.of(Delta.company(company, 5, 50)));
+    }
+
+    @Test
+    void deltas_pending_across_reconcile_are_dropped_instead_of_counted_twice() {
+        UUID company = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) service.fileAdded(file(company, 10));
+        service.flush();
+        clearInvocations(repo);
+
+        // generace 0: soubory jsou v stored_files, přírůstky zatím jen v adderech tohoto uzlu
+        for (int i = 0; i < 4; i++) service.fileAdded(file(company, 10));
+        // přepočet (jiný uzel / mezi flush a transakcí přepočtu) je započetl ze stored_files a zvýšil generaci
+        when(repo.generation()).thenReturn(1L);
+        service.fileAdded(file(company, 7));
+
+        when(repo.find(company)).thenReturn(new CompanyRow(company, 7, 70, null));
+        assertEquals(77, service.usage(company, null, null, 10).sizeBytes());
+        assertEquals(1, service.flush());
+        verify(repo).apply(List.of(Delta.company(company, 1, 7)));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void reconcile_flushes_own_deltas_first() {
+        UUID company = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) service.fileAdded(file(company, 10));
+        service.flush();
+        service.fileAdded(file(company, 5));
+        clearInvocations(repo);
+
+        service.reconcile();
+
+        var order = inOrder(repo);
+        order.verify(repo).apply(List.of(Delta.company(company, 1, 5)));
+        order.verify(repo).reconcile();
+    }
+
+    private static StoredFile file(UUID company, long size) {
+        StoredFile f = new StoredFile();
+        f.setId(UUID.randomUUID());
+        f.setCompanyId(company);
+        f.setSizeBytes(size);
+        return f;
+    }
+}
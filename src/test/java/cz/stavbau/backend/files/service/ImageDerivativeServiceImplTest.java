@@ -0,0 +1,57 @@
+package cz.stavbau.backend.files.service;
+
+import cz.stavbau.backend.features.files.model.ImageVariant;
+import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.service.impl.ImageDerivativeServiceImpl;
+import cz.stavbau.backend.features.files.storage.HotBlobCache;
+import cz.stavbau.backend.features.files.storage.LocalFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDerivativeServiceImplTest {
+
+    @TempDir Path base;
+
+    @Test
+    void generates_variants_within_bounds() throws Exception {
+        var storage = new LocalFileStorage(base);
+        var service = new ImageDerivativeServiceImpl(storage, true, 1, 10, 0.8f, new HotBlobCache(0, 64 * 1024, 0));
+
+        var bos = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB), "jpeg", bos);
+        byte[] data = bos.toByteArray();
+        var res = storage.store("c1", "foto.jpg", "image/jpeg", data.length, new ByteArrayInputStream(data));
+
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setMimeType("image/jpeg");
+        sf.setSha256(res.sha256());
+        sf.setStorageKey(res.storageKey());
+
+        service.scheduleAfterCommit(sf);
+        Optional<?> thumb = Optional.empty();
+        for (int i = 0; i < 100 && thumb.isEmpty(); i++) {
+            Thread.sleep(50);
+            if (storage.exists(ImageVariant.THUMB.storageKey(res.sha256()))) {
+                thumb = service.find(sf, ImageVariant.THUMB);
+            }
+        }
+        assertTrue(thumb.isPresent());
+
+        BufferedImage t = ImageIO.read(storage.read(ImageVariant.THUMB.storageKey(res.sha256())));
+        assertEquals(320, t.getWidth());
+        assertEquals(240, t.getHeight());
+        BufferedImage w = ImageIO.read(storage.read(ImageVariant.WEB.storageKey(res.sha256())));
+        assertEquals(1600, w.getWidth());
+    }
+}
@@ -1,23 +1,35 @@
 package cz.stavbau.backend.files.service;
 
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.features.files.model.FileLink;
 import cz.stavbau.backend.features.files.model.LinkTarget;
 import cz.stavbau.backend.features.files.model.StoredFile;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Kind;
+import cz.stavbau.backend.features.files.repo.BlobTombstoneRepository.Tombstone;
 import cz.stavbau.backend.features.files.repo.FileLinkRepository;
+import cz.stavbau.backend.features.files.repo.FileQueryRepository;
 import cz.stavbau.backend.features.files.repo.FileTagJoinRepository;
 import cz.stavbau.backend.features.files.repo.FileTagRepository;
 import cz.stavbau.backend.features.files.repo.StoredFileRepository;
+import cz.stavbau.backend.features.files.service.FileTextService;
+import cz.stavbau.backend.features.files.service.FileUsageService;
+import cz.stavbau.backend.features.files.service.ImageDerivativeService;
 import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.files.service.impl.FileTagIndex;
 import cz.stavbau.backend.features.files.service.impl.StoredFileServiceImpl;
 import cz.stavbau.backend.features.files.storage.FileStorage;
+import cz.stavbau.backend.features.files.storage.HotBlobCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.springframework.mock.web.MockMultipartFile;
 
 import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -30,6 +42,12 @@ public class StoredFileServiceImplTest {
     private FileTagJoinRepository tagJoinRepo;
     private FileLinkRepository linkRepo;
     private FileStorage storage;
+    private FileTagIndex tagIndex;
+    private ImageDerivativeService derivatives;
+    private FileQueryRepository fileQueryRepo;
+    private BlobTombstoneRepository tombstoneRepo;
+    private FileTextService texts;
+    private FileUsageService usage;
     private StoredFileService service;
 
     @BeforeEach
@@ -39,7 +57,14 @@ public class StoredFileServiceImplTest {
         tagJoinRepo = Mockito.mock(FileTagJoinRepository.class);
         linkRepo = Mockito.mock(FileLinkRepository.class);
         storage = Mockito.mock(FileStorage.class);
-        service = new StoredFileServiceImpl(fileRepo, tagRepo, tagJoinRepo, linkRepo, storage);
+        tagIndex = new FileTagIndex(tagJoinRepo, Duration.ofMinutes(10), 100);
+        derivatives = Mockito.mock(ImageDerivativeService.class);
+        fileQueryRepo = Mockito.mock(FileQueryRepository.class);
+        tombstoneRepo = Mockito.mock(BlobTombstoneRepository.class);
+        texts = Mockito.mock(FileTextService.class);
+        usage = Mockito.mock(FileUsageService.class);
+        service = new StoredFileServiceImpl(fileRepo, tagRepo, tagJoinRepo, linkRepo, storage, tagIndex, derivatives, fileQueryRepo, tombstoneRepo, texts, usage,
+                new HotBlobCache(0, 64 * 1024, 0));
     }
 
     @Test
@@ -50,6 +75,7 @@ public class StoredFileServiceImplTest {
                 "hello".getBytes(StandardCharsets.UTF_8));
 
         when(storage.store(anyString(), anyString(), anyString(), anyLong(), any())).thenReturn(new FileStorage.StoreResult("c/uuid.txt","abc123"));
+        when(storage.exists("c/uuid.txt")).thenReturn(true);
         when(fileRepo.save(any())).thenAnswer(i -> i.getArguments()[0]);
 
         var saved = service.upload(company, uploader, file);
@@ -58,27 +84,136 @@ public class StoredFileServiceImplTest {
         assertEquals("abc123", saved.getSha256());
         assertEquals("test.txt", saved.getOriginalName());
         assertEquals("text/plain", saved.getMimeType());
+        verify(texts).indexAfterCommit(saved);
+        verify(usage).checkQuota(company, 5L);
+        verify(usage).fileAdded(saved);
     }
 
     @Test
-    void setTags_creates_missing_tags_and_joins() {
+    void delete_keeps_blob_shared_by_other_files() {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setCompanyId(UUID.randomUUID());
+        sf.setStorageKey("cas/ab/cd/abcd");
+        when(fileRepo.findById(eq(sf.getId()))).thenReturn(Optional.of(sf));
+        when(fileRepo.countByStorageKey("cas/ab/cd/abcd")).thenReturn(1L);
+
+        service.delete(sf.getId());
+        verify(fileRepo).delete(sf);
+        verify(storage, never()).delete(anyString());
+        verify(tombstoneRepo).enqueue(List.of());
+    }
+
+    @Test
+    void delete_tombstones_blob_with_last_reference() {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setCompanyId(UUID.randomUUID());
+        sf.setStorageKey("cas/ab/cd/abcd");
+        sf.setSha256("abcd");
+        sf.setSizeBytes(42);
+        when(fileRepo.findById(eq(sf.getId()))).thenReturn(Optional.of(sf));
+        when(fileRepo.countByStorageKey("cas/ab/cd/abcd")).thenReturn(0L);
+        when(fileRepo.existsBySha256("abcd")).thenReturn(false);
+
+        service.delete(sf.getId());
+        // fyzicky maže až sweeper po commitu
+        verify(storage, never()).delete(anyString());
+        verify(tombstoneRepo).enqueue(argThat((Collection<Tombstone> ts) ->
+                ts.stream().anyMatch(t -> t.kind() == Kind.BLOB && t.storageKey().equals("cas/ab/cd/abcd") && t.sizeBytes() == 42L)
+                        && ts.stream().filter(t -> t.kind() == Kind.DERIVED).count() == 2));
+    }
+
+    @Test
+    void setTags_replaces_joins_set_based() {
         UUID fileId = UUID.randomUUID();
+        UUID company = UUID.randomUUID();
         StoredFile sf = new StoredFile();
         sf.setId(fileId);
-        sf.setCompanyId(UUID.randomUUID());
+        sf.setCompanyId(company);
         when(fileRepo.findById(eq(fileId))).thenReturn(Optional.of(sf));
-        when(tagRepo.findByCompanyIdAndName(any(), any())).thenReturn(Optional.empty());
-        when(tagRepo.save(any())).thenAnswer(i -> i.getArguments()[0]);
 
-        service.setTags(fileId, List.of("invoice","important"));
-        verify(tagRepo, times(2)).save(any());
-        verify(tagJoinRepo, times(2)).save(any());
+        service.setTags(fileId, List.of("invoice", " important ", "invoice", ""));
+
+        Set<String> expected = new LinkedHashSet<>(List.of("invoice", "important"));
+        verify(tagJoinRepo).deleteByFileId(fileId);
+        verify(tagRepo).upsertNames(company, expected);
+        verify(tagJoinRepo).insertForNames(fileId, company, expected);
+        verify(tagJoinRepo, never()).findAll();
+        verify(tagJoinRepo, never()).save(any());
+    }
+
+    @Test
+    void findByTags_answers_all_and_any_from_index() {
+        UUID company = UUID.randomUUID();
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        when(tagJoinRepo.findRowsByCompanyId(company)).thenReturn(List.of(
+                row(a, "foto"), row(a, "statika"), row(b, "foto")));
+        when(fileRepo.findAllById(any())).thenAnswer(i -> {
+            List<StoredFile> out = new ArrayList<>();
+            for (UUID id : (Iterable<UUID>) i.getArguments()[0]) {
+                StoredFile f = new StoredFile();
+                f.setId(id);
+                out.add(f);
+            }
+            return out;
+        });
+
+        var all = service.findByTags(company, List.of("foto", "statika"), true, 0, 50);
+        assertEquals(1, all.total());
+        assertEquals(a, all.items().get(0).getId());
+
+        var any = service.findByTags(company, List.of("foto", "statika"), false, 0, 50);
+        assertEquals(2, any.total());
+    }
+
+    private static FileTagJoinRepository.FileTagRow row(UUID fileId, String name) {
+        return new FileTagJoinRepository.FileTagRow() {
+            @Override public UUID getFileId() { return fileId; }
+            @Override public String getName() { return name; }
+        };
     }
 
     @Test
     void link_saves_file_link() {
         UUID fileId = UUID.randomUUID();
+        StoredFile sf = new StoredFile();
+        sf.setId(fileId);
+        sf.setCreatedAt(Instant.parse("2025-10-18T10:00:00Z"));
+        when(fileRepo.findById(eq(fileId))).thenReturn(Optional.of(sf));
+
         service.link(fileId, LinkTarget.INVOICE, UUID.randomUUID());
-        verify(linkRepo, times(1)).save(any());
+        verify(linkRepo, times(1)).save(argThat((FileLink l) -> sf.getCreatedAt().equals(l.getFileCreatedAt())));
+        verify(usage).fileLinked(eq(sf), eq(LinkTarget.INVOICE), any());
+    }
+
+    @Test
+    void upload_over_quota_is_rejected_before_storing() {
+        UUID company = UUID.randomUUID();
+        MockMultipartFile file = new MockMultipartFile("file", "big.pdf", "application/pdf", new byte[10]);
+        doThrow(new ConflictException("files.quota.exceeded")).when(usage).checkQuota(company, 10L);
+
+        assertThrows(ConflictException.class, () -> service.upload(company, UUID.randomUUID(), file));
+        verifyNoInteractions(storage);
+        verify(fileRepo, never()).save(any());
+    }
+
+    @Test
+    void delete_subtracts_usage_of_company_and_link_targets() {
+        StoredFile sf = new StoredFile();
+        sf.setId(UUID.randomUUID());
+        sf.setCompanyId(UUID.randomUUID());
+        sf.setStorageKey("cas/ab/cd/abcd");
+        FileLink link = new FileLink(sf.getId(), LinkTarget.PROJECT, UUID.randomUUID());
+        when(fileRepo.findById(eq(sf.getId()))).thenReturn(Optional.of(sf));
+        when(fileRepo.countByStorageKey("cas/ab/cd/abcd")).thenReturn(1L);
+        when(linkRepo.findByIdFileId(sf.getId())).thenReturn(List.of(link));
+
+        service.delete(sf.getId());
+        InOrder order = inOrder(usage, linkRepo, fileRepo);
+        order.verify(usage).fileRemoved(sf, List.of(link));
+        order.verify(linkRepo).deleteByFileId(sf.getId());
+        order.verify(fileRepo).delete(sf);
     }
 }
@@ -0,0 +1,69 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage.ChunkRef;
+import cz.stavbau.backend.features.files.storage.ChunkedFileStorage.Manifest;
+import cz.stavbau.backend.features.files.storage.LocalFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedFileStorageTest {
+
+    @TempDir Path base;
+
+    private static String sha(byte[] b) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(b));
+    }
+
+    @Test
+    void manifest_reads_as_concatenated_chunks_including_ranges() throws Exception {
+        var storage = new ChunkedFileStorage(new LocalFileStorage(base));
+        byte[] a = "AAAAAAAAAA".getBytes(StandardCharsets.US_ASCII);
+        byte[] b = "BBBBB".getBytes(StandardCharsets.US_ASCII);
+        byte[] c = "CCCCCCCC".getBytes(StandardCharsets.US_ASCII);
+        byte[] all = (new String(a, StandardCharsets.US_ASCII) + new String(b, StandardCharsets.US_ASCII)
+                + new String(c, StandardCharsets.US_ASCII)).getBytes(StandardCharsets.US_ASCII);
+        for (byte[] chunk : List.of(a, b, c)) {
+            storage.putChunk(sha(chunk), new ByteArrayInputStream(chunk));
+        }
+
+        String key = storage.putManifest(sha(all), new Manifest(all.length,
+                List.of(new ChunkRef(sha(a), a.length), new ChunkRef(sha(b), b.length), new ChunkRef(sha(c), c.length))));
+
+        assertTrue(ChunkedFileStorage.isManifest(key));
+        assertEquals(all.length, storage.size(key));
+        try (InputStream in = storage.read(key)) {
+            assertArrayEquals(all, in.readAllBytes());
+        }
+        var out = new ByteArrayOutputStream();
+        long n = storage.transferTo(key, 8, 9, Channels.newChannel(out));
+        assertEquals(9, n);
+        assertArrayEquals(Arrays.copyOfRange(all, 8, 17), out.toByteArray());
+    }
+
+    @Test
+    void other_keys_pass_through() throws Exception {
+        var storage = new ChunkedFileStorage(new LocalFileStorage(base));
+        byte[] data = "plain".getBytes(StandardCharsets.US_ASCII);
+
+        var res = storage.store("c1", "a.txt", "text/plain", data.length, new ByteArrayInputStream(data));
+
+        assertFalse(ChunkedFileStorage.isManifest(res.storageKey()));
+        try (InputStream in = storage.read(res.storageKey())) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.CompressingFileStorage;
+import cz.stavbau.backend.features.files.storage.LocalFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressingFileStorageTest {
+
+    @TempDir Path base;
+
+    @Test
+    void text_is_stored_as_gzip_with_hash_of_original() throws Exception {
+        var storage = new CompressingFileStorage(new LocalFileStorage(base), 6);
+        byte[] csv = "datum;castka;vs\n2025-10-01;12100.00;20250001\n".repeat(5_000).getBytes(StandardCharsets.UTF_8);
+
+        var res = storage.store("c1", "vypis.csv", "text/csv", csv.length, new ByteArrayInputStream(csv));
+
+        assertEquals(CompressingFileStorage.GZIP, res.contentEncoding());
+        assertTrue(res.storedSize() < csv.length / 10);
+        assertEquals(res.storedSize(), storage.size(res.storageKey()));
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(csv)), res.sha256());
+        try (InputStream in = new GZIPInputStream(storage.read(res.storageKey()))) {
+            assertArrayEquals(csv, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void high_entropy_content_is_stored_raw() {
+        var storage = new CompressingFileStorage(new LocalFileStorage(base), 6);
+        byte[] data = new byte[200_000];
+        new Random(1).nextBytes(data);
+
+        var res = storage.store("c1", "scan.pdf", "application/pdf", data.length, new ByteArrayInputStream(data));
+
+        assertNull(res.contentEncoding());
+        assertEquals(data.length, storage.size(res.storageKey()));
+    }
+}
@@ -0,0 +1,51 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.ContentAddressedFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentAddressedFileStorageTest {
+
+    @TempDir Path base;
+
+    @Test
+    void duplicate_content_is_stored_once() throws Exception {
+        var storage = new ContentAddressedFileStorage(base);
+        byte[] data = "výkres A1".getBytes(StandardCharsets.UTF_8);
+
+        var r1 = storage.store("c1", "a.pdf", "application/pdf", data.length, new ByteArrayInputStream(data));
+        var r2 = storage.store("c2", "b.pdf", "application/pdf", data.length, new ByteArrayInputStream(data));
+
+        assertEquals(r1.storageKey(), r2.storageKey());
+        assertEquals(ContentAddressedFileStorage.keyFor(r1.sha256()), r1.storageKey());
+        assertTrue(storage.exists(r1.storageKey()));
+        try (Stream<Path> files = Files.walk(base)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void adopt_links_legacy_file_into_cas_layout() throws Exception {
+        var storage = new ContentAddressedFileStorage(base);
+        byte[] data = "legacy".getBytes(StandardCharsets.UTF_8);
+        var sha = storage.store("c1", "x.txt", "text/plain", data.length, new ByteArrayInputStream(data)).sha256();
+        storage.delete(ContentAddressedFileStorage.keyFor(sha));
+        Files.createDirectories(base.resolve("c1"));
+        Files.write(base.resolve("c1/legacy.txt"), data);
+
+        String key = storage.adopt("c1/legacy.txt", sha);
+
+        assertEquals(ContentAddressedFileStorage.keyFor(sha), key);
+        try (var in = storage.read(key)) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+}
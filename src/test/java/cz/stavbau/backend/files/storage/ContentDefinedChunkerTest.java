@@ -0,0 +1,71 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.ContentDefinedChunker;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentDefinedChunkerTest {
+
+    private static List<String> split(byte[] data, List<Integer> sizes) throws Exception {
+        List<String> shas = new ArrayList<>();
+        new ContentDefinedChunker().split(new ByteArrayInputStream(data), (buf, off, len) -> {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                md.update(buf, off, len);
+                shas.add(HexFormat.of().formatHex(md.digest()));
+                sizes.add(len);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return shas;
+    }
+
+    @Test
+    void chunks_respect_bounds_and_cover_whole_input() throws Exception {
+        byte[] data = new byte[20 * 1024 * 1024 + 123];
+        new Random(7).nextBytes(data);
+        List<Integer> sizes = new ArrayList<>();
+
+        split(data, sizes);
+
+        assertEquals(data.length, sizes.stream().mapToLong(Integer::longValue).sum());
+        for (int i = 0; i < sizes.size(); i++) {
+            assertTrue(sizes.get(i) <= ContentDefinedChunker.MAX_SIZE);
+            if (i < sizes.size() - 1) assertTrue(sizes.get(i) >= ContentDefinedChunker.MIN_SIZE);
+        }
+    }
+
+    @Test
+    void local_edit_changes_only_nearby_chunks() throws Exception {
+        byte[] data = new byte[24 * 1024 * 1024];
+        new Random(11).nextBytes(data);
+        // vložení 100 bajtů doprostřed – pevné bloky by se posunuly všechny za místem úpravy
+        int at = data.length / 2;
+        byte[] edited = new byte[data.length + 100];
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(data, at, edited, at + 100, data.length - at);
+
+        List<String> before = split(data, new ArrayList<>());
+        List<String> after = split(edited, new ArrayList<>());
+
+        Set<String> known = new HashSet<>(before);
+        long changed = after.stream().filter(s -> !known.contains(s)).count();
+        assertTrue(changed >= 1 && changed <= 3, "changed chunks: " + changed + " of " + after.size());
+    }
+
+    @Test
+    void empty_input_yields_no_chunks() throws Exception {
+        assertTrue(split(new byte[0], new ArrayList<>()).isEmpty());
+    }
+}
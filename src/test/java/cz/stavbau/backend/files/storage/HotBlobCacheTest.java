@@ -0,0 +1,89 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.HotBlobCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotBlobCacheTest {
+
+    private static final int PAGE = 64 * 1024;
+
+    @Test
+    void second_read_is_served_from_cache_including_ranges_across_pages() throws Exception {
+        var cache = new HotBlobCache(1024 * 1024, PAGE, 256 * 1024);
+        byte[] data = random(150_000, 1);
+        AtomicInteger opened = new AtomicInteger();
+
+        try (var h = cache.open("sha-a", data.length, () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(data);
+        })) {
+            assertNotNull(h);
+        }
+        try (var h = cache.open("sha-a", data.length, () -> { throw new AssertionError("already cached"); })) {
+            var out = new ByteArrayOutputStream();
+            h.writeTo(PAGE - 10, 100, out);
+            assertArrayEquals(Arrays.copyOfRange(data, PAGE - 10, PAGE + 90), out.toByteArray());
+            assertArrayEquals(data, h.inputStream().readAllBytes());
+        }
+
+        assertEquals(1, opened.get());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(3L * PAGE, cache.usedBytes());
+    }
+
+    @Test
+    void large_unknown_or_mismatching_blobs_bypass_the_cache() {
+        var cache = new HotBlobCache(1024 * 1024, PAGE, 128 * 1024);
+
+        assertNull(cache.open("big", 200_000, () -> new ByteArrayInputStream(new byte[200_000])));
+        assertNull(cache.open("unknown", -1, () -> new ByteArrayInputStream(new byte[10])));
+        assertNull(cache.open("short", 100, () -> new ByteArrayInputStream(new byte[50])));
+
+        assertEquals(2, cache.bypassed());
+        assertEquals(0, cache.usedBytes());
+        assertEquals(0, cache.entries());
+    }
+
+    @Test
+    void evicted_entry_stays_readable_while_pinned_and_budget_is_never_exceeded() throws Exception {
+        long budget = 1024 * 1024;
+        var cache = new HotBlobCache(budget, PAGE, 128 * 1024);
+        byte[] first = random(PAGE, 2);
+        var pinned = cache.open("first", first.length, () -> new ByteArrayInputStream(first));
+        assertNotNull(pinned);
+
+        // jednorázově čtené soubory tlačí na limit – cache musí vyhazovat, ne přetéct
+        for (int i = 0; i < 100; i++) {
+            byte[] other = random(PAGE, 100 + i);
+            var h = cache.open("other-" + i, other.length, () -> new ByteArrayInputStream(other));
+            if (h != null) h.close();
+            assertTrue(cache.usedBytes() <= budget);
+        }
+
+        assertArrayEquals(first, pinned.inputStream().readAllBytes());
+        pinned.close();
+        assertTrue(cache.usedBytes() <= budget);
+    }
+
+    @Test
+    void zero_budget_disables_cache() {
+        var cache = new HotBlobCache(0, PAGE, 1024 * 1024);
+        assertNull(cache.open("a", 10, () -> new ByteArrayInputStream(new byte[10])));
+        assertEquals(1, cache.bypassed());
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] b = new byte[size];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+}
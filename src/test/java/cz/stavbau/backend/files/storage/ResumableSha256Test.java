@@ -0,0 +1,41 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.ResumableSha256;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumableSha256Test {
+
+    @Test
+    void digest_survives_export_restore_between_uneven_chunks() throws Exception {
+        byte[] data = new byte[200_003];
+        new Random(42).nextBytes(data);
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+
+        byte[] state = null;
+        int off = 0;
+        int[] chunks = {1, 63, 64, 65, 4096, 777};
+        for (int i = 0; off < data.length; i++) {
+            int len = Math.min(chunks[i % chunks.length], data.length - off);
+            ResumableSha256 sha = ResumableSha256.restore(state);
+            sha.update(data, off, len);
+            state = sha.exportState();
+            off += len;
+        }
+
+        ResumableSha256 done = ResumableSha256.restore(state);
+        assertEquals(data.length, done.totalBytes());
+        assertEquals(expected, done.digestHex());
+    }
+
+    @Test
+    void empty_input_matches_known_digest() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                ResumableSha256.restore(null).digestHex());
+    }
+}
@@ -0,0 +1,100 @@
+package cz.stavbau.backend.files.storage;
+
+import cz.stavbau.backend.features.files.storage.S3FileStorage;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3FileStorageTest {
+
+    private static final int PART = 5 * 1024 * 1024;
+
+    private MockWebServer server;
+    private S3FileStorage storage;
+    private final AtomicInteger partsInFlight = new AtomicInteger();
+    private final AtomicInteger maxPartsInFlight = new AtomicInteger();
+    private volatile String failingKey;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest req) throws InterruptedException {
+                String path = req.getPath();
+                if (req.getMethod().equals("POST") && path.endsWith("?uploads=")) {
+                    return new MockResponse().setBody("<InitiateMultipartUploadResult><UploadId>u1</UploadId></InitiateMultipartUploadResult>");
+                }
+                if (req.getMethod().equals("PUT") && path.contains("partNumber=")) {
+                    if (failingKey != null && path.contains(failingKey)) {
+                        return new MockResponse().setResponseCode(403).setBody("<Error>AccessDenied</Error>");
+                    }
+                    maxPartsInFlight.accumulateAndGet(partsInFlight.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    partsInFlight.decrementAndGet();
+                    return new MockResponse().addHeader("ETag", "\"e\"");
+                }
+                return new MockResponse().setBody("<CompleteMultipartUploadResult/>");
+            }
+        });
+        server.start();
+        storage = new S3FileStorage(new S3FileStorage.Settings(server.url("/").toString(), "us-east-1", "b",
+                "ak", "sk", true, 5, 1, 4));
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        storage.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    void part_buffers_are_limited_across_concurrent_uploads() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> uploads = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String key = "c/" + i + ".bin";
+                uploads.add(clients.submit(() -> storage.put(key, "application/octet-stream",
+                        new ByteArrayInputStream(new byte[2 * PART + 1024]))));
+            }
+            for (Future<?> f : uploads) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            clients.shutdownNow();
+        }
+
+        // parallelism = 1 pro celý uzel: tři souběžné uploady nikdy nenahrávají dvě části naráz
+        assertEquals(1, maxPartsInFlight.get());
+    }
+
+    @Test
+    void failed_upload_returns_its_part_buffers() throws Exception {
+        failingKey = "bad.bin";
+        assertThrows(RuntimeException.class, () -> storage.put("c/bad.bin", "application/octet-stream",
+                new ByteArrayInputStream(new byte[3 * PART])));
+
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try {
+            // kdyby zrušené části nevrátily permit, další upload by čekal navždy
+            client.submit(() -> storage.put("c/ok.bin", "application/octet-stream",
+                    new ByteArrayInputStream(new byte[2 * PART]))).get(30, TimeUnit.SECONDS);
+        } finally {
+            client.shutdownNow();
+        }
+    }
+}
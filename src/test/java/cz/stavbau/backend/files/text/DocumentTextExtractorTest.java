@@ -0,0 +1,103 @@
+package cz.stavbau.backend.files.text;
+
+import cz.stavbau.backend.features.files.text.DocumentTextExtractor;
+import cz.stavbau.backend.features.files.text.DocumentTextExtractor.Format;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentTextExtractorTest {
+
+    private final DocumentTextExtractor extractor = new DocumentTextExtractor(10_000, 1024 * 1024);
+
+    @Test
+    void format_falls_back_to_extension() {
+        assertEquals(Optional.of(Format.PDF), DocumentTextExtractor.format("application/octet-stream", "Smlouva.PDF"));
+        assertEquals(Optional.of(Format.OFFICE), DocumentTextExtractor.format(null, "rozpocet.xlsx"));
+        assertEquals(Optional.of(Format.TEXT), DocumentTextExtractor.format("text/csv", "vypis"));
+        assertEquals(Optional.empty(), DocumentTextExtractor.format("image/jpeg", "foto.jpg"));
+    }
+
+    @Test
+    void pdf_text_of_all_pages() throws Exception {
+        byte[] pdf = pdf("Smluvní pokuta", "Beton C30/37");
+
+        assertEquals("Smluvní pokuta\nBeton C30/37", extractor.extract(Format.PDF, new ByteArrayInputStream(pdf)));
+    }
+
+    @Test
+    void pdf_text_is_cut_at_limit() throws Exception {
+        var small = new DocumentTextExtractor(10, 1024 * 1024);
+
+        assertEquals("Strana jed", small.extract(Format.PDF, new ByteArrayInputStream(pdf("Strana jedna", "Strana dva", "Strana tri"))));
+    }
+
+    @Test
+    void pdf_damaged_or_too_large_fails() throws Exception {
+        byte[] damaged = "%PDF-1.4\n1 0 obj << /Type /Catalog".getBytes(StandardCharsets.ISO_8859_1);
+        assertThrows(IOException.class, () -> extractor.extract(Format.PDF, new ByteArrayInputStream(damaged)));
+
+        byte[] pdf = pdf("Text");
+        var tiny = new DocumentTextExtractor(10_000, pdf.length - 1);
+        assertThrows(IOException.class, () -> tiny.extract(Format.PDF, new ByteArrayInputStream(pdf)));
+    }
+
+    @Test
+    void docx_text_elements_only() throws Exception {
+        var bos = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bos)) {
+            zip.putNextEntry(new ZipEntry("word/styles.xml"));
+            zip.write("<w:styles xmlns:w=\"w\"><w:t>Normal</w:t></w:styles>".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(("<w:document xmlns:w=\"w\"><w:body>"
+                    + "<w:p><w:r><w:t>Zábradlí</w:t></w:r><w:r><w:t xml:space=\"preserve\"> ocelové</w:t></w:r></w:p>"
+                    + "<w:p><w:r><w:t>Druhý odstavec</w:t></w:r></w:p></w:body></w:document>").getBytes(StandardCharsets.UTF_8));
+        }
+
+        String text = extractor.extract(Format.OFFICE, new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals("Zábradlí ocelové\nDruhý odstavec", text);
+    }
+
+    @Test
+    void text_falls_back_to_windows_1250_and_respects_limit() throws Exception {
+        byte[] csv = "datum;popis\n2025-10-01;Výztuž B500B\n".getBytes(Charset.forName("windows-1250"));
+        assertEquals("datum;popis\n2025-10-01;Výztuž B500B", extractor.extract(Format.TEXT, new ByteArrayInputStream(csv)));
+
+        var small = new DocumentTextExtractor(5, 1024);
+        assertEquals("abcde", small.extract(Format.TEXT, new ByteArrayInputStream("abcdefgh".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static byte[] pdf(String... pages) throws IOException {
+        try (PDDocument doc = new PDDocument(); var bos = new ByteArrayOutputStream()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (String text : pages) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (var cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 12);
+                    cs.newLineAtOffset(72, 700);
+                    cs.showText(text);
+                    cs.endText();
+                }
+            }
+            doc.save(bos);
+            return bos.toByteArray();
+        }
+    }
+}
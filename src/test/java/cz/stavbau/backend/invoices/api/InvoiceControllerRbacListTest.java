@@ -3,6 +3,11 @@ package cz.stavbau.backend.invoices.api;
 import cz.stavbau.backend.features.invoices.api.InvoiceController;
 import cz.stavbau.backend.features.invoices.model.Invoice;
 import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.invoices.service.InvoiceDocumentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceExportService;
+import cz.stavbau.backend.features.invoices.service.InvoicePaymentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
 import cz.stavbau.backend.features.invoices.service.InvoiceService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -27,6 +32,11 @@ class InvoiceControllerRbacListTest {
 
     @Autowired MockMvc mvc;
     @MockBean InvoiceService invoiceService;
+    @MockBean InvoiceRollupService rollupService;
+    @MockBean InvoiceDocumentService documentService;
+    @MockBean StoredFileService storedFileService;
+    @MockBean InvoiceExportService exportService;
+    @MockBean InvoicePaymentService paymentService;
 
     private static RequestPostProcessor withAuth() {
         return request -> { request.addHeader("Authorization", "Bearer dummy"); return request; };
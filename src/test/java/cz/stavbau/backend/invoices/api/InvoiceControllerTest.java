@@ -2,10 +2,21 @@ package cz.stavbau.backend.invoices.api;
 
 import cz.stavbau.backend.features.invoices.api.InvoiceController;
 import cz.stavbau.backend.features.invoices.api.dto.InvoiceCreateRequest;
+import cz.stavbau.backend.features.invoices.api.dto.InvoiceIssueBatchRequest;
+import cz.stavbau.backend.features.invoices.api.dto.InvoiceLinesPatchRequest;
 import cz.stavbau.backend.features.invoices.api.dto.InvoiceLinesUpsertRequest;
 import cz.stavbau.backend.features.invoices.api.dto.InvoiceLineDto;
 import cz.stavbau.backend.features.invoices.api.dto.InvoiceStatusChangeRequest;
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser;
+import cz.stavbau.backend.features.invoices.bank.PaymentMatcher;
 import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoiceExportRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository;
+import cz.stavbau.backend.features.files.service.StoredFileService;
+import cz.stavbau.backend.features.invoices.service.InvoiceDocumentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceExportService;
+import cz.stavbau.backend.features.invoices.service.InvoicePaymentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
 import cz.stavbau.backend.features.invoices.service.InvoiceService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -15,9 +26,12 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
@@ -43,6 +57,11 @@ class InvoiceControllerTest {
     private cz.stavbau.backend.security.jwt.JwtAuthenticationFilter jwtAuthenticationFilter;
 
     @MockBean InvoiceService invoiceService;
+    @MockBean InvoiceRollupService rollupService;
+    @MockBean InvoiceDocumentService documentService;
+    @MockBean StoredFileService storedFileService;
+    @MockBean InvoiceExportService exportService;
+    @MockBean InvoicePaymentService paymentService;
 
     @Test
     void create_draft_returns_id() throws Exception {
@@ -114,4 +133,111 @@ class InvoiceControllerTest {
                         .content(om.writeValueAsString(req)))
                 .andExpect(status().isNoContent());
     }
+
+    @Test
+    void patch_lines_returns_delta_and_totals() throws Exception {
+        UUID id = UUID.randomUUID();
+        UUID added = UUID.randomUUID();
+        var req = new InvoiceLinesPatchRequest(List.of(
+                new InvoiceLineDto("Beton C25/30", new BigDecimal("2"), "m3",
+                        new BigDecimal("2500"), new BigDecimal("21"))
+        ), null, List.of(UUID.randomUUID()));
+
+        BDDMockito.given(invoiceService.patchLines(eq(id), any())).willReturn(new InvoiceService.LinesPatchResult(
+                List.of(added),
+                new InvoiceService.Totals(new BigDecimal("4000.00"), new BigDecimal("840.00"), new BigDecimal("4840.00")),
+                new InvoiceService.Totals(new BigDecimal("17000.00"), new BigDecimal("3570.00"), new BigDecimal("20570.00"))));
+
+        mvc.perform(patch("/api/v1/invoices/{id}/lines", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.addedIds[0]").value(added.toString()))
+                .andExpect(jsonPath("$.delta.total").value(4840.00))
+                .andExpect(jsonPath("$.totals.subtotal").value(17000.00));
+    }
+
+    @Test
+    void issue_batch_returns_result_per_invoice() throws Exception {
+        UUID ok = UUID.randomUUID(), issued = UUID.randomUUID();
+        BDDMockito.given(invoiceService.issueBatch(List.of(ok, issued))).willReturn(List.of(
+                new InvoiceService.IssueResult(ok, "INV-2025-0042", null),
+                new InvoiceService.IssueResult(issued, null, "invoices.notDraft")));
+
+        mvc.perform(post("/api/v1/invoices/issue-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(new InvoiceIssueBatchRequest(List.of(ok, issued)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].number").value("INV-2025-0042"))
+                .andExpect(jsonPath("$[1].error").value("invoices.notDraft"));
+    }
+
+    @Test
+    void dashboard_reads_rollups() throws Exception {
+        UUID company = UUID.randomUUID();
+        var month = new InvoiceRollupRepository.MonthRow(LocalDate.of(2025, 10, 1), InvoiceStatus.ISSUED, "CZK",
+                new InvoiceRollupRepository.Sums(3, new BigDecimal("1000.00"), new BigDecimal("210.00"), new BigDecimal("1210.00")));
+        var customer = new InvoiceRollupRepository.PartyRow("12345678", "Stavby s.r.o.", "CZK", 3,
+                new BigDecimal("1210.00"), new BigDecimal("1210.00"), BigDecimal.ZERO);
+        BDDMockito.given(rollupService.dashboard(eq(company), eq(LocalDate.of(2025, 1, 1)), eq(LocalDate.of(2025, 12, 31)), eq(5)))
+                .willReturn(new InvoiceRollupService.Dashboard(company, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+                        List.of(month), List.of(), List.of(customer)));
+
+        mvc.perform(get("/api/v1/invoices/dashboard")
+                        .param("companyId", company.toString())
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-12-31")
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.months[0].invoices").value(3))
+                .andExpect(jsonPath("$.months[0].total").value(1210.00))
+                .andExpect(jsonPath("$.customers[0].outstanding").value(1210.00));
+    }
+
+    @Test
+    void export_streams_csv_attachment() throws Exception {
+        UUID company = UUID.randomUUID();
+        BDDMockito.willAnswer(i -> {
+            ((OutputStream) i.getArgument(2)).write("Číslo;Stav\r\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).given(exportService).write(eq(new InvoiceExportRepository.Filter(company, null, InvoiceStatus.PAID,
+                LocalDate.of(2025, 1, 1), null)), eq(InvoiceExportService.Format.CSV), any());
+
+        var result = mvc.perform(get("/api/v1/invoices/export")
+                        .param("companyId", company.toString())
+                        .param("status", "PAID")
+                        .param("dateFrom", "2025-01-01"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", org.hamcrest.Matchers.startsWith("text/csv")))
+                .andExpect(header().string("Content-Disposition",
+                        org.hamcrest.Matchers.containsString("faktury-" + company + ".csv")))
+                .andExpect(content().string("Číslo;Stav\r\n"));
+    }
+
+    @Test
+    void bank_statement_import_returns_matching_per_payment() throws Exception {
+        UUID company = UUID.randomUUID();
+        UUID invoice = UUID.randomUUID();
+        var line = new InvoicePaymentService.Line(2, "A1", LocalDate.of(2025, 10, 31), new BigDecimal("1210.00"),
+                "CZK", "20250042", PaymentMatcher.Result.MATCHED, invoice, "INV-2025-0042");
+        BDDMockito.given(paymentService.importStatement(eq(company), any(), isNull(), eq(true)))
+                .willReturn(new InvoicePaymentService.ImportResult(BankStatementParser.Format.GPC, 5, 1, 0, List.of(line)));
+
+        var file = new MockMultipartFile("file", "vypis.gpc", "application/octet-stream", new byte[]{'0', '7', '4'});
+        mvc.perform(multipart("/api/v1/invoices/bank-statements").file(file)
+                        .param("companyId", company.toString())
+                        .param("dryRun", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.format").value("GPC"))
+                .andExpect(jsonPath("$.transactions").value(5))
+                .andExpect(jsonPath("$.paid").value(0))
+                .andExpect(jsonPath("$.lines[0].result").value("MATCHED"))
+                .andExpect(jsonPath("$.lines[0].invoiceNumber").value("INV-2025-0042"));
+    }
 }
@@ -0,0 +1,111 @@
+package cz.stavbau.backend.invoices.bank;
+
+import cz.stavbau.backend.common.exception.ValidationException;
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser;
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser.Format;
+import cz.stavbau.backend.features.invoices.bank.BankTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankStatementParserTest {
+
+    private static final Charset CP1250 = Charset.forName("windows-1250");
+
+    @Test
+    void gpc_reads_075_records_with_amount_in_halere_and_credit_code() throws Exception {
+        String gpc = String.join("\r\n",
+                "0740000000123456789Stavby Brno s.r.o.  01102025000000012345+000000023456+000000000000+000000000000+001311025",
+                gpc075("0000002025000042", "TX00000000001", 1210000, '2', "0020250042", "311025", "Odběratel a.s.", "0203"),
+                "0760000000000000000Platba faktury",
+                gpc075("0000000000000000", "TX00000000002", 50000, '1', "0000000000", "311025", "Nájem", "0203"),
+                gpc075("0000000000000000", "TX00000000003", 10000, '2', "0000000777", "311025", "EUR platba", "0978"));
+
+        List<BankTransaction> txs = parse(gpc.getBytes(CP1250), null);
+
+        assertEquals(3, txs.size());
+        BankTransaction first = txs.get(0);
+        assertEquals(2, first.line());
+        assertEquals("TX00000000001", first.reference());
+        assertEquals(new BigDecimal("12100.00"), first.amount());
+        assertTrue(first.credit());
+        assertEquals("20250042", first.variableSymbol());
+        assertEquals(LocalDate.of(2025, 10, 31), first.bookedOn());
+        assertEquals("CZK", first.currency());
+        assertEquals("Odběratel a.s.", first.message());
+        assertEquals("2025000042", first.counterAccount());
+
+        assertFalse(txs.get(1).credit());
+        assertNull(txs.get(1).variableSymbol());
+        assertEquals("EUR", txs.get(2).currency());
+        assertEquals("777", txs.get(2).variableSymbol());
+    }
+
+    @Test
+    void csv_maps_czech_headers_amounts_and_cp1250() throws Exception {
+        String csv = "\"Datum zaúčtování\";\"Částka\";\"Měna\";\"Variabilní symbol\";\"Zpráva pro příjemce\"\r\n"
+                + "31.10.2025;\"12 100,00\";CZK;20250042;\"Faktura; díky\"\r\n"
+                + "\r\n"
+                + "30. 10. 2025 14:05;-500,00;CZK;;Nájem\r\n";
+
+        List<BankTransaction> txs = parse(csv.getBytes(CP1250), Format.CSV);
+
+        assertEquals(2, txs.size());
+        assertEquals(new BigDecimal("12100.00"), txs.get(0).amount());
+        assertTrue(txs.get(0).credit());
+        assertEquals("20250042", txs.get(0).variableSymbol());
+        assertEquals("Faktura; díky", txs.get(0).message());
+        assertEquals(LocalDate.of(2025, 10, 30), txs.get(1).bookedOn());
+        assertFalse(txs.get(1).credit());
+        assertEquals(new BigDecimal("500.00"), txs.get(1).amount());
+    }
+
+    @Test
+    void csv_english_headers_with_comma_separator_utf8_bom() throws Exception {
+        String csv = "\uFEFFDate,Amount,Currency,Variable symbol,Transaction ID\n"
+                + "2025-10-31,\"1,210.50\",eur,0000000042,TX-1\n";
+
+        List<BankTransaction> txs = parse(csv.getBytes(StandardCharsets.UTF_8), null);
+
+        assertEquals(1, txs.size());
+        assertEquals(new BigDecimal("1210.50"), txs.get(0).amount());
+        assertEquals("EUR", txs.get(0).currency());
+        assertEquals("42", txs.get(0).variableSymbol());
+        assertEquals("TX-1", txs.get(0).reference());
+    }
+
+    @Test
+    void invalid_line_reports_line_number() {
+        String csv = "Datum;Částka;VS\n31.10.2025;abc;1\n";
+        var ex = assertThrows(ValidationException.class,
+                () -> parse(csv.getBytes(StandardCharsets.UTF_8), Format.CSV));
+        assertEquals("line 2", ex.getViolations().get(0).getMessage());
+
+        assertThrows(ValidationException.class,
+                () -> parse("Datum;Poznámka\n".getBytes(StandardCharsets.UTF_8), Format.CSV));
+    }
+
+    private static List<BankTransaction> parse(byte[] data, Format format) throws Exception {
+        var in = new BufferedInputStream(new ByteArrayInputStream(data));
+        List<BankTransaction> out = new ArrayList<>();
+        BankStatementParser.parse(in, format != null ? format : BankStatementParser.detect(in), out::add);
+        return out;
+    }
+
+    /** Záznam 075 po pozicích (1-based): účet 4-19, protiúčet 20-35, doklad 36-48, částka v haléřích 49-60, kód 61,
+     *  VS 62-71, KS 72-81, SS 82-91, valuta 92-97, název 98-117, 118 = 0, měna 119-122, splatnost 123-128. */
+    private static String gpc075(String counter, String reference, long halere, char code, String vs, String date,
+                                 String name, String currency) {
+        return "075" + "0000000123456789" + counter + reference + String.format("%012d", halere) + code + vs
+                + "0000000000" + "0000000000" + date + String.format("%-20s", name) + "0" + currency + date;
+    }
+}
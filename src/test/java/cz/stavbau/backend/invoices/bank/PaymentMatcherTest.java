@@ -0,0 +1,70 @@
+package cz.stavbau.backend.invoices.bank;
+
+import cz.stavbau.backend.features.invoices.bank.BankTransaction;
+import cz.stavbau.backend.features.invoices.bank.PaymentMatcher;
+import cz.stavbau.backend.features.invoices.bank.PaymentMatcher.Result;
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository.OpenInvoice;
+import cz.stavbau.backend.features.invoices.util.VariableSymbol;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentMatcherTest {
+
+    private final OpenInvoice a = open("INV-2025-0042", "1210.00", "CZK");
+    private final OpenInvoice b = open("INV-2025-0043", "500.00", "CZK");
+    private final OpenInvoice eur = open("EU-2025-0043", "20.00", "EUR"); // stejný VS jako b
+
+    @Test
+    void variable_symbol_is_last_ten_digits_without_leading_zeros() {
+        assertEquals("20250042", VariableSymbol.of("INV-2025-0042"));
+        assertEquals("2025000042", VariableSymbol.of("FV/2025/000042"));
+        assertEquals("5001000042", VariableSymbol.of("2025-001000042"));
+        assertNull(VariableSymbol.of("DRAFT"));
+        assertEquals("42", VariableSymbol.normalize("0000000042"));
+        assertNull(VariableSymbol.normalize("0000000000"));
+    }
+
+    @Test
+    void matches_by_symbol_currency_and_exact_amount_once() {
+        var matcher = new PaymentMatcher(List.of(a, b, eur));
+
+        var m = matcher.match(tx("20250042", "1210.00", "CZK", true));
+        assertEquals(Result.MATCHED, m.result());
+        assertEquals(a.id(), m.invoice().id());
+
+        assertEquals(Result.ALREADY_MATCHED, matcher.match(tx("20250042", "1210.00", "CZK", true)).result());
+
+        var cur = matcher.match(tx("20250043", "20.00", "EUR", true));
+        assertEquals(Result.MATCHED, cur.result());
+        assertEquals(eur.id(), cur.invoice().id());
+    }
+
+    @Test
+    void reports_mismatch_unknown_missing_symbol_and_ignores_debits() {
+        var matcher = new PaymentMatcher(List.of(a, b));
+
+        var partial = matcher.match(tx("20250043", "250.00", "CZK", true));
+        assertEquals(Result.AMOUNT_MISMATCH, partial.result());
+        assertEquals(b.id(), partial.invoice().id());
+        assertEquals(Result.UNKNOWN_SYMBOL, matcher.match(tx("999", "500.00", "CZK", true)).result());
+        assertEquals(Result.NO_SYMBOL, matcher.match(tx(null, "500.00", "CZK", true)).result());
+        assertEquals(Result.IGNORED, matcher.match(tx("20250043", "500.00", "CZK", false)).result());
+        // neúspěšné pokusy fakturu z indexu neodeberou
+        assertEquals(Result.MATCHED, matcher.match(tx("20250043", "500.00", "CZK", true)).result());
+    }
+
+    private static OpenInvoice open(String number, String total, String currency) {
+        return new OpenInvoice(UUID.randomUUID(), number, new BigDecimal(total), currency);
+    }
+
+    private static BankTransaction tx(String vs, String amount, String currency, boolean credit) {
+        return new BankTransaction(1, null, LocalDate.of(2025, 10, 31), new BigDecimal(amount), currency, credit,
+                vs, null, null);
+    }
+}
@@ -0,0 +1,108 @@
+package cz.stavbau.backend.invoices.document;
+
+import cz.stavbau.backend.features.invoices.document.InvoiceDocument;
+import cz.stavbau.backend.features.invoices.document.PdfInvoiceDocumentRenderer;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfInvoiceDocumentRendererTest {
+
+    private final PdfInvoiceDocumentRenderer renderer = new PdfInvoiceDocumentRenderer();
+
+    @Test
+    void renders_issued_invoice_with_parties_lines_and_vat_recap() throws Exception {
+        Invoice inv = invoice(InvoiceStatus.ISSUED, "INV-2025-0042");
+        var doc = InvoiceDocument.of(inv, List.of(
+                line(inv, "Zednické práce", "10", "hod", "450.00", "21"),
+                line(inv, "Beton C30/37", "2", "m3", "2500.00", "12")));
+
+        String text = render(doc);
+
+        assertTrue(text.contains("Faktura INV-2025-0042"));
+        assertTrue(text.contains("Stavby Brno s.r.o."));
+        assertTrue(text.contains("IČO: 12345678"));
+        assertTrue(text.contains("Zednické práce"), "diakritika přežije vložené písmo");
+        assertTrue(text.contains("Beton C30/37"));
+        assertTrue(text.contains("12. 9. 2025"));
+        assertTrue(text.contains("Daňový doklad"));
+        assertFalse(text.contains("NÁVRH"));
+        assertFalse(text.contains("STORNO"));
+    }
+
+    @Test
+    void draft_and_cancelled_are_marked() throws Exception {
+        Invoice draft = invoice(InvoiceStatus.DRAFT, null);
+        assertTrue(render(InvoiceDocument.of(draft, List.of())).contains("NÁVRH"));
+
+        Invoice cancelled = invoice(InvoiceStatus.CANCELLED, "INV-2025-0043");
+        assertTrue(render(InvoiceDocument.of(cancelled, List.of())).contains("STORNO"));
+    }
+
+    @Test
+    void output_is_a4_pdf() throws Exception {
+        Invoice inv = invoice(InvoiceStatus.ISSUED, "INV-2025-0044");
+        var doc = InvoiceDocument.of(inv, List.of(line(inv, "Lešení", "1", "ks", "1000.00", "21")));
+        var out = new ByteArrayOutputStream();
+        renderer.render(doc, out);
+
+        assertEquals("application/pdf", renderer.mimeType());
+        try (PDDocument pdf = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(1, pdf.getNumberOfPages());
+            assertEquals(595, Math.round(pdf.getPage(0).getMediaBox().getWidth()), "A4 z @page");
+        }
+    }
+
+    /** Text vykresleného PDF – obsah se ověřuje přes extrakci, ne nad bajty. */
+    private String render(InvoiceDocument doc) throws Exception {
+        var out = new ByteArrayOutputStream();
+        renderer.render(doc, out);
+        try (PDDocument pdf = Loader.loadPDF(out.toByteArray())) {
+            return new PDFTextStripper().getText(pdf);
+        }
+    }
+
+    private static Invoice invoice(InvoiceStatus status, String number) {
+        Invoice inv = new Invoice();
+        inv.setId(UUID.randomUUID());
+        inv.setCompanyId(UUID.randomUUID());
+        inv.setNumber(number);
+        inv.setStatus(status);
+        inv.setVatMode(VatMode.STANDARD);
+        inv.setIssueDate(LocalDate.of(2025, 9, 12));
+        inv.setDueDate(LocalDate.of(2025, 9, 26));
+        inv.setCurrency("CZK");
+        inv.setSupplierJson("{\"name\":\"Stavby Brno s.r.o.\",\"ico\":\"12345678\",\"dic\":\"CZ12345678\"}");
+        inv.setCustomerJson("{\"name\":\"Odběratel a.s.\",\"ico\":\"87654321\"}");
+        inv.setSubtotal(new BigDecimal("9500.00"));
+        inv.setVatTotal(new BigDecimal("1545.00"));
+        inv.setTotal(new BigDecimal("11045.00"));
+        return inv;
+    }
+
+    private static InvoiceLine line(Invoice inv, String name, String qty, String unit, String price, String vat) {
+        InvoiceLine l = new InvoiceLine();
+        l.setId(UUID.randomUUID());
+        l.setInvoiceId(inv.getId());
+        l.setItemName(name);
+        l.setQuantity(new BigDecimal(qty));
+        l.setUnit(unit);
+        l.setUnitPrice(new BigDecimal(price));
+        l.setVatRate(new BigDecimal(vat));
+        l.setLineTotal(new BigDecimal(qty).multiply(new BigDecimal(price)));
+        return l;
+    }
+}
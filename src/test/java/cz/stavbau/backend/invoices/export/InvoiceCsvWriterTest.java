@@ -0,0 +1,66 @@
+package cz.stavbau.backend.invoices.export;
+
+import cz.stavbau.backend.features.invoices.export.InvoiceCsvWriter;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvoiceCsvWriterTest {
+
+    @Test
+    void writes_bom_header_and_one_row_per_invoice() throws Exception {
+        var out = new ByteArrayOutputStream();
+        var csv = new InvoiceCsvWriter(out);
+        Invoice inv = invoice("INV-2025-0001", "{\"name\":\"Stavby; \\\"Brno\\\" s.r.o.\",\"ico\":\"12345678\"}");
+        csv.write(inv);
+        csv.flush();
+
+        String text = out.toString(StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("\uFEFFČíslo;Stav;Datum vystavení;"));
+        String[] rows = text.split("\r\n");
+        assertEquals(2, rows.length);
+        assertEquals("INV-2025-0001;ISSUED;2025-09-12;;2025-09-26;CZK;\"Stavby; \"\"Brno\"\" s.r.o.\";12345678;;"
+                + "1000,00;210,00;1210,00;;" + inv.getId(), rows[1]);
+    }
+
+    @Test
+    void draft_without_number_keeps_columns_aligned() throws Exception {
+        var out = new ByteArrayOutputStream();
+        var csv = new InvoiceCsvWriter(out);
+        Invoice inv = invoice(null, "{}");
+        inv.setStatus(InvoiceStatus.DRAFT);
+        csv.write(inv);
+        csv.flush();
+
+        String row = out.toString(StandardCharsets.UTF_8).split("\r\n")[1];
+        assertTrue(row.startsWith(";DRAFT;2025-09-12;"));
+        assertEquals(13, row.chars().filter(c -> c == ';').count());
+    }
+
+    private static Invoice invoice(String number, String customerJson) {
+        Invoice inv = new Invoice();
+        inv.setId(UUID.randomUUID());
+        inv.setCompanyId(UUID.randomUUID());
+        inv.setNumber(number);
+        inv.setStatus(InvoiceStatus.ISSUED);
+        inv.setVatMode(VatMode.STANDARD);
+        inv.setIssueDate(LocalDate.of(2025, 9, 12));
+        inv.setDueDate(LocalDate.of(2025, 9, 26));
+        inv.setCurrency("CZK");
+        inv.setSupplierJson("{}");
+        inv.setCustomerJson(customerJson);
+        inv.setSubtotal(new BigDecimal("1000.00"));
+        inv.setVatTotal(new BigDecimal("210.00"));
+        inv.setTotal(new BigDecimal("1210.00"));
+        return inv;
+    }
+}
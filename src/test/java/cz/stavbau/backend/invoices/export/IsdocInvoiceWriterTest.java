@@ -0,0 +1,86 @@
+package cz.stavbau.backend.invoices.export;
+
+import cz.stavbau.backend.features.invoices.document.InvoiceDocument;
+import cz.stavbau.backend.features.invoices.export.IsdocInvoiceWriter;
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.model.VatMode;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsdocInvoiceWriterTest {
+
+    @Test
+    void writes_isdoc_with_parties_lines_and_tax_recap() throws Exception {
+        Invoice inv = new Invoice();
+        inv.setId(UUID.fromString("6f1c1c1e-0000-4000-8000-000000000001"));
+        inv.setCompanyId(UUID.randomUUID());
+        inv.setNumber("INV-2025-0042");
+        inv.setStatus(InvoiceStatus.ISSUED);
+        inv.setVatMode(VatMode.STANDARD);
+        inv.setIssueDate(LocalDate.of(2025, 9, 12));
+        inv.setTaxDate(LocalDate.of(2025, 9, 12));
+        inv.setDueDate(LocalDate.of(2025, 9, 26));
+        inv.setCurrency("CZK");
+        inv.setSupplierJson("{\"name\":\"Stavby Brno s.r.o.\",\"ico\":\"12345678\",\"dic\":\"CZ12345678\","
+                + "\"address\":{\"street\":\"Údolní 5\",\"zip\":\"60200\",\"city\":\"Brno\"}}");
+        inv.setCustomerJson("{\"name\":\"Odběratel a.s.\",\"ico\":\"87654321\",\"address\":\"Dlouhá 1\\n110 00 Praha\"}");
+        inv.setSubtotal(new BigDecimal("9500.00"));
+        inv.setVatTotal(new BigDecimal("1545.00"));
+        inv.setTotal(new BigDecimal("11045.00"));
+        var doc = InvoiceDocument.of(inv, List.of(
+                line(inv, "Zednické práce", "10", "hod", "450.00", "21"),
+                line(inv, "Beton C30/37", "2", "m3", "2500.00", "12")));
+
+        var out = new ByteArrayOutputStream();
+        IsdocInvoiceWriter.write(doc, out);
+
+        var dbf = DocumentBuilderFactory.newInstance();
+        Document xml = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+        XPath x = XPathFactory.newInstance().newXPath();
+        assertEquals(IsdocInvoiceWriter.NAMESPACE, xml.getDocumentElement().getAttribute("xmlns"));
+        assertEquals(IsdocInvoiceWriter.VERSION, xml.getDocumentElement().getAttribute("version"));
+        assertEquals("INV-2025-0042", x.evaluate("/Invoice/ID", xml));
+        assertEquals("6F1C1C1E-0000-4000-8000-000000000001", x.evaluate("/Invoice/UUID", xml));
+        assertEquals("true", x.evaluate("/Invoice/VATApplicable", xml));
+        assertEquals("12345678", x.evaluate("/Invoice/AccountingSupplierParty/Party/PartyIdentification/ID", xml));
+        assertEquals("CZ12345678", x.evaluate("/Invoice/AccountingSupplierParty/Party/PartyTaxScheme/CompanyID", xml));
+        assertEquals("Brno", x.evaluate("/Invoice/AccountingSupplierParty/Party/PostalAddress/CityName", xml));
+        assertEquals("11000", x.evaluate("/Invoice/AccountingCustomerParty/Party/PostalAddress/PostalZone", xml));
+        assertEquals("Praha", x.evaluate("/Invoice/AccountingCustomerParty/Party/PostalAddress/CityName", xml));
+        assertEquals("2", x.evaluate("count(/Invoice/InvoiceLines/InvoiceLine)", xml));
+        // řádky v pořadí dokladu (podle názvu)
+        assertEquals("Beton C30/37", x.evaluate("/Invoice/InvoiceLines/InvoiceLine[1]/Item/Description", xml));
+        assertEquals("600.00", x.evaluate("/Invoice/InvoiceLines/InvoiceLine[1]/LineExtensionTaxAmount", xml));
+        assertEquals("945.00", x.evaluate("/Invoice/InvoiceLines/InvoiceLine[2]/LineExtensionTaxAmount", xml));
+        assertEquals("2", x.evaluate("count(/Invoice/TaxTotal/TaxSubTotal)", xml));
+        assertEquals("1545.00", x.evaluate("/Invoice/TaxTotal/TaxAmount", xml));
+        assertEquals("11045.00", x.evaluate("/Invoice/LegalMonetaryTotal/PayableAmount", xml));
+    }
+
+    private static InvoiceLine line(Invoice inv, String name, String qty, String unit, String price, String vat) {
+        InvoiceLine l = new InvoiceLine();
+        l.setId(UUID.randomUUID());
+        l.setInvoiceId(inv.getId());
+        l.setItemName(name);
+        l.setQuantity(new BigDecimal(qty));
+        l.setUnit(unit);
+        l.setUnitPrice(new BigDecimal(price));
+        l.setVatRate(new BigDecimal(vat));
+        l.setLineTotal(new BigDecimal(qty).multiply(new BigDecimal(price)).setScale(2));
+        return l;
+    }
+}
@@ -0,0 +1,101 @@
+package cz.stavbau.backend.invoices.jobs;
+
+import cz.stavbau.backend.features.invoices.jobs.InvoiceOverdueJob;
+import cz.stavbau.backend.features.invoices.repo.InvoiceOverdueRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceOverdueJobTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Prague");
+
+    private InvoiceOverdueRepository repo;
+    private SimpleMeterRegistry registry;
+    private InvoiceOverdueJob job;
+
+    @BeforeEach
+    void setup() {
+        repo = Mockito.mock(InvoiceOverdueRepository.class);
+        registry = new SimpleMeterRegistry();
+        job = new InvoiceOverdueJob(repo, new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)),
+                registry, 50, ZONE);
+    }
+
+    @Test
+    void batches_are_summed_per_company_until_nothing_is_left() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        when(repo.flagDue(any(), anyInt()))
+                .thenReturn(Map.of(a, 2, b, 1))
+                .thenReturn(Map.of(a, 3))
+                .thenReturn(Map.of());
+
+        job.schedule();
+
+        verify(repo, times(3)).flagDue(any(LocalDate.class), eq(50));
+        assertEquals(6, registry.get("invoices_overdue_flagged_total").counter().count());
+        assertNoCompanyTags();
+    }
+
+    @Test
+    void nothing_due_records_nothing() {
+        when(repo.flagDue(any(), anyInt())).thenReturn(Map.of());
+
+        job.schedule();
+
+        verify(repo, times(1)).flagDue(any(), anyInt());
+        assertEquals(0, registry.get("invoices_overdue_flagged_total").counter().count());
+    }
+
+    @Test
+    void run_stops_after_max_loops_even_if_batches_keep_coming() {
+        UUID a = UUID.randomUUID();
+        when(repo.flagDue(any(), anyInt())).thenReturn(Map.of(a, 1));
+
+        job.schedule();
+
+        verify(repo, times(1000)).flagDue(any(), anyInt());
+        assertEquals(1000, registry.get("invoices_overdue_flagged_total").counter().count());
+    }
+
+    @Test
+    void repository_failure_ends_the_run_but_keeps_counts_of_committed_batches() {
+        UUID a = UUID.randomUUID();
+        when(repo.flagDue(any(), anyInt()))
+                .thenReturn(Map.of(a, 4))
+                .thenThrow(new IllegalStateException("db down"));
+
+        assertDoesNotThrow(job::schedule);
+
+        verify(repo, times(2)).flagDue(any(), anyInt());
+        assertEquals(4, registry.get("invoices_overdue_flagged_total").counter().count());
+    }
+
+    @Test
+    void today_is_taken_in_configured_zone() {
+        when(repo.flagDue(any(), anyInt())).thenReturn(Map.of());
+        LocalDate before = LocalDate.now(ZONE);
+
+        job.schedule();
+
+        verify(repo).flagDue(argThat(d -> !d.isBefore(before) && !d.isAfter(LocalDate.now(ZONE))), eq(50));
+    }
+
+    /** Firmy jen v logu – žádný meter nesmí nést ID firmy jako tag. */
+    private void assertNoCompanyTags() {
+        registry.getMeters().forEach(m -> assertNull(m.getId().getTag("company"), m.getId().getName()));
+    }
+}
@@ -0,0 +1,144 @@
+package cz.stavbau.backend.invoices.repo;
+
+import cz.stavbau.backend.features.invoices.repo.InvoiceOverdueRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Ověření SQL {@link InvoiceOverdueRepository#flagDue} proti skutečnému Postgresu (CTE + UPDATE … RETURNING,
+ * SKIP LOCKED). Tabulka obsahuje jen sloupce, které dotaz používá; bez Dockeru se test přeskočí.
+ */
+class InvoiceOverdueRepositoryIT {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 10, 18);
+
+    private static PostgreSQLContainer<?> pg;
+    private static JdbcTemplate jdbc;
+
+    private InvoiceOverdueRepository repo;
+
+    @BeforeAll
+    static void start() {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker neni k dispozici");
+        pg = new PostgreSQLContainer<>("postgres:16-alpine");
+        pg.start();
+        jdbc = new JdbcTemplate(new DriverManagerDataSource(pg.getJdbcUrl(), pg.getUsername(), pg.getPassword()));
+        jdbc.execute("""
+                create table invoices (
+                    id            uuid primary key,
+                    company_id    uuid        not null,
+                    status        varchar(16) not null,
+                    due_date      date,
+                    overdue_since date
+                )
+                """);
+        jdbc.execute("""
+                create index ix_invoices_issued_due on invoices (due_date)
+                 where status = 'ISSUED' and overdue_since is null
+                """);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (pg != null) pg.stop();
+    }
+
+    @BeforeEach
+    void setup() {
+        jdbc.update("delete from invoices");
+        repo = new InvoiceOverdueRepository(jdbc);
+    }
+
+    @Test
+    void flags_only_issued_unflagged_invoices_due_before_today() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID dueA1 = insert(a, "ISSUED", TODAY.minusDays(10), null);
+        UUID dueA2 = insert(a, "ISSUED", TODAY.minusDays(1), null);
+        UUID dueB = insert(b, "ISSUED", TODAY.minusDays(3), null);
+        UUID dueToday = insert(a, "ISSUED", TODAY, null);
+        UUID paid = insert(a, "PAID", TODAY.minusDays(5), null);
+        UUID draft = insert(b, "DRAFT", TODAY.minusDays(5), null);
+        UUID already = insert(b, "ISSUED", TODAY.minusDays(20), LocalDate.of(2025, 1, 1));
+
+        Map<UUID, Integer> flagged = repo.flagDue(TODAY, 100);
+
+        assertEquals(Map.of(a, 2, b, 1), flagged);
+        assertEquals(TODAY.minusDays(9), overdueSince(dueA1));
+        assertEquals(TODAY, overdueSince(dueA2));
+        assertEquals(TODAY.minusDays(2), overdueSince(dueB));
+        assertNull(overdueSince(dueToday));
+        assertNull(overdueSince(paid));
+        assertNull(overdueSince(draft));
+        assertEquals(LocalDate.of(2025, 1, 1), overdueSince(already));
+
+        assertTrue(repo.flagDue(TODAY, 100).isEmpty());
+    }
+
+    @Test
+    void limit_takes_oldest_due_first_and_next_batch_continues() {
+        UUID a = UUID.randomUUID();
+        UUID oldest = insert(a, "ISSUED", TODAY.minusDays(30), null);
+        UUID middle = insert(a, "ISSUED", TODAY.minusDays(20), null);
+        UUID newest = insert(a, "ISSUED", TODAY.minusDays(10), null);
+
+        assertEquals(Map.of(a, 2), repo.flagDue(TODAY, 2));
+        assertNotNull(overdueSince(oldest));
+        assertNotNull(overdueSince(middle));
+        assertNull(overdueSince(newest));
+
+        assertEquals(Map.of(a, 1), repo.flagDue(TODAY, 2));
+        assertTrue(repo.flagDue(TODAY, 2).isEmpty());
+    }
+
+    @Test
+    void invoice_locked_by_other_transaction_is_skipped_not_waited_for() throws Exception {
+        UUID a = UUID.randomUUID();
+        UUID locked = insert(a, "ISSUED", TODAY.minusDays(5), null);
+        UUID free = insert(a, "ISSUED", TODAY.minusDays(4), null);
+
+        try (Connection other = DriverManager.getConnection(pg.getJdbcUrl(), pg.getUsername(), pg.getPassword())) {
+            other.setAutoCommit(false);
+            try (PreparedStatement ps = other.prepareStatement("select 1 from invoices where id = ? for update")) {
+                ps.setObject(1, locked);
+                ps.executeQuery().close();
+            }
+
+            assertEquals(Map.of(a, 1), repo.flagDue(TODAY, 100));
+            assertNull(overdueSince(locked));
+            assertNotNull(overdueSince(free));
+
+            other.rollback();
+        }
+
+        assertEquals(Map.of(a, 1), repo.flagDue(TODAY, 100));
+        assertNotNull(overdueSince(locked));
+    }
+
+    private UUID insert(UUID companyId, String status, LocalDate dueDate, LocalDate overdueSince) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("insert into invoices(id, company_id, status, due_date, overdue_since) values (?,?,?,?,?)",
+                id, companyId, status, dueDate, overdueSince);
+        return id;
+    }
+
+    private LocalDate overdueSince(UUID id) {
+        return jdbc.queryForObject("select overdue_since from invoices where id = ?", LocalDate.class, id);
+    }
+}
@@ -0,0 +1,217 @@
+package cz.stavbau.backend.invoices.service;
+
+import cz.stavbau.backend.features.invoices.model.Invoice;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRepository;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
+import cz.stavbau.backend.features.invoices.service.NumberSeriesService;
+import cz.stavbau.backend.features.invoices.service.impl.InvoiceIssuer;
+import cz.stavbau.backend.features.invoices.util.NumberPattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceIssuerTest {
+
+    private final UUID COMPANY = UUID.fromString("00000000-0000-0000-0000-0000000000A1");
+
+    private InvoiceRepository invoiceRepo;
+    private NumberSeriesService numberSeries;
+    private InvoiceRollupService rollups;
+    private InvoiceIssuer issuer;
+    private final Map<UUID, Invoice> invoices = new ConcurrentHashMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        invoiceRepo = Mockito.mock(InvoiceRepository.class);
+        numberSeries = Mockito.mock(NumberSeriesService.class);
+        rollups = Mockito.mock(InvoiceRollupService.class);
+        when(invoiceRepo.findById(any())).thenAnswer(i -> Optional.ofNullable(invoices.get(i.<UUID>getArgument(0))));
+        when(invoiceRepo.lockAllById(any())).thenAnswer(i -> ((Collection<UUID>) i.getArgument(0)).stream()
+                .map(invoices::get).filter(Objects::nonNull).toList());
+        when(numberSeries.reserve(eq(COMPANY), eq("INV"), anyInt(), anyInt())).thenAnswer(i -> block(i.getArgument(3)));
+        issuer = new InvoiceIssuer(invoiceRepo, numberSeries, rollups,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), 500);
+    }
+
+    @Test
+    void batch_reserves_once_and_numbers_chronologically() {
+        Invoice late = draft(LocalDate.of(2025, 10, 31));
+        Invoice early = draft(LocalDate.of(2025, 10, 2));
+        Invoice issued = draft(LocalDate.of(2025, 10, 5));
+        issued.setStatus(InvoiceStatus.ISSUED);
+
+        var out = issuer.issueAll(List.of(late.getId(), early.getId(), issued.getId(), UUID.randomUUID()));
+
+        verify(numberSeries, times(1)).reserve(COMPANY, "INV", 2025, 2);
+        verify(rollups).lockAll(List.of(late.getId(), early.getId()));
+        assertEquals("INV-2025-0002", out.get(0).number());
+        assertEquals("INV-2025-0001", out.get(1).number());
+        assertInstanceOf(IllegalStateException.class, out.get(2).error());
+        assertNotNull(out.get(3).error());
+        assertEquals(InvoiceStatus.ISSUED, late.getStatus());
+    }
+
+    @Test
+    void concurrent_issues_of_one_series_share_a_transaction_and_stay_gapless() throws Exception {
+        int n = 8;
+        List<Invoice> drafts = new ArrayList<>();
+        for (int i = 0; i < n; i++) drafts.add(draft(LocalDate.of(2025, 10, 31)));
+        CountDownLatch requested = new CountDownLatch(n);
+        doAnswer(i -> {
+            requested.countDown();
+            return Optional.ofNullable(invoices.get(i.<UUID>getArgument(0)));
+        }).when(invoiceRepo).findById(any());
+        CountDownLatch firstReserve = new CountDownLatch(1);
+        doAnswer(i -> {
+            if (firstReserve.getCount() > 0) {
+                // první dávka drží "zámek", ostatní požadavky se mezitím řadí do fronty
+                requested.await(5, TimeUnit.SECONDS);
+                Thread.sleep(100);
+                firstReserve.countDown();
+            }
+            return block(i.getArgument(3));
+        }).when(numberSeries).reserve(eq(COMPANY), eq("INV"), anyInt(), anyInt());
+
+        ExecutorService pool = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (Invoice inv : drafts) futures.add(pool.submit(() -> issuer.issue(inv.getId())));
+            TreeSet<String> numbers = new TreeSet<>();
+            for (Future<String> f : futures) numbers.add(f.get(10, TimeUnit.SECONDS));
+
+            assertEquals(n, numbers.size());
+            assertEquals("INV-2025-0001", numbers.first());
+            assertEquals("INV-2025-0008", numbers.last());
+            verify(numberSeries, atMost(n - 1)).reserve(eq(COMPANY), eq("INV"), eq(2025), anyInt());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void caller_returns_once_its_own_invoice_is_numbered() throws Exception {
+        Invoice a = draft(LocalDate.of(2025, 10, 31));
+        Invoice b = draft(LocalDate.of(2025, 10, 31));
+        Invoice c = draft(LocalDate.of(2025, 10, 31));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch queued = queuedBehindFirstBatch(a);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(i -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                started.countDown();
+                queued.await(5, TimeUnit.SECONDS);
+                Thread.sleep(100);
+            } else if (call == 2) {
+                // dávku b + c vyřizuje až převzetí fronty – kdyby ji obsluhoval volající a, neskončil by
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return block(i.getArgument(3));
+        }).when(numberSeries).reserve(eq(COMPANY), eq("INV"), anyInt(), anyInt());
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<String> fa = pool.submit(() -> issuer.issue(a.getId()));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> fb = pool.submit(() -> issuer.issue(b.getId()));
+            Future<String> fc = pool.submit(() -> issuer.issue(c.getId()));
+
+            assertEquals("INV-2025-0001", fa.get(2, TimeUnit.SECONDS));
+            release.countDown();
+            assertEquals(new TreeSet<>(List.of("INV-2025-0002", "INV-2025-0003")),
+                    new TreeSet<>(List.of(fb.get(5, TimeUnit.SECONDS), fc.get(5, TimeUnit.SECONDS))));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failed_batch_transaction_is_retried_per_invoice() throws Exception {
+        Invoice a = draft(LocalDate.of(2025, 10, 31));
+        Invoice b = draft(LocalDate.of(2025, 10, 31));
+        Invoice c = draft(LocalDate.of(2025, 10, 31));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch queued = queuedBehindFirstBatch(a);
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(i -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                started.countDown();
+                queued.await(5, TimeUnit.SECONDS);
+                Thread.sleep(100);
+            } else if (call == 2) {
+                throw new IllegalStateException("could not serialize access");
+            }
+            return block(i.getArgument(3));
+        }).when(numberSeries).reserve(eq(COMPANY), eq("INV"), anyInt(), anyInt());
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<String> fa = pool.submit(() -> issuer.issue(a.getId()));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> fb = pool.submit(() -> issuer.issue(b.getId()));
+            Future<String> fc = pool.submit(() -> issuer.issue(c.getId()));
+
+            assertEquals("INV-2025-0001", fa.get(5, TimeUnit.SECONDS));
+            assertEquals(new TreeSet<>(List.of("INV-2025-0002", "INV-2025-0003")),
+                    new TreeSet<>(List.of(fb.get(5, TimeUnit.SECONDS), fc.get(5, TimeUnit.SECONDS))));
+            verify(numberSeries).reserve(COMPANY, "INV", 2025, 2);
+            verify(numberSeries, times(3)).reserve(COMPANY, "INV", 2025, 1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Odpočítá požadavky na ostatní faktury než {@code first} (findById předchází zařazení do fronty). */
+    private CountDownLatch queuedBehindFirstBatch(Invoice first) {
+        CountDownLatch queued = new CountDownLatch(invoices.size() - 1);
+        doAnswer(i -> {
+            UUID id = i.getArgument(0);
+            if (!id.equals(first.getId())) queued.countDown();
+            return Optional.ofNullable(invoices.get(id));
+        }).when(invoiceRepo).findById(any());
+        return queued;
+    }
+
+    private NumberSeriesService.Block block(int n) {
+        return new NumberSeriesService.Block(NumberPattern.of("INV-{YYYY}-{NNNN}"), counter.getAndAdd(n) + 1, n);
+    }
+
+    private Invoice draft(LocalDate issueDate) {
+        Invoice inv = new Invoice();
+        inv.setId(UUID.randomUUID());
+        inv.setCompanyId(COMPANY);
+        inv.setIssueDate(issueDate);
+        inv.setStatus(InvoiceStatus.DRAFT);
+        invoices.put(inv.getId(), inv);
+        return inv;
+    }
+}
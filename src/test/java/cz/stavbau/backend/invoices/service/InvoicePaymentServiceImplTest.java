@@ -0,0 +1,104 @@
+package cz.stavbau.backend.invoices.service;
+
+import cz.stavbau.backend.features.invoices.bank.BankStatementParser;
+import cz.stavbau.backend.features.invoices.bank.PaymentMatcher.Result;
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoicePaymentRepository.OpenInvoice;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.service.InvoicePaymentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
+import cz.stavbau.backend.features.invoices.service.impl.InvoicePaymentServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoicePaymentServiceImplTest {
+
+    private final UUID COMPANY = UUID.fromString("00000000-0000-0000-0000-0000000000A1");
+
+    private final OpenInvoice paid = new OpenInvoice(UUID.randomUUID(), "INV-2025-0042", new BigDecimal("1210.00"), "CZK");
+    private final OpenInvoice changed = new OpenInvoice(UUID.randomUUID(), "INV-2025-0043", new BigDecimal("500.00"), "CZK");
+    private final OpenInvoice partial = new OpenInvoice(UUID.randomUUID(), "INV-2025-0044", new BigDecimal("800.00"), "CZK");
+
+    private static final String CSV = "Datum;Částka;Měna;VS;ID pohybu\n"
+            + "31.10.2025;1210,00;CZK;20250042;A1\n"
+            + "31.10.2025;500,00;CZK;20250043;A2\n"
+            + "31.10.2025;400,00;CZK;20250044;A3\n"
+            + "31.10.2025;-99,00;CZK;;A4\n";
+
+    private InvoicePaymentRepository paymentRepo;
+    private InvoiceRollupService rollups;
+    private InvoicePaymentService service;
+
+    @BeforeEach
+    void setup() {
+        paymentRepo = Mockito.mock(InvoicePaymentRepository.class);
+        rollups = Mockito.mock(InvoiceRollupService.class);
+        service = new InvoicePaymentServiceImpl(paymentRepo, rollups);
+        when(paymentRepo.findOpen(COMPANY)).thenReturn(List.of(paid, changed, partial));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void matched_invoices_are_paid_in_one_update_and_moved_in_rollups() throws Exception {
+        Snapshot issued = snapshot(paid.id(), InvoiceStatus.ISSUED, "1210.00");
+        // mezitím ručně uhrazená faktura – pod zámkem se nepřepne
+        Snapshot alreadyPaid = snapshot(changed.id(), InvoiceStatus.PAID, "500.00");
+        when(rollups.lockAll(any())).thenReturn(List.of(issued, alreadyPaid));
+        when(paymentRepo.markPaid(any())).thenReturn(List.of(paid.id()));
+
+        var res = service.importStatement(COMPANY, csv(), null, false);
+
+        assertEquals(BankStatementParser.Format.CSV, res.format());
+        assertEquals(4, res.transactions());
+        assertEquals(2, res.matched());
+        assertEquals(1, res.paid());
+        assertEquals(List.of(Result.MATCHED, Result.CONFLICT, Result.AMOUNT_MISMATCH),
+                res.lines().stream().map(InvoicePaymentService.Line::result).toList());
+
+        ArgumentCaptor<Collection<UUID>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(paymentRepo).markPaid(ids.capture());
+        assertEquals(List.of(paid.id()), List.copyOf(ids.getValue()));
+        verify(rollups).changedAll(List.of(issued), List.of(issued.withStatus(InvoiceStatus.PAID)));
+
+        ArgumentCaptor<List<InvoicePaymentRepository.Payment>> payments = ArgumentCaptor.forClass(List.class);
+        verify(paymentRepo).insert(payments.capture());
+        assertEquals(1, payments.getValue().size());
+        assertEquals("A1", payments.getValue().get(0).reference());
+        assertEquals("20250042", payments.getValue().get(0).variableSymbol());
+    }
+
+    @Test
+    void dry_run_only_matches() throws Exception {
+        var res = service.importStatement(COMPANY, csv(), BankStatementParser.Format.CSV, true);
+
+        assertEquals(2, res.matched());
+        assertEquals(0, res.paid());
+        verify(rollups, never()).lockAll(any());
+        verify(paymentRepo, never()).markPaid(any());
+        verify(paymentRepo, never()).insert(any());
+    }
+
+    private static ByteArrayInputStream csv() {
+        return new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Snapshot snapshot(UUID id, InvoiceStatus status, String total) {
+        return new Snapshot(id, COMPANY, null, "12345678", "Odběratel a.s.", LocalDate.of(2025, 10, 1), status, "CZK",
+                new BigDecimal(total), BigDecimal.ZERO, new BigDecimal(total));
+    }
+}
@@ -0,0 +1,98 @@
+package cz.stavbau.backend.invoices.service;
+
+import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.service.impl.InvoiceRollupServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceRollupServiceImplTest {
+
+    private final UUID COMPANY = UUID.fromString("00000000-0000-0000-0000-0000000000A1");
+    private final UUID PROJECT = UUID.fromString("00000000-0000-0000-0000-0000000000B1");
+
+    private JdbcTemplate jdbc;
+    private InvoiceRollupServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        jdbc = Mockito.mock(JdbcTemplate.class);
+        service = new InvoiceRollupServiceImpl(new InvoiceRollupRepository(jdbc));
+    }
+
+    @Test
+    void status_change_moves_invoice_between_buckets() {
+        Snapshot issued = invoice(InvoiceStatus.ISSUED, "1210.00");
+
+        service.changed(issued, issued.withStatus(InvoiceStatus.PAID));
+
+        List<Object[]> months = batch("invoice_rollup_months");
+        assertEquals(2, months.size());
+        // řádky v pořadí zámků: ISSUED < PAID
+        assertArrayEquals(new Object[]{-1L, new BigDecimal("-1000.00"), new BigDecimal("-210.00"), new BigDecimal("-1210.00")},
+                Arrays.copyOf(months.get(0), 4));
+        assertEquals("ISSUED", months.get(0)[6]);
+        assertEquals(1L, months.get(1)[0]);
+        assertEquals("PAID", months.get(1)[6]);
+        assertEquals(2, batch("invoice_rollup_projects").size());
+        assertEquals(2, batch("invoice_rollup_customers").size());
+    }
+
+    @Test
+    void totals_change_touches_only_amounts_and_unchanged_invoice_writes_nothing() {
+        Snapshot draft = invoice(InvoiceStatus.DRAFT, "1210.00");
+
+        service.changed(draft, draft.withTotals(new BigDecimal("1100.00"), new BigDecimal("231.00"), new BigDecimal("1331.00")));
+        List<Object[]> months = batch("invoice_rollup_months");
+        assertEquals(1, months.size());
+        assertEquals(0L, months.get(0)[0]);
+        assertEquals(0, new BigDecimal("121.00").compareTo((BigDecimal) months.get(0)[3]));
+
+        reset(jdbc);
+        service.changed(draft, draft);
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void batch_of_issued_invoices_is_summed_per_bucket() {
+        Snapshot a = invoice(InvoiceStatus.DRAFT, "100.00");
+        Snapshot b = invoice(InvoiceStatus.DRAFT, "200.00");
+
+        service.changedAll(List.of(a, b), List.of(a.withStatus(InvoiceStatus.ISSUED), b.withStatus(InvoiceStatus.ISSUED)));
+
+        List<Object[]> months = batch("invoice_rollup_months");
+        assertEquals(2, months.size());
+        assertEquals(-2L, months.get(0)[0]);
+        assertEquals(2L, months.get(1)[0]);
+        assertEquals(0, new BigDecimal("300.00").compareTo((BigDecimal) months.get(1)[3]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> batch(String table) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(contains("insert into " + table + "("), rows.capture());
+        return rows.getValue();
+    }
+
+    private Snapshot invoice(InvoiceStatus status, String total) {
+        BigDecimal t = new BigDecimal(total);
+        BigDecimal base = t.divide(new BigDecimal("1.21"), 2, RoundingMode.HALF_UP);
+        return new Snapshot(UUID.randomUUID(), COMPANY, PROJECT, "12345678", "Stavby s.r.o.", LocalDate.of(2025, 10, 7),
+                status, "CZK", base, t.subtract(base), t);
+    }
+}
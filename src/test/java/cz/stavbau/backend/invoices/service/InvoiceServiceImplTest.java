@@ -3,22 +3,38 @@ package cz.stavbau.backend.invoices.service;
 import cz.stavbau.backend.features.invoices.model.Invoice;
 import cz.stavbau.backend.features.invoices.model.InvoiceStatus;
 import cz.stavbau.backend.features.invoices.model.VatMode;
-import cz.stavbau.backend.features.invoices.repo.InvoiceLineRepository;
+import cz.stavbau.backend.common.exception.ConflictException;
+import cz.stavbau.backend.features.invoices.model.InvoiceLine;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository.Amount;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository.Head;
+import cz.stavbau.backend.features.invoices.repo.InvoiceLineBatchRepository.Totals;
 import cz.stavbau.backend.features.invoices.repo.InvoiceRepository;
-import cz.stavbau.backend.features.invoices.repo.NumberSeriesRepository;
+import cz.stavbau.backend.features.invoices.repo.InvoiceRollupRepository.Snapshot;
+import cz.stavbau.backend.features.invoices.repo.InvoiceSearchRepository;
+import cz.stavbau.backend.features.invoices.service.InvoiceDocumentService;
+import cz.stavbau.backend.features.invoices.service.InvoiceRollupService;
 import cz.stavbau.backend.features.invoices.service.InvoiceService;
 import cz.stavbau.backend.features.invoices.service.NumberSeriesService;
+import cz.stavbau.backend.features.invoices.service.impl.InvoiceIssuer;
 import cz.stavbau.backend.features.invoices.service.impl.InvoiceServiceImpl;
+import cz.stavbau.backend.features.invoices.util.NumberPattern;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,9 +44,11 @@ import static org.mockito.Mockito.*;
 public class InvoiceServiceImplTest {
 
     private InvoiceRepository invoiceRepo;
-    private InvoiceLineRepository lineRepo;
+    private InvoiceLineBatchRepository lineRepo;
     private NumberSeriesService numberSeriesService;
-    private NumberSeriesRepository numberSeriesRepo;
+    private InvoiceSearchRepository searchRepo;
+    private InvoiceRollupService rollups;
+    private InvoiceDocumentService documents;
     private InvoiceService service;
 
     private final UUID COMPANY = UUID.fromString("00000000-0000-0000-0000-0000000000A1");
@@ -38,10 +56,15 @@ public class InvoiceServiceImplTest {
     @BeforeEach
     void setup() {
         invoiceRepo = Mockito.mock(InvoiceRepository.class);
-        lineRepo = Mockito.mock(InvoiceLineRepository.class);
+        lineRepo = Mockito.mock(InvoiceLineBatchRepository.class);
         numberSeriesService = Mockito.mock(NumberSeriesService.class);
-        numberSeriesRepo = Mockito.mock(NumberSeriesRepository.class);
-        service = new InvoiceServiceImpl(invoiceRepo, lineRepo, numberSeriesService, numberSeriesRepo);
+        searchRepo = Mockito.mock(InvoiceSearchRepository.class);
+        rollups = Mockito.mock(InvoiceRollupService.class);
+        documents = Mockito.mock(InvoiceDocumentService.class);
+        when(rollups.lock(any())).thenAnswer(i -> snapshot(i.getArgument(0), InvoiceStatus.DRAFT));
+        var issuer = new InvoiceIssuer(invoiceRepo, numberSeriesService, rollups,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), 500);
+        service = new InvoiceServiceImpl(invoiceRepo, lineRepo, issuer, searchRepo, rollups, documents);
     }
 
     @Test
@@ -52,37 +75,86 @@ public class InvoiceServiceImplTest {
     }
 
     @Test
-    void addOrReplaceLines_and_recalcTotals_computes_vat() {
-        // Prepare invoice
-        Invoice inv = new Invoice();
-        inv.setId(UUID.randomUUID());
-        inv.setCompanyId(COMPANY);
-        inv.setCurrency("CZK");
-        inv.setVatMode(VatMode.STANDARD);
-        inv.setIssueDate(LocalDate.of(2025,9,12));
-        inv.setDueDate(LocalDate.of(2025,9,30));
-        inv.setStatus(InvoiceStatus.DRAFT);
-
-        when(invoiceRepo.findById(eq(inv.getId()))).thenReturn(Optional.of(inv));
-        when(lineRepo.findByInvoiceId(eq(inv.getId()))).thenReturn(new ArrayList<>());
-        when(invoiceRepo.save(any())).thenAnswer(i -> i.getArguments()[0]);
+    void addOrReplaceLines_deletes_set_based_and_batch_inserts() {
+        UUID invoiceId = UUID.randomUUID();
+        when(lineRepo.lockInvoice(invoiceId)).thenReturn(new Head(InvoiceStatus.DRAFT, VatMode.STANDARD));
+        when(lineRepo.recalcTotals(invoiceId))
+                .thenReturn(new Totals(new BigDecimal("13750.83"), new BigDecimal("2887.67"), new BigDecimal("16638.50")));
 
-        service.addOrReplaceLines(inv.getId(), List.of(
+        service.addOrReplaceLines(invoiceId, List.of(
             new InvoiceService.LineCreate("Práce", new BigDecimal("10"), "hod", new BigDecimal("1000"), new BigDecimal("21")),
-            new InvoiceService.LineCreate("Materiál", new BigDecimal("2"), "ks", new BigDecimal("1500"), new BigDecimal("21"))
+            new InvoiceService.LineCreate("Materiál", new BigDecimal("2.5"), "ks", new BigDecimal("1500.33"), new BigDecimal("21"))
         ));
 
-        // After replace, recalcTotals called internally -> check saved totals
-        ArgumentCaptor<Invoice> cap = ArgumentCaptor.forClass(Invoice.class);
-        verify(invoiceRepo, atLeastOnce()).save(cap.capture());
-        Invoice saved = cap.getValue();
-
-        // subtotal: 10*1000 + 2*1500 = 10000 + 3000 = 13000
-        assertEquals(new BigDecimal("13000.00"), saved.getSubtotal());
-        // vat: 21% z 13000 = 2730.00 (po řádcích stejné)
-        assertEquals(new BigDecimal("2730.00"), saved.getVatTotal());
-        // total: 15730.00
-        assertEquals(new BigDecimal("15730.00"), saved.getTotal());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InvoiceLine>> cap = ArgumentCaptor.forClass(List.class);
+        var order = inOrder(lineRepo);
+        order.verify(lineRepo).deleteByInvoice(invoiceId);
+        order.verify(lineRepo).insert(cap.capture());
+        order.verify(lineRepo).recalcTotals(invoiceId);
+        assertEquals(2, cap.getValue().size());
+        assertEquals(new BigDecimal("10000.00"), cap.getValue().get(0).getLineTotal());
+        // 2.5 × 1500.33 = 3750.825 → 3750.83
+        assertEquals(new BigDecimal("3750.83"), cap.getValue().get(1).getLineTotal());
+        verify(invoiceRepo, never()).save(any());
+    }
+
+    @Test
+    void patchLines_shifts_totals_by_delta_of_touched_lines() {
+        UUID invoiceId = UUID.randomUUID();
+        UUID changed = UUID.randomUUID(), removed = UUID.randomUUID();
+        when(lineRepo.lockInvoice(invoiceId)).thenReturn(new Head(InvoiceStatus.DRAFT, VatMode.STANDARD));
+        when(lineRepo.deleteByIds(eq(invoiceId), eq(Set.of(removed))))
+                .thenReturn(List.of(new Amount(removed, "Bednění", new BigDecimal("1000.00"), new BigDecimal("21"))));
+        when(lineRepo.findAmounts(eq(invoiceId), eq(Set.of(changed))))
+                .thenReturn(List.of(new Amount(changed, "Doprava", new BigDecimal("500.00"), new BigDecimal("12"))));
+        when(lineRepo.addToTotals(eq(invoiceId), any(), any(), anyBoolean()))
+                .thenReturn(new Totals(new BigDecimal("13500.00"), new BigDecimal("2835.00"), new BigDecimal("16335.00")));
+
+        var res = service.patchLines(invoiceId, new InvoiceService.LinesPatch(
+                List.of(new InvoiceService.LineCreate("Lešení", new BigDecimal("1"), "kpl", new BigDecimal("2000"), new BigDecimal("21"))),
+                List.of(new InvoiceService.LineUpdate(changed, "Doprava", new BigDecimal("1"), "km", new BigDecimal("500"), new BigDecimal("21"))),
+                List.of(removed)));
+
+        // základ: -1000 - 500 + 500 + 2000 = +1000; DPH: -210 - 60 + 105 + 420 = +255
+        assertEquals(new BigDecimal("1000.00"), res.delta().subtotal());
+        assertEquals(new BigDecimal("255.00"), res.delta().vatTotal());
+        assertEquals(new BigDecimal("1255.00"), res.delta().total());
+        assertEquals(1, res.addedIds().size());
+        assertEquals(new BigDecimal("16335.00"), res.totals().total());
+        verify(lineRepo).addToTotals(invoiceId, new BigDecimal("1000.00"), new BigDecimal("255.00"), true);
+        verify(lineRepo, never()).recalcTotals(any());
+    }
+
+    @Test
+    void patchLines_rebuilds_item_names_only_when_a_name_changes() {
+        UUID invoiceId = UUID.randomUUID();
+        UUID line = UUID.randomUUID();
+        when(lineRepo.lockInvoice(invoiceId)).thenReturn(new Head(InvoiceStatus.DRAFT, VatMode.STANDARD));
+        when(lineRepo.findAmounts(eq(invoiceId), eq(Set.of(line))))
+                .thenReturn(List.of(new Amount(line, "Doprava", new BigDecimal("500.00"), new BigDecimal("21"))));
+        when(lineRepo.addToTotals(eq(invoiceId), any(), any(), anyBoolean()))
+                .thenReturn(new Totals(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+
+        service.patchLines(invoiceId, new InvoiceService.LinesPatch(null,
+                List.of(new InvoiceService.LineUpdate(line, "Doprava", new BigDecimal("2"), "km", new BigDecimal("500"), new BigDecimal("21"))),
+                null));
+        verify(lineRepo).addToTotals(eq(invoiceId), any(), any(), eq(false));
+
+        service.patchLines(invoiceId, new InvoiceService.LinesPatch(null,
+                List.of(new InvoiceService.LineUpdate(line, "Doprava materiálu", new BigDecimal("2"), "km", new BigDecimal("500"), new BigDecimal("21"))),
+                null));
+        verify(lineRepo).addToTotals(eq(invoiceId), any(), any(), eq(true));
+    }
+
+    @Test
+    void patchLines_rejects_issued_invoice() {
+        UUID invoiceId = UUID.randomUUID();
+        when(lineRepo.lockInvoice(invoiceId)).thenReturn(new Head(InvoiceStatus.ISSUED, VatMode.STANDARD));
+
+        assertThrows(ConflictException.class, () -> service.patchLines(invoiceId,
+                new InvoiceService.LinesPatch(List.of(), List.of(), List.of(UUID.randomUUID()))));
+        verify(lineRepo, never()).deleteByIds(any(), any());
     }
 
     @Test
@@ -99,12 +171,45 @@ public class InvoiceServiceImplTest {
         inv.setStatus(InvoiceStatus.DRAFT);
 
         when(invoiceRepo.findById(eq(inv.getId()))).thenReturn(Optional.of(inv));
-        when(invoiceRepo.save(any())).thenAnswer(i -> i.getArguments()[0]);
-        when(numberSeriesService.generateNextNumber(eq(COMPANY), eq("INV"), any(LocalDate.class))).thenReturn("INV-2025-0001");
+        when(invoiceRepo.lockAllById(any())).thenReturn(List.of(inv));
+        when(numberSeriesService.reserve(COMPANY, "INV", 2025, 1))
+                .thenReturn(new NumberSeriesService.Block(NumberPattern.of("INV-{YYYY}-{NNNN}"), 1, 1));
 
         String number = service.issue(inv.getId());
         assertEquals("INV-2025-0001", number);
         assertEquals(InvoiceStatus.ISSUED, inv.getStatus());
+        verify(documents).renderAfterCommit(inv.getId());
+    }
+
+    @Test
+    void status_change_moves_invoice_between_rollup_buckets() {
+        Invoice inv = new Invoice();
+        inv.setId(UUID.randomUUID());
+        inv.setCompanyId(COMPANY);
+        inv.setStatus(InvoiceStatus.ISSUED);
+        Snapshot before = snapshot(inv.getId(), InvoiceStatus.ISSUED);
+        when(rollups.lock(inv.getId())).thenReturn(before);
+        when(invoiceRepo.findById(eq(inv.getId()))).thenReturn(Optional.of(inv));
+
+        service.markPaid(inv.getId());
+
+        verify(rollups).changed(before, before.withStatus(InvoiceStatus.PAID));
+    }
+
+    @Test
+    void line_patch_moves_rollup_totals_by_the_delta() {
+        UUID invoiceId = UUID.randomUUID();
+        when(lineRepo.lockInvoice(invoiceId)).thenReturn(new Head(InvoiceStatus.DRAFT, VatMode.STANDARD));
+        when(lineRepo.addToTotals(eq(invoiceId), any(), any(), anyBoolean()))
+                .thenReturn(new Totals(new BigDecimal("100.00"), new BigDecimal("21.00"), new BigDecimal("121.00")));
+
+        service.patchLines(invoiceId, new InvoiceService.LinesPatch(List.of(
+                new InvoiceService.LineCreate("Práce", BigDecimal.ONE, "hod", new BigDecimal("100"), new BigDecimal("21"))),
+                null, null));
+
+        Snapshot before = snapshot(invoiceId, InvoiceStatus.DRAFT);
+        verify(rollups).changed(before,
+                before.withTotals(new BigDecimal("100.00"), new BigDecimal("21.00"), new BigDecimal("121.00")));
     }
 
     @Test
@@ -132,4 +237,39 @@ public class InvoiceServiceImplTest {
         service.cancel(inv.getId());
         assertEquals(InvoiceStatus.CANCELLED, inv.getStatus());
     }
+
+    @Test
+    void search_with_text_keeps_index_ranking() {
+        Invoice a = new Invoice();
+        a.setId(UUID.randomUUID());
+        Invoice b = new Invoice();
+        b.setId(UUID.randomUUID());
+        when(searchRepo.search(COMPANY, null, InvoiceStatus.ISSUED, null, null, "stavba", Sort.unsorted(), 20L, 10))
+                .thenReturn(new InvoiceSearchRepository.Result(List.of(b.getId(), a.getId()), 22));
+        when(invoiceRepo.findAllById(any())).thenReturn(List.of(a, b));
+
+        var page = service.search(COMPANY, Optional.empty(), Optional.of(InvoiceStatus.ISSUED), Optional.of("stavba"),
+                Optional.empty(), Optional.empty(), PageRequest.of(2, 10));
+
+        assertEquals(List.of(b, a), page.getContent());
+        assertEquals(22, page.getTotalElements());
+        verify(invoiceRepo, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void search_with_text_passes_explicit_sort_to_index() {
+        Sort byDue = Sort.by(Sort.Direction.ASC, "dueDate");
+        when(searchRepo.search(any(), any(), any(), any(), any(), any(), any(), anyLong(), anyInt()))
+                .thenReturn(new InvoiceSearchRepository.Result(List.of(), 0));
+
+        service.search(COMPANY, Optional.empty(), Optional.empty(), Optional.of("stavba"),
+                Optional.empty(), Optional.empty(), PageRequest.of(0, 10, byDue));
+
+        verify(searchRepo).search(COMPANY, null, null, null, null, "stavba", byDue, 0L, 10);
+    }
+
+    private Snapshot snapshot(UUID invoiceId, InvoiceStatus status) {
+        return new Snapshot(invoiceId, COMPANY, null, "12345678", "Odběratel", LocalDate.of(2025, 9, 12), status, "CZK",
+                BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
 }
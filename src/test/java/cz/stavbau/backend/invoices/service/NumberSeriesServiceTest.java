@@ -4,6 +4,7 @@ import cz.stavbau.backend.features.invoices.model.NumberSeries;
 import cz.stavbau.backend.features.invoices.repo.NumberSeriesRepository;
 import cz.stavbau.backend.features.invoices.service.NumberSeriesService;
 import cz.stavbau.backend.features.invoices.service.impl.NumberSeriesServiceImpl;
+import cz.stavbau.backend.features.invoices.util.NumberPattern;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -68,4 +69,35 @@ public class NumberSeriesServiceTest {
         String n = service.generateNextNumber(COMPANY, "INV", now);
         assertEquals("INV-2025-008", n); // 7 -> 8, padded to 3
     }
+
+    @Test
+    void reserve_bumps_counter_once_for_whole_block() {
+        NumberSeries existing = new NumberSeries();
+        existing.setId(UUID.randomUUID());
+        existing.setCompanyId(COMPANY);
+        existing.setKey("INV");
+        existing.setPattern("FV{YY}{MM}{NNNN}");
+        existing.setCounterYear(2025);
+        existing.setCounterValue(41);
+
+        when(repo.lockByCompanyKeyYear(eq(COMPANY), eq("INV"), eq(2025))).thenReturn(Optional.of(existing));
+        Mockito.when(repo.save(Mockito.any())).thenAnswer(inv -> inv.getArguments()[0]);
+
+        var block = service.reserve(COMPANY, "INV", 2025, 3);
+
+        assertEquals(44, existing.getCounterValue());
+        assertEquals("FV25100042", block.number(LocalDate.of(2025, 10, 31), 0));
+        assertEquals("FV25110044", block.number(LocalDate.of(2025, 11, 1), 2));
+        Mockito.verify(repo, Mockito.times(1)).save(existing);
+    }
+
+    @Test
+    void compiled_pattern_matches_legacy_token_semantics() {
+        LocalDate d = LocalDate.of(2025, 3, 7);
+        assertEquals("INV-2025-12345", NumberPattern.compile("INV-{YYYY}-{NNNN}").format(d, 12345));
+        assertEquals("25/03/07", NumberPattern.compile("{YY}/{MM}/{NN}").format(d, 7));
+        assertEquals("FAKTURA-7", NumberPattern.compile("FAKTURA").format(d, 7));
+        assertEquals("X{N}", NumberPattern.compile("X{N}").format(d, 7));
+        assertEquals("{2025}-000007", NumberPattern.compile("{{YYYY}}-{NNNNNN}").format(d, 7));
+    }
 }